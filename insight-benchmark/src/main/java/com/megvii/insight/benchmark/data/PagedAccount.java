@@ -0,0 +1,36 @@
+package com.megvii.insight.benchmark.data;
+
+import java.time.LocalDateTime;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * Row of the {@link PagingBenchmark} table.
+ */
+@Entity
+@Table(name = PagingBenchmark.TABLE)
+public class PagedAccount {
+
+  @Id
+  private Long id;
+
+  private String name;
+
+  @Column(name = "created_at")
+  private LocalDateTime createdAt;
+
+  public Long getId() {
+    return id;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public LocalDateTime getCreatedAt() {
+    return createdAt;
+  }
+}
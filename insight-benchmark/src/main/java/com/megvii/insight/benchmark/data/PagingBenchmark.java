@@ -0,0 +1,159 @@
+package com.megvii.insight.benchmark.data;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Root;
+
+import com.megvii.insight.common.data.KeysetPaginator;
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.support.SimpleJpaRepository;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+
+/**
+ * A page of 50 rows, {@code depth} rows deep into a table of {@code rows} accounts sorted by creation time, through
+ * Hibernate: an offset query, a Spring Data page (the offset query and a count query), and {@link KeysetPaginator}
+ * from the cursor of the row before. All three use the (created_at, id) index.
+ * <p>
+ * Needs a PostgreSQL; the table is created and filled once, then kept for later runs:
+ * </p>
+ *
+ * <pre>
+ *
+ *    java -Dinsight.benchmark.postgres.url=jdbc:postgresql://localhost:5432/postgres \
+ *        -Dinsight.benchmark.postgres.user=postgres -Dinsight.benchmark.postgres.password= \
+ *        -jar target/benchmarks.jar PagingBenchmark
+ *
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PagingBenchmark {
+
+  static final String TABLE = "insight_paging_benchmark";
+
+  private static final int PAGE_SIZE = 50;
+
+  private static final Sort SORT = Sort.by("createdAt", "id");
+
+  @Param({"1000000"})
+  private int rows;
+
+  @Param({"0", "10000", "100000", "900000"})
+  private int depth;
+
+  private HikariDataSource dataSource;
+
+  private EntityManagerFactory entityManagerFactory;
+
+  private EntityManager entityManager;
+
+  private KeysetPaginator<PagedAccount> paginator;
+
+  private String cursor;
+
+  @Setup
+  public void setup() throws SQLException {
+    dataSource = new HikariDataSource();
+    dataSource.setJdbcUrl(System.getProperty("insight.benchmark.postgres.url",
+        "jdbc:postgresql://localhost:5432/postgres"));
+    dataSource.setUsername(System.getProperty("insight.benchmark.postgres.user", "postgres"));
+    dataSource.setPassword(System.getProperty("insight.benchmark.postgres.password", ""));
+    createTable();
+
+    LocalContainerEntityManagerFactoryBean factory = new LocalContainerEntityManagerFactoryBean();
+    factory.setDataSource(dataSource);
+    factory.setPackagesToScan(PagedAccount.class.getPackage().getName());
+    factory.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+    factory.setJpaPropertyMap(Collections.singletonMap("hibernate.hbm2ddl.auto", "none"));
+    factory.afterPropertiesSet();
+    entityManagerFactory = factory.getObject();
+    entityManager = entityManagerFactory.createEntityManager();
+    paginator = KeysetPaginator.of(entityManager, PagedAccount.class, SORT);
+    cursor = depth == 0 ? null : paginator.cursorOf(offsetQuery(depth - 1, 1).get(0));
+  }
+
+  @TearDown
+  public void tearDown() {
+    entityManager.close();
+    entityManagerFactory.close();
+    dataSource.close();
+  }
+
+  private void createTable() throws SQLException {
+    try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+      statement.execute("CREATE TABLE IF NOT EXISTS " + TABLE
+          + " (id BIGINT PRIMARY KEY, name VARCHAR(64) NOT NULL, created_at TIMESTAMP NOT NULL)");
+      statement.execute("CREATE INDEX IF NOT EXISTS " + TABLE + "_created_at ON " + TABLE + " (created_at, id)");
+      try (ResultSet count = statement.executeQuery("SELECT count(*) FROM " + TABLE)) {
+        count.next();
+        if (count.getLong(1) == rows) {
+          return;
+        }
+      }
+      statement.execute("TRUNCATE " + TABLE);
+      // ten accounts per second, for the id to break ties
+      statement.execute("INSERT INTO " + TABLE + " SELECT i, 'account_' || i,"
+          + " TIMESTAMP '2018-01-01' + (i / 10) * INTERVAL '1 second' FROM generate_series(1, " + rows + ") i");
+      statement.execute("VACUUM ANALYZE " + TABLE);
+    }
+  }
+
+  private List<PagedAccount> offsetQuery(int offset, int size) {
+    CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+    CriteriaQuery<PagedAccount> query = builder.createQuery(PagedAccount.class);
+    Root<PagedAccount> root = query.from(PagedAccount.class);
+    query.select(root).orderBy(builder.asc(root.get("createdAt")), builder.asc(root.get("id")));
+    return entityManager.createQuery(query).setFirstResult(offset).setMaxResults(size).getResultList();
+  }
+
+  @Benchmark
+  public List<PagedAccount> offset() {
+    List<PagedAccount> page = offsetQuery(depth, PAGE_SIZE);
+    entityManager.clear();
+    return page;
+  }
+
+  @Benchmark
+  public List<PagedAccount> springDataPage() {
+    List<PagedAccount> page = new SimpleJpaRepository<>(PagedAccount.class, entityManager)
+        .findAll(PageRequest.of(depth / PAGE_SIZE, PAGE_SIZE, SORT)).getContent();
+    entityManager.clear();
+    return page;
+  }
+
+  @Benchmark
+  public List<PagedAccount> keyset() {
+    List<PagedAccount> page = paginator.page(cursor, PAGE_SIZE).getContent();
+    entityManager.clear();
+    return page;
+  }
+}
@@ -0,0 +1,128 @@
+package com.megvii.insight.benchmark.export;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.megvii.insight.common.export.ExportColumn;
+import com.megvii.insight.common.export.ExportFormat;
+import com.megvii.insight.common.export.StreamingExporter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Export of {@code rows} user rows, generated as they are read, to a discarding output, in a 256MB heap: the
+ * time of an export, and the peak heap used during it printed per iteration, flat from 1M to 10M rows.
+ *
+ * <pre>
+ *
+ *    java -jar target/benchmarks.jar ExportBenchmark
+ *
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgs = {"-Xms256m", "-Xmx256m"})
+public class ExportBenchmark {
+
+  private static final LocalDateTime CREATED = LocalDateTime.of(2018, 10, 1, 8, 0);
+
+  private static final List<ExportColumn<Object[]>> COLUMNS = Arrays.asList(
+      ExportColumn.of("id", row -> row[0]),
+      ExportColumn.of("username", row -> row[1]),
+      ExportColumn.of("email", row -> row[2]),
+      ExportColumn.of("enabled", row -> row[3]),
+      ExportColumn.of("created_at", row -> row[4]));
+
+  @Param({"1000000", "10000000"})
+  private long rows;
+
+  @Param({"csv", "csv.gz", "xlsx"})
+  private String output;
+
+  private StreamingExporter exporter;
+
+  private long written;
+
+  @Setup
+  public void setup() {
+    exporter = StreamingExporter.builder(output.startsWith("csv") ? ExportFormat.CSV : ExportFormat.XLSX)
+        .gzip(output.endsWith(".gz"))
+        .build();
+  }
+
+  @Setup(Level.Iteration)
+  public void resetPeak() {
+    System.gc();
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      pool.resetPeakUsage();
+    }
+    written = 0;
+  }
+
+  @TearDown(Level.Iteration)
+  public void printPeak() {
+    long peak = 0;
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP) {
+        peak += pool.getPeakUsage().getUsed();
+      }
+    }
+    System.out.println(" wrote " + written / (1024 * 1024) + "MB, peak heap " + peak / (1024 * 1024) + "MB");
+  }
+
+  @Benchmark
+  public long export() throws IOException {
+    return exporter.export(users(rows), COLUMNS, new OutputStream() {
+      @Override
+      public void write(int b) {
+        written++;
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len) {
+        written += len;
+      }
+    });
+  }
+
+  private static Iterator<Object[]> users(long rows) {
+    return new Iterator<Object[]>() {
+
+      private long id;
+
+      @Override
+      public boolean hasNext() {
+        return id < rows;
+      }
+
+      @Override
+      public Object[] next() {
+        id++;
+        return new Object[]{id, "user_" + id, "user_" + id + "@example.com", id % 10 != 0,
+            CREATED.plusSeconds(id)};
+      }
+    };
+  }
+}
@@ -0,0 +1,97 @@
+package com.megvii.insight.benchmark.factory;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import com.megvii.insight.common.factory.ThreadPoolFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of blocking I/O, simulated by parking each task for {@code blockMicros}, per ThreadPoolFactory
+ * mode: the fixed pool of availableProcessors threads, the work-stealing pool and virtual threads (the
+ * platform thread fallback before Java 21).
+ *
+ * <pre>
+ *
+ *    java -jar target/benchmarks.jar ThreadPoolBenchmark
+ *
+ *    # virtual threads
+ *    /path/to/jdk21/bin/java -jar target/benchmarks.jar ThreadPoolBenchmark
+ *
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ThreadPoolBenchmark {
+
+  /**
+   * Tasks submitted per operation, each one is a blocking call.
+   */
+  private static final int TASKS = 1000;
+
+  @Param({"FIXED", "WORK_STEALING", "VIRTUAL"})
+  private String mode;
+
+  @Param({"1000"})
+  private long blockMicros;
+
+  private ThreadPoolFactory factory;
+
+  private ExecutorService executor;
+
+  @Setup
+  public void setup() {
+    String poolName = "benchmark_" + mode.toLowerCase();
+    switch (mode) {
+      case "FIXED":
+        factory = ThreadPoolFactory.createFixedThreadPool(poolName);
+        break;
+      case "WORK_STEALING":
+        factory = ThreadPoolFactory.createWorkStealingPool(poolName);
+        break;
+      default:
+        factory = ThreadPoolFactory.createVirtualThreadExecutor(poolName);
+        break;
+    }
+    executor = factory.getExecutor();
+  }
+
+  @TearDown
+  public void tearDown() {
+    factory.shutdown();
+  }
+
+  /**
+   * Operations per second times {@link #TASKS} is the number of blocking calls per second.
+   */
+  @Benchmark
+  public long blockingCalls() throws InterruptedException {
+    CountDownLatch latch = new CountDownLatch(TASKS);
+    long blockNanos = TimeUnit.MICROSECONDS.toNanos(blockMicros);
+    for (int i = 0; i < TASKS; i++) {
+      executor.execute(() -> {
+        LockSupport.parkNanos(blockNanos);
+        latch.countDown();
+      });
+    }
+    latch.await();
+    return latch.getCount();
+  }
+}
@@ -0,0 +1,109 @@
+package com.megvii.insight.benchmark.lock;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.megvii.insight.common.lock.KeyedLock;
+import com.megvii.insight.common.lock.KeyedLocks;
+import com.megvii.insight.common.lock.Locked;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Lock and unlock of a random user ID out of {@code keys}, by 16 threads: the striped and exact
+ * {@link KeyedLocks} against synchronized on interned strings and a map of locks that is never cleaned up.
+ *
+ * <pre>
+ *
+ *    java -jar target/benchmarks.jar KeyedLockBenchmark
+ *
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(16)
+@Fork(1)
+public class KeyedLockBenchmark {
+
+  @Param({"16", "100000"})
+  private int keys;
+
+  /**
+   * Work done holding the lock.
+   */
+  @Param({"100"})
+  private int tokens;
+
+  private String[] ids;
+
+  private KeyedLock<String> striped;
+
+  private KeyedLock<String> exact;
+
+  private Map<String, ReentrantLock> lockMap;
+
+  @Setup
+  public void setup() {
+    ids = new String[keys];
+    for (int i = 0; i < keys; i++) {
+      ids[i] = "user_" + i;
+    }
+    striped = KeyedLocks.striped(1024);
+    exact = KeyedLocks.exact();
+    lockMap = new ConcurrentHashMap<>();
+  }
+
+  private String id() {
+    // a new string per call, as parsed from a request
+    return new String(ids[ThreadLocalRandom.current().nextInt(keys)]);
+  }
+
+  @Benchmark
+  public void striped() {
+    try (Locked ignored = striped.lock(id())) {
+      Blackhole.consumeCPU(tokens);
+    }
+  }
+
+  @Benchmark
+  public void exact() {
+    try (Locked ignored = exact.lock(id())) {
+      Blackhole.consumeCPU(tokens);
+    }
+  }
+
+  @Benchmark
+  public void internedSynchronized() {
+    synchronized (id().intern()) {
+      Blackhole.consumeCPU(tokens);
+    }
+  }
+
+  @Benchmark
+  public void lockMap() {
+    ReentrantLock lock = lockMap.computeIfAbsent(id(), key -> new ReentrantLock());
+    lock.lock();
+    try {
+      Blackhole.consumeCPU(tokens);
+    } finally {
+      lock.unlock();
+    }
+  }
+}
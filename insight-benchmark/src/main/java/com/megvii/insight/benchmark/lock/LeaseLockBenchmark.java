@@ -0,0 +1,144 @@
+package com.megvii.insight.benchmark.lock;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.megvii.insight.common.lock.Lease;
+import com.megvii.insight.common.lock.PostgresLeaseLock;
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Acquisitions per second of {@link PostgresLeaseLock} by 8 threads spread over two instances, as two nodes, on
+ * {@code keys} keys, and the database queries per acquisition printed after each iteration.
+ * <p>
+ * Needs a PostgreSQL, connected through a HikariCP pool like in a Spring Boot service; the lease table is
+ * created and dropped:
+ * </p>
+ *
+ * <pre>
+ *
+ *    java -Dinsight.benchmark.postgres.url=jdbc:postgresql://localhost:5432/postgres \
+ *        -Dinsight.benchmark.postgres.user=postgres -Dinsight.benchmark.postgres.password= \
+ *        -jar target/benchmarks.jar LeaseLockBenchmark
+ *
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class LeaseLockBenchmark {
+
+  private static final String TABLE = "insight_lock_lease_benchmark";
+
+  @Param({"1", "64"})
+  private int keys;
+
+  /**
+   * Time the lease is held.
+   */
+  @Param({"1000"})
+  private long holdMicros;
+
+  private HikariDataSource dataSource;
+
+  private PostgresLeaseLock[] nodes;
+
+  private final AtomicInteger threads = new AtomicInteger();
+
+  private final LongAdder acquisitions = new LongAdder();
+
+  private long queries;
+
+  @Setup
+  public void setup() throws SQLException {
+    dataSource = new HikariDataSource();
+    dataSource.setJdbcUrl(System.getProperty("insight.benchmark.postgres.url",
+        "jdbc:postgresql://localhost:5432/postgres"));
+    dataSource.setUsername(System.getProperty("insight.benchmark.postgres.user", "postgres"));
+    dataSource.setPassword(System.getProperty("insight.benchmark.postgres.password", ""));
+    dataSource.setMaximumPoolSize(16);
+    nodes = new PostgresLeaseLock[2];
+    for (int i = 0; i < nodes.length; i++) {
+      nodes[i] = PostgresLeaseLock.builder(dataSource)
+          .table(TABLE)
+          .retryInterval(10, TimeUnit.MILLISECONDS)
+          .build();
+    }
+    execute("DROP TABLE IF EXISTS " + TABLE);
+    nodes[0].createTable();
+  }
+
+  @TearDown
+  public void tearDown() throws SQLException {
+    execute("DROP TABLE IF EXISTS " + TABLE);
+    dataSource.close();
+  }
+
+  @Setup(Level.Iteration)
+  public void resetCounts() {
+    acquisitions.reset();
+    queries = queryCount();
+  }
+
+  @TearDown(Level.Iteration)
+  public void queriesPerAcquisition() {
+    System.out.printf("%n%.2f queries per acquisition%n", (double) (queryCount() - queries) / acquisitions.sum());
+  }
+
+  private long queryCount() {
+    return nodes[0].getQueryCount() + nodes[1].getQueryCount();
+  }
+
+  private void execute(String sql) throws SQLException {
+    try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+      statement.execute(sql);
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Node {
+
+    private PostgresLeaseLock lock;
+
+    @Setup
+    public void setup(LeaseLockBenchmark benchmark) {
+      lock = benchmark.nodes[benchmark.threads.getAndIncrement() % benchmark.nodes.length];
+    }
+  }
+
+  @Benchmark
+  public long acquire(Node node) throws InterruptedException {
+    String key = "key_" + ThreadLocalRandom.current().nextInt(keys);
+    try (Lease lease = node.lock.acquire(key, 10, TimeUnit.SECONDS)) {
+      if (lease == null) {
+        throw new IllegalStateException("Timed out on " + key);
+      }
+      acquisitions.increment();
+      TimeUnit.MICROSECONDS.sleep(holdMicros);
+      return lease.getToken();
+    }
+  }
+}
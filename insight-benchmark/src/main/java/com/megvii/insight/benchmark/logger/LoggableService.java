@@ -0,0 +1,50 @@
+package com.megvii.insight.benchmark.logger;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.megvii.insight.framework.logger.annotation.Loggable;
+import org.springframework.boot.logging.LogLevel;
+
+/**
+ * Target of the logger benchmarks, the benchmark logger is configured at INFO.
+ */
+public class LoggableService {
+
+  public String plain(String name, int[] values) {
+    return name + values.length;
+  }
+
+  @Loggable(LogLevel.DEBUG)
+  public String disabled(String name, int[] values) {
+    return name + values.length;
+  }
+
+  @Loggable
+  public String enabled(String name, int[] values) {
+    return name + values.length;
+  }
+
+  @Loggable(warnOver = 1, warnUnit = TimeUnit.MINUTES)
+  public String warnable(String name, int[] values) {
+    return name + values.length;
+  }
+
+  /**
+   * Stays in flight, watched for its warnOver, until the latch is released.
+   */
+  @Loggable(warnOver = 1, warnUnit = TimeUnit.MINUTES)
+  public void await(CountDownLatch latch) throws InterruptedException {
+    latch.await();
+  }
+
+  @Loggable
+  public String failing(String name, int[] values) {
+    throw new IllegalStateException(name + values.length);
+  }
+
+  @Loggable(skipStackTrace = true)
+  public String failingWithoutStackTrace(String name, int[] values) {
+    throw new IllegalStateException(name + values.length);
+  }
+}
@@ -0,0 +1,17 @@
+package com.megvii.insight.benchmark.logger;
+
+import com.megvii.insight.framework.logger.annotation.EnableLogger;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.EnableAspectJAutoProxy;
+
+@Configuration
+@EnableLogger
+@EnableAspectJAutoProxy(proxyTargetClass = true)
+public class LoggerBenchmarkConfiguration {
+
+  @Bean
+  public LoggableService loggableService() {
+    return new LoggableService();
+  }
+}
@@ -0,0 +1,112 @@
+package com.megvii.insight.benchmark.logger;
+
+import java.util.concurrent.TimeUnit;
+
+import com.megvii.insight.benchmark.logger.woven.WovenBenchmarkConfiguration;
+import com.megvii.insight.benchmark.logger.woven.WovenLoggableService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+/**
+ * Per call cost of the {@code @Loggable} around advice, for disabled and enabled levels and for errors, through
+ * the Spring AOP proxy and woven at compile time.
+ *
+ * <pre>
+ *
+ *    java -jar target/benchmarks.jar LoggerInterceptorBenchmark -prof gc
+ *
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoggerInterceptorBenchmark {
+
+  private AnnotationConfigApplicationContext context;
+
+  private LoggableService target;
+
+  private LoggableService proxy;
+
+  private AnnotationConfigApplicationContext wovenContext;
+
+  private WovenLoggableService woven;
+
+  private String name = "benchmark";
+
+  private int[] values = {1, 2, 3, 4, 5, 6, 7, 8};
+
+  @Setup
+  public void setup() {
+    context = new AnnotationConfigApplicationContext(LoggerBenchmarkConfiguration.class);
+    proxy = context.getBean(LoggableService.class);
+    target = new LoggableService();
+    wovenContext = new AnnotationConfigApplicationContext(WovenBenchmarkConfiguration.class);
+    woven = wovenContext.getBean(WovenLoggableService.class);
+  }
+
+  @TearDown
+  public void tearDown() {
+    wovenContext.close();
+    context.close();
+  }
+
+  @Benchmark
+  public String baseline() {
+    return target.plain(name, values);
+  }
+
+  @Benchmark
+  public String disabledLevel() {
+    return proxy.disabled(name, values);
+  }
+
+  @Benchmark
+  public String enabledLevel() {
+    return proxy.enabled(name, values);
+  }
+
+  @Benchmark
+  public String wovenDisabledLevel() {
+    return woven.disabled(name, values);
+  }
+
+  @Benchmark
+  public String wovenEnabledLevel() {
+    return woven.enabled(name, values);
+  }
+
+  /**
+   * Error level, stack trace rendered with ExceptionUtils.getStackTrace.
+   */
+  @Benchmark
+  public Object error() {
+    try {
+      return proxy.failing(name, values);
+    } catch (IllegalStateException ex) {
+      return ex;
+    }
+  }
+
+  @Benchmark
+  public Object errorWithoutStackTrace() {
+    try {
+      return proxy.failingWithoutStackTrace(name, values);
+    } catch (IllegalStateException ex) {
+      return ex;
+    }
+  }
+}
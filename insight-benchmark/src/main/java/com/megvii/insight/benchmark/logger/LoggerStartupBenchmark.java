@@ -0,0 +1,61 @@
+package com.megvii.insight.benchmark.logger;
+
+import java.util.concurrent.TimeUnit;
+
+import com.megvii.insight.benchmark.logger.woven.WovenBenchmarkConfiguration;
+import com.megvii.insight.benchmark.logger.woven.WovenLoggableService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+/**
+ * Application context startup with {@code beans} {@code @Loggable} beans, CGLIB proxies generated per bean
+ * against classes woven at compile time.
+ *
+ * <pre>
+ *
+ *    java -jar target/benchmarks.jar LoggerStartupBenchmark
+ *
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@Fork(3)
+public class LoggerStartupBenchmark {
+
+  @Param({"200"})
+  private int beans;
+
+  @Benchmark
+  public Object proxy() {
+    return start(LoggerBenchmarkConfiguration.class, LoggableService.class);
+  }
+
+  @Benchmark
+  public Object woven() {
+    return start(WovenBenchmarkConfiguration.class, WovenLoggableService.class);
+  }
+
+  private <T> Object start(Class<?> configuration, Class<T> type) {
+    AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+    context.register(configuration);
+    for (int i = 0; i < beans; i++) {
+      context.registerBean(type.getSimpleName() + i, type);
+    }
+    context.refresh();
+    int count = context.getBeansOfType(type).size();
+    context.close();
+    return count;
+  }
+}
@@ -0,0 +1,95 @@
+package com.megvii.insight.benchmark.logger;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+/**
+ * Cost of the warnOver watchdog, scheduling and cancelling every call from concurrent callers while other
+ * calls stay in flight.
+ *
+ * <pre>
+ *
+ *    java -jar target/benchmarks.jar LoggerWatchdogBenchmark -prof gc
+ *
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+@Fork(1)
+public class LoggerWatchdogBenchmark {
+
+  @Param({"0", "1000"})
+  private int inFlight;
+
+  private AnnotationConfigApplicationContext context;
+
+  private LoggableService proxy;
+
+  private ExecutorService executor;
+
+  private CountDownLatch latch;
+
+  private String name = "benchmark";
+
+  private int[] values = {1, 2, 3, 4, 5, 6, 7, 8};
+
+  @Setup
+  public void setup() {
+    context = new AnnotationConfigApplicationContext(LoggerBenchmarkConfiguration.class);
+    proxy = context.getBean(LoggableService.class);
+    latch = new CountDownLatch(1);
+    executor = Executors.newCachedThreadPool(runnable -> {
+      Thread thread = new Thread(runnable, "in_flight");
+      thread.setDaemon(true);
+      return thread;
+    });
+    for (int i = 0; i < inFlight; i++) {
+      executor.execute(() -> {
+        try {
+          proxy.await(latch);
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+        }
+      });
+    }
+  }
+
+  @TearDown
+  public void tearDown() throws InterruptedException {
+    latch.countDown();
+    executor.shutdown();
+    executor.awaitTermination(10L, TimeUnit.SECONDS);
+    context.close();
+  }
+
+  @Benchmark
+  public String enabled() {
+    return proxy.enabled(name, values);
+  }
+
+  @Benchmark
+  public String warnable() {
+    return proxy.warnable(name, values);
+  }
+}
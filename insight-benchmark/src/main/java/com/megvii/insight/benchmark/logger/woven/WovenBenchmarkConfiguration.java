@@ -0,0 +1,16 @@
+package com.megvii.insight.benchmark.logger.woven;
+
+import com.megvii.insight.framework.logger.annotation.EnableLogger;
+import org.springframework.context.annotation.AdviceMode;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableLogger(mode = AdviceMode.ASPECTJ)
+public class WovenBenchmarkConfiguration {
+
+  @Bean
+  public WovenLoggableService wovenLoggableService() {
+    return new WovenLoggableService();
+  }
+}
@@ -0,0 +1,32 @@
+package com.megvii.insight.benchmark.logger.woven;
+
+import com.megvii.insight.framework.logger.annotation.Loggable;
+import org.springframework.boot.logging.LogLevel;
+
+/**
+ * Same {@code @Loggable} methods as the proxied LoggableService, woven with the LoggerAspect by ajc at
+ * compile time.
+ */
+public class WovenLoggableService {
+
+  public String plain(String name, int[] values) {
+    return name + values.length;
+  }
+
+  @Loggable(LogLevel.DEBUG)
+  public String disabled(String name, int[] values) {
+    return name + values.length;
+  }
+
+  @Loggable
+  public String enabled(String name, int[] values) {
+    return name + values.length;
+  }
+
+  /**
+   * Calls {@link #enabled(String, int[])} on this, which is only logged when woven.
+   */
+  public String selfInvocation(String name, int[] values) {
+    return enabled(name, values);
+  }
+}
@@ -0,0 +1,112 @@
+package com.megvii.insight.benchmark.message;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.megvii.insight.common.message.LocalMessageBus;
+import com.megvii.insight.common.message.WaitStrategy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Events published by 4 threads to a single subscriber: {@link LocalMessageBus} with each {@link WaitStrategy},
+ * against a task per event submitted to a single thread executor. Events still queued at the end of an iteration
+ * are handled before the next one, the handled count is printed per iteration.
+ *
+ * <pre>
+ *
+ *    java -jar target/benchmarks.jar LocalMessageBusBenchmark
+ *
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class LocalMessageBusBenchmark {
+
+  private static final String TOPIC = "benchmark";
+
+  @Param({"BUSY_SPIN", "YIELD", "PARK"})
+  private WaitStrategy waitStrategy;
+
+  private final LongAdder handled = new LongAdder();
+
+  private LocalMessageBus bus;
+
+  @Setup
+  public void setup() {
+    bus = LocalMessageBus.builder().ringSize(8192).maxBatch(256).waitStrategy(waitStrategy).build();
+    bus.subscribe(TOPIC, Long.class, events -> handled.add(events.size()));
+  }
+
+  @TearDown(Level.Iteration)
+  public void drain() throws InterruptedException {
+    while (bus.getPendingCount(TOPIC) > 0) {
+      Thread.sleep(1L);
+    }
+    System.out.println(" handled " + handled.sumThenReset());
+  }
+
+  @TearDown
+  public void tearDown() {
+    bus.close();
+  }
+
+  @Benchmark
+  public void localMessageBus() {
+    bus.publish(TOPIC, 1L);
+  }
+
+  @Benchmark
+  public void executor(ExecutorState state) {
+    state.executor.execute(state.handled::increment);
+  }
+
+  /**
+   * Task per event baseline, the wait strategy does not apply.
+   */
+  @State(Scope.Benchmark)
+  public static class ExecutorState {
+
+    private final LongAdder handled = new LongAdder();
+
+    private ThreadPoolExecutor executor;
+
+    @Setup
+    public void setup() {
+      executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(8192),
+          new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @TearDown(Level.Iteration)
+    public void drain() throws InterruptedException {
+      while (!executor.getQueue().isEmpty()) {
+        Thread.sleep(1L);
+      }
+      System.out.println(" handled " + handled.sumThenReset());
+    }
+
+    @TearDown
+    public void tearDown() {
+      executor.shutdown();
+    }
+  }
+}
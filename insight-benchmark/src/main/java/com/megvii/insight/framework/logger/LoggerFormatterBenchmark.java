@@ -0,0 +1,106 @@
+package com.megvii.insight.framework.logger;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+import com.megvii.insight.framework.logger.annotation.Loggable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Rendering cost of {@link LoggerFormatter}, without the logging itself. In the framework package, for
+ * the package-private formatter.
+ *
+ * <pre>
+ *
+ *    java -jar target/benchmarks.jar LoggerFormatterBenchmark -prof gc
+ *
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoggerFormatterBenchmark {
+
+  private LoggerFormatter formatter;
+
+  private LoggerDescriptor descriptor;
+
+  private LoggerDescriptor skipStackTrace;
+
+  private Object[] small;
+
+  private Object[] large;
+
+  private Object[] nested;
+
+  private Throwable error;
+
+  @Setup
+  public void setup() throws NoSuchMethodException {
+    formatter = new LoggerFormatter(new LoggerConfiguration().loggerFormat());
+    descriptor = descriptor("render");
+    skipStackTrace = descriptor("renderWithoutStackTrace");
+    small = new Object[]{"benchmark", 42};
+    int[] values = new int[10_000];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = i;
+    }
+    large = new Object[]{"benchmark", values};
+    nested = new Object[]{"benchmark", new Object[]{new int[]{1, 2, 3}, new Object[]{"a", new long[]{4L, 5L}}},
+        new Object[][]{{1, "b"}, {2, "c"}}};
+    error = new IllegalStateException("benchmark");
+  }
+
+  private static LoggerDescriptor descriptor(String name) throws NoSuchMethodException {
+    Method method = LoggerFormatterBenchmark.class.getDeclaredMethod(name);
+    return new LoggerDescriptor(method, method.getAnnotation(Loggable.class), new LoggerProperties());
+  }
+
+  @Loggable
+  private static void render() {
+  }
+
+  @Loggable(skipStackTrace = true)
+  private static void renderWithoutStackTrace() {
+  }
+
+  @Benchmark
+  public String smallArgs() {
+    return formatter.after(descriptor, small, "result", 1_250_000L);
+  }
+
+  @Benchmark
+  public String largeArgs() {
+    return formatter.after(descriptor, large, "result", 1_250_000L);
+  }
+
+  @Benchmark
+  public String nestedArrayArgs() {
+    return formatter.after(descriptor, nested, "result", 1_250_000L);
+  }
+
+  /**
+   * ExceptionUtils.getStackTrace of the error.
+   */
+  @Benchmark
+  public String error() {
+    return formatter.error(descriptor, small, 1_250_000L, error);
+  }
+
+  @Benchmark
+  public String errorWithoutStackTrace() {
+    return formatter.error(skipStackTrace, small, 1_250_000L, error);
+  }
+}
@@ -0,0 +1,188 @@
+package com.megvii.insight.common.data;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceUnitUtil;
+
+import org.springframework.data.jpa.repository.support.JpaEntityInformation;
+import org.springframework.data.jpa.repository.support.JpaEntityInformationSupport;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Loads rows by many keys in a few queries rather than one per key.
+ * <p>
+ * Keys are deduplicated and sent in chunks of chunkSize at most, so no IN list grows huge. Chunks of IN queries
+ * are also padded to a power of two by repeating their last key: the database then sees a handful of statement
+ * shapes instead of one per key count, and its statement cache works.
+ * </p>
+ *
+ * <pre>
+ *
+ *    e.g.
+ *
+ *    List&lt;Role&gt; roles = BulkFetch.findAllById(roleRepository, roleIds);
+ *
+ *    // initializes users.roles with a query per 500 users, rather than one per user
+ *    BulkFetch.fetch(entityManager, users, "roles");
+ *
+ *    // fills associations that are not mapped, such as to another service
+ *    BulkFetch.attach(orders, Order::getUserId, userClient::findByIds, UserVO::getId, Order::setUsers);
+ *
+ * </pre>
+ */
+public final class BulkFetch {
+
+  public static final int DEFAULT_CHUNK_SIZE = 500;
+
+  private BulkFetch() {
+  }
+
+  /**
+   * 按ID分批查询，每批最多500个；结果不保证ID顺序
+   */
+  public static <T, ID> List<T> findAllById(CrudRepository<T, ID> repository, Collection<ID> ids) {
+    return findAllById(repository, ids, DEFAULT_CHUNK_SIZE);
+  }
+
+  /**
+   * 按ID分批查询，每批最多chunkSize个；结果不保证ID顺序
+   */
+  public static <T, ID> List<T> findAllById(CrudRepository<T, ID> repository, Collection<ID> ids, int chunkSize) {
+    return chunked(ids, chunkSize, true, repository::findAllById);
+  }
+
+  /**
+   * 去重后按chunkSize分批调用loader，合并结果
+   */
+  public static <K, V> List<V> inChunks(Collection<K> keys, int chunkSize,
+      Function<List<K>, ? extends Iterable<V>> loader) {
+    return chunked(keys, chunkSize, false, loader);
+  }
+
+  private static <K, V> List<V> chunked(Collection<K> keys, int chunkSize, boolean padded,
+      Function<List<K>, ? extends Iterable<V>> loader) {
+    if (chunkSize <= 0) {
+      throw new IllegalArgumentException("Illegal chunk size: " + chunkSize);
+    }
+    List<K> distinct = new ArrayList<>(new LinkedHashSet<>(keys));
+    List<V> values = new ArrayList<>(distinct.size());
+    for (int from = 0; from < distinct.size(); from += chunkSize) {
+      List<K> chunk = distinct.subList(from, Math.min(from + chunkSize, distinct.size()));
+      if (padded) {
+        chunk = pad(chunk, chunkSize);
+      }
+      for (V value : loader.apply(chunk)) {
+        values.add(value);
+      }
+    }
+    return values;
+  }
+
+  /**
+   * 批量加载子对象并按key分组设置到父对象，避免N+1查询；没有子对象的父对象设置空列表
+   */
+  public static <P, K, C> void attach(Collection<P> parents, Function<? super P, K> parentKey,
+      Function<List<K>, ? extends Iterable<C>> loader, Function<? super C, K> childKey,
+      BiConsumer<? super P, List<C>> setter) {
+    attach(parents, parentKey, loader, childKey, setter, DEFAULT_CHUNK_SIZE);
+  }
+
+  /**
+   * 批量加载子对象并按key分组设置到父对象，每批最多chunkSize个key
+   */
+  public static <P, K, C> void attach(Collection<P> parents, Function<? super P, K> parentKey,
+      Function<List<K>, ? extends Iterable<C>> loader, Function<? super C, K> childKey,
+      BiConsumer<? super P, List<C>> setter, int chunkSize) {
+    List<K> keys = new ArrayList<>(parents.size());
+    for (P parent : parents) {
+      K key = parentKey.apply(parent);
+      if (key != null) {
+        keys.add(key);
+      }
+    }
+    Map<K, List<C>> children = new HashMap<>();
+    for (C child : inChunks(keys, chunkSize, loader)) {
+      children.computeIfAbsent(childKey.apply(child), key -> new ArrayList<>()).add(child);
+    }
+    for (P parent : parents) {
+      K key = parentKey.apply(parent);
+      setter.accept(parent, key != null ? children.getOrDefault(key, Collections.emptyList())
+          : Collections.emptyList());
+    }
+  }
+
+  /**
+   * 批量初始化已加载实体的延迟加载关联，每个关联每批一次join fetch查询；嵌套关联对子实体再次调用
+   */
+  public static <T> void fetch(EntityManager entityManager, Collection<T> entities, String... associations) {
+    fetch(entityManager, entities, DEFAULT_CHUNK_SIZE, associations);
+  }
+
+  /**
+   * 批量初始化已加载实体的延迟加载关联，每批最多chunkSize个实体
+   */
+  public static <T> void fetch(EntityManager entityManager, Collection<T> entities, int chunkSize,
+      String... associations) {
+    if (entities.isEmpty()) {
+      return;
+    }
+    Class<?> domainClass = domainClass(entityManager, entities.iterator().next());
+    JpaEntityInformation<?, ?> information =
+        JpaEntityInformationSupport.getEntityInformation(domainClass, entityManager);
+    if (information.hasCompositeId()) {
+      throw new IllegalArgumentException("Composite id of " + domainClass.getName() + " not supported");
+    }
+    PersistenceUnitUtil util = entityManager.getEntityManagerFactory().getPersistenceUnitUtil();
+    // one query per association: fetching several collections at once multiplies rows
+    for (String association : associations) {
+      List<Object> ids = new ArrayList<>(entities.size());
+      for (T entity : entities) {
+        if (!util.isLoaded(entity, association)) {
+          ids.add(util.getIdentifier(entity));
+        }
+      }
+      String jpql = "SELECT DISTINCT e FROM " + information.getEntityName() + " e LEFT JOIN FETCH e."
+          + association + " WHERE e." + information.getRequiredIdAttribute().getName() + " IN :ids";
+      chunked(ids, chunkSize, true, chunk -> entityManager.createQuery(jpql, domainClass)
+          .setParameter("ids", chunk)
+          .getResultList());
+    }
+  }
+
+  private static Class<?> domainClass(EntityManager entityManager, Object entity) {
+    Set<Class<?>> entityTypes = new HashSet<>();
+    entityManager.getMetamodel().getEntities().forEach(type -> entityTypes.add(type.getJavaType()));
+    // a lazy proxy subclasses its entity
+    for (Class<?> type = ClassUtils.getUserClass(entity); type != Object.class; type = type.getSuperclass()) {
+      if (entityTypes.contains(type)) {
+        return type;
+      }
+    }
+    throw new IllegalArgumentException("Not an entity: " + entity.getClass().getName());
+  }
+
+  private static <K> List<K> pad(List<K> chunk, int chunkSize) {
+    int size = Math.min(chunk.size() <= 1 ? chunk.size() : Integer.highestOneBit(chunk.size() - 1) << 1, chunkSize);
+    if (size == chunk.size()) {
+      return chunk;
+    }
+    List<K> padded = new ArrayList<>(size);
+    padded.addAll(chunk);
+    while (padded.size() < size) {
+      padded.add(chunk.get(chunk.size() - 1));
+    }
+    return padded;
+  }
+}
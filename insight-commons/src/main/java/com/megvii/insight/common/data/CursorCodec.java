@@ -0,0 +1,195 @@
+package com.megvii.insight.common.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Timestamp;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Base64;
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * Sort key values of a row to and from a URL-safe token: a version, the signature of the sort it was made for,
+ * then each value tagged with its type.
+ */
+final class CursorCodec {
+
+  private static final int VERSION = 1;
+
+  private CursorCodec() {
+  }
+
+  static String encode(int signature, Object[] values) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      out.writeByte(VERSION);
+      out.writeInt(signature);
+      out.writeByte(values.length);
+      for (Object value : values) {
+        write(out, value);
+      }
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+  }
+
+  /**
+   * @param types Java types of the sort keys, the values are decoded as
+   * @throws IllegalArgumentException when the cursor is malformed, or made for another sort
+   */
+  static Object[] decode(String cursor, int signature, Class<?>[] types) {
+    try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Base64.getUrlDecoder().decode(cursor)))) {
+      if (in.readUnsignedByte() != VERSION || in.readInt() != signature || in.readUnsignedByte() != types.length) {
+        throw new IllegalArgumentException("Cursor of another sort: " + cursor);
+      }
+      Object[] values = new Object[types.length];
+      for (int i = 0; i < types.length; i++) {
+        values[i] = read(in, types[i]);
+      }
+      if (in.read() != -1) {
+        throw new IllegalArgumentException("Invalid cursor: " + cursor);
+      }
+      return values;
+    } catch (IOException | IllegalStateException | DateTimeException ex) {
+      throw new IllegalArgumentException("Invalid cursor: " + cursor, ex);
+    }
+  }
+
+  private static void write(DataOutputStream out, Object value) throws IOException {
+    if (value instanceof Long) {
+      out.writeByte('J');
+      out.writeLong((Long) value);
+    } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+      out.writeByte('I');
+      out.writeInt(((Number) value).intValue());
+    } else if (value instanceof String) {
+      out.writeByte('S');
+      out.writeUTF((String) value);
+    } else if (value instanceof UUID) {
+      out.writeByte('U');
+      out.writeLong(((UUID) value).getMostSignificantBits());
+      out.writeLong(((UUID) value).getLeastSignificantBits());
+    } else if (value instanceof BigDecimal || value instanceof BigInteger) {
+      out.writeByte('N');
+      out.writeUTF(value.toString());
+    } else if (value instanceof Double || value instanceof Float) {
+      out.writeByte('D');
+      out.writeDouble(((Number) value).doubleValue());
+    } else if (value instanceof Boolean) {
+      out.writeByte('Z');
+      out.writeBoolean((Boolean) value);
+    } else if (value instanceof Enum) {
+      out.writeByte('E');
+      out.writeUTF(((Enum<?>) value).name());
+    } else if (value instanceof LocalDate) {
+      out.writeByte('d');
+      out.writeLong(((LocalDate) value).toEpochDay());
+    } else if (value instanceof LocalDateTime) {
+      writeInstant(out, 't', ((LocalDateTime) value).toInstant(ZoneOffset.UTC));
+    } else if (value instanceof OffsetDateTime) {
+      writeInstant(out, 'o', ((OffsetDateTime) value).toInstant());
+    } else if (value instanceof Instant) {
+      writeInstant(out, 'i', (Instant) value);
+    } else if (value instanceof Timestamp) {
+      writeInstant(out, 'T', ((Timestamp) value).toInstant());
+    } else if (value instanceof Date) {
+      out.writeByte('M');
+      out.writeLong(((Date) value).getTime());
+    } else {
+      throw new IllegalArgumentException("Unsupported sort key " + value.getClass().getName() + ": " + value);
+    }
+  }
+
+  private static void writeInstant(DataOutputStream out, char tag, Instant instant) throws IOException {
+    out.writeByte(tag);
+    out.writeLong(instant.getEpochSecond());
+    out.writeInt(instant.getNano());
+  }
+
+  private static Object read(DataInputStream in, Class<?> type) throws IOException {
+    int tag = in.readUnsignedByte();
+    Object value;
+    switch (tag) {
+      case 'J':
+        value = in.readLong();
+        break;
+      case 'I':
+        int number = in.readInt();
+        value = type == Short.class ? Short.valueOf((short) number)
+            : type == Byte.class ? Byte.valueOf((byte) number) : Integer.valueOf(number);
+        break;
+      case 'S':
+        value = in.readUTF();
+        break;
+      case 'U':
+        value = new UUID(in.readLong(), in.readLong());
+        break;
+      case 'N':
+        String decimal = in.readUTF();
+        value = type == BigInteger.class ? new BigInteger(decimal) : new BigDecimal(decimal);
+        break;
+      case 'D':
+        double real = in.readDouble();
+        value = type == Float.class ? Float.valueOf((float) real) : Double.valueOf(real);
+        break;
+      case 'Z':
+        value = in.readBoolean();
+        break;
+      case 'E':
+        value = enumValue(type, in.readUTF());
+        break;
+      case 'd':
+        value = LocalDate.ofEpochDay(in.readLong());
+        break;
+      case 't':
+        value = LocalDateTime.ofInstant(readInstant(in), ZoneOffset.UTC);
+        break;
+      case 'o':
+        value = readInstant(in).atOffset(ZoneOffset.UTC);
+        break;
+      case 'i':
+        value = readInstant(in);
+        break;
+      case 'T':
+        value = Timestamp.from(readInstant(in));
+        break;
+      case 'M':
+        value = new Date(in.readLong());
+        break;
+      default:
+        throw new IllegalStateException("Unknown tag " + tag);
+    }
+    if (!type.isInstance(value)) {
+      throw new IllegalStateException(value.getClass().getName() + " for " + type.getName());
+    }
+    return value;
+  }
+
+  private static Instant readInstant(DataInputStream in) throws IOException {
+    return Instant.ofEpochSecond(in.readLong(), in.readInt());
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static Object enumValue(Class<?> type, String name) {
+    if (!type.isEnum()) {
+      throw new IllegalStateException("Enum for " + type.getName());
+    }
+    try {
+      return Enum.valueOf((Class) type, name);
+    } catch (IllegalArgumentException ex) {
+      throw new IllegalStateException(ex);
+    }
+  }
+}
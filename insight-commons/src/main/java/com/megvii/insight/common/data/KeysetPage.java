@@ -0,0 +1,34 @@
+package com.megvii.insight.common.data;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A page of {@link KeysetPaginator}, and the cursor of the next one.
+ */
+public final class KeysetPage<T> {
+
+  private final List<T> content;
+
+  private final String nextCursor;
+
+  KeysetPage(List<T> content, String nextCursor) {
+    this.content = Collections.unmodifiableList(content);
+    this.nextCursor = nextCursor;
+  }
+
+  public List<T> getContent() {
+    return content;
+  }
+
+  /**
+   * Opaque token of the rows after this page, null on the last page.
+   */
+  public String getNextCursor() {
+    return nextCursor;
+  }
+
+  public boolean hasNext() {
+    return nextCursor != null;
+  }
+}
@@ -0,0 +1,198 @@
+package com.megvii.insight.common.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import javax.persistence.EntityManager;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Order;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.PropertyAccessorFactory;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.support.JpaEntityInformation;
+import org.springframework.data.jpa.repository.support.JpaEntityInformationSupport;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Keyset Paginator
+ * <p>
+ * Pages through the entities in sort order by seeking past the sort key values of the last row, rather than
+ * skipping offset rows: with an index on the sort properties, a deep page takes as long as the first one. The
+ * id is appended to the sort unless already in it, to make it unique; sort properties must not be null.
+ * </p>
+ * <p>
+ * Cursors are opaque to clients and only valid for the sort they were made for. Rows inserted or deleted between
+ * pages neither repeat nor shift the following ones, but there is no total count and no jumping to a page.
+ * </p>
+ *
+ * <pre>
+ *
+ *    e.g.
+ *
+ *    KeysetPaginator&lt;User&gt; users = KeysetPaginator.of(entityManager, User.class,
+ *        Sort.by(Sort.Direction.DESC, "createdAt"));
+ *
+ *    KeysetPage&lt;User&gt; page = users.page((root, query, cb) -&gt; cb.equal(root.get("tenantId"), tenantId),
+ *        request.getCursor(), 50);
+ *
+ *    // CREATE INDEX ON users (tenant_id, created_at DESC, id DESC)
+ *
+ * </pre>
+ */
+public final class KeysetPaginator<T> {
+
+  private final EntityManager entityManager;
+
+  private final Class<T> domainClass;
+
+  private final List<Sort.Order> orders;
+
+  private final String idAttribute;
+
+  /**
+   * Of the entity and its sort, carried by cursors.
+   */
+  private final int signature;
+
+  private KeysetPaginator(EntityManager entityManager, Class<T> domainClass, Sort sort) {
+    this.entityManager = entityManager;
+    this.domainClass = domainClass;
+    JpaEntityInformation<T, ?> information =
+        JpaEntityInformationSupport.getEntityInformation(domainClass, entityManager);
+    if (information.hasCompositeId()) {
+      throw new IllegalArgumentException("Composite id of " + domainClass.getName() + " not supported");
+    }
+    this.idAttribute = information.getRequiredIdAttribute().getName();
+    this.orders = new ArrayList<>();
+    Sort.Direction direction = Sort.Direction.ASC;
+    for (Sort.Order order : sort) {
+      if (order.isIgnoreCase()) {
+        throw new IllegalArgumentException("Ignore case order not supported: " + order);
+      }
+      orders.add(order);
+      direction = order.getDirection();
+    }
+    if (orders.stream().noneMatch(order -> order.getProperty().equals(idAttribute))) {
+      orders.add(new Sort.Order(direction, idAttribute));
+    }
+    StringBuilder key = new StringBuilder(information.getEntityName());
+    orders.forEach(order -> key.append(',').append(order.getProperty()).append(' ').append(order.getDirection()));
+    this.signature = key.toString().hashCode();
+  }
+
+  /**
+   * 按sort排序分页，未包含ID时追加ID
+   */
+  public static <T> KeysetPaginator<T> of(EntityManager entityManager, Class<T> domainClass, Sort sort) {
+    return new KeysetPaginator<>(entityManager, domainClass, sort);
+  }
+
+  /**
+   * 查询cursor之后的一页，cursor为null时查询第一页
+   *
+   * @throws IllegalArgumentException cursor无效或属于其他排序
+   */
+  public KeysetPage<T> page(String cursor, int size) {
+    return page(null, cursor, size);
+  }
+
+  /**
+   * 按条件查询cursor之后的一页，条件须与生成cursor时一致
+   *
+   * @throws IllegalArgumentException cursor无效或属于其他排序
+   */
+  public KeysetPage<T> page(Specification<T> specification, String cursor, int size) {
+    if (size <= 0) {
+      throw new IllegalArgumentException("Illegal page size: " + size);
+    }
+    CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+    CriteriaQuery<T> query = builder.createQuery(domainClass);
+    Root<T> root = query.from(domainClass);
+    List<Path<?>> paths = new ArrayList<>(orders.size());
+    List<Order> orderBy = new ArrayList<>(orders.size());
+    for (Sort.Order order : orders) {
+      Path<?> path = path(root, order.getProperty());
+      paths.add(path);
+      orderBy.add(order.isAscending() ? builder.asc(path) : builder.desc(path));
+    }
+    List<Predicate> predicates = new ArrayList<>(2);
+    if (specification != null) {
+      Predicate predicate = specification.toPredicate(root, query, builder);
+      if (predicate != null) {
+        predicates.add(predicate);
+      }
+    }
+    if (cursor != null) {
+      Class<?>[] types = new Class<?>[paths.size()];
+      for (int i = 0; i < types.length; i++) {
+        types[i] = ClassUtils.resolvePrimitiveIfNecessary(paths.get(i).getJavaType());
+      }
+      predicates.add(seek(builder, paths, CursorCodec.decode(cursor, signature, types)));
+    }
+    query.select(root).where(predicates.toArray(new Predicate[0])).orderBy(orderBy);
+    List<T> rows = entityManager.createQuery(query).setMaxResults(size + 1).getResultList();
+    if (rows.size() <= size) {
+      return new KeysetPage<>(rows, null);
+    }
+    List<T> content = new ArrayList<>(rows.subList(0, size));
+    return new KeysetPage<>(content, cursorOf(content.get(size - 1)));
+  }
+
+  /**
+   * 定位在该实体之后的cursor
+   */
+  public String cursorOf(T entity) {
+    Objects.requireNonNull(entity, "entity");
+    BeanWrapper wrapper = PropertyAccessorFactory.forBeanPropertyAccess(entity);
+    Object[] values = new Object[orders.size()];
+    for (int i = 0; i < values.length; i++) {
+      String property = orders.get(i).getProperty();
+      values[i] = property.equals(idAttribute)
+          ? entityManager.getEntityManagerFactory().getPersistenceUnitUtil().getIdentifier(entity)
+          : wrapper.getPropertyValue(property);
+      if (values[i] == null) {
+        throw new IllegalStateException("Null sort property " + property + " of " + entity);
+      }
+    }
+    return CursorCodec.encode(signature, values);
+  }
+
+  private static Path<?> path(Root<?> root, String property) {
+    Path<?> path = root;
+    for (String name : property.split("\\.")) {
+      path = path.get(name);
+    }
+    return path;
+  }
+
+  /**
+   * (k1 &gt; v1) or (k1 = v1 and k2 &gt; v2) or ..., and k1 &gt;= v1 for the database to scan the index from v1.
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private Predicate seek(CriteriaBuilder builder, List<Path<?>> paths, Object[] values) {
+    List<Predicate> alternatives = new ArrayList<>(paths.size());
+    List<Predicate> equals = new ArrayList<>(paths.size());
+    for (int i = 0; i < paths.size(); i++) {
+      Expression path = paths.get(i);
+      Comparable value = (Comparable) values[i];
+      List<Predicate> alternative = new ArrayList<>(equals);
+      alternative.add(orders.get(i).isAscending()
+          ? builder.greaterThan(path, value) : builder.lessThan(path, value));
+      alternatives.add(builder.and(alternative.toArray(new Predicate[0])));
+      equals.add(builder.equal(path, value));
+    }
+    Expression first = paths.get(0);
+    Comparable firstValue = (Comparable) values[0];
+    return builder.and(orders.get(0).isAscending()
+            ? builder.greaterThanOrEqualTo(first, firstValue) : builder.lessThanOrEqualTo(first, firstValue),
+        builder.or(alternatives.toArray(new Predicate[0])));
+  }
+}
@@ -0,0 +1,123 @@
+package com.megvii.insight.common.export;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * RFC 4180 CSV: comma separated, CRLF ended, a field quoted when it holds a comma, quote or line break.
+ * Dates as yyyy-MM-dd, date-times as yyyy-MM-dd HH:mm:ss[.SSS].
+ */
+final class CsvRowWriter extends RowWriter {
+
+  private static final byte[] BOM = {(byte) 0xef, (byte) 0xbb, (byte) 0xbf};
+
+  private boolean firstCell = true;
+
+  CsvRowWriter(ExportBuffer out, ZoneId zone, boolean bom) throws IOException {
+    super(out, zone);
+    if (bom) {
+      out.write(BOM);
+    }
+  }
+
+  @Override
+  void header(String[] headers) throws IOException {
+    for (String header : headers) {
+      cell(header);
+    }
+    endRow();
+  }
+
+  @Override
+  void cell(Object value) throws IOException {
+    if (!firstCell) {
+      out.write(',');
+    }
+    firstCell = false;
+    if (value == null) {
+      return;
+    }
+    if (isIntegral(value)) {
+      out.writeLong(((Number) value).longValue());
+    } else if (value instanceof BigDecimal) {
+      out.writeAscii(((BigDecimal) value).toPlainString());
+    } else if (value instanceof Number || value instanceof Boolean) {
+      out.writeAscii(value.toString());
+    } else {
+      Object temporal = temporal(value);
+      if (temporal instanceof LocalDateTime) {
+        writeDateTime((LocalDateTime) temporal);
+      } else if (temporal instanceof LocalDate) {
+        writeDate((LocalDate) temporal);
+      } else {
+        writeField(text(value));
+      }
+    }
+  }
+
+  @Override
+  void endRow() throws IOException {
+    out.write('\r');
+    out.write('\n');
+    firstCell = true;
+  }
+
+  @Override
+  void finish() throws IOException {
+    out.flush();
+  }
+
+  private void writeField(String text) throws IOException {
+    if (!needsQuotes(text)) {
+      out.writeText(text);
+      return;
+    }
+    out.write('"');
+    int start = 0;
+    for (int i = 0; i < text.length(); i++) {
+      if (text.charAt(i) == '"') {
+        out.writeText(text, start, i + 1);
+        out.write('"');
+        start = i + 1;
+      }
+    }
+    out.writeText(text, start, text.length());
+    out.write('"');
+  }
+
+  private static boolean needsQuotes(String text) {
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      if (c == ',' || c == '"' || c == '\r' || c == '\n') {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void writeDate(LocalDate date) throws IOException {
+    out.writeInt(date.getYear(), 4);
+    out.write('-');
+    out.writeInt(date.getMonthValue(), 2);
+    out.write('-');
+    out.writeInt(date.getDayOfMonth(), 2);
+  }
+
+  private void writeDateTime(LocalDateTime dateTime) throws IOException {
+    writeDate(dateTime.toLocalDate());
+    out.write(' ');
+    out.writeInt(dateTime.getHour(), 2);
+    out.write(':');
+    out.writeInt(dateTime.getMinute(), 2);
+    out.write(':');
+    out.writeInt(dateTime.getSecond(), 2);
+    int millis = dateTime.getNano() / 1_000_000;
+    if (millis > 0) {
+      out.write('.');
+      out.writeInt(millis, 3);
+    }
+  }
+}
@@ -0,0 +1,139 @@
+package com.megvii.insight.common.export;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Fixed, possibly pooled, array in front of the target stream, encoding text to UTF-8 straight into it.
+ * <p>
+ * Written to the target whenever full, so its size bounds what an export keeps in memory.
+ * </p>
+ */
+final class ExportBuffer {
+
+  private final byte[] buffer;
+
+  private final OutputStream target;
+
+  private int count;
+
+  ExportBuffer(byte[] buffer, OutputStream target) {
+    this.buffer = buffer;
+    this.target = target;
+  }
+
+  void write(int b) throws IOException {
+    if (count == buffer.length) {
+      flush();
+    }
+    buffer[count++] = (byte) b;
+  }
+
+  void write(byte[] bytes) throws IOException {
+    if (bytes.length > buffer.length - count) {
+      flush();
+      if (bytes.length > buffer.length) {
+        target.write(bytes);
+        return;
+      }
+    }
+    System.arraycopy(bytes, 0, buffer, count, bytes.length);
+    count += bytes.length;
+  }
+
+  /**
+   * Characters below 0x80 only, one byte each.
+   */
+  void writeAscii(String text) throws IOException {
+    for (int i = 0; i < text.length(); i++) {
+      write(text.charAt(i));
+    }
+  }
+
+  void writeLong(long value) throws IOException {
+    if (value == Long.MIN_VALUE) {
+      writeAscii(Long.toString(value));
+      return;
+    }
+    if (buffer.length - count < 20) {
+      flush();
+    }
+    if (value < 0) {
+      buffer[count++] = '-';
+      value = -value;
+    }
+    int end = count + digits(value);
+    for (int i = end - 1; i >= count; i--) {
+      buffer[i] = (byte) ('0' + value % 10);
+      value /= 10;
+    }
+    count = end;
+  }
+
+  /**
+   * Zero padded to the width.
+   */
+  void writeInt(int value, int width) throws IOException {
+    for (int i = digits(value); i < width; i++) {
+      write('0');
+    }
+    writeLong(value);
+  }
+
+  void writeText(String text) throws IOException {
+    writeText(text, 0, text.length());
+  }
+
+  /**
+   * UTF-8 of the characters from start to end, a lone surrogate written as '?'.
+   */
+  void writeText(String text, int start, int end) throws IOException {
+    for (int i = start; i < end; i++) {
+      if (buffer.length - count < 4) {
+        flush();
+      }
+      char c = text.charAt(i);
+      if (c < 0x80) {
+        buffer[count++] = (byte) c;
+      } else if (c < 0x800) {
+        buffer[count++] = (byte) (0xc0 | c >> 6);
+        buffer[count++] = (byte) (0x80 | c & 0x3f);
+      } else if (Character.isSurrogate(c)) {
+        int codePoint = Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(text.charAt(i + 1))
+            ? Character.toCodePoint(c, text.charAt(++i)) : '?';
+        if (codePoint == '?') {
+          buffer[count++] = '?';
+        } else {
+          buffer[count++] = (byte) (0xf0 | codePoint >> 18);
+          buffer[count++] = (byte) (0x80 | codePoint >> 12 & 0x3f);
+          buffer[count++] = (byte) (0x80 | codePoint >> 6 & 0x3f);
+          buffer[count++] = (byte) (0x80 | codePoint & 0x3f);
+        }
+      } else {
+        buffer[count++] = (byte) (0xe0 | c >> 12);
+        buffer[count++] = (byte) (0x80 | c >> 6 & 0x3f);
+        buffer[count++] = (byte) (0x80 | c & 0x3f);
+      }
+    }
+  }
+
+  void flush() throws IOException {
+    if (count > 0) {
+      target.write(buffer, 0, count);
+      count = 0;
+    }
+  }
+
+  byte[] array() {
+    return buffer;
+  }
+
+  private static int digits(long value) {
+    int digits = 1;
+    while (value >= 10) {
+      value /= 10;
+      digits++;
+    }
+    return digits;
+  }
+}
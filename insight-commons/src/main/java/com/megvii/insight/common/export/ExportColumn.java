@@ -0,0 +1,41 @@
+package com.megvii.insight.common.export;
+
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * A column of exported objects: its header and how to read its value from a row.
+ *
+ * <pre>
+ *
+ *    e.g.
+ *
+ *    List&lt;ExportColumn&lt;UserVO&gt;&gt; columns = Arrays.asList(
+ *        ExportColumn.of("ID", UserVO::getId),
+ *        ExportColumn.of("用户名", UserVO::getUsername));
+ *
+ * </pre>
+ */
+public final class ExportColumn<T> {
+
+  private final String header;
+
+  private final Function<? super T, ?> value;
+
+  private ExportColumn(String header, Function<? super T, ?> value) {
+    this.header = Objects.requireNonNull(header, "header");
+    this.value = Objects.requireNonNull(value, "value");
+  }
+
+  public static <T> ExportColumn<T> of(String header, Function<? super T, ?> value) {
+    return new ExportColumn<>(header, value);
+  }
+
+  public String getHeader() {
+    return header;
+  }
+
+  Object value(T row) {
+    return value.apply(row);
+  }
+}
@@ -0,0 +1,34 @@
+package com.megvii.insight.common.export;
+
+/**
+ * File formats of {@link StreamingExporter}.
+ */
+public enum ExportFormat {
+
+  /**
+   * RFC 4180, UTF-8.
+   */
+  CSV("csv", "text/csv"),
+
+  /**
+   * Excel 2007 workbook, already zip compressed, with a new worksheet every 1048576 rows.
+   */
+  XLSX("xlsx", "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
+
+  private final String extension;
+
+  private final String contentType;
+
+  ExportFormat(String extension, String contentType) {
+    this.extension = extension;
+    this.contentType = contentType;
+  }
+
+  public String getExtension() {
+    return extension;
+  }
+
+  public String getContentType() {
+    return contentType;
+  }
+}
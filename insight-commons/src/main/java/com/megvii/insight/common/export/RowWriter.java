@@ -0,0 +1,79 @@
+package com.megvii.insight.common.export;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Base64;
+import java.util.Date;
+
+/**
+ * Writes rows cell by cell in a file format, straight into the {@link ExportBuffer}.
+ */
+abstract class RowWriter {
+
+  final ExportBuffer out;
+
+  /**
+   * Local time of instants.
+   */
+  final ZoneId zone;
+
+  RowWriter(ExportBuffer out, ZoneId zone) {
+    this.out = out;
+    this.zone = zone;
+  }
+
+  abstract void header(String[] headers) throws IOException;
+
+  abstract void cell(Object value) throws IOException;
+
+  abstract void endRow() throws IOException;
+
+  /**
+   * Completes the file and flushes the buffer.
+   */
+  abstract void finish() throws IOException;
+
+  /**
+   * A LocalDate for dates, a LocalDateTime for points in time, null for anything else.
+   */
+  Object temporal(Object value) {
+    if (value instanceof LocalDate || value instanceof LocalDateTime) {
+      return value;
+    }
+    if (value instanceof java.sql.Timestamp) {
+      return ((java.sql.Timestamp) value).toLocalDateTime();
+    }
+    if (value instanceof java.sql.Date) {
+      return ((java.sql.Date) value).toLocalDate();
+    }
+    if (value instanceof java.sql.Time) {
+      return null;
+    }
+    if (value instanceof Date) {
+      return LocalDateTime.ofInstant(((Date) value).toInstant(), zone);
+    }
+    if (value instanceof Instant) {
+      return LocalDateTime.ofInstant((Instant) value, zone);
+    }
+    if (value instanceof OffsetDateTime) {
+      return ((OffsetDateTime) value).atZoneSameInstant(zone).toLocalDateTime();
+    }
+    if (value instanceof ZonedDateTime) {
+      return ((ZonedDateTime) value).withZoneSameInstant(zone).toLocalDateTime();
+    }
+    return null;
+  }
+
+  static String text(Object value) {
+    return value instanceof byte[] ? Base64.getEncoder().encodeToString((byte[]) value) : value.toString();
+  }
+
+  static boolean isIntegral(Object value) {
+    return value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte;
+  }
+}
@@ -0,0 +1,331 @@
+package com.megvii.insight.common.export;
+
+import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.time.ZoneId;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipOutputStream;
+
+import com.megvii.insight.common.util.BufferPool;
+
+/**
+ * Streaming Exporter
+ * <p>
+ * Writes rows to the output as they are read, from a forward-only JDBC cursor or a {@link Stream}, through a
+ * pooled buffer of bufferSize bytes: what an export holds in memory does not grow with its rows. The output is
+ * left open; write to a {@link java.nio.channels.WritableByteChannel} through
+ * {@link java.nio.channels.Channels#newOutputStream}, which wraps what is written rather than copying it.
+ * </p>
+ * <p>
+ * Rows of a JPA {@code Stream} query stay in the persistence context until it is cleared: stream projections
+ * rather than entities, with a fetch size hint, or export through {@link #export(Connection, String,
+ * OutputStream, Object...)}.
+ * </p>
+ *
+ * <pre>
+ *
+ *    e.g.
+ *
+ *    StreamingExporter exporter = StreamingExporter.builder(ExportFormat.CSV)
+ *        .fetchSize(1000)
+ *        .gzip(true)
+ *        .build();
+ *
+ *    try (Connection connection = dataSource.getConnection()) {
+ *      exporter.export(connection, "SELECT id, username, created_at FROM users WHERE tenant_id = ?",
+ *          response.getOutputStream(), tenantId);
+ *    }
+ *
+ *    try (Stream&lt;UserVO&gt; users = userRepository.streamAllBy()) {
+ *      exporter.export(users, columns, response.getOutputStream());
+ *    }
+ *
+ * </pre>
+ */
+public class StreamingExporter {
+
+  private static final BufferPool BUFFERS = new BufferPool(64 * 1024,
+      Runtime.getRuntime().availableProcessors() * 2);
+
+  private final ExportFormat format;
+
+  private final int fetchSize;
+
+  private final int bufferSize;
+
+  private final boolean gzip;
+
+  private final boolean bom;
+
+  private final ZoneId zone;
+
+  private final int sheetRows;
+
+  private StreamingExporter(Builder builder) {
+    this.format = builder.format;
+    this.fetchSize = builder.fetchSize;
+    this.bufferSize = builder.bufferSize;
+    this.gzip = builder.gzip;
+    this.bom = builder.bom;
+    this.zone = builder.zone;
+    this.sheetRows = builder.sheetRows;
+  }
+
+  public static Builder builder(ExportFormat format) {
+    return new Builder(format);
+  }
+
+  /**
+   * 游标方式执行查询并导出，返回导出行数
+   * <p>
+   * 自动提交的连接在导出期间关闭自动提交（PostgreSQL只在事务中按fetchSize分批读取），结束后回滚并恢复；
+   * MySQL需在连接URL中配置useCursorFetch=true
+   * </p>
+   */
+  public long export(Connection connection, String sql, OutputStream out, Object... parameters)
+      throws SQLException, IOException {
+    boolean autoCommit = connection.getAutoCommit();
+    if (autoCommit) {
+      connection.setAutoCommit(false);
+    }
+    try (PreparedStatement statement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+        ResultSet.CONCUR_READ_ONLY)) {
+      statement.setFetchSize(fetchSize);
+      for (int i = 0; i < parameters.length; i++) {
+        statement.setObject(i + 1, parameters[i]);
+      }
+      try (ResultSet resultSet = statement.executeQuery()) {
+        return export(resultSet, out);
+      }
+    } finally {
+      if (autoCommit) {
+        connection.rollback();
+        connection.setAutoCommit(true);
+      }
+    }
+  }
+
+  /**
+   * 导出结果集的剩余行，列名作表头，返回导出行数；结果集不关闭
+   */
+  public long export(ResultSet resultSet, OutputStream out) throws SQLException, IOException {
+    ResultSetMetaData metaData = resultSet.getMetaData();
+    String[] headers = new String[metaData.getColumnCount()];
+    for (int i = 0; i < headers.length; i++) {
+      headers[i] = metaData.getColumnLabel(i + 1);
+    }
+    byte[] buffer = takeBuffer();
+    try (Sink sink = open(buffer, out)) {
+      sink.writer.header(headers);
+      long rows = 0;
+      while (resultSet.next()) {
+        for (int i = 1; i <= headers.length; i++) {
+          sink.writer.cell(resultSet.getObject(i));
+        }
+        sink.writer.endRow();
+        rows++;
+      }
+      sink.writer.finish();
+      return rows;
+    } finally {
+      BUFFERS.release(buffer);
+    }
+  }
+
+  /**
+   * 按列导出流中的对象，返回导出行数；流不关闭
+   */
+  public <T> long export(Stream<T> rows, List<ExportColumn<T>> columns, OutputStream out) throws IOException {
+    return export(rows.iterator(), columns, out);
+  }
+
+  /**
+   * 按列导出迭代器中的对象，返回导出行数
+   */
+  public <T> long export(Iterator<T> rows, List<ExportColumn<T>> columns, OutputStream out) throws IOException {
+    String[] headers = new String[columns.size()];
+    for (int i = 0; i < headers.length; i++) {
+      headers[i] = columns.get(i).getHeader();
+    }
+    byte[] buffer = takeBuffer();
+    try (Sink sink = open(buffer, out)) {
+      sink.writer.header(headers);
+      long count = 0;
+      while (rows.hasNext()) {
+        T row = rows.next();
+        for (ExportColumn<T> column : columns) {
+          sink.writer.cell(column.value(row));
+        }
+        sink.writer.endRow();
+        count++;
+      }
+      sink.writer.finish();
+      return count;
+    } finally {
+      BUFFERS.release(buffer);
+    }
+  }
+
+  public ExportFormat getFormat() {
+    return format;
+  }
+
+  private byte[] takeBuffer() {
+    return bufferSize == BUFFERS.getBufferSize() ? BUFFERS.take() : new byte[bufferSize];
+  }
+
+  private Sink open(byte[] buffer, OutputStream out) throws IOException {
+    OutputStream target = gzip ? new GZIPOutputStream(new Unclosed(out), bufferSize) : out;
+    if (format == ExportFormat.XLSX) {
+      ZipOutputStream zip = new ZipOutputStream(target == out ? new Unclosed(out) : target);
+      return new Sink(new XlsxRowWriter(new ExportBuffer(buffer, zip), zip, zone, sheetRows), zip, out);
+    }
+    return new Sink(new CsvRowWriter(new ExportBuffer(buffer, target), zone, bom), target == out ? null : target,
+        out);
+  }
+
+  /**
+   * The writer, and the zip or gzip stream over the caller's one, closed to free their deflater.
+   */
+  private static final class Sink implements Closeable {
+
+    private final RowWriter writer;
+
+    private final OutputStream compressed;
+
+    private final OutputStream out;
+
+    private Sink(RowWriter writer, OutputStream compressed, OutputStream out) {
+      this.writer = writer;
+      this.compressed = compressed;
+      this.out = out;
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (compressed != null) {
+        compressed.close();
+      } else {
+        out.flush();
+      }
+    }
+  }
+
+  /**
+   * Keeps the caller's stream open when the compressed streams over it are closed.
+   */
+  private static final class Unclosed extends FilterOutputStream {
+
+    private Unclosed(OutputStream out) {
+      super(out);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+    }
+
+    @Override
+    public void close() throws IOException {
+      out.flush();
+    }
+  }
+
+  public static class Builder {
+
+    private final ExportFormat format;
+
+    private int fetchSize = 1000;
+
+    private int bufferSize = 64 * 1024;
+
+    private boolean gzip;
+
+    private boolean bom;
+
+    private ZoneId zone = ZoneId.systemDefault();
+
+    private int sheetRows = XlsxRowWriter.MAX_SHEET_ROWS;
+
+    private Builder(ExportFormat format) {
+      this.format = format;
+    }
+
+    /**
+     * Rows read from the database at once.
+     */
+    public Builder fetchSize(int fetchSize) {
+      this.fetchSize = fetchSize;
+      return this;
+    }
+
+    /**
+     * Bytes written to the output at once, 64K buffers are pooled.
+     */
+    public Builder bufferSize(int bufferSize) {
+      this.bufferSize = bufferSize;
+      return this;
+    }
+
+    /**
+     * Gzip the file, for CSV: XLSX is compressed already.
+     */
+    public Builder gzip(boolean gzip) {
+      this.gzip = gzip;
+      return this;
+    }
+
+    /**
+     * Start CSV with a UTF-8 byte order mark, for Excel to read Chinese right.
+     */
+    public Builder bom(boolean bom) {
+      this.bom = bom;
+      return this;
+    }
+
+    /**
+     * Zone of the local date-times that instants are written as.
+     */
+    public Builder zone(ZoneId zone) {
+      this.zone = zone;
+      return this;
+    }
+
+    /**
+     * XLSX rows per worksheet, the header included.
+     */
+    public Builder sheetRows(int sheetRows) {
+      this.sheetRows = sheetRows;
+      return this;
+    }
+
+    public StreamingExporter build() {
+      if (format == null) {
+        throw new IllegalArgumentException("Illegal format: null");
+      }
+      if (fetchSize <= 0) {
+        throw new IllegalArgumentException("Illegal fetch size: " + fetchSize);
+      }
+      if (bufferSize < 64) {
+        throw new IllegalArgumentException("Illegal buffer size: " + bufferSize);
+      }
+      if (zone == null) {
+        throw new IllegalArgumentException("Illegal zone: null");
+      }
+      if (sheetRows < 2 || sheetRows > XlsxRowWriter.MAX_SHEET_ROWS) {
+        throw new IllegalArgumentException("Illegal sheet rows: " + sheetRows);
+      }
+      return new StreamingExporter(this);
+    }
+  }
+}
@@ -0,0 +1,326 @@
+package com.megvii.insight.common.export;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Office Open XML workbook, written as a zip entry per worksheet: cells are inline strings rather than shared
+ * ones, whose table would have to be held until the end, and carry no references, being written in order.
+ * <p>
+ * A worksheet takes sheetRows rows at most, the header repeated on each. Integers beyond the 15 significant
+ * digits Excel keeps, such as snowflake IDs, are written as text, as are dates before March 1900.
+ * </p>
+ */
+final class XlsxRowWriter extends RowWriter {
+
+  /**
+   * Rows of a worksheet at most, in Excel.
+   */
+  static final int MAX_SHEET_ROWS = 1 << 20;
+
+  /**
+   * Characters of a cell at most, in Excel.
+   */
+  private static final int MAX_CELL_LENGTH = 32767;
+
+  private static final long MAX_EXACT_NUMBER = 999_999_999_999_999L;
+
+  /**
+   * Excel serial number of 1970-01-01.
+   */
+  private static final long EPOCH_SERIAL = 25569L;
+
+  private static final double NANOS_PER_DAY = 86_400_000_000_000D;
+
+  /**
+   * Excel takes 1900 for a leap year, its serial numbers are off by one before.
+   */
+  private static final LocalDate MIN_DATE = LocalDate.of(1900, 3, 1);
+
+  private static final String MAIN_NS = "http://schemas.openxmlformats.org/spreadsheetml/2006/main";
+
+  private static final String PACKAGE_RELATIONSHIPS_NS = "http://schemas.openxmlformats.org/package/2006/relationships";
+
+  private static final String RELATIONSHIPS_NS = "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+
+  private static final String XML_DECLARATION = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n";
+
+  private static final byte[] SHEET_START = bytes(XML_DECLARATION + "<worksheet xmlns=\"" + MAIN_NS + "\"><sheetData>");
+
+  private static final byte[] SHEET_END = bytes("</sheetData></worksheet>");
+
+  private static final byte[] ROW_START = bytes("<row>");
+
+  private static final byte[] ROW_END = bytes("</row>");
+
+  private static final byte[] EMPTY_CELL = bytes("<c/>");
+
+  private static final byte[] TEXT_START = bytes("<c t=\"inlineStr\"><is><t xml:space=\"preserve\">");
+
+  private static final byte[] HEADER_START = bytes("<c s=\"3\" t=\"inlineStr\"><is><t xml:space=\"preserve\">");
+
+  private static final byte[] TEXT_END = bytes("</t></is></c>");
+
+  private static final byte[] NUMBER_START = bytes("<c><v>");
+
+  private static final byte[] DATE_START = bytes("<c s=\"1\"><v>");
+
+  private static final byte[] DATE_TIME_START = bytes("<c s=\"2\"><v>");
+
+  private static final byte[] TRUE = bytes("<c t=\"b\"><v>1</v></c>");
+
+  private static final byte[] FALSE = bytes("<c t=\"b\"><v>0</v></c>");
+
+  private static final byte[] VALUE_END = bytes("</v></c>");
+
+  private static final byte[] NONE = {};
+
+  private static final byte[] AMP = bytes("&amp;");
+
+  private static final byte[] LT = bytes("&lt;");
+
+  private static final byte[] GT = bytes("&gt;");
+
+  /**
+   * Style 1 dates, 2 date-times, 3 bold headers.
+   */
+  private static final byte[] STYLES = bytes(XML_DECLARATION + "<styleSheet xmlns=\"" + MAIN_NS + "\">"
+      + "<numFmts count=\"2\"><numFmt numFmtId=\"164\" formatCode=\"yyyy-mm-dd\"/>"
+      + "<numFmt numFmtId=\"165\" formatCode=\"yyyy-mm-dd hh:mm:ss\"/></numFmts>"
+      + "<fonts count=\"2\"><font><sz val=\"11\"/><name val=\"Calibri\"/></font>"
+      + "<font><b/><sz val=\"11\"/><name val=\"Calibri\"/></font></fonts>"
+      + "<fills count=\"2\"><fill><patternFill patternType=\"none\"/></fill>"
+      + "<fill><patternFill patternType=\"gray125\"/></fill></fills>"
+      + "<borders count=\"1\"><border><left/><right/><top/><bottom/><diagonal/></border></borders>"
+      + "<cellStyleXfs count=\"1\"><xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\"/></cellStyleXfs>"
+      + "<cellXfs count=\"4\"><xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\"/>"
+      + "<xf numFmtId=\"164\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\" applyNumberFormat=\"1\"/>"
+      + "<xf numFmtId=\"165\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\" applyNumberFormat=\"1\"/>"
+      + "<xf numFmtId=\"0\" fontId=\"1\" fillId=\"0\" borderId=\"0\" xfId=\"0\" applyFont=\"1\"/></cellXfs>"
+      + "</styleSheet>");
+
+  private static final byte[] ROOT_RELATIONSHIPS = bytes(XML_DECLARATION
+      + "<Relationships xmlns=\"" + PACKAGE_RELATIONSHIPS_NS + "\">"
+      + "<Relationship Id=\"rId1\" Type=\"" + RELATIONSHIPS_NS + "/officeDocument\" Target=\"xl/workbook.xml\"/>"
+      + "</Relationships>");
+
+  private final ZipOutputStream zip;
+
+  private final int sheetRows;
+
+  private String[] headers;
+
+  private int sheets;
+
+  private int rows;
+
+  private boolean inRow;
+
+  XlsxRowWriter(ExportBuffer out, ZipOutputStream zip, ZoneId zone, int sheetRows) {
+    super(out, zone);
+    this.zip = zip;
+    this.sheetRows = sheetRows;
+  }
+
+  @Override
+  void header(String[] headers) throws IOException {
+    this.headers = headers;
+    nextSheet();
+  }
+
+  @Override
+  void cell(Object value) throws IOException {
+    if (!inRow) {
+      startRow();
+    }
+    if (value == null) {
+      out.write(EMPTY_CELL);
+    } else if (isIntegral(value)) {
+      writeNumber((Number) value);
+    } else if (value instanceof BigDecimal) {
+      BigDecimal decimal = (BigDecimal) value;
+      if (decimal.precision() > 15) {
+        writeText(TEXT_START, decimal.toPlainString());
+      } else {
+        out.write(NUMBER_START);
+        out.writeAscii(decimal.toString());
+        out.write(VALUE_END);
+      }
+    } else if (value instanceof Double || value instanceof Float) {
+      double number = ((Number) value).doubleValue();
+      if (Double.isNaN(number) || Double.isInfinite(number)) {
+        writeText(TEXT_START, value.toString());
+      } else {
+        out.write(NUMBER_START);
+        out.writeAscii(Double.toString(number));
+        out.write(VALUE_END);
+      }
+    } else if (value instanceof Boolean) {
+      out.write((Boolean) value ? TRUE : FALSE);
+    } else {
+      Object temporal = temporal(value);
+      if (temporal instanceof LocalDateTime && !((LocalDateTime) temporal).toLocalDate().isBefore(MIN_DATE)) {
+        LocalDateTime dateTime = (LocalDateTime) temporal;
+        out.write(DATE_TIME_START);
+        out.writeAscii(Double.toString(dateTime.toLocalDate().toEpochDay() + EPOCH_SERIAL
+            + dateTime.toLocalTime().toNanoOfDay() / NANOS_PER_DAY));
+        out.write(VALUE_END);
+      } else if (temporal instanceof LocalDate && !((LocalDate) temporal).isBefore(MIN_DATE)) {
+        out.write(DATE_START);
+        out.writeLong(((LocalDate) temporal).toEpochDay() + EPOCH_SERIAL);
+        out.write(VALUE_END);
+      } else {
+        writeText(TEXT_START, temporal != null ? temporal.toString() : text(value));
+      }
+    }
+  }
+
+  @Override
+  void endRow() throws IOException {
+    if (!inRow) {
+      startRow();
+    }
+    out.write(ROW_END);
+    inRow = false;
+    rows++;
+  }
+
+  @Override
+  void finish() throws IOException {
+    if (sheets == 0) {
+      nextSheet();
+    }
+    closeSheet();
+    entry("xl/styles.xml", STYLES);
+    entry("xl/workbook.xml", workbook());
+    entry("xl/_rels/workbook.xml.rels", workbookRelationships());
+    entry("_rels/.rels", ROOT_RELATIONSHIPS);
+    entry("[Content_Types].xml", contentTypes());
+    zip.finish();
+  }
+
+  private void startRow() throws IOException {
+    if (sheets == 0 || rows == sheetRows) {
+      nextSheet();
+    }
+    out.write(ROW_START);
+    inRow = true;
+  }
+
+  private void nextSheet() throws IOException {
+    if (sheets > 0) {
+      closeSheet();
+    }
+    sheets++;
+    rows = 0;
+    zip.putNextEntry(new ZipEntry("xl/worksheets/sheet" + sheets + ".xml"));
+    out.write(SHEET_START);
+    if (headers != null) {
+      out.write(ROW_START);
+      for (String header : headers) {
+        writeText(HEADER_START, header);
+      }
+      out.write(ROW_END);
+      rows++;
+    }
+  }
+
+  private void closeSheet() throws IOException {
+    out.write(SHEET_END);
+    out.flush();
+    zip.closeEntry();
+  }
+
+  private void writeNumber(Number value) throws IOException {
+    long number = value.longValue();
+    if (number > MAX_EXACT_NUMBER || number < -MAX_EXACT_NUMBER) {
+      writeText(TEXT_START, Long.toString(number));
+      return;
+    }
+    out.write(NUMBER_START);
+    out.writeLong(number);
+    out.write(VALUE_END);
+  }
+
+  private void writeText(byte[] start, String text) throws IOException {
+    out.write(start);
+    int end = Math.min(text.length(), MAX_CELL_LENGTH);
+    int from = 0;
+    for (int i = 0; i < end; i++) {
+      char c = text.charAt(i);
+      byte[] entity = null;
+      if (c == '&') {
+        entity = AMP;
+      } else if (c == '<') {
+        entity = LT;
+      } else if (c == '>') {
+        entity = GT;
+      } else if (c < 0x20 && c != '\t' && c != '\n' && c != '\r' || c == '\uFFFE' || c == '\uFFFF') {
+        // not allowed in XML 1.0, dropped
+        entity = NONE;
+      }
+      if (entity != null) {
+        out.writeText(text, from, i);
+        out.write(entity);
+        from = i + 1;
+      }
+    }
+    out.writeText(text, from, end);
+    out.write(TEXT_END);
+  }
+
+  private void entry(String name, byte[] content) throws IOException {
+    zip.putNextEntry(new ZipEntry(name));
+    zip.write(content);
+    zip.closeEntry();
+  }
+
+  private byte[] workbook() {
+    StringBuilder xml = new StringBuilder(XML_DECLARATION).append("<workbook xmlns=\"").append(MAIN_NS)
+        .append("\" xmlns:r=\"").append(RELATIONSHIPS_NS).append("\"><sheets>");
+    for (int i = 1; i <= sheets; i++) {
+      xml.append("<sheet name=\"Sheet").append(i).append("\" sheetId=\"").append(i)
+          .append("\" r:id=\"rId").append(i).append("\"/>");
+    }
+    return bytes(xml.append("</sheets></workbook>").toString());
+  }
+
+  private byte[] workbookRelationships() {
+    StringBuilder xml = new StringBuilder(XML_DECLARATION).append("<Relationships xmlns=\"")
+        .append(PACKAGE_RELATIONSHIPS_NS).append("\">");
+    for (int i = 1; i <= sheets; i++) {
+      xml.append("<Relationship Id=\"rId").append(i).append("\" Type=\"").append(RELATIONSHIPS_NS)
+          .append("/worksheet\" Target=\"worksheets/sheet").append(i).append(".xml\"/>");
+    }
+    xml.append("<Relationship Id=\"rId").append(sheets + 1).append("\" Type=\"").append(RELATIONSHIPS_NS)
+        .append("/styles\" Target=\"styles.xml\"/>");
+    return bytes(xml.append("</Relationships>").toString());
+  }
+
+  private byte[] contentTypes() {
+    StringBuilder xml = new StringBuilder(XML_DECLARATION)
+        .append("<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">")
+        .append("<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package")
+        .append(".relationships+xml\"/>")
+        .append("<Default Extension=\"xml\" ContentType=\"application/xml\"/>")
+        .append("<Override PartName=\"/xl/workbook.xml\" ContentType=\"application/vnd.openxmlformats-officedocument")
+        .append(".spreadsheetml.sheet.main+xml\"/>")
+        .append("<Override PartName=\"/xl/styles.xml\" ContentType=\"application/vnd.openxmlformats-officedocument")
+        .append(".spreadsheetml.styles+xml\"/>");
+    for (int i = 1; i <= sheets; i++) {
+      xml.append("<Override PartName=\"/xl/worksheets/sheet").append(i).append(".xml\" ContentType=\"")
+          .append("application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml\"/>");
+    }
+    return bytes(xml.append("</Types>").toString());
+  }
+
+  private static byte[] bytes(String text) {
+    return text.getBytes(StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,137 @@
+package com.megvii.insight.common.factory;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ThreadPoolExecutor counting the rejected tasks and timing how long the tasks wait in the queue and run.
+ * <p>
+ * Executed tasks are wrapped to carry their submit time, so {@link #getQueue()} and {@link #shutdownNow()}
+ * hold the wrappers and {@link #remove(Runnable)} does not find the original tasks.
+ * </p>
+ */
+public class MonitoredThreadPoolExecutor extends ThreadPoolExecutor {
+
+  private final Timer waitTimer = new Timer();
+
+  private final Timer executionTimer = new Timer();
+
+  private final LongAdder rejected = new LongAdder();
+
+  MonitoredThreadPoolExecutor(int corePoolSize, int maximumPoolSize, long keepAliveTime, TimeUnit unit,
+      BlockingQueue<Runnable> workQueue, ThreadFactory threadFactory, RejectedExecutionHandler handler) {
+    super(corePoolSize, maximumPoolSize, keepAliveTime, unit, workQueue, threadFactory, handler);
+    setRejectedExecutionHandler((runnable, executor) -> {
+      rejected.increment();
+      handler.rejectedExecution(runnable, executor);
+    });
+  }
+
+  @Override
+  public void execute(Runnable command) {
+    if (command == null) {
+      throw new NullPointerException();
+    }
+    // re-executed by DISCARD_OLDEST, already wrapped
+    super.execute(command instanceof Task ? command : new Task(command, System.nanoTime()));
+  }
+
+  @Override
+  protected void beforeExecute(Thread thread, Runnable runnable) {
+    if (runnable instanceof Task) {
+      Task task = (Task) runnable;
+      task.started = System.nanoTime();
+      waitTimer.record(task.started - task.submitted);
+    }
+    super.beforeExecute(thread, runnable);
+  }
+
+  @Override
+  protected void afterExecute(Runnable runnable, Throwable err) {
+    super.afterExecute(runnable, err);
+    if (runnable instanceof Task) {
+      executionTimer.record(System.nanoTime() - ((Task) runnable).started);
+    }
+  }
+
+  /**
+   * Tasks waiting in the queue.
+   */
+  public int getQueueSize() {
+    return getQueue().size();
+  }
+
+  public int getQueueRemainingCapacity() {
+    return getQueue().remainingCapacity();
+  }
+
+  /**
+   * Tasks rejected by a full pool, whatever the rejection policy did with them.
+   */
+  public long getRejectedCount() {
+    return rejected.sum();
+  }
+
+  /**
+   * Tasks taken from the queue, or run right away, by a pool thread; tasks run by a rejection policy in
+   * the caller are not timed.
+   */
+  public long getWaitCount() {
+    return waitTimer.count.sum();
+  }
+
+  public long getWaitTime(TimeUnit unit) {
+    return unit.convert(waitTimer.total.sum(), TimeUnit.NANOSECONDS);
+  }
+
+  public long getExecutionCount() {
+    return executionTimer.count.sum();
+  }
+
+  public long getExecutionTime(TimeUnit unit) {
+    return unit.convert(executionTimer.total.sum(), TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * A task and the nanoTime it was submitted at, then started at by its pool thread.
+   */
+  private static final class Task implements Runnable {
+
+    private final Runnable command;
+
+    private final long submitted;
+
+    private long started;
+
+    private Task(Runnable command, long submitted) {
+      this.command = command;
+      this.submitted = submitted;
+    }
+
+    @Override
+    public void run() {
+      command.run();
+    }
+
+    @Override
+    public String toString() {
+      return command.toString();
+    }
+  }
+
+  private static final class Timer {
+
+    private final LongAdder count = new LongAdder();
+
+    private final LongAdder total = new LongAdder();
+
+    void record(long nanos) {
+      count.increment();
+      total.add(nanos);
+    }
+  }
+}
@@ -1,25 +1,38 @@
 package com.megvii.insight.common.factory;
 
 import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.NoUniqueBeanDefinitionException;
+import org.springframework.beans.factory.config.NamedBeanHolder;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ApplicationContextEvent;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.ContextRefreshedEvent;
 
 import java.beans.Introspector;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Spring Bean Factory
+ * <p>
+ * Beans looked up by type are resolved once per class, until the context is refreshed or closed: singletons
+ * are then served from the cache, prototypes are still created by the context on each call.
+ * </p>
  */
-public class SpringBeanFactory implements ApplicationContextAware {
+public class SpringBeanFactory implements ApplicationContextAware, ApplicationListener<ApplicationContextEvent> {
 
-  private static SpringBeanFactory instance = null;
+  private static final ConcurrentHashMap<Class<?>, Resolved> BEANS = new ConcurrentHashMap<>();
 
-  private static ApplicationContext applicationContext;
+  private static volatile ApplicationContext applicationContext;
+
+  /**
+   * Replaced whenever the context is set, refreshed or closed, with the cache cleared.
+   */
+  private static volatile Generation generation = new Generation(null);
 
   public static SpringBeanFactory getInstance() {
-    if (instance == null) {
-      instance = new SpringBeanFactory();
-    }
-    return instance;
+    return Holder.INSTANCE;
   }
 
   public static Object getBean(String name) throws BeansException {
@@ -30,14 +43,47 @@ public class SpringBeanFactory implements ApplicationContextAware {
     return applicationContext.getBean(name, requiredType);
   }
 
+  /**
+   * 按类型获取Bean，单例缓存
+   * <p>
+   * 同类型有多个Bean且没有@Primary时，取按类名首字母小写命名的Bean
+   * </p>
+   */
   public static <T> T getBean(Class<T> requiredType) throws BeansException {
-    return applicationContext.getBean(Introspector.decapitalize(requiredType.getSimpleName()), requiredType);
+    Generation current = generation;
+    ApplicationContext context = current.context;
+    Resolved resolved = BEANS.get(requiredType);
+    if (resolved != null && resolved.generation == current) {
+      return resolved.singleton != null
+          ? requiredType.cast(resolved.singleton) : context.getBean(resolved.name, requiredType);
+    }
+    NamedBeanHolder<T> holder = resolve(context, requiredType);
+    Object singleton = context.isSingleton(holder.getBeanName()) ? holder.getBeanInstance() : null;
+    Resolved fresh = new Resolved(current, holder.getBeanName(), singleton);
+    BEANS.put(requiredType, fresh);
+    if (generation != current) {
+      // raced a refresh or close, which may have cleared the cache before the put
+      BEANS.remove(requiredType, fresh);
+    }
+    return holder.getBeanInstance();
   }
 
   public static Object getBean(String name, Object args) throws BeansException {
     return applicationContext.getBean(name, args);
   }
 
+  private static <T> NamedBeanHolder<T> resolve(ApplicationContext context, Class<T> requiredType) {
+    try {
+      return context.getAutowireCapableBeanFactory().resolveNamedBean(requiredType);
+    } catch (NoUniqueBeanDefinitionException ex) {
+      String name = Introspector.decapitalize(requiredType.getSimpleName());
+      if (!context.containsBean(name) || !context.isTypeMatch(name, requiredType)) {
+        throw ex;
+      }
+      return new NamedBeanHolder<>(name, context.getBean(name, requiredType));
+    }
+  }
+
   public ApplicationContext getApplicationContext() {
     return applicationContext;
   }
@@ -46,6 +92,55 @@ public class SpringBeanFactory implements ApplicationContextAware {
   public void setApplicationContext(
       @SuppressWarnings("NullableProblems") ApplicationContext applicationContext) throws BeansException {
     SpringBeanFactory.applicationContext = applicationContext;
+    reset(applicationContext);
   }
 
-}
\ No newline at end of file
+  @Override
+  public void onApplicationEvent(@SuppressWarnings("NullableProblems") ApplicationContextEvent event) {
+    // events of child contexts are published to their parents too
+    if (event.getApplicationContext() == applicationContext
+        && (event instanceof ContextRefreshedEvent || event instanceof ContextClosedEvent)) {
+      reset(applicationContext);
+    }
+  }
+
+  private static void reset(ApplicationContext applicationContext) {
+    generation = new Generation(applicationContext);
+    BEANS.clear();
+  }
+
+  private static final class Holder {
+
+    private static final SpringBeanFactory INSTANCE = new SpringBeanFactory();
+  }
+
+  /**
+   * The context between two refreshes or closes, entries of another one are stale.
+   */
+  private static final class Generation {
+
+    private final ApplicationContext context;
+
+    private Generation(ApplicationContext context) {
+      this.context = context;
+    }
+  }
+
+  /**
+   * Bean name resolved for a type, and its instance when it is a singleton.
+   */
+  private static final class Resolved {
+
+    private final Generation generation;
+
+    private final String name;
+
+    private final Object singleton;
+
+    private Resolved(Generation generation, String name, Object singleton) {
+      this.generation = generation;
+      this.name = name;
+      this.singleton = singleton;
+    }
+  }
+}
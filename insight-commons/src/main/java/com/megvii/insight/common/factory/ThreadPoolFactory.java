@@ -1,10 +1,24 @@
 package com.megvii.insight.common.factory;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * Thread Pool Factory
@@ -16,37 +30,99 @@ import java.util.concurrent.atomic.AtomicInteger;
  *
  *    ThreadPoolFactory.createFixedThreadPool("poolName").getExecutor()
  *
+ *    ThreadPoolFactory.builder("poolName")
+ *        .corePoolSize(4)
+ *        .maximumPoolSize(16)
+ *        .keepAlive(30, TimeUnit.SECONDS)
+ *        .queue(QueueType.ARRAY, 1000)
+ *        .rejection(Rejection.CALLER_RUNS)
+ *        .build()
+ *        .getExecutor()
+ *
+ *    // core size adjusted between 4 and 64, for tasks waiting 10ms at most in the queue
+ *    ThreadPoolFactory.builder("poolName")
+ *        .corePoolSize(4)
+ *        .maximumPoolSize(64)
+ *        .adaptive(10, 1000, TimeUnit.MILLISECONDS)
+ *        .build()
+ *        .getExecutor()
+ *
+ *    // blocking I/O, e.g. JDBC or Feign calls
+ *    ThreadPoolFactory.createVirtualThreadExecutor("poolName").getExecutor()
+ *
+ *    // CPU bound fan-out
+ *    ThreadPoolFactory.createWorkStealingPool("poolName").getExecutor()
+ *
  * </pre>
  */
 public class ThreadPoolFactory {
 
-  private static ConcurrentHashMap<String, ThreadPoolFactory> threadPoolFactories;
+  /**
+   * Platform threads of {@link #createVirtualThreadExecutor(String)} before Java 21.
+   */
+  public static final int VIRTUAL_FALLBACK_MAXIMUM_POOL_SIZE = 256;
 
-  private ExecutorService executor;
+  private static final ConcurrentHashMap<String, ThreadPoolFactory> threadPoolFactories = new ConcurrentHashMap<>();
 
-  private ThreadPoolFactory(final String poolName) {
-    this.executor = Executors.newFixedThreadPool(
-        Runtime.getRuntime().availableProcessors(),
-        new ThreadFactory() {
-          private final AtomicInteger ai = new AtomicInteger(0);
+  private static final Set<Consumer<ThreadPoolFactory>> LISTENERS = new CopyOnWriteArraySet<>();
+
+  private final String poolName;
+
+  private final ExecutorService executor;
 
-          @Override
-          public Thread newThread(@SuppressWarnings("NullableProblems") Runnable runnable) {
-            return new Thread(runnable, poolName + "_thread_" + ai.incrementAndGet());
-          }
-        });
+  private final long shutdownTimeoutMillis;
+
+  /**
+   * null unless the pool is adaptive.
+   */
+  private final ThreadPoolSizer sizer;
+
+  private ThreadPoolFactory(final String poolName) {
+    this(poolName, Runtime.getRuntime().availableProcessors());
   }
 
+  /**
+   * Unbounded queue, as it always was for the fixed thread pools.
+   */
   private ThreadPoolFactory(final String poolName, int nThreads) {
-    this.executor = Executors.newFixedThreadPool(nThreads,
-        new ThreadFactory() {
-          private final AtomicInteger ai = new AtomicInteger(0);
+    this(builder(poolName)
+        .corePoolSize(nThreads)
+        .maximumPoolSize(nThreads)
+        .queue(QueueType.LINKED, Integer.MAX_VALUE));
+  }
+
+  private ThreadPoolFactory(Builder builder) {
+    this.poolName = builder.poolName;
+    this.shutdownTimeoutMillis = builder.shutdownTimeoutMillis;
+    MonitoredThreadPoolExecutor threadPool = new MonitoredThreadPoolExecutor(builder.corePoolSize,
+        builder.maximumPoolSize, builder.keepAliveTime, builder.keepAliveUnit,
+        builder.queueType.create(builder.queueCapacity),
+        threadFactory(builder.poolName, builder.daemon, builder.priority), builder.rejection.handler());
+    threadPool.allowCoreThreadTimeOut(builder.allowCoreThreadTimeOut);
+    this.executor = threadPool;
+    this.sizer = builder.targetWaitNanos < 0 ? null : new ThreadPoolSizer(threadPool, builder.corePoolSize,
+        builder.maximumPoolSize, builder.targetWaitNanos, builder.sizingIntervalNanos);
+  }
+
+  private ThreadPoolFactory(String poolName, ExecutorService executor) {
+    this.poolName = poolName;
+    this.shutdownTimeoutMillis = TimeUnit.SECONDS.toMillis(30L);
+    this.executor = executor;
+    this.sizer = null;
+  }
 
-          @Override
-          public Thread newThread(@SuppressWarnings("NullableProblems") Runnable runnable) {
-            return new Thread(runnable, poolName + "_thread_" + ai.incrementAndGet());
-          }
-        });
+  private static ThreadFactory threadFactory(final String poolName, final boolean daemon, final int priority) {
+    return new ThreadFactory() {
+      private final AtomicInteger ai = new AtomicInteger(0);
+
+      @Override
+      public Thread newThread(@SuppressWarnings("NullableProblems") Runnable runnable) {
+        Thread thread = new Thread(runnable, poolName + "_thread_" + ai.incrementAndGet());
+        thread.setDaemon(daemon);
+        thread.setPriority(priority);
+        return thread;
+      }
+    };
   }
 
   /**
@@ -68,6 +144,90 @@ public class ThreadPoolFactory {
     return Get.fixedThreadPool(poolName, nThreads);
   }
 
+  /**
+   * 获取每个任务一个虚拟线程的线程池，适用于阻塞I/O；运行时不支持虚拟线程（Java 21以前）时，
+   * 退回到最多 {@link #VIRTUAL_FALLBACK_MAXIMUM_POOL_SIZE} 个平台线程、直接移交任务的线程池，满时由调用线程执行
+   *
+   * @param poolName 线程池名称
+   * @return {@link ThreadPoolFactory}
+   */
+  public static ThreadPoolFactory createVirtualThreadExecutor(String poolName) {
+    if (!VirtualThreads.isSupported()) {
+      return builder(poolName)
+          .corePoolSize(0)
+          .maximumPoolSize(VIRTUAL_FALLBACK_MAXIMUM_POOL_SIZE)
+          .queue(QueueType.SYNCHRONOUS, 0)
+          .rejection(Rejection.CALLER_RUNS)
+          .build();
+    }
+    return Get.threadPool(poolName,
+        () -> new ThreadPoolFactory(poolName, VirtualThreads.newThreadPerTaskExecutor(poolName)));
+  }
+
+  /**
+   * 获取工作窃取线程池（ForkJoinPool，async mode），默认并行度 Runtime.getRuntime().availableProcessors()
+   *
+   * @param poolName 线程池名称
+   * @return {@link ThreadPoolFactory}
+   */
+  public static ThreadPoolFactory createWorkStealingPool(String poolName) {
+    return createWorkStealingPool(poolName, Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * @param poolName    线程池名称
+   * @param parallelism 并行度
+   * @return {@link ThreadPoolFactory}
+   */
+  public static ThreadPoolFactory createWorkStealingPool(String poolName, int parallelism) {
+    return Get.threadPool(poolName, () -> new ThreadPoolFactory(poolName,
+        new ForkJoinPool(parallelism, forkJoinThreadFactory(poolName), null, true)));
+  }
+
+  /**
+   * Whether {@link #createVirtualThreadExecutor(String)} runs the tasks on virtual threads.
+   */
+  public static boolean isVirtualThreadSupported() {
+    return VirtualThreads.isSupported();
+  }
+
+  private static ForkJoinPool.ForkJoinWorkerThreadFactory forkJoinThreadFactory(final String poolName) {
+    final AtomicInteger ai = new AtomicInteger(0);
+    return pool -> {
+      ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+      thread.setName(poolName + "_thread_" + ai.incrementAndGet());
+      return thread;
+    };
+  }
+
+  /**
+   * 构建有界线程池，默认并发线程数 Runtime.getRuntime().availableProcessors()，队列 ARRAY(1024)，拒绝策略 ABORT
+   *
+   * @param poolName 线程池名称
+   * @return {@link Builder}
+   */
+  public static Builder builder(String poolName) {
+    return new Builder(poolName);
+  }
+
+  /**
+   * 已创建的线程池
+   */
+  public static Collection<ThreadPoolFactory> getThreadPools() {
+    return Collections.unmodifiableCollection(ThreadPoolFactory.threadPoolFactories.values());
+  }
+
+  /**
+   * Notified of the thread pools created from now on, e.g. to bind their metrics.
+   */
+  public static void addListener(Consumer<ThreadPoolFactory> listener) {
+    LISTENERS.add(listener);
+  }
+
+  public static void removeListener(Consumer<ThreadPoolFactory> listener) {
+    LISTENERS.remove(listener);
+  }
+
   /**
    *
    */
@@ -75,29 +235,290 @@ public class ThreadPoolFactory {
     return this.executor;
   }
 
+  /**
+   * The executor with its queue depth, active count, rejected count, wait and execution times.
+   *
+   * @return null for a work-stealing pool or virtual threads
+   */
+  public MonitoredThreadPoolExecutor getThreadPoolExecutor() {
+    return executor instanceof MonitoredThreadPoolExecutor ? (MonitoredThreadPoolExecutor) executor : null;
+  }
+
+  public String getPoolName() {
+    return this.poolName;
+  }
+
+  /**
+   * 关闭线程池：不再接受新任务，等待已提交的任务执行完毕，超时后中断仍在执行的任务
+   *
+   * @return 是否在超时前执行完毕
+   */
+  public boolean shutdown() {
+    long start = System.nanoTime();
+    initiateShutdown();
+    return awaitShutdown(start);
+  }
+
+  /**
+   * Stops accepting tasks, without waiting.
+   */
+  void initiateShutdown() {
+    ThreadPoolFactory.threadPoolFactories.remove(poolName, this);
+    if (sizer != null) {
+      sizer.cancel();
+    }
+    executor.shutdown();
+  }
+
+  /**
+   * Waits for the submitted tasks up to the shutdown timeout counted from start, then interrupts them.
+   *
+   * @param start nanoTime the shutdown started at
+   */
+  boolean awaitShutdown(long start) {
+    long remaining = TimeUnit.MILLISECONDS.toNanos(shutdownTimeoutMillis) - (System.nanoTime() - start);
+    try {
+      if (executor.awaitTermination(Math.max(remaining, 0L), TimeUnit.NANOSECONDS)) {
+        return true;
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+    executor.shutdownNow();
+    return false;
+  }
+
+  /**
+   * Work queue of a thread pool.
+   */
+  public enum QueueType {
+
+    /**
+     * ArrayBlockingQueue, preallocated, one lock for offer and poll.
+     */
+    ARRAY {
+      @Override
+      BlockingQueue<Runnable> create(int capacity) {
+        return new ArrayBlockingQueue<>(capacity);
+      }
+    },
+
+    /**
+     * LinkedBlockingQueue, allocated per task, separate locks for offer and poll.
+     */
+    LINKED {
+      @Override
+      BlockingQueue<Runnable> create(int capacity) {
+        return new LinkedBlockingQueue<>(capacity);
+      }
+    },
+
+    /**
+     * SynchronousQueue, hands each task over to a thread, capacity is ignored.
+     */
+    SYNCHRONOUS {
+      @Override
+      BlockingQueue<Runnable> create(int capacity) {
+        return new SynchronousQueue<>();
+      }
+    };
+
+    abstract BlockingQueue<Runnable> create(int capacity);
+  }
+
+  /**
+   * What happens to a task submitted while the threads are busy and the queue is full, rejected tasks are
+   * counted whatever the policy.
+   */
+  public enum Rejection {
+
+    /**
+     * Throw RejectedExecutionException.
+     */
+    ABORT,
+
+    /**
+     * Run the task in the submitting thread, which slows the submitters down.
+     */
+    CALLER_RUNS,
+
+    /**
+     * Drop the oldest queued task, then submit again.
+     */
+    DISCARD_OLDEST,
+
+    /**
+     * Drop the task silently, only counted.
+     */
+    DROP;
+
+    RejectedExecutionHandler handler() {
+      switch (this) {
+        case CALLER_RUNS:
+          return new ThreadPoolExecutor.CallerRunsPolicy();
+        case DISCARD_OLDEST:
+          return new ThreadPoolExecutor.DiscardOldestPolicy();
+        case DROP:
+          return new ThreadPoolExecutor.DiscardPolicy();
+        default:
+          return new ThreadPoolExecutor.AbortPolicy();
+      }
+    }
+  }
+
+  /**
+   * Builder of a named thread pool, the pool already created under the same name is returned as is.
+   */
+  public static class Builder {
+
+    private final String poolName;
+
+    private int corePoolSize = Runtime.getRuntime().availableProcessors();
+
+    private int maximumPoolSize = corePoolSize;
+
+    private long keepAliveTime = 60L;
+
+    private TimeUnit keepAliveUnit = TimeUnit.SECONDS;
+
+    private boolean allowCoreThreadTimeOut = false;
+
+    private QueueType queueType = QueueType.ARRAY;
+
+    private int queueCapacity = 1024;
+
+    private Rejection rejection = Rejection.ABORT;
+
+    private boolean daemon = false;
+
+    private int priority = Thread.NORM_PRIORITY;
+
+    private long shutdownTimeoutMillis = TimeUnit.SECONDS.toMillis(30L);
+
+    private long targetWaitNanos = -1L;
+
+    private long sizingIntervalNanos;
+
+    private Builder(String poolName) {
+      this.poolName = poolName;
+    }
+
+    public Builder corePoolSize(int corePoolSize) {
+      this.corePoolSize = corePoolSize;
+      return this;
+    }
+
+    public Builder maximumPoolSize(int maximumPoolSize) {
+      this.maximumPoolSize = maximumPoolSize;
+      return this;
+    }
+
+    /**
+     * How long threads above the core size stay idle before they end.
+     */
+    public Builder keepAlive(long keepAliveTime, TimeUnit unit) {
+      this.keepAliveTime = keepAliveTime;
+      this.keepAliveUnit = unit;
+      return this;
+    }
+
+    public Builder allowCoreThreadTimeOut(boolean allowCoreThreadTimeOut) {
+      this.allowCoreThreadTimeOut = allowCoreThreadTimeOut;
+      return this;
+    }
+
+    /**
+     * Threads above the core size are only started once the queue is full.
+     */
+    public Builder queue(QueueType queueType, int capacity) {
+      this.queueType = queueType;
+      this.queueCapacity = capacity;
+      return this;
+    }
+
+    public Builder rejection(Rejection rejection) {
+      this.rejection = rejection;
+      return this;
+    }
+
+    public Builder daemon(boolean daemon) {
+      this.daemon = daemon;
+      return this;
+    }
+
+    public Builder priority(int priority) {
+      this.priority = priority;
+      return this;
+    }
+
+    /**
+     * Adjust the core size between corePoolSize and maximumPoolSize every interval, from the observed queue
+     * wait, execution time and throughput, for tasks to wait targetWait at most.
+     */
+    public Builder adaptive(long targetWait, long interval, TimeUnit unit) {
+      this.targetWaitNanos = unit.toNanos(targetWait);
+      this.sizingIntervalNanos = unit.toNanos(interval);
+      return this;
+    }
+
+    /**
+     * How long {@link ThreadPoolFactory#shutdown()} waits for the submitted tasks.
+     */
+    public Builder shutdownTimeout(long timeout, TimeUnit unit) {
+      this.shutdownTimeoutMillis = unit.toMillis(timeout);
+      return this;
+    }
+
+    public ThreadPoolFactory build() {
+      if (corePoolSize < 0 || maximumPoolSize <= 0 || maximumPoolSize < corePoolSize) {
+        throw new IllegalArgumentException(
+            "Illegal pool sizes of " + poolName + ": core " + corePoolSize + ", maximum " + maximumPoolSize);
+      }
+      if (queueCapacity <= 0 && queueType != QueueType.SYNCHRONOUS) {
+        throw new IllegalArgumentException("Illegal queue capacity of " + poolName + ": " + queueCapacity);
+      }
+      if (priority < Thread.MIN_PRIORITY || priority > Thread.MAX_PRIORITY) {
+        throw new IllegalArgumentException("Illegal thread priority of " + poolName + ": " + priority);
+      }
+      if (targetWaitNanos >= 0 && sizingIntervalNanos <= 0) {
+        throw new IllegalArgumentException("Illegal sizing interval of " + poolName + ": " + sizingIntervalNanos);
+      }
+      return Get.threadPool(this);
+    }
+  }
+
   private static class Get {
     //
     static ThreadPoolFactory fixedThreadPool(String poolName) {
-      if (ThreadPoolFactory.threadPoolFactories == null) {
-        ThreadPoolFactory.threadPoolFactories = new ConcurrentHashMap<>();
-      }
-      if (!ThreadPoolFactory.threadPoolFactories.containsKey(poolName)) {
-        ThreadPoolFactory.threadPoolFactories.put(poolName, new ThreadPoolFactory(poolName));
-      }
-      return ThreadPoolFactory.threadPoolFactories.get(poolName);
+      return threadPool(poolName, () -> new ThreadPoolFactory(poolName));
     }
 
     //
     static ThreadPoolFactory fixedThreadPool(String poolName, int nThreads) {
-      if (ThreadPoolFactory.threadPoolFactories == null) {
-        ThreadPoolFactory.threadPoolFactories = new ConcurrentHashMap<>();
+      return threadPool(poolName, () -> new ThreadPoolFactory(poolName, nThreads));
+    }
+
+    //
+    static ThreadPoolFactory threadPool(Builder builder) {
+      return threadPool(builder.poolName, () -> new ThreadPoolFactory(builder));
+    }
+
+    /**
+     * Creates at most one pool per name, however many threads ask for it at once; the listeners are
+     * notified of a created pool outside of the map lock.
+     */
+    static ThreadPoolFactory threadPool(String poolName, Supplier<ThreadPoolFactory> factory) {
+      ThreadPoolFactory existing = ThreadPoolFactory.threadPoolFactories.get(poolName);
+      if (existing != null) {
+        return existing;
       }
-      if (!ThreadPoolFactory.threadPoolFactories.containsKey(poolName)) {
-        ThreadPoolFactory.threadPoolFactories.put(poolName, new ThreadPoolFactory(poolName, nThreads));
+      ThreadPoolFactory[] created = new ThreadPoolFactory[1];
+      ThreadPoolFactory threadPool = ThreadPoolFactory.threadPoolFactories.computeIfAbsent(poolName,
+          key -> created[0] = factory.get());
+      if (created[0] != null) {
+        LISTENERS.forEach(listener -> listener.accept(created[0]));
       }
-      return ThreadPoolFactory.threadPoolFactories.get(poolName);
+      return threadPool;
     }
   }
 }
-
-
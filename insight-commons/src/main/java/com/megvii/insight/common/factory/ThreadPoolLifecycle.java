@@ -0,0 +1,97 @@
+package com.megvii.insight.common.factory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.context.SmartLifecycle;
+
+/**
+ * Shuts the {@link ThreadPoolFactory} thread pools down gracefully when the application context stops,
+ * before the beans their tasks use are destroyed.
+ * <p>
+ * The pools are named JVM-wide and shared by every context asking for them, so they are only shut down by
+ * the last lifecycle running in the JVM to stop: a child context, or one of several test contexts, stopping
+ * leaves them to the others.
+ * </p>
+ *
+ * <pre>
+ *
+ *    e.g.
+ *
+ *    &#64;Bean
+ *    public ThreadPoolLifecycle threadPoolLifecycle() {
+ *      return new ThreadPoolLifecycle();
+ *    }
+ *
+ * </pre>
+ */
+public class ThreadPoolLifecycle implements SmartLifecycle {
+
+  /**
+   * Stopped early, while the components tasks depend on are still running.
+   */
+  public static final int PHASE = Integer.MAX_VALUE - 1000;
+
+  /**
+   * Lifecycles started and not stopped yet, in all the contexts of the JVM.
+   */
+  private static final AtomicInteger RUNNING = new AtomicInteger();
+
+  private volatile boolean running;
+
+  @Override
+  public synchronized void start() {
+    if (!running) {
+      running = true;
+      RUNNING.incrementAndGet();
+    }
+  }
+
+  /**
+   * Every pool stops accepting tasks first, then each is waited for within its shutdown timeout counted from
+   * the same start: stopping takes as long as the longest timeout, not their sum.
+   */
+  @Override
+  public synchronized void stop() {
+    if (!running) {
+      return;
+    }
+    running = false;
+    if (RUNNING.decrementAndGet() > 0) {
+      return;
+    }
+    List<ThreadPoolFactory> factories = new ArrayList<>(ThreadPoolFactory.getThreadPools());
+    long start = System.nanoTime();
+    for (ThreadPoolFactory factory : factories) {
+      factory.initiateShutdown();
+    }
+    for (ThreadPoolFactory factory : factories) {
+      factory.awaitShutdown(start);
+    }
+  }
+
+  @Override
+  public void stop(Runnable callback) {
+    try {
+      stop();
+    } finally {
+      callback.run();
+    }
+  }
+
+  @Override
+  public boolean isRunning() {
+    return running;
+  }
+
+  @Override
+  public boolean isAutoStartup() {
+    return true;
+  }
+
+  @Override
+  public int getPhase() {
+    return PHASE;
+  }
+}
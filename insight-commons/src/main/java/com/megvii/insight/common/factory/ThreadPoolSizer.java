@@ -0,0 +1,128 @@
+package com.megvii.insight.common.factory;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adjusts the core size of a thread pool within its bounds, from the queue wait, execution time and
+ * throughput observed over each interval.
+ * <p>
+ * By Little's law the threads busy on average are the throughput times the execution time, that is the
+ * execution time of the interval over its length: the pool is sized for them at {@link #UTILIZATION}. When
+ * the tasks waited longer than the target, the pool is saturated and its throughput is size / execution
+ * time, so reaching the target response time (wait + execution) takes the size times the ratio of the
+ * observed to the target response time. It grows at most twice and shrinks at most a quarter per interval.
+ * </p>
+ */
+final class ThreadPoolSizer implements Runnable {
+
+  /**
+   * Share of the pool busy on average, the rest absorbs bursts within an interval.
+   */
+  static final double UTILIZATION = 0.75;
+
+  private final MonitoredThreadPoolExecutor executor;
+
+  private final int minPoolSize;
+
+  private final int maxPoolSize;
+
+  private final long targetWaitNanos;
+
+  private final long intervalNanos;
+
+  private final ScheduledFuture<?> future;
+
+  private long lastTick;
+
+  private long lastWaitCount;
+
+  private long lastWaitNanos;
+
+  private long lastExecutionCount;
+
+  private long lastExecutionNanos;
+
+  ThreadPoolSizer(MonitoredThreadPoolExecutor executor, int minPoolSize, int maxPoolSize, long targetWaitNanos,
+      long intervalNanos) {
+    this.executor = executor;
+    this.minPoolSize = minPoolSize;
+    this.maxPoolSize = maxPoolSize;
+    this.targetWaitNanos = targetWaitNanos;
+    this.intervalNanos = intervalNanos;
+    this.lastTick = System.nanoTime();
+    this.future = Scheduler.INSTANCE.scheduleWithFixedDelay(this, intervalNanos, intervalNanos,
+        TimeUnit.NANOSECONDS);
+  }
+
+  void cancel() {
+    future.cancel(false);
+  }
+
+  /**
+   * Only run by the scheduler thread.
+   */
+  @Override
+  public void run() {
+    long now = System.nanoTime();
+    long waitCount = executor.getWaitCount();
+    long waitNanos = executor.getWaitTime(TimeUnit.NANOSECONDS);
+    long executionCount = executor.getExecutionCount();
+    long executionNanos = executor.getExecutionTime(TimeUnit.NANOSECONDS);
+    int current = executor.getCorePoolSize();
+    int size = size(current, minPoolSize, maxPoolSize, targetWaitNanos, now - lastTick,
+        waitCount - lastWaitCount, waitNanos - lastWaitNanos,
+        executionCount - lastExecutionCount, executionNanos - lastExecutionNanos,
+        executor.getActiveCount(), executor.getQueueSize());
+    if (size != current) {
+      executor.setCorePoolSize(size);
+    }
+    lastTick = now;
+    lastWaitCount = waitCount;
+    lastWaitNanos = waitNanos;
+    lastExecutionCount = executionCount;
+    lastExecutionNanos = executionNanos;
+  }
+
+  /**
+   * The next core size, from the tasks started and executed over the last interval.
+   */
+  static int size(int current, int min, int max, long targetWaitNanos, long intervalNanos,
+      long started, long waitNanos, long executed, long executionNanos, int active, int queued) {
+    int desired;
+    if (executed == 0) {
+      // nothing completed: idle, or the running tasks took the whole interval
+      desired = queued > 0 ? current * 2 : (int) Math.ceil(active / UTILIZATION);
+    } else {
+      double serviceNanos = (double) executionNanos / executed;
+      double meanWaitNanos = started == 0 ? 0 : (double) waitNanos / started;
+      if (meanWaitNanos > targetWaitNanos) {
+        desired = (int) Math.ceil(current * (meanWaitNanos + serviceNanos) / (targetWaitNanos + serviceNanos));
+      } else {
+        // tasks still running are not in the execution time yet
+        double busy = Math.max((double) executionNanos / intervalNanos, active);
+        desired = (int) Math.ceil(busy / UTILIZATION);
+      }
+    }
+    if (desired > current) {
+      desired = Math.min(desired, Math.max(current * 2, current + 1));
+    } else {
+      desired = Math.max(desired, current - Math.max(current / 4, 1));
+    }
+    return Math.max(min, Math.min(max, desired));
+  }
+
+  /**
+   * One daemon thread for the sizers of all pools, started with the first one.
+   */
+  private static final class Scheduler {
+
+    private static final ScheduledExecutorService INSTANCE = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "thread_pool_sizer");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+}
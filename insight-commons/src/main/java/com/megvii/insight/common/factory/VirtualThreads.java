@@ -0,0 +1,82 @@
+package com.megvii.insight.common.factory;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Virtual threads of Java 21 and later, looked up reflectively since the project is built for Java 8.
+ */
+final class VirtualThreads {
+
+  /**
+   * Thread.ofVirtual(), null before Java 21.
+   */
+  private static final MethodHandle OF_VIRTUAL;
+
+  /**
+   * Thread.Builder#name(String, long)
+   */
+  private static final MethodHandle NAME;
+
+  /**
+   * Thread.Builder#factory()
+   */
+  private static final MethodHandle FACTORY;
+
+  /**
+   * Executors.newThreadPerTaskExecutor(ThreadFactory)
+   */
+  private static final MethodHandle NEW_THREAD_PER_TASK_EXECUTOR;
+
+  static {
+    MethodHandle ofVirtual = null;
+    MethodHandle name = null;
+    MethodHandle factory = null;
+    MethodHandle newThreadPerTaskExecutor = null;
+    try {
+      MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+      Class<?> builder = Class.forName("java.lang.Thread$Builder");
+      Class<?> ofVirtualBuilder = Class.forName("java.lang.Thread$Builder$OfVirtual");
+      ofVirtual = lookup.findStatic(Thread.class, "ofVirtual", MethodType.methodType(ofVirtualBuilder));
+      name = lookup.findVirtual(ofVirtualBuilder, "name",
+          MethodType.methodType(ofVirtualBuilder, String.class, long.class));
+      factory = lookup.findVirtual(builder, "factory", MethodType.methodType(ThreadFactory.class));
+      newThreadPerTaskExecutor = lookup.findStatic(java.util.concurrent.Executors.class, "newThreadPerTaskExecutor",
+          MethodType.methodType(ExecutorService.class, ThreadFactory.class));
+    } catch (ReflectiveOperationException ex) {
+      ofVirtual = null;
+    }
+    OF_VIRTUAL = ofVirtual;
+    NAME = name;
+    FACTORY = factory;
+    NEW_THREAD_PER_TASK_EXECUTOR = newThreadPerTaskExecutor;
+  }
+
+  private VirtualThreads() {
+  }
+
+  static boolean isSupported() {
+    return OF_VIRTUAL != null;
+  }
+
+  /**
+   * A new virtual thread per task, named poolName_virtual_N.
+   */
+  static ExecutorService newThreadPerTaskExecutor(String poolName) {
+    if (!isSupported()) {
+      throw new UnsupportedOperationException("Virtual threads need Java 21 or later");
+    }
+    try {
+      Object builder = NAME.invoke(OF_VIRTUAL.invoke(), poolName + "_virtual_", 1L);
+      ThreadFactory factory = (ThreadFactory) FACTORY.invoke(builder);
+      return (ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR.invoke(factory);
+    } catch (RuntimeException | Error ex) {
+      throw ex;
+    } catch (Throwable ex) {
+      throw new IllegalStateException("Failed to create the virtual thread executor of " + poolName, ex);
+    }
+  }
+}
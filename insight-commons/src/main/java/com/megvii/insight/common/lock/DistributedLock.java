@@ -0,0 +1,23 @@
+package com.megvii.insight.common.lock;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Locks by key shared by every node of a service, held as {@link Lease}s that expire if their node dies.
+ */
+public interface DistributedLock {
+
+  /**
+   * 尝试获取租约，不等待
+   *
+   * @return 锁被占用时为null
+   */
+  Lease tryAcquire(String key);
+
+  /**
+   * 获取租约，最多等待timeout
+   *
+   * @return 超时未获得锁时为null
+   */
+  Lease acquire(String key, long timeout, TimeUnit unit) throws InterruptedException;
+}
@@ -0,0 +1,81 @@
+package com.megvii.insight.common.lock;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * A lock per key, created on first use and removed once no thread holds or waits for it.
+ */
+final class ExactKeyedLock<K> implements KeyedLock<K> {
+
+  private final LockEntries<K> entries;
+
+  private final boolean write;
+
+  ExactKeyedLock(LockEntries<K> entries, boolean write) {
+    this.entries = entries;
+    this.write = write;
+  }
+
+  @Override
+  public Locked lock(K key) {
+    Lock lock = retain(key);
+    lock.lock();
+    return locked(key, lock);
+  }
+
+  @Override
+  public Locked lockInterruptibly(K key) throws InterruptedException {
+    Lock lock = retain(key);
+    try {
+      lock.lockInterruptibly();
+    } catch (InterruptedException ex) {
+      entries.release(key);
+      throw ex;
+    }
+    return locked(key, lock);
+  }
+
+  @Override
+  public Locked tryLock(K key) {
+    Lock lock = retain(key);
+    if (!lock.tryLock()) {
+      entries.release(key);
+      return null;
+    }
+    return locked(key, lock);
+  }
+
+  @Override
+  public Locked tryLock(K key, long timeout, TimeUnit unit) throws InterruptedException {
+    Lock lock = retain(key);
+    boolean acquired = false;
+    try {
+      acquired = lock.tryLock(timeout, unit);
+    } finally {
+      if (!acquired) {
+        entries.release(key);
+      }
+    }
+    return acquired ? locked(key, lock) : null;
+  }
+
+  /**
+   * Entries of the keys locked or waited for.
+   */
+  int size() {
+    return entries.size();
+  }
+
+  private Lock retain(K key) {
+    LockEntries.Entry entry = entries.retain(key);
+    return write ? entry.write : entry.read;
+  }
+
+  private Locked locked(K key, Lock lock) {
+    return () -> {
+      lock.unlock();
+      entries.release(key);
+    };
+  }
+}
@@ -0,0 +1,38 @@
+package com.megvii.insight.common.lock;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-process locks by key, e.g. to serialize the work on one user or role, created by {@link KeyedLocks}.
+ * <p>
+ * Locks are reentrant: a thread holding the lock of a key may take it again, and releases it as many times.
+ * </p>
+ *
+ * @param <K> key type, with equals and hashCode
+ */
+public interface KeyedLock<K> {
+
+  /**
+   * 加锁，等待直到获得锁
+   */
+  Locked lock(K key);
+
+  /**
+   * 加锁，等待直到获得锁或被中断
+   */
+  Locked lockInterruptibly(K key) throws InterruptedException;
+
+  /**
+   * 尝试加锁，不等待
+   *
+   * @return 未获得锁时为null
+   */
+  Locked tryLock(K key);
+
+  /**
+   * 尝试加锁，最多等待timeout
+   *
+   * @return 超时未获得锁时为null
+   */
+  Locked tryLock(K key, long timeout, TimeUnit unit) throws InterruptedException;
+}
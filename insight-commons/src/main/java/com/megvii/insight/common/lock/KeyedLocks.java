@@ -0,0 +1,120 @@
+package com.megvii.insight.common.lock;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Keyed Lock Factory
+ * <p>
+ * Instead of synchronized on interned strings, or a map of locks growing with every key ever seen:
+ * </p>
+ *
+ * <pre>
+ *
+ *    e.g.
+ *
+ *    private static final KeyedLock&lt;Long&gt; USER_LOCKS = KeyedLocks.exact();
+ *
+ *    try (Locked ignored = USER_LOCKS.lock(userId)) {
+ *      ...
+ *    }
+ *
+ *    Locked locked = USER_LOCKS.tryLock(userId, 100, TimeUnit.MILLISECONDS);
+ *    if (locked == null) {
+ *      throw new IllegalStateException("user " + userId + " is busy");
+ *    }
+ *    try {
+ *      ...
+ *    } finally {
+ *      locked.close();
+ *    }
+ *
+ * </pre>
+ * <p>
+ * Striped locks take no memory per key but serialize the keys sharing a stripe; exact locks only make the same
+ * key wait, and take a map entry only while the key is locked or waited for.
+ * </p>
+ */
+public final class KeyedLocks {
+
+  private static final int MAXIMUM_STRIPES = 1 << 30;
+
+  private KeyedLocks() {
+  }
+
+  /**
+   * 分段锁，stripes取整为2的幂
+   */
+  public static <K> KeyedLock<K> striped(int stripes) {
+    Lock[] locks = new Lock[stripes(stripes)];
+    for (int i = 0; i < locks.length; i++) {
+      locks[i] = new ReentrantLock();
+    }
+    return new StripedKeyedLock<>(locks);
+  }
+
+  /**
+   * 分段读写锁，stripes取整为2的幂
+   */
+  public static <K> KeyedReadWriteLock<K> stripedReadWrite(int stripes) {
+    Lock[] readLocks = new Lock[stripes(stripes)];
+    Lock[] writeLocks = new Lock[readLocks.length];
+    for (int i = 0; i < readLocks.length; i++) {
+      ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+      readLocks[i] = lock.readLock();
+      writeLocks[i] = lock.writeLock();
+    }
+    return new ReadWrite<>(new StripedKeyedLock<>(readLocks), new StripedKeyedLock<>(writeLocks));
+  }
+
+  /**
+   * 按key精确加锁，无人持有或等待时回收
+   */
+  public static <K> KeyedLock<K> exact() {
+    return new ExactKeyedLock<>(new LockEntries<>(() -> {
+      ReentrantLock lock = new ReentrantLock();
+      return new LockEntries.Entry(lock, lock);
+    }), true);
+  }
+
+  /**
+   * 按key精确加读写锁，无人持有或等待时回收
+   */
+  public static <K> KeyedReadWriteLock<K> exactReadWrite() {
+    LockEntries<K> entries = new LockEntries<>(() -> {
+      ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+      return new LockEntries.Entry(lock.readLock(), lock.writeLock());
+    });
+    return new ReadWrite<>(new ExactKeyedLock<>(entries, false), new ExactKeyedLock<>(entries, true));
+  }
+
+  private static int stripes(int stripes) {
+    if (stripes <= 0 || stripes > MAXIMUM_STRIPES) {
+      throw new IllegalArgumentException("Illegal stripes: " + stripes);
+    }
+    return stripes == 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+  }
+
+  private static final class ReadWrite<K> implements KeyedReadWriteLock<K> {
+
+    private final KeyedLock<K> readLock;
+
+    private final KeyedLock<K> writeLock;
+
+    private ReadWrite(KeyedLock<K> readLock, KeyedLock<K> writeLock) {
+      this.readLock = readLock;
+      this.writeLock = writeLock;
+    }
+
+    @Override
+    public KeyedLock<K> readLock() {
+      return readLock;
+    }
+
+    @Override
+    public KeyedLock<K> writeLock() {
+      return writeLock;
+    }
+  }
+}
@@ -0,0 +1,13 @@
+package com.megvii.insight.common.lock;
+
+/**
+ * Read and write locks by key: any number of readers of a key, or a single writer.
+ *
+ * @param <K> key type, with equals and hashCode
+ */
+public interface KeyedReadWriteLock<K> {
+
+  KeyedLock<K> readLock();
+
+  KeyedLock<K> writeLock();
+}
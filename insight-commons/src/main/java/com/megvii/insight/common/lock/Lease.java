@@ -0,0 +1,23 @@
+package com.megvii.insight.common.lock;
+
+/**
+ * A distributed lock held until {@link #close()}, or until it expires after its node failed to renew it.
+ * <p>
+ * A paused or partitioned node may still believe it holds an expired lease: writes guarded by the lock should
+ * carry the {@link #getToken() fencing token}, and the storage reject a token lower than one it has seen.
+ * </p>
+ */
+public interface Lease extends Locked {
+
+  String getKey();
+
+  /**
+   * 防护令牌，同一key每次获取递增
+   */
+  long getToken();
+
+  /**
+   * 租约仍在有效期内且未被释放
+   */
+  boolean isValid();
+}
@@ -0,0 +1,62 @@
+package com.megvii.insight.common.lock;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Supplier;
+
+/**
+ * One lock per key, counting the threads holding or waiting for it; a key is removed from the map when its
+ * count drops to zero, so only the keys in use take memory.
+ * <p>
+ * Counts are only changed in compute of the map, under the lock of the key's bin.
+ * </p>
+ */
+final class LockEntries<K> {
+
+  private final ConcurrentHashMap<K, Entry> entries = new ConcurrentHashMap<>();
+
+  private final Supplier<Entry> factory;
+
+  LockEntries(Supplier<Entry> factory) {
+    this.factory = factory;
+  }
+
+  Entry retain(K key) {
+    return entries.compute(Objects.requireNonNull(key, "key"), (k, entry) -> {
+      if (entry == null) {
+        entry = factory.get();
+      }
+      entry.references++;
+      return entry;
+    });
+  }
+
+  void release(K key) {
+    entries.computeIfPresent(key, (k, entry) -> --entry.references == 0 ? null : entry);
+  }
+
+  /**
+   * Keys locked or waited for.
+   */
+  int size() {
+    return entries.size();
+  }
+
+  /**
+   * The locks of a key, the same one unless read/write.
+   */
+  static final class Entry {
+
+    final Lock read;
+
+    final Lock write;
+
+    private int references;
+
+    Entry(Lock read, Lock write) {
+      this.read = read;
+      this.write = write;
+    }
+  }
+}
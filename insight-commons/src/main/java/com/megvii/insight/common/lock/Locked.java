@@ -0,0 +1,22 @@
+package com.megvii.insight.common.lock;
+
+/**
+ * A held lock, released by {@link #close()}, for try-with-resources.
+ *
+ * <pre>
+ *
+ *    try (Locked ignored = locks.lock(userId)) {
+ *      ...
+ *    }
+ *
+ * </pre>
+ */
+@FunctionalInterface
+public interface Locked extends AutoCloseable {
+
+  /**
+   * 释放锁，只能调用一次
+   */
+  @Override
+  void close();
+}
@@ -0,0 +1,443 @@
+package com.megvii.insight.common.lock;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+import javax.sql.DataSource;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * PostgreSQL Lease Lock
+ * <p>
+ * A lease is a row of the lease table, owned by this instance until it expires, renewed by a background thread
+ * every renewInterval. The row keeps the fencing token of the key, incremented by each acquisition, so it is
+ * never deleted. A single statement takes the lease: pg_try_advisory_xact_lock on a hash of the key lets one
+ * node at a time update the row, the others give up right away instead of queueing on the row lock. Expiry is
+ * computed by the database clock, the node only trusts a lease for leaseTime after its last renewal started.
+ * </p>
+ * <p>
+ * Threads of this node waiting for the same key queue on a {@link KeyedLocks#exact() local lock}: only the one
+ * at the head polls the database, every retryInterval, the others take their turn without a query. Leases are
+ * not reentrant, and must be closed by the thread that acquired them.
+ * </p>
+ *
+ * <pre>
+ *
+ *    e.g.
+ *
+ *    PostgresLeaseLock locks = PostgresLeaseLock.builder(dataSource)
+ *        .leaseTime(30, TimeUnit.SECONDS)
+ *        .build();
+ *    locks.createTable();
+ *
+ *    try (Lease lease = locks.acquire("role:" + roleId, 5, TimeUnit.SECONDS)) {
+ *      if (lease == null) {
+ *        throw new IllegalStateException("role " + roleId + " is busy");
+ *      }
+ *      roleRepository.update(role, lease.getToken());
+ *    }
+ *
+ * </pre>
+ */
+public class PostgresLeaseLock implements DistributedLock {
+
+  private static final Log log = LogFactory.getLog(PostgresLeaseLock.class);
+
+  private static final Pattern TABLE_NAME = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*(\\.[A-Za-z_][A-Za-z0-9_]*)?");
+
+  private static final int MAXIMUM_KEY_LENGTH = 255;
+
+  private final DataSource dataSource;
+
+  private final String table;
+
+  private final String owner;
+
+  private final long leaseMillis;
+
+  private final long renewNanos;
+
+  private final long retryNanos;
+
+  private final String acquireSql;
+
+  private final String renewSql;
+
+  private final String releaseSql;
+
+  private final KeyedLock<String> localLocks = KeyedLocks.exact();
+
+  private final ConcurrentHashMap<String, PostgresLease> leases = new ConcurrentHashMap<>();
+
+  private final LongAdder queries = new LongAdder();
+
+  private PostgresLeaseLock(Builder builder) {
+    this.dataSource = builder.dataSource;
+    this.table = builder.table;
+    this.owner = builder.owner;
+    this.leaseMillis = builder.leaseMillis;
+    this.renewNanos = TimeUnit.MILLISECONDS.toNanos(builder.renewMillis);
+    this.retryNanos = TimeUnit.MILLISECONDS.toNanos(builder.retryMillis);
+    this.acquireSql = "WITH advisory AS (SELECT pg_try_advisory_xact_lock(?) AS locked) "
+        + "INSERT INTO " + table + " AS lease (lock_key, owner, token, expires_at) "
+        + "SELECT ?, ?, 1, now() + ? * INTERVAL '1 millisecond' FROM advisory WHERE locked "
+        + "ON CONFLICT (lock_key) DO UPDATE "
+        + "SET owner = EXCLUDED.owner, token = lease.token + 1, expires_at = EXCLUDED.expires_at "
+        + "WHERE lease.expires_at <= now() "
+        + "RETURNING token";
+    this.renewSql = "UPDATE " + table + " SET expires_at = now() + ? * INTERVAL '1 millisecond' "
+        + "WHERE lock_key = ? AND owner = ? AND token = ? AND expires_at > now()";
+    this.releaseSql = "UPDATE " + table + " SET expires_at = now() "
+        + "WHERE lock_key = ? AND owner = ? AND token = ?";
+  }
+
+  public static Builder builder(DataSource dataSource) {
+    return new Builder(dataSource);
+  }
+
+  /**
+   * 创建租约表（如不存在）
+   */
+  public void createTable() {
+    try (Connection connection = dataSource.getConnection();
+        PreparedStatement statement = connection.prepareStatement("CREATE TABLE IF NOT EXISTS " + table + " ("
+            + "lock_key VARCHAR(" + MAXIMUM_KEY_LENGTH + ") PRIMARY KEY, "
+            + "owner VARCHAR(255) NOT NULL, "
+            + "token BIGINT NOT NULL, "
+            + "expires_at TIMESTAMP WITH TIME ZONE NOT NULL)")) {
+      statement.execute();
+      commit(connection);
+    } catch (SQLException ex) {
+      throw new IllegalStateException("Failed to create lease table " + table, ex);
+    }
+  }
+
+  @Override
+  public Lease tryAcquire(String key) {
+    Locked local = localLocks.tryLock(checkKey(key));
+    if (local == null) {
+      return null;
+    }
+    PostgresLease lease = null;
+    try {
+      checkNotHeld(key);
+      lease = lease(key, local);
+      return lease;
+    } finally {
+      if (lease == null) {
+        local.close();
+      }
+    }
+  }
+
+  @Override
+  public Lease acquire(String key, long timeout, TimeUnit unit) throws InterruptedException {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    Locked local = localLocks.tryLock(checkKey(key), timeout, unit);
+    if (local == null) {
+      return null;
+    }
+    PostgresLease lease = null;
+    try {
+      checkNotHeld(key);
+      while ((lease = lease(key, local)) == null) {
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+          return null;
+        }
+        // jittered, so nodes polling the same key spread their queries
+        long retry = retryNanos / 2 + ThreadLocalRandom.current().nextLong(retryNanos + 1);
+        TimeUnit.NANOSECONDS.sleep(Math.min(remaining, retry));
+      }
+      return lease;
+    } finally {
+      if (lease == null) {
+        local.close();
+      }
+    }
+  }
+
+  /**
+   * Statements run against the database, to compare with the acquisitions.
+   */
+  public long getQueryCount() {
+    return queries.sum();
+  }
+
+  public String getOwner() {
+    return owner;
+  }
+
+  private static String checkKey(String key) {
+    Objects.requireNonNull(key, "key");
+    if (key.length() > MAXIMUM_KEY_LENGTH) {
+      throw new IllegalArgumentException("Lock key longer than " + MAXIMUM_KEY_LENGTH + ": " + key);
+    }
+    return key;
+  }
+
+  /**
+   * Holding the local lock of the key, a lease in the map is the current thread's.
+   */
+  private void checkNotHeld(String key) {
+    if (leases.containsKey(key)) {
+      throw new IllegalStateException("Lease of " + key + " is already held by this thread");
+    }
+  }
+
+  /**
+   * One attempt to take the lease in the database.
+   *
+   * @return null when another owner holds it
+   */
+  private PostgresLease lease(String key, Locked local) {
+    long start = System.nanoTime();
+    Long token;
+    try (Connection connection = dataSource.getConnection();
+        PreparedStatement statement = connection.prepareStatement(acquireSql)) {
+      statement.setLong(1, advisoryKey(key));
+      statement.setString(2, key);
+      statement.setString(3, owner);
+      statement.setLong(4, leaseMillis);
+      queries.increment();
+      try (ResultSet resultSet = statement.executeQuery()) {
+        token = resultSet.next() ? resultSet.getLong(1) : null;
+      }
+      commit(connection);
+    } catch (SQLException ex) {
+      throw new IllegalStateException("Failed to acquire lease of " + key, ex);
+    }
+    if (token == null) {
+      return null;
+    }
+    PostgresLease lease = new PostgresLease(key, token, local, start + TimeUnit.MILLISECONDS.toNanos(leaseMillis));
+    leases.put(key, lease);
+    lease.renewal = Renewal.SCHEDULER.scheduleWithFixedDelay(lease::renew, renewNanos, renewNanos,
+        TimeUnit.NANOSECONDS);
+    return lease;
+  }
+
+  private int update(String sql, Object... parameters) throws SQLException {
+    try (Connection connection = dataSource.getConnection();
+        PreparedStatement statement = connection.prepareStatement(sql)) {
+      for (int i = 0; i < parameters.length; i++) {
+        statement.setObject(i + 1, parameters[i]);
+      }
+      queries.increment();
+      int updated = statement.executeUpdate();
+      commit(connection);
+      return updated;
+    }
+  }
+
+  private static void commit(Connection connection) throws SQLException {
+    if (!connection.getAutoCommit()) {
+      connection.commit();
+    }
+  }
+
+  /**
+   * 64 bit FNV-1a of the table and key, the advisory lock id space is shared by the whole database.
+   */
+  private long advisoryKey(String key) {
+    long hash = 0xcbf29ce484222325L;
+    for (byte b : (table + '\0' + key).getBytes(StandardCharsets.UTF_8)) {
+      hash ^= b & 0xff;
+      hash *= 0x100000001b3L;
+    }
+    return hash;
+  }
+
+  private final class PostgresLease implements Lease {
+
+    private final String key;
+
+    private final long token;
+
+    private final Locked local;
+
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    private volatile long validUntil;
+
+    private volatile boolean lost;
+
+    private volatile ScheduledFuture<?> renewal;
+
+    private PostgresLease(String key, long token, Locked local, long validUntil) {
+      this.key = key;
+      this.token = token;
+      this.local = local;
+      this.validUntil = validUntil;
+    }
+
+    @Override
+    public String getKey() {
+      return key;
+    }
+
+    @Override
+    public long getToken() {
+      return token;
+    }
+
+    @Override
+    public boolean isValid() {
+      return !lost && !closed.get() && System.nanoTime() - validUntil < 0;
+    }
+
+    /**
+     * Run by the renewal thread.
+     */
+    private void renew() {
+      long start = System.nanoTime();
+      try {
+        if (update(renewSql, leaseMillis, key, owner, token) == 1) {
+          validUntil = start + TimeUnit.MILLISECONDS.toNanos(leaseMillis);
+          return;
+        }
+        if (!closed.get()) {
+          log.warn("Lease of " + key + " with token " + token + " expired before its renewal");
+        }
+      } catch (SQLException ex) {
+        if (start - validUntil < 0) {
+          log.warn("Failed to renew lease of " + key + ", retrying", ex);
+          return;
+        }
+        log.warn("Failed to renew lease of " + key + " before it expired", ex);
+      }
+      lost = true;
+      renewal.cancel(false);
+    }
+
+    @Override
+    public void close() {
+      if (!closed.compareAndSet(false, true)) {
+        return;
+      }
+      renewal.cancel(false);
+      leases.remove(key, this);
+      try {
+        if (!lost) {
+          update(releaseSql, key, owner, token);
+        }
+      } catch (SQLException ex) {
+        log.warn("Failed to release lease of " + key + ", it expires in " + leaseMillis + "ms", ex);
+      } finally {
+        local.close();
+      }
+    }
+
+    @Override
+    public String toString() {
+      return "Lease(" + key + ", " + token + ")";
+    }
+  }
+
+  /**
+   * One daemon thread renewing the leases of all instances, started with the first lease.
+   */
+  private static final class Renewal {
+
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "lease_renewal");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  public static class Builder {
+
+    private final DataSource dataSource;
+
+    private String table = "insight_lock_lease";
+
+    private String owner = ManagementFactory.getRuntimeMXBean().getName() + ":" + UUID.randomUUID();
+
+    private long leaseMillis = TimeUnit.SECONDS.toMillis(30L);
+
+    private long renewMillis = -1L;
+
+    private long retryMillis = 100L;
+
+    private Builder(DataSource dataSource) {
+      this.dataSource = Objects.requireNonNull(dataSource, "dataSource");
+    }
+
+    /**
+     * Lease table, optionally qualified by its schema.
+     */
+    public Builder table(String table) {
+      this.table = table;
+      return this;
+    }
+
+    /**
+     * Unique to this instance, pid@hostname and a random UUID by default.
+     */
+    public Builder owner(String owner) {
+      this.owner = owner;
+      return this;
+    }
+
+    /**
+     * How long a lease outlives its last renewal, when its node is gone.
+     */
+    public Builder leaseTime(long leaseTime, TimeUnit unit) {
+      this.leaseMillis = unit.toMillis(leaseTime);
+      return this;
+    }
+
+    /**
+     * A third of the lease time by default.
+     */
+    public Builder renewInterval(long renewInterval, TimeUnit unit) {
+      this.renewMillis = unit.toMillis(renewInterval);
+      return this;
+    }
+
+    /**
+     * Mean delay between two attempts of {@link PostgresLeaseLock#acquire(String, long, TimeUnit)}.
+     */
+    public Builder retryInterval(long retryInterval, TimeUnit unit) {
+      this.retryMillis = unit.toMillis(retryInterval);
+      return this;
+    }
+
+    public PostgresLeaseLock build() {
+      if (table == null || !TABLE_NAME.matcher(table).matches()) {
+        throw new IllegalArgumentException("Illegal lease table: " + table);
+      }
+      if (owner == null || owner.isEmpty() || owner.length() > 255) {
+        throw new IllegalArgumentException("Illegal lease owner: " + owner);
+      }
+      if (renewMillis < 0) {
+        renewMillis = leaseMillis / 3;
+      }
+      if (renewMillis <= 0 || renewMillis >= leaseMillis) {
+        throw new IllegalArgumentException("Illegal lease time " + leaseMillis + "ms or renew interval "
+            + renewMillis + "ms");
+      }
+      if (retryMillis <= 0) {
+        throw new IllegalArgumentException("Illegal retry interval: " + retryMillis + "ms");
+      }
+      return new PostgresLeaseLock(this);
+    }
+  }
+}
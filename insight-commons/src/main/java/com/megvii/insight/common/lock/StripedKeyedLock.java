@@ -0,0 +1,56 @@
+package com.megvii.insight.common.lock;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Keys hashed onto a fixed array of locks, so the memory is bounded whatever the number of keys, at the cost of
+ * unrelated keys sharing a stripe waiting for each other.
+ */
+final class StripedKeyedLock<K> implements KeyedLock<K> {
+
+  private final Lock[] stripes;
+
+  private final int mask;
+
+  /**
+   * @param stripes as many as a power of two
+   */
+  StripedKeyedLock(Lock[] stripes) {
+    this.stripes = stripes;
+    this.mask = stripes.length - 1;
+  }
+
+  @Override
+  public Locked lock(K key) {
+    Lock lock = stripe(key);
+    lock.lock();
+    return lock::unlock;
+  }
+
+  @Override
+  public Locked lockInterruptibly(K key) throws InterruptedException {
+    Lock lock = stripe(key);
+    lock.lockInterruptibly();
+    return lock::unlock;
+  }
+
+  @Override
+  public Locked tryLock(K key) {
+    Lock lock = stripe(key);
+    return lock.tryLock() ? lock::unlock : null;
+  }
+
+  @Override
+  public Locked tryLock(K key, long timeout, TimeUnit unit) throws InterruptedException {
+    Lock lock = stripe(key);
+    return lock.tryLock(timeout, unit) ? lock::unlock : null;
+  }
+
+  private Lock stripe(K key) {
+    int hash = Objects.requireNonNull(key, "key").hashCode();
+    // like HashMap, the high bits of poor hashes still pick the stripe
+    return stripes[(hash ^ (hash >>> 16)) & mask];
+  }
+}
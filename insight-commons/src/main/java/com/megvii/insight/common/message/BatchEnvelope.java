@@ -0,0 +1,61 @@
+package com.megvii.insight.common.message;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Many messages in one broker record: magic, count, then the length and bytes of each message, big-endian ints.
+ * <p>
+ * Records without the magic, e.g. sent by KafkaTemplate, are decoded as a single message.
+ * </p>
+ */
+final class BatchEnvelope {
+
+  /**
+   * "IMB" and version 1.
+   */
+  static final int MAGIC = 0x494d4201;
+
+  static final int HEADER_SIZE = 8;
+
+  private BatchEnvelope() {
+  }
+
+  static void writeHeader(ByteOutput out) {
+    out.writeInt(MAGIC);
+    out.writeInt(0);
+  }
+
+  static void append(ByteOutput out, byte[] message, int length) {
+    out.writeInt(length);
+    out.write(message, 0, length);
+  }
+
+  static void seal(ByteOutput out, int count) {
+    out.setInt(4, count);
+  }
+
+  static <T> List<T> decode(byte[] value, MessageCodec codec, Class<T> type) throws IOException {
+    if (value == null) {
+      return Collections.emptyList();
+    }
+    if (value.length < HEADER_SIZE || ByteOutput.getInt(value, 0) != MAGIC) {
+      return Collections.singletonList(codec.decode(value, 0, value.length, type));
+    }
+    int count = ByteOutput.getInt(value, 4);
+    List<T> messages = new ArrayList<>(count);
+    int position = HEADER_SIZE;
+    for (int i = 0; i < count; i++) {
+      int length = position + 4 <= value.length ? ByteOutput.getInt(value, position) : -1;
+      position += 4;
+      if (length < 0 || position + length > value.length) {
+        throw new IOException("Corrupt batch envelope at message " + i + " of " + count);
+      }
+      messages.add(codec.decode(value, position, length, type));
+      position += length;
+    }
+    return messages;
+  }
+}
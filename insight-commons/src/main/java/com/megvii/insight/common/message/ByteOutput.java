@@ -0,0 +1,70 @@
+package com.megvii.insight.common.message;
+
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Unsynchronized ByteArrayOutputStream over a given, possibly pooled, array, grown by copy when full.
+ */
+final class ByteOutput extends OutputStream {
+
+  private byte[] buffer;
+
+  private int count;
+
+  ByteOutput(byte[] buffer) {
+    this.buffer = buffer;
+  }
+
+  @Override
+  public void write(int b) {
+    ensureCapacity(count + 1);
+    buffer[count++] = (byte) b;
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) {
+    ensureCapacity(count + len);
+    System.arraycopy(b, off, buffer, count, len);
+    count += len;
+  }
+
+  void writeInt(int value) {
+    ensureCapacity(count + 4);
+    setInt(count, value);
+    count += 4;
+  }
+
+  void setInt(int position, int value) {
+    buffer[position] = (byte) (value >>> 24);
+    buffer[position + 1] = (byte) (value >>> 16);
+    buffer[position + 2] = (byte) (value >>> 8);
+    buffer[position + 3] = (byte) value;
+  }
+
+  static int getInt(byte[] bytes, int position) {
+    return (bytes[position] & 0xff) << 24 | (bytes[position + 1] & 0xff) << 16
+        | (bytes[position + 2] & 0xff) << 8 | bytes[position + 3] & 0xff;
+  }
+
+  /**
+   * The current array, another one than given once grown.
+   */
+  byte[] array() {
+    return buffer;
+  }
+
+  int size() {
+    return count;
+  }
+
+  void reset() {
+    count = 0;
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity > buffer.length) {
+      buffer = Arrays.copyOf(buffer, Math.max(capacity, buffer.length * 2));
+    }
+  }
+}
@@ -0,0 +1,478 @@
+package com.megvii.insight.common.message;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import com.megvii.insight.common.util.BufferPool;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.KafkaMessageListenerContainer;
+import org.springframework.kafka.listener.MessageListener;
+import org.springframework.kafka.listener.config.ContainerProperties;
+
+/**
+ * Kafka Message Transport
+ * <p>
+ * Messages of a topic are batched into one Kafka record, a {@link BatchEnvelope}, sent when it reaches batchSize
+ * bytes or lingered for linger since its first message, so the producer handles a record, a callback and a
+ * request per batch instead of per message. Messages are serialized by the publishing threads, then copied
+ * into the batch, a pooled array, which is copied once more into the record when sent. Until acknowledged,
+ * the bytes of the messages count against maxInFlightBytes: publishing blocks when they are exhausted, and
+ * fails after maxBlock. Once closed, publishing fails at once, and the messages published before are sent.
+ * </p>
+ * <p>
+ * Batches are sent without key, spread over the partitions: messages of a topic are only ordered within a
+ * batch. Subscribers decode the batches, and records of plain KafkaTemplate producers as single messages.
+ * </p>
+ *
+ * <pre>
+ *
+ *    e.g.
+ *
+ *    KafkaMessageTransport transport = KafkaMessageTransport.builder(producerConfigs)
+ *        .consumer(consumerConfigs)
+ *        .codec(jsonCodec)
+ *        .batchSize(64 * 1024)
+ *        .linger(5, TimeUnit.MILLISECONDS)
+ *        .build();
+ *
+ *    transport.publish("audit", event);
+ *
+ *    transport.subscribe("audit", AuditEvent.class, events -&gt; auditRepository.saveAll(events));
+ *
+ * </pre>
+ */
+public class KafkaMessageTransport implements MessageTransport, PublisherMetrics, AutoCloseable {
+
+  private final DefaultKafkaProducerFactory<String, byte[]> producerFactory;
+
+  private final KafkaTemplate<String, byte[]> template;
+
+  private final DefaultKafkaConsumerFactory<String, byte[]> consumerFactory;
+
+  private final MessageCodec codec;
+
+  private final int batchSize;
+
+  private final long lingerNanos;
+
+  private final int maxInFlightBytes;
+
+  private final long maxBlockNanos;
+
+  private final Semaphore inFlight;
+
+  private final BufferPool buffers;
+
+  private final ThreadLocal<ByteOutput> serialized;
+
+  private final ConcurrentHashMap<String, Accumulator> accumulators = new ConcurrentHashMap<>();
+
+  private final Set<KafkaMessageListenerContainer<String, byte[]>> containers = new CopyOnWriteArraySet<>();
+
+  private final ScheduledExecutorService linger;
+
+  private final LongAdder messages = new LongAdder();
+
+  private final LongAdder failed = new LongAdder();
+
+  private final List<BatchListener> listeners = new CopyOnWriteArrayList<>();
+
+  /**
+   * Publishing threads past the closed check, waited for by close.
+   */
+  private final AtomicInteger publishing = new AtomicInteger();
+
+  private volatile boolean closed;
+
+  private KafkaMessageTransport(Builder builder) {
+    this.producerFactory = new DefaultKafkaProducerFactory<>(builder.producerConfigs, new StringSerializer(),
+        new ByteArraySerializer());
+    this.template = new KafkaTemplate<>(producerFactory);
+    this.consumerFactory = builder.consumerConfigs == null ? null : new DefaultKafkaConsumerFactory<>(
+        builder.consumerConfigs, new StringDeserializer(), new ByteArrayDeserializer());
+    this.codec = builder.codec;
+    this.batchSize = builder.batchSize;
+    this.lingerNanos = builder.lingerNanos;
+    this.maxInFlightBytes = builder.maxInFlightBytes;
+    this.maxBlockNanos = builder.maxBlockNanos;
+    this.inFlight = new Semaphore(builder.maxInFlightBytes);
+    // batches are back in the pool once sent, one per topic being filled and a few being sent at a time
+    this.buffers = new BufferPool(builder.batchSize, Runtime.getRuntime().availableProcessors() * 2);
+    this.serialized = ThreadLocal.withInitial(() -> new ByteOutput(new byte[1024]));
+    this.linger = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "message_linger");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  public static Builder builder(Map<String, Object> producerConfigs) {
+    return new Builder(producerConfigs);
+  }
+
+  @Override
+  public CompletableFuture<Void> publish(String topic, Object message) {
+    Objects.requireNonNull(topic, "topic");
+    if (closed) {
+      throw closed(topic);
+    }
+    ByteOutput out = serialized.get();
+    out.reset();
+    try {
+      codec.encode(message, out);
+    } catch (IOException ex) {
+      throw new UncheckedIOException("Failed to encode message of " + topic, ex);
+    }
+    int size = out.size() + 4;
+    if (size > maxInFlightBytes) {
+      throw new IllegalArgumentException("Message of " + topic + " larger than maxInFlightBytes: " + size);
+    }
+    acquire(topic, size);
+    publishing.incrementAndGet();
+    try {
+      if (closed) {
+        inFlight.release(size);
+        throw closed(topic);
+      }
+      CompletableFuture<Void> future = new CompletableFuture<>();
+      Accumulator accumulator = accumulators.computeIfAbsent(topic, key -> new Accumulator());
+      Batch sealed = null;
+      Batch full = null;
+      synchronized (accumulator) {
+        Batch batch = accumulator.batch;
+        if (batch != null && batch.out.size() + size > batchSize) {
+          // only a message larger than a batch grows its pooled array
+          sealed = batch;
+          batch = null;
+        }
+        if (batch == null) {
+          batch = new Batch(topic, buffers.take());
+          accumulator.batch = batch;
+          Batch lingering = batch;
+          linger.schedule(() -> linger(accumulator, lingering), lingerNanos, TimeUnit.NANOSECONDS);
+        }
+        batch.append(out, size, future);
+        if (batch.out.size() >= batchSize) {
+          accumulator.batch = null;
+          full = batch;
+        }
+      }
+      if (out.array().length > batchSize) {
+        // not kept from an unusually large message
+        serialized.remove();
+      }
+      if (sealed != null) {
+        send(sealed);
+      }
+      if (full != null) {
+        send(full);
+      }
+      return future;
+    } finally {
+      publishing.decrementAndGet();
+    }
+  }
+
+  /**
+   * 立即发送所有未满的批次，并等待发送完成
+   */
+  public void flush() {
+    for (Accumulator accumulator : accumulators.values()) {
+      Batch batch;
+      synchronized (accumulator) {
+        batch = accumulator.batch;
+        accumulator.batch = null;
+      }
+      if (batch != null) {
+        send(batch);
+      }
+    }
+    template.flush();
+  }
+
+  @Override
+  public <T> Subscription subscribe(String topic, Class<T> type, MessageHandler<T> handler) {
+    if (consumerFactory == null) {
+      throw new IllegalStateException("No consumer configs to subscribe to " + topic);
+    }
+    ContainerProperties properties = new ContainerProperties(topic);
+    properties.setMessageListener((MessageListener<String, byte[]>) record -> {
+      List<T> batch;
+      try {
+        batch = BatchEnvelope.decode(record.value(), codec, type);
+      } catch (IOException ex) {
+        throw new UncheckedIOException("Failed to decode record of " + topic + " at offset " + record.offset(), ex);
+      }
+      try {
+        handler.handle(batch);
+      } catch (RuntimeException ex) {
+        throw ex;
+      } catch (Exception ex) {
+        throw new IllegalStateException("Failed to handle messages of " + topic, ex);
+      }
+    });
+    KafkaMessageListenerContainer<String, byte[]> container = new KafkaMessageListenerContainer<>(consumerFactory,
+        properties);
+    container.setBeanName("message_" + topic);
+    containers.add(container);
+    container.start();
+    return () -> {
+      containers.remove(container);
+      container.stop();
+    };
+  }
+
+  /**
+   * 发送未满的批次，取消订阅并关闭生产者
+   */
+  @Override
+  public synchronized void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    containers.forEach(KafkaMessageListenerContainer::stop);
+    containers.clear();
+    // the batches they fill or send are either sent by them, or left for the flush
+    while (publishing.get() > 0) {
+      LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1L));
+    }
+    linger.shutdownNow();
+    try {
+      linger.awaitTermination(maxBlockNanos, TimeUnit.NANOSECONDS);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+    flush();
+    try {
+      producerFactory.destroy();
+    } catch (Exception ex) {
+      throw new IllegalStateException("Failed to close the Kafka producer", ex);
+    }
+  }
+
+  @Override
+  public long getMessageCount() {
+    return messages.sum();
+  }
+
+  @Override
+  public long getFailedCount() {
+    return failed.sum();
+  }
+
+  @Override
+  public long getInFlightBytes() {
+    return maxInFlightBytes - inFlight.availablePermits();
+  }
+
+  @Override
+  public void addBatchListener(BatchListener listener) {
+    listeners.add(Objects.requireNonNull(listener, "listener"));
+  }
+
+  private void acquire(String topic, int size) {
+    try {
+      if (!inFlight.tryAcquire(size, maxBlockNanos, TimeUnit.NANOSECONDS)) {
+        throw new RejectedExecutionException("Message of " + topic + " not published within "
+            + TimeUnit.NANOSECONDS.toMillis(maxBlockNanos) + "ms, " + getInFlightBytes() + " bytes in flight");
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new RejectedExecutionException("Interrupted publishing message of " + topic, ex);
+    }
+  }
+
+  private static RejectedExecutionException closed(String topic) {
+    return new RejectedExecutionException("Message of " + topic + " not published, transport closed");
+  }
+
+  /**
+   * Run by the linger thread, the batch may have been sent full meanwhile.
+   */
+  private void linger(Accumulator accumulator, Batch batch) {
+    synchronized (accumulator) {
+      if (accumulator.batch != batch) {
+        return;
+      }
+      accumulator.batch = null;
+    }
+    send(batch);
+  }
+
+  private void send(Batch batch) {
+    BatchEnvelope.seal(batch.out, batch.futures.size());
+    byte[] value = Arrays.copyOf(batch.out.array(), batch.out.size());
+    buffers.release(batch.out.array());
+    try {
+      template.send(batch.topic, value).addCallback(
+          result -> completed(batch, value.length, null),
+          ex -> completed(batch, value.length, ex));
+    } catch (RuntimeException ex) {
+      completed(batch, value.length, ex);
+    }
+  }
+
+  private void completed(Batch batch, int bytes, Throwable err) {
+    long latencyNanos = System.nanoTime() - batch.created;
+    inFlight.release(batch.reserved);
+    messages.add(batch.futures.size());
+    if (err != null) {
+      failed.add(batch.futures.size());
+    }
+    try {
+      for (BatchListener listener : listeners) {
+        listener.completed(batch.futures.size(), bytes, latencyNanos, err != null);
+      }
+    } finally {
+      if (err != null) {
+        batch.futures.forEach(future -> future.completeExceptionally(err));
+      } else {
+        batch.futures.forEach(future -> future.complete(null));
+      }
+    }
+  }
+
+  /**
+   * The batch being filled for a topic, guarded by the accumulator.
+   */
+  private static final class Accumulator {
+
+    private Batch batch;
+  }
+
+  private static final class Batch {
+
+    private final String topic;
+
+    private final ByteOutput out;
+
+    private final List<CompletableFuture<Void>> futures = new ArrayList<>();
+
+    private final long created = System.nanoTime();
+
+    private int reserved;
+
+    private Batch(String topic, byte[] buffer) {
+      this.topic = topic;
+      this.out = new ByteOutput(buffer);
+      BatchEnvelope.writeHeader(out);
+    }
+
+    void append(ByteOutput message, int size, CompletableFuture<Void> future) {
+      BatchEnvelope.append(out, message.array(), message.size());
+      reserved += size;
+      futures.add(future);
+    }
+  }
+
+  public static class Builder {
+
+    private final Map<String, Object> producerConfigs;
+
+    private Map<String, Object> consumerConfigs;
+
+    private MessageCodec codec = MessageCodec.BYTES;
+
+    private int batchSize = 64 * 1024;
+
+    private long lingerNanos = TimeUnit.MILLISECONDS.toNanos(5L);
+
+    private int maxInFlightBytes = 32 * 1024 * 1024;
+
+    private long maxBlockNanos = TimeUnit.SECONDS.toNanos(60L);
+
+    private Builder(Map<String, Object> producerConfigs) {
+      this.producerConfigs = new HashMap<>(producerConfigs);
+    }
+
+    /**
+     * Kafka consumer configs, with a group.id, to subscribe.
+     */
+    public Builder consumer(Map<String, Object> consumerConfigs) {
+      this.consumerConfigs = new HashMap<>(consumerConfigs);
+      return this;
+    }
+
+    public Builder codec(MessageCodec codec) {
+      this.codec = codec;
+      return this;
+    }
+
+    /**
+     * Bytes of a batch sent at once, below the max.request.size of the producer.
+     */
+    public Builder batchSize(int batchSize) {
+      this.batchSize = batchSize;
+      return this;
+    }
+
+    /**
+     * How long the first message of a batch waits for others.
+     */
+    public Builder linger(long linger, TimeUnit unit) {
+      this.lingerNanos = unit.toNanos(linger);
+      return this;
+    }
+
+    /**
+     * Bytes of the messages published and not acknowledged yet, beyond which publishing blocks.
+     */
+    public Builder maxInFlightBytes(int maxInFlightBytes) {
+      this.maxInFlightBytes = maxInFlightBytes;
+      return this;
+    }
+
+    /**
+     * How long publishing blocks at most, for maxInFlightBytes.
+     */
+    public Builder maxBlock(long maxBlock, TimeUnit unit) {
+      this.maxBlockNanos = unit.toNanos(maxBlock);
+      return this;
+    }
+
+    public KafkaMessageTransport build() {
+      if (codec == null) {
+        throw new IllegalArgumentException("Illegal message codec: null");
+      }
+      if (batchSize < BatchEnvelope.HEADER_SIZE) {
+        throw new IllegalArgumentException("Illegal batch size: " + batchSize);
+      }
+      if (lingerNanos < 0) {
+        throw new IllegalArgumentException("Illegal linger: " + lingerNanos + "ns");
+      }
+      if (maxInFlightBytes < batchSize) {
+        throw new IllegalArgumentException("Illegal max in-flight bytes below batch size: " + maxInFlightBytes);
+      }
+      if (maxBlockNanos < 0) {
+        throw new IllegalArgumentException("Illegal max block: " + maxBlockNanos + "ns");
+      }
+      return new KafkaMessageTransport(this);
+    }
+  }
+}
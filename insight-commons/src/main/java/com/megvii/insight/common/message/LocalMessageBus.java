@@ -0,0 +1,306 @@
+package com.megvii.insight.common.message;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Local Message Bus
+ * <p>
+ * Messages are handed over as they are, without serialization, to every current subscriber of their topic. Each
+ * subscription has its own preallocated ring buffer and thread, which drains up to maxBatch messages at a time
+ * into the handler, then waits for more with the {@link WaitStrategy}. Publishing to a full ring waits the
+ * same way, yielding instead of busy spinning, and fails after maxBlock.
+ * </p>
+ * <p>
+ * Messages of a publishing thread reach a subscriber in order. Messages published while a topic has no
+ * subscriber are dropped, as well as the ones not of the type subscribed to, and a handler failing on a batch
+ * skips it: use a broker to keep them, see {@link RoutingMessageTransport}. Closing a subscription waits for the
+ * publishers delivering to it, and handles whatever they delivered.
+ * </p>
+ *
+ * <pre>
+ *
+ *    e.g.
+ *
+ *    LocalMessageBus bus = LocalMessageBus.builder()
+ *        .ringSize(8192)
+ *        .maxBatch(256)
+ *        .waitStrategy(WaitStrategy.PARK)
+ *        .build();
+ *
+ *    bus.subscribe("audit", AuditEvent.class, events -&gt; auditRepository.saveAll(events));
+ *
+ *    bus.publish("audit", event);
+ *
+ * </pre>
+ */
+public class LocalMessageBus implements MessageTransport, AutoCloseable {
+
+  private static final Log log = LogFactory.getLog(LocalMessageBus.class);
+
+  private final int ringSize;
+
+  private final int maxBatch;
+
+  private final WaitStrategy waitStrategy;
+
+  /**
+   * Publishers spinning on a full ring would take the cores its consumer needs.
+   */
+  private final WaitStrategy publishWaitStrategy;
+
+  private final long maxBlockNanos;
+
+  private final ConcurrentHashMap<String, List<LocalSubscription<?>>> subscriptions = new ConcurrentHashMap<>();
+
+  private final AtomicInteger threadNumber = new AtomicInteger();
+
+  private LocalMessageBus(Builder builder) {
+    this.ringSize = builder.ringSize;
+    this.maxBatch = builder.maxBatch;
+    this.waitStrategy = builder.waitStrategy;
+    this.publishWaitStrategy = waitStrategy == WaitStrategy.BUSY_SPIN ? WaitStrategy.YIELD : waitStrategy;
+    this.maxBlockNanos = builder.maxBlockNanos;
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  @Override
+  public CompletableFuture<Void> publish(String topic, Object message) {
+    Objects.requireNonNull(message, "message");
+    List<LocalSubscription<?>> subscribers = subscriptions.get(Objects.requireNonNull(topic, "topic"));
+    if (subscribers != null) {
+      for (LocalSubscription<?> subscription : subscribers) {
+        subscription.offer(message);
+      }
+    }
+    // already delivered to the rings, a new future each time as it could be obtruded
+    return CompletableFuture.completedFuture(null);
+  }
+
+  /**
+   * 订阅主题，handler在该订阅独占的线程中执行；类型不符的消息记录日志后丢弃
+   */
+  @Override
+  public <T> Subscription subscribe(String topic, Class<T> type, MessageHandler<T> handler) {
+    Objects.requireNonNull(type, "type");
+    LocalSubscription<T> subscription = new LocalSubscription<>(topic, type, handler);
+    subscriptions.computeIfAbsent(topic, key -> new CopyOnWriteArrayList<>()).add(subscription);
+    subscription.thread.start();
+    return subscription;
+  }
+
+  /**
+   * Messages published to the topic and not handled yet, by its most behind subscriber.
+   */
+  public int getPendingCount(String topic) {
+    List<LocalSubscription<?>> subscribers = subscriptions.get(topic);
+    int pending = 0;
+    if (subscribers != null) {
+      for (LocalSubscription<?> subscription : subscribers) {
+        pending = Math.max(pending, subscription.ring.size());
+      }
+    }
+    return pending;
+  }
+
+  /**
+   * 取消所有订阅，已发布的消息处理完后返回
+   */
+  @Override
+  public void close() {
+    subscriptions.values().forEach(subscribers -> subscribers.forEach(LocalSubscription::close));
+  }
+
+  private final class LocalSubscription<T> implements Subscription, Runnable {
+
+    private final String topic;
+
+    private final Class<T> type;
+
+    private final MessageHandler<T> handler;
+
+    private final RingBuffer<Object> ring = new RingBuffer<>(ringSize);
+
+    /**
+     * Publishers past the running check, the consumer drains until they are gone once closed.
+     */
+    private final AtomicInteger publishing = new AtomicInteger();
+
+    private final Thread thread;
+
+    private volatile boolean running = true;
+
+    private LocalSubscription(String topic, Class<T> type, MessageHandler<T> handler) {
+      this.topic = topic;
+      this.type = type;
+      this.handler = handler;
+      this.thread = new Thread(this, "message_" + topic + "_" + threadNumber.incrementAndGet());
+      this.thread.setDaemon(true);
+    }
+
+    void offer(Object message) {
+      publishing.incrementAndGet();
+      try {
+        if (!running) {
+          // closed meanwhile, as if it was not subscribed anymore
+          return;
+        }
+        if (ring.offer(message)) {
+          return;
+        }
+        long deadline = System.nanoTime() + maxBlockNanos;
+        int idleCount = 0;
+        while (!ring.offer(message)) {
+          if (System.nanoTime() - deadline > 0) {
+            throw new RejectedExecutionException("Message of " + topic + " not published within "
+                + TimeUnit.NANOSECONDS.toMillis(maxBlockNanos) + "ms, " + ring.size() + " messages pending");
+          }
+          publishWaitStrategy.idle(++idleCount);
+        }
+      } finally {
+        publishing.decrementAndGet();
+      }
+    }
+
+    @Override
+    public void run() {
+      List<Object> batch = new ArrayList<>(maxBatch);
+      int idleCount = 0;
+      while (running) {
+        if (ring.drain(batch, maxBatch) == 0) {
+          waitStrategy.idle(++idleCount);
+          continue;
+        }
+        idleCount = 0;
+        handle(batch);
+      }
+      // published before close, or by publishers past the running check meanwhile
+      idleCount = 0;
+      while (true) {
+        boolean quiet = publishing.get() == 0;
+        if (ring.drain(batch, maxBatch) > 0) {
+          handle(batch);
+        } else if (quiet) {
+          return;
+        } else {
+          publishWaitStrategy.idle(++idleCount);
+        }
+      }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void handle(List<Object> batch) {
+      int count = 0;
+      for (Object message : batch) {
+        if (type.isInstance(message)) {
+          batch.set(count++, message);
+        } else {
+          log.error("Dropped message of " + topic + ", a " + message.getClass().getName() + " instead of "
+              + type.getName());
+        }
+      }
+      batch.subList(count, batch.size()).clear();
+      if (batch.isEmpty()) {
+        return;
+      }
+      try {
+        handler.handle((List<T>) batch);
+      } catch (Exception ex) {
+        log.error("Failed to handle " + batch.size() + " messages of " + topic, ex);
+      } finally {
+        batch.clear();
+      }
+    }
+
+    @Override
+    public void close() {
+      List<LocalSubscription<?>> subscribers = subscriptions.get(topic);
+      if (subscribers != null) {
+        subscribers.remove(this);
+      }
+      running = false;
+      LockSupport.unpark(thread);
+      if (thread != Thread.currentThread()) {
+        try {
+          thread.join();
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+  }
+
+  public static class Builder {
+
+    private int ringSize = 8192;
+
+    private int maxBatch = 256;
+
+    private WaitStrategy waitStrategy = WaitStrategy.PARK;
+
+    private long maxBlockNanos = TimeUnit.SECONDS.toNanos(60L);
+
+    private Builder() {
+    }
+
+    /**
+     * Messages queued per subscription, rounded up to a power of two.
+     */
+    public Builder ringSize(int ringSize) {
+      this.ringSize = ringSize;
+      return this;
+    }
+
+    /**
+     * Messages handed to a handler at once.
+     */
+    public Builder maxBatch(int maxBatch) {
+      this.maxBatch = maxBatch;
+      return this;
+    }
+
+    public Builder waitStrategy(WaitStrategy waitStrategy) {
+      this.waitStrategy = waitStrategy;
+      return this;
+    }
+
+    /**
+     * How long publishing blocks at most, on a full ring.
+     */
+    public Builder maxBlock(long maxBlock, TimeUnit unit) {
+      this.maxBlockNanos = unit.toNanos(maxBlock);
+      return this;
+    }
+
+    public LocalMessageBus build() {
+      if (ringSize <= 0 || ringSize > 1 << 30) {
+        throw new IllegalArgumentException("Illegal ring size: " + ringSize);
+      }
+      ringSize = ringSize == 1 ? 1 : Integer.highestOneBit(ringSize - 1) << 1;
+      if (maxBatch <= 0) {
+        throw new IllegalArgumentException("Illegal max batch: " + maxBatch);
+      }
+      if (waitStrategy == null) {
+        throw new IllegalArgumentException("Illegal wait strategy: null");
+      }
+      if (maxBlockNanos < 0) {
+        throw new IllegalArgumentException("Illegal max block: " + maxBlockNanos + "ns");
+      }
+      return new LocalMessageBus(this);
+    }
+  }
+}
@@ -0,0 +1,51 @@
+package com.megvii.insight.common.message;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Message (de)serialization of broker-backed transports.
+ * <p>
+ * Matches ObjectMapper.writeValue(OutputStream, Object) and readValue(byte[], int, int, Class) for JSON.
+ * </p>
+ */
+public interface MessageCodec {
+
+  /**
+   * byte[] messages as is.
+   */
+  MessageCodec BYTES = new MessageCodec() {
+
+    @Override
+    public void encode(Object message, OutputStream out) throws IOException {
+      out.write((byte[]) message);
+    }
+
+    @Override
+    public <T> T decode(byte[] bytes, int offset, int length, Class<T> type) {
+      return type.cast(Arrays.copyOfRange(bytes, offset, offset + length));
+    }
+  };
+
+  /**
+   * String messages in UTF-8.
+   */
+  MessageCodec STRING = new MessageCodec() {
+
+    @Override
+    public void encode(Object message, OutputStream out) throws IOException {
+      out.write(((String) message).getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public <T> T decode(byte[] bytes, int offset, int length, Class<T> type) {
+      return type.cast(new String(bytes, offset, length, StandardCharsets.UTF_8));
+    }
+  };
+
+  void encode(Object message, OutputStream out) throws IOException;
+
+  <T> T decode(byte[] bytes, int offset, int length, Class<T> type) throws IOException;
+}
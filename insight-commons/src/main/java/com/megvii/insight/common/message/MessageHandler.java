@@ -0,0 +1,14 @@
+package com.megvii.insight.common.message;
+
+import java.util.List;
+
+/**
+ * Handles the messages of a topic, in batches as they were delivered.
+ *
+ * @param <T> message type
+ */
+@FunctionalInterface
+public interface MessageHandler<T> {
+
+  void handle(List<T> messages) throws Exception;
+}
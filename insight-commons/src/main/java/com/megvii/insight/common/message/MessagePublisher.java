@@ -0,0 +1,17 @@
+package com.megvii.insight.common.message;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Publishes messages to a topic, whatever carries them.
+ */
+public interface MessagePublisher {
+
+  /**
+   * 发布消息，传输饱和时阻塞调用方
+   *
+   * @return 消息送达时完成
+   * @throws java.util.concurrent.RejectedExecutionException 在最长阻塞时间内未能接收
+   */
+  CompletableFuture<Void> publish(String topic, Object message);
+}
@@ -0,0 +1,14 @@
+package com.megvii.insight.common.message;
+
+/**
+ * Delivers the messages of a topic to handlers, whatever carries them.
+ */
+public interface MessageSubscriber {
+
+  /**
+   * 订阅主题，消息按批交给handler
+   *
+   * @return 关闭即取消订阅
+   */
+  <T> Subscription subscribe(String topic, Class<T> type, MessageHandler<T> handler);
+}
@@ -0,0 +1,7 @@
+package com.megvii.insight.common.message;
+
+/**
+ * Publishes and delivers messages, over a broker or within the JVM, see {@link RoutingMessageTransport}.
+ */
+public interface MessageTransport extends MessagePublisher, MessageSubscriber {
+}
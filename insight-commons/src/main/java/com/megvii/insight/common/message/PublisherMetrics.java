@@ -0,0 +1,38 @@
+package com.megvii.insight.common.message;
+
+/**
+ * Counts of a batching {@link MessagePublisher}, a batch is counted once acknowledged or failed, and passed to the
+ * batch listeners, e.g. to record the distribution of the batch sizes and latencies.
+ */
+public interface PublisherMetrics {
+
+  /**
+   * Messages of the batches.
+   */
+  long getMessageCount();
+
+  /**
+   * Messages of the failed batches.
+   */
+  long getFailedCount();
+
+  /**
+   * Bytes of the messages published and not acknowledged yet.
+   */
+  long getInFlightBytes();
+
+  void addBatchListener(BatchListener listener);
+
+  /**
+   * Called by the thread completing the batch, before its futures, so it must not block.
+   */
+  @FunctionalInterface
+  interface BatchListener {
+
+    /**
+     * @param bytes serialized size of the batch
+     * @param latencyNanos from the first message of the batch to its acknowledgement
+     */
+    void completed(int messages, int bytes, long latencyNanos, boolean failed);
+  }
+}
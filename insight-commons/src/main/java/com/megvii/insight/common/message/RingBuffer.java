@@ -0,0 +1,81 @@
+package com.megvii.insight.common.message;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Preallocated bounded queue of many producers and a single consumer.
+ * <p>
+ * Producers claim a sequence with a CAS on the tail, then fill its slot; the consumer takes the filled slots in
+ * sequence order, clears them and moves the head, so a slot is reused once the consumer has passed it. A claimed
+ * slot not filled yet ends a drain.
+ * </p>
+ */
+final class RingBuffer<E> {
+
+  private final AtomicReferenceArray<E> slots;
+
+  private final int mask;
+
+  private final AtomicLong tail = new AtomicLong();
+
+  /**
+   * Only moved by the consumer.
+   */
+  private final AtomicLong head = new AtomicLong();
+
+  /**
+   * @param capacity a power of two
+   */
+  RingBuffer(int capacity) {
+    this.slots = new AtomicReferenceArray<>(capacity);
+    this.mask = capacity - 1;
+  }
+
+  /**
+   * @return false when full
+   */
+  boolean offer(E element) {
+    long sequence;
+    do {
+      sequence = tail.get();
+      if (sequence - head.get() > mask) {
+        return false;
+      }
+    } while (!tail.compareAndSet(sequence, sequence + 1));
+    slots.lazySet((int) sequence & mask, element);
+    return true;
+  }
+
+  /**
+   * Only called by the consumer.
+   *
+   * @return the number of elements moved to the list
+   */
+  int drain(List<? super E> into, int max) {
+    long sequence = head.get();
+    int count = 0;
+    while (count < max) {
+      int index = (int) (sequence + count) & mask;
+      E element = slots.get(index);
+      if (element == null) {
+        break;
+      }
+      slots.lazySet(index, null);
+      into.add(element);
+      count++;
+    }
+    if (count > 0) {
+      head.lazySet(sequence + count);
+    }
+    return count;
+  }
+
+  /**
+   * Claimed and not consumed yet, the ones being filled included.
+   */
+  int size() {
+    return (int) (tail.get() - head.get());
+  }
+}
@@ -0,0 +1,59 @@
+package com.megvii.insight.common.message;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Routing Message Transport
+ * <p>
+ * Topics configured as local go through the local transport, usually a {@link LocalMessageBus}, others through
+ * the remote one, usually a {@link KafkaMessageTransport}, so a topic moves between them without changing its
+ * publishers and subscribers.
+ * </p>
+ *
+ * <pre>
+ *
+ *    e.g.
+ *
+ *    MessageTransport transport = new RoutingMessageTransport(localMessageBus, kafkaMessageTransport,
+ *        Collections.singleton("audit"));
+ *
+ * </pre>
+ */
+public class RoutingMessageTransport implements MessageTransport {
+
+  private final MessageTransport local;
+
+  private final MessageTransport remote;
+
+  private final Set<String> localTopics;
+
+  public RoutingMessageTransport(MessageTransport local, MessageTransport remote, Set<String> localTopics) {
+    this.local = local;
+    this.remote = remote;
+    this.localTopics = Collections.unmodifiableSet(new HashSet<>(localTopics));
+  }
+
+  @Override
+  public CompletableFuture<Void> publish(String topic, Object message) {
+    return route(topic).publish(topic, message);
+  }
+
+  @Override
+  public <T> Subscription subscribe(String topic, Class<T> type, MessageHandler<T> handler) {
+    return route(topic).subscribe(topic, type, handler);
+  }
+
+  /**
+   * 主题对应的传输方式
+   */
+  public MessageTransport route(String topic) {
+    return localTopics.contains(topic) ? local : remote;
+  }
+
+  public Set<String> getLocalTopics() {
+    return localTopics;
+  }
+}
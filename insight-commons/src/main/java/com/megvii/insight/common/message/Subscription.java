@@ -0,0 +1,11 @@
+package com.megvii.insight.common.message;
+
+/**
+ * A subscription of {@link MessageSubscriber}, cancelled by {@link #close()}.
+ */
+@FunctionalInterface
+public interface Subscription extends AutoCloseable {
+
+  @Override
+  void close();
+}
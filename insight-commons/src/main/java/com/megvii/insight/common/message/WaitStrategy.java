@@ -0,0 +1,64 @@
+package com.megvii.insight.common.message;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * How a consumer thread of {@link LocalMessageBus} waits for messages, and a publisher for room in a full ring:
+ * trading CPU for latency.
+ */
+public enum WaitStrategy {
+
+  /**
+   * Keep checking, a core per consumer, the lowest latency.
+   */
+  BUSY_SPIN {
+    @Override
+    void idle(int idleCount) {
+      // spin
+    }
+  },
+
+  /**
+   * Give the core to other threads between checks, low latency while the cores are not all busy.
+   */
+  YIELD {
+    @Override
+    void idle(int idleCount) {
+      if (idleCount > SPINS) {
+        Thread.yield();
+      }
+    }
+  },
+
+  /**
+   * Spin, yield, then sleep for 1µs doubling up to 1ms: next to no CPU when idle, up to 1ms latency after.
+   */
+  PARK {
+    @Override
+    void idle(int idleCount) {
+      if (idleCount > SPINS + YIELDS) {
+        int parks = Math.min(idleCount - SPINS - YIELDS, MAX_PARK_SHIFT);
+        LockSupport.parkNanos(MIN_PARK_NANOS << parks);
+      } else if (idleCount > SPINS) {
+        Thread.yield();
+      }
+    }
+  };
+
+  private static final int SPINS = 100;
+
+  private static final int YIELDS = 100;
+
+  private static final long MIN_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(1L);
+
+  /**
+   * 1µs &lt;&lt; 10, about 1ms.
+   */
+  private static final int MAX_PARK_SHIFT = 10;
+
+  /**
+   * @param idleCount checks found nothing in a row, from 1
+   */
+  abstract void idle(int idleCount);
+}
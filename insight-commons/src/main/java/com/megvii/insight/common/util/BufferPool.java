@@ -0,0 +1,53 @@
+package com.megvii.insight.common.util;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Arrays of one size kept for reuse, at most maxPooled of them; arrays of another size are left to the GC.
+ */
+public final class BufferPool {
+
+  private final int bufferSize;
+
+  private final int maxPooled;
+
+  private final ConcurrentLinkedQueue<byte[]> buffers = new ConcurrentLinkedQueue<>();
+
+  private final AtomicInteger pooled = new AtomicInteger();
+
+  public BufferPool(int bufferSize, int maxPooled) {
+    this.bufferSize = bufferSize;
+    this.maxPooled = maxPooled;
+  }
+
+  public int getBufferSize() {
+    return bufferSize;
+  }
+
+  /**
+   * 取出一个数组，池空时新建
+   */
+  public byte[] take() {
+    byte[] buffer = buffers.poll();
+    if (buffer == null) {
+      return new byte[bufferSize];
+    }
+    pooled.decrementAndGet();
+    return buffer;
+  }
+
+  /**
+   * 归还数组，内容不清空
+   */
+  public void release(byte[] buffer) {
+    if (buffer.length != bufferSize) {
+      return;
+    }
+    if (pooled.incrementAndGet() <= maxPooled) {
+      buffers.offer(buffer);
+    } else {
+      pooled.decrementAndGet();
+    }
+  }
+}
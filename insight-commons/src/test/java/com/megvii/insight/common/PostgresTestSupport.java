@@ -0,0 +1,42 @@
+package com.megvii.insight.common;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import javax.sql.DataSource;
+
+import org.junit.Assume;
+import org.postgresql.ds.PGSimpleDataSource;
+
+/**
+ * A local PostgreSQL for the tests, skipping them when none is reachable:
+ *
+ * <pre>
+ *
+ *    mvn test -Dinsight.test.postgres.url=jdbc:postgresql://localhost:5432/postgres \
+ *        -Dinsight.test.postgres.user=postgres -Dinsight.test.postgres.password=
+ *
+ * </pre>
+ */
+public final class PostgresTestSupport {
+
+  private PostgresTestSupport() {
+  }
+
+  /**
+   * 本地PostgreSQL数据源，无法连接时跳过测试
+   */
+  public static DataSource dataSource() {
+    PGSimpleDataSource dataSource = new PGSimpleDataSource();
+    dataSource.setUrl(System.getProperty("insight.test.postgres.url", "jdbc:postgresql://localhost:5432/postgres"));
+    dataSource.setUser(System.getProperty("insight.test.postgres.user", "postgres"));
+    dataSource.setPassword(System.getProperty("insight.test.postgres.password", ""));
+    dataSource.setConnectTimeout(2);
+    try (Connection connection = dataSource.getConnection()) {
+      Assume.assumeTrue(connection.isValid(2));
+    } catch (SQLException ex) {
+      Assume.assumeNoException("No local PostgreSQL", ex);
+    }
+    return dataSource;
+  }
+}
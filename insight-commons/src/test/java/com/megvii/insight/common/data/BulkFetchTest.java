@@ -0,0 +1,44 @@
+package com.megvii.insight.common.data;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+public class BulkFetchTest {
+
+  @Test
+  public void inChunksDeduplicates() {
+    List<List<Integer>> chunks = new ArrayList<>();
+
+    List<Integer> values = BulkFetch.inChunks(Arrays.asList(1, 2, 2, 3, 4, 5, 1), 2, chunk -> {
+      chunks.add(chunk);
+      return chunk;
+    });
+
+    assertEquals(Arrays.asList(Arrays.asList(1, 2), Arrays.asList(3, 4), Collections.singletonList(5)), chunks);
+    assertEquals(Arrays.asList(1, 2, 3, 4, 5), values);
+  }
+
+  @Test
+  public void attachGroupsChildrenByKey() {
+    List<String[]> parents = Arrays.asList(new String[]{"a", null}, new String[]{"b", null}, new String[]{null, null});
+    List<Integer> loads = new ArrayList<>();
+
+    BulkFetch.<String[], String, String>attach(parents, parent -> parent[0], keys -> {
+      loads.add(keys.size());
+      return keys.stream().filter("a"::equals).flatMap(key -> Arrays.asList(key + "1", key + "2").stream())
+          .collect(Collectors.toList());
+    }, child -> child.substring(0, 1), (parent, children) -> parent[1] = String.join(",", children));
+
+    assertEquals(Collections.singletonList(2), loads);
+    assertEquals("a1,a2", parents.get(0)[1]);
+    assertEquals("", parents.get(1)[1]);
+    assertEquals("", parents.get(2)[1]);
+  }
+}
@@ -0,0 +1,172 @@
+package com.megvii.insight.common.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import com.megvii.insight.common.PostgresTestSupport;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.support.SimpleJpaRepository;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+
+/**
+ * Against a local PostgreSQL through Hibernate, skipped when none is reachable, see {@link PostgresTestSupport}.
+ */
+public class KeysetPaginatorTest {
+
+  private static final int USERS = 1000;
+
+  private static EntityManagerFactory entityManagerFactory;
+
+  private EntityManager entityManager;
+
+  private Statistics statistics;
+
+  @BeforeClass
+  public static void setUpClass() {
+    LocalContainerEntityManagerFactoryBean factory = new LocalContainerEntityManagerFactoryBean();
+    factory.setDataSource(PostgresTestSupport.dataSource());
+    factory.setPackagesToScan(KeysetPaginatorTest.class.getPackage().getName());
+    factory.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+    Map<String, Object> properties = new HashMap<>();
+    properties.put("hibernate.hbm2ddl.auto", "create-drop");
+    properties.put("hibernate.generate_statistics", "true");
+    factory.setJpaPropertyMap(properties);
+    factory.afterPropertiesSet();
+    entityManagerFactory = factory.getObject();
+
+    EntityManager entityManager = entityManagerFactory.createEntityManager();
+    entityManager.getTransaction().begin();
+    LocalDateTime start = LocalDateTime.of(2018, 10, 1, 0, 0);
+    for (long id = 1; id <= USERS; id++) {
+      // ten users per second, for the id to break ties
+      PagedUser user = new PagedUser(id, "user_" + id, start.plusSeconds(id % 100));
+      entityManager.persist(user);
+      if (id % 3 != 0) {
+        entityManager.persist(new PagedRole(id * 10, "role_" + id, user));
+        entityManager.persist(new PagedRole(id * 10 + 1, "admin_" + id, user));
+      }
+    }
+    entityManager.getTransaction().commit();
+    entityManager.close();
+  }
+
+  @AfterClass
+  public static void tearDownClass() {
+    if (entityManagerFactory != null) {
+      entityManagerFactory.close();
+    }
+  }
+
+  @Before
+  public void setUp() {
+    entityManager = entityManagerFactory.createEntityManager();
+    statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    statistics.clear();
+  }
+
+  @After
+  public void tearDown() {
+    entityManager.close();
+  }
+
+  @Test
+  public void pagesInSortOrder() {
+    KeysetPaginator<PagedUser> paginator = KeysetPaginator.of(entityManager, PagedUser.class,
+        Sort.by(Sort.Direction.DESC, "createdAt"));
+    List<Long> expected = LongStream.rangeClosed(1, USERS).boxed()
+        .sorted(Comparator.comparing((Long id) -> id % 100).thenComparing(id -> id).reversed())
+        .collect(Collectors.toList());
+
+    List<Long> paged = new ArrayList<>();
+    int pages = 0;
+    String cursor = null;
+    do {
+      KeysetPage<PagedUser> page = paginator.page(cursor, 37);
+      page.getContent().forEach(user -> paged.add(user.getId()));
+      cursor = page.getNextCursor();
+      pages++;
+    } while (cursor != null);
+
+    assertEquals(expected, paged);
+    assertEquals((USERS + 36) / 37, pages);
+  }
+
+  @Test
+  public void pagesMatchingSpecification() {
+    KeysetPaginator<PagedUser> paginator = KeysetPaginator.of(entityManager, PagedUser.class,
+        Sort.by("name"));
+
+    KeysetPage<PagedUser> first = paginator.page((root, query, cb) -> cb.like(root.get("name"), "user_99%"),
+        null, 5);
+    KeysetPage<PagedUser> second = paginator.page((root, query, cb) -> cb.like(root.get("name"), "user_99%"),
+        first.getNextCursor(), 5);
+
+    assertEquals("user_99,user_990,user_991,user_992,user_993", names(first.getContent()));
+    assertEquals("user_994,user_995,user_996,user_997,user_998", names(second.getContent()));
+    assertTrue(second.hasNext());
+    assertEquals("user_999", names(paginator.page((root, query, cb) -> cb.like(root.get("name"), "user_99%"),
+        second.getNextCursor(), 5).getContent()));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsCursorOfAnotherSort() {
+    String cursor = KeysetPaginator.of(entityManager, PagedUser.class, Sort.by("name")).page(null, 5)
+        .getNextCursor();
+
+    KeysetPaginator.of(entityManager, PagedUser.class, Sort.by("createdAt")).page(cursor, 5);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsMalformedCursor() {
+    KeysetPaginator.of(entityManager, PagedUser.class, Sort.by("name")).page("AQAAAAA", 5);
+  }
+
+  @Test
+  public void findsAllByIdInChunks() {
+    SimpleJpaRepository<PagedUser, Long> repository = new SimpleJpaRepository<>(PagedUser.class, entityManager);
+    List<Long> ids = LongStream.rangeClosed(1, 1234).boxed().collect(Collectors.toList());
+
+    List<PagedUser> users = BulkFetch.findAllById(repository, ids, 100);
+
+    assertEquals(USERS, users.size());
+    assertEquals(13L, statistics.getPrepareStatementCount());
+  }
+
+  @Test
+  public void fetchesAssociationsInOneQuery() {
+    List<PagedUser> users = KeysetPaginator.of(entityManager, PagedUser.class, Sort.by("id")).page(null, 50)
+        .getContent();
+    assertFalse(entityManagerFactory.getPersistenceUnitUtil().isLoaded(users.get(0), "roles"));
+
+    BulkFetch.fetch(entityManager, users, "roles");
+    int roles = users.stream().mapToInt(user -> user.getRoles().size()).sum();
+
+    assertEquals(2L, statistics.getPrepareStatementCount());
+    assertEquals(2 * (50 - 50 / 3), roles);
+  }
+
+  private static String names(List<PagedUser> users) {
+    return users.stream().map(PagedUser::getName).collect(Collectors.joining(","));
+  }
+}
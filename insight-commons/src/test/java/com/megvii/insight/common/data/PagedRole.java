@@ -0,0 +1,37 @@
+package com.megvii.insight.common.data;
+
+import javax.persistence.Entity;
+import javax.persistence.FetchType;
+import javax.persistence.Id;
+import javax.persistence.ManyToOne;
+import javax.persistence.Table;
+
+@Entity
+@Table(name = "insight_data_test_role")
+public class PagedRole {
+
+  @Id
+  private Long id;
+
+  private String name;
+
+  @ManyToOne(fetch = FetchType.LAZY)
+  private PagedUser user;
+
+  protected PagedRole() {
+  }
+
+  PagedRole(Long id, String name, PagedUser user) {
+    this.id = id;
+    this.name = name;
+    this.user = user;
+  }
+
+  public Long getId() {
+    return id;
+  }
+
+  public String getName() {
+    return name;
+  }
+}
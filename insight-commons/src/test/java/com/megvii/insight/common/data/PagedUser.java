@@ -0,0 +1,50 @@
+package com.megvii.insight.common.data;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import javax.persistence.Entity;
+import javax.persistence.FetchType;
+import javax.persistence.Id;
+import javax.persistence.OneToMany;
+import javax.persistence.Table;
+
+@Entity
+@Table(name = "insight_data_test_user")
+public class PagedUser {
+
+  @Id
+  private Long id;
+
+  private String name;
+
+  private LocalDateTime createdAt;
+
+  @OneToMany(mappedBy = "user", fetch = FetchType.LAZY)
+  private List<PagedRole> roles;
+
+  protected PagedUser() {
+  }
+
+  PagedUser(Long id, String name, LocalDateTime createdAt) {
+    this.id = id;
+    this.name = name;
+    this.createdAt = createdAt;
+  }
+
+  public Long getId() {
+    return id;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public LocalDateTime getCreatedAt() {
+    return createdAt;
+  }
+
+  public List<PagedRole> getRoles() {
+    return roles;
+  }
+}
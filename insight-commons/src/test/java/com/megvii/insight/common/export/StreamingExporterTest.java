@@ -0,0 +1,133 @@
+package com.megvii.insight.common.export;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import com.megvii.insight.common.PostgresTestSupport;
+import org.junit.Test;
+
+public class StreamingExporterTest {
+
+  private static final List<ExportColumn<Object[]>> COLUMNS = Arrays.asList(
+      ExportColumn.of("id", row -> row[0]),
+      ExportColumn.of("name", row -> row[1]),
+      ExportColumn.of("created", row -> row[2]));
+
+  @Test
+  public void csv() throws IOException {
+    Stream<Object[]> rows = Stream.of(
+        new Object[]{1L, "plain", LocalDateTime.of(2018, 10, 1, 8, 30, 5)},
+        new Object[]{-20, "a,\"quoted\"\nline", LocalDate.of(2018, 1, 2)},
+        new Object[]{new BigDecimal("1E+3"), "用户😀", null});
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    long count = StreamingExporter.builder(ExportFormat.CSV).build().export(rows, COLUMNS, out);
+
+    assertEquals(3L, count);
+    assertEquals("id,name,created\r\n"
+        + "1,plain,2018-10-01 08:30:05\r\n"
+        + "-20,\"a,\"\"quoted\"\"\nline\",2018-01-02\r\n"
+        + "1000,用户😀,\r\n", new String(out.toByteArray(), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void gzipCsvWithSmallBuffer() throws IOException {
+    Stream<Object[]> rows = IntStream.range(0, 10_000).mapToObj(i -> new Object[]{i, "name " + i, null});
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    StreamingExporter.builder(ExportFormat.CSV).bufferSize(64).gzip(true).bom(true).build()
+        .export(rows, COLUMNS, out);
+
+    String csv = read(new GZIPInputStream(new ByteArrayInputStream(out.toByteArray())));
+    String[] lines = csv.split("\r\n");
+    assertEquals("﻿id,name,created", lines[0]);
+    assertEquals(10_001, lines.length);
+    assertEquals("9999,name 9999,", lines[10_000]);
+  }
+
+  @Test
+  public void xlsxSplitIntoSheets() throws IOException {
+    Stream<Object[]> rows = IntStream.range(0, 5).mapToObj(i -> new Object[]{
+        i == 0 ? 1234567890123456789L : (long) i, i == 1 ? "<b>&</b>" : "name", LocalDate.of(1970, 1, 1)});
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    StreamingExporter.builder(ExportFormat.XLSX).sheetRows(3).build().export(rows, COLUMNS, out);
+
+    Map<String, String> entries = unzip(out.toByteArray());
+    assertEquals(Arrays.asList("xl/worksheets/sheet1.xml", "xl/worksheets/sheet2.xml", "xl/worksheets/sheet3.xml",
+        "xl/styles.xml", "xl/workbook.xml", "xl/_rels/workbook.xml.rels", "_rels/.rels", "[Content_Types].xml"),
+        entries.keySet().stream().collect(Collectors.toList()));
+    String sheet1 = entries.get("xl/worksheets/sheet1.xml");
+    assertTrue(sheet1, sheet1.contains("<row><c s=\"3\" t=\"inlineStr\"><is><t xml:space=\"preserve\">id</t>"));
+    assertTrue(sheet1, sheet1.contains("<t xml:space=\"preserve\">1234567890123456789</t>"));
+    assertTrue(sheet1, sheet1.contains("&lt;b&gt;&amp;&lt;/b&gt;"));
+    assertTrue(sheet1, sheet1.contains("<c s=\"1\"><v>25569</v></c>"));
+    assertEquals(3, count(sheet1, "<row>"));
+    assertEquals(2, count(entries.get("xl/worksheets/sheet3.xml"), "<row>"));
+    assertTrue(entries.get("[Content_Types].xml").contains("/xl/worksheets/sheet3.xml"));
+    assertTrue(entries.get("xl/workbook.xml").contains("<sheet name=\"Sheet3\" sheetId=\"3\" r:id=\"rId3\"/>"));
+  }
+
+  @Test
+  public void postgresCursor() throws IOException, SQLException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (Connection connection = PostgresTestSupport.dataSource().getConnection()) {
+      long count = StreamingExporter.builder(ExportFormat.CSV).fetchSize(100).build().export(connection,
+          "SELECT i AS id, 'name ' || i AS name FROM generate_series(1, ?) i", out, 1000);
+
+      assertEquals(1000L, count);
+      assertTrue(connection.getAutoCommit());
+    }
+    String[] lines = new String(out.toByteArray(), StandardCharsets.UTF_8).split("\r\n");
+    assertEquals("id,name", lines[0]);
+    assertEquals("1000,name 1000", lines[1000]);
+  }
+
+  private static Map<String, String> unzip(byte[] bytes) throws IOException {
+    Map<String, String> entries = new LinkedHashMap<>();
+    try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(bytes))) {
+      for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+        entries.put(entry.getName(), read(zip));
+      }
+    }
+    return entries;
+  }
+
+  private static String read(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[4096];
+    for (int n = in.read(buffer); n > 0; n = in.read(buffer)) {
+      out.write(buffer, 0, n);
+    }
+    return new String(out.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+  private static int count(String text, String part) {
+    int count = 0;
+    for (int i = text.indexOf(part); i >= 0; i = text.indexOf(part, i + 1)) {
+      count++;
+    }
+    return count;
+  }
+}
@@ -0,0 +1,117 @@
+package com.megvii.insight.common.factory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+public class MonitoredThreadPoolExecutorTest {
+
+  @Test
+  public void rejectedCountedOnAbort() throws InterruptedException {
+    CountDownLatch open = new CountDownLatch(1);
+    MonitoredThreadPoolExecutor executor = saturated("monitored_abort", ThreadPoolFactory.Rejection.ABORT, open);
+    try {
+      executor.execute(() -> {
+      });
+      fail();
+    } catch (RejectedExecutionException expected) {
+      assertEquals(1L, executor.getRejectedCount());
+    } finally {
+      open.countDown();
+      shutdown(executor);
+    }
+  }
+
+  @Test
+  public void rejectedCountedOnCallerRuns() throws InterruptedException {
+    CountDownLatch open = new CountDownLatch(1);
+    MonitoredThreadPoolExecutor executor = saturated("monitored_caller_runs",
+        ThreadPoolFactory.Rejection.CALLER_RUNS, open);
+    AtomicReference<Thread> ranBy = new AtomicReference<>();
+    try {
+      executor.execute(() -> ranBy.set(Thread.currentThread()));
+      assertSame(Thread.currentThread(), ranBy.get());
+      assertEquals(1L, executor.getRejectedCount());
+    } finally {
+      open.countDown();
+      shutdown(executor);
+    }
+    // the task run by the caller is not timed
+    assertEquals(2L, executor.getWaitCount());
+    assertEquals(2L, executor.getExecutionCount());
+  }
+
+  @Test
+  public void waitAndExecutionTimed() throws InterruptedException {
+    MonitoredThreadPoolExecutor executor = ThreadPoolFactory.builder("monitored_timed")
+        .corePoolSize(1)
+        .maximumPoolSize(1)
+        .build()
+        .getThreadPoolExecutor();
+    for (int i = 0; i < 5; i++) {
+      executor.execute(() -> sleep(5L));
+    }
+    shutdown(executor);
+
+    assertEquals(5L, executor.getWaitCount());
+    assertEquals(5L, executor.getExecutionCount());
+    // the last one waited for the 4 before it
+    assertTrue(executor.getWaitTime(TimeUnit.MILLISECONDS) >= 5L * (1 + 2 + 3 + 4));
+    assertTrue(executor.getExecutionTime(TimeUnit.MILLISECONDS) >= 5L * 5);
+    assertEquals(0L, executor.getRejectedCount());
+  }
+
+  /**
+   * A pool of one thread held until opened, with its queue of one task full.
+   */
+  private static MonitoredThreadPoolExecutor saturated(String poolName, ThreadPoolFactory.Rejection rejection,
+      CountDownLatch open) throws InterruptedException {
+    MonitoredThreadPoolExecutor executor = ThreadPoolFactory.builder(poolName)
+        .corePoolSize(1)
+        .maximumPoolSize(1)
+        .queue(ThreadPoolFactory.QueueType.ARRAY, 1)
+        .rejection(rejection)
+        .build()
+        .getThreadPoolExecutor();
+    CountDownLatch held = new CountDownLatch(1);
+    executor.execute(() -> {
+      held.countDown();
+      try {
+        open.await();
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+    });
+    assertTrue(held.await(5L, TimeUnit.SECONDS));
+    executor.execute(() -> {
+    });
+    assertEquals(1, executor.getQueueSize());
+    assertEquals(0, executor.getQueueRemainingCapacity());
+    return executor;
+  }
+
+  private static void shutdown(MonitoredThreadPoolExecutor executor) throws InterruptedException {
+    for (ThreadPoolFactory factory : ThreadPoolFactory.getThreadPools()) {
+      if (factory.getExecutor() == executor) {
+        factory.shutdown();
+      }
+    }
+    assertTrue(executor.awaitTermination(5L, TimeUnit.SECONDS));
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,62 @@
+package com.megvii.insight.common.factory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+public class SpringBeanFactoryTest {
+
+  @Test
+  public void singletonsOfTheCurrentContext() {
+    AnnotationConfigApplicationContext first = context("first");
+    assertEquals("first", SpringBeanFactory.getBean(Named.class).name);
+    assertSame(first.getBean(Named.class), SpringBeanFactory.getBean(Named.class));
+
+    AnnotationConfigApplicationContext second = context("second");
+    try {
+      assertEquals("second", SpringBeanFactory.getBean(Named.class).name);
+      assertSame(second.getBean(Named.class), SpringBeanFactory.getBean(Named.class));
+    } finally {
+      second.close();
+      first.close();
+    }
+  }
+
+  @Test
+  public void prototypesCreatedEachTime() {
+    AtomicInteger created = new AtomicInteger();
+    AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+    context.registerBean(Named.class, () -> new Named("prototype " + created.incrementAndGet()),
+        definition -> definition.setScope("prototype"));
+    context.registerBean(SpringBeanFactory.class, SpringBeanFactory::getInstance);
+    context.refresh();
+    try {
+      assertNotSame(SpringBeanFactory.getBean(Named.class), SpringBeanFactory.getBean(Named.class));
+      assertEquals("prototype 3", SpringBeanFactory.getBean(Named.class).name);
+    } finally {
+      context.close();
+    }
+  }
+
+  private static AnnotationConfigApplicationContext context(String name) {
+    AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+    context.registerBean(Named.class, () -> new Named(name));
+    context.registerBean(SpringBeanFactory.class, SpringBeanFactory::getInstance);
+    context.refresh();
+    return context;
+  }
+
+  static class Named {
+
+    private final String name;
+
+    Named(String name) {
+      this.name = name;
+    }
+  }
+}
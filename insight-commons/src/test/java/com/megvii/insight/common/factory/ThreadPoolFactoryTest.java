@@ -0,0 +1,137 @@
+package com.megvii.insight.common.factory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+public class ThreadPoolFactoryTest {
+
+  @Test
+  public void illegalArguments() {
+    assertIllegal(ThreadPoolFactory.builder("illegal").corePoolSize(-1));
+    assertIllegal(ThreadPoolFactory.builder("illegal").corePoolSize(0).maximumPoolSize(0));
+    assertIllegal(ThreadPoolFactory.builder("illegal").corePoolSize(4).maximumPoolSize(2));
+    assertIllegal(ThreadPoolFactory.builder("illegal").queue(ThreadPoolFactory.QueueType.ARRAY, 0));
+    assertIllegal(ThreadPoolFactory.builder("illegal").queue(ThreadPoolFactory.QueueType.LINKED, -1));
+    assertIllegal(ThreadPoolFactory.builder("illegal").priority(Thread.MAX_PRIORITY + 1));
+    assertIllegal(ThreadPoolFactory.builder("illegal").priority(Thread.MIN_PRIORITY - 1));
+    assertIllegal(ThreadPoolFactory.builder("illegal").adaptive(10L, 0L, TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  public void onePoolPerName() throws Exception {
+    AtomicInteger notified = new AtomicInteger();
+    Consumer<ThreadPoolFactory> listener = factory -> {
+      if (factory.getPoolName().startsWith("concurrent_")) {
+        notified.incrementAndGet();
+      }
+    };
+    ThreadPoolFactory.addListener(listener);
+    ExecutorService callers = Executors.newFixedThreadPool(8);
+    try {
+      for (int round = 0; round < 20; round++) {
+        String poolName = "concurrent_" + round;
+        CyclicBarrier barrier = new CyclicBarrier(8);
+        List<Future<ThreadPoolFactory>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+          futures.add(callers.submit(() -> {
+            barrier.await();
+            return ThreadPoolFactory.builder(poolName).corePoolSize(1).build();
+          }));
+        }
+        ThreadPoolFactory created = futures.get(0).get(5L, TimeUnit.SECONDS);
+        for (Future<ThreadPoolFactory> future : futures) {
+          assertSame(created, future.get(5L, TimeUnit.SECONDS));
+        }
+        assertEquals(round + 1, notified.get());
+        created.shutdown();
+      }
+    } finally {
+      callers.shutdownNow();
+      ThreadPoolFactory.removeListener(listener);
+    }
+  }
+
+  @Test
+  public void virtualFallsBackToPlatformThreads() throws Exception {
+    Assume.assumeFalse(ThreadPoolFactory.isVirtualThreadSupported());
+    ThreadPoolFactory factory = ThreadPoolFactory.createVirtualThreadExecutor("virtual_fallback");
+    try {
+      MonitoredThreadPoolExecutor executor = factory.getThreadPoolExecutor();
+      assertNotNull(executor);
+      assertEquals(0, executor.getCorePoolSize());
+      assertEquals(ThreadPoolFactory.VIRTUAL_FALLBACK_MAXIMUM_POOL_SIZE, executor.getMaximumPoolSize());
+      assertTrue(executor.getQueue() instanceof SynchronousQueue);
+      String thread = executor.submit(() -> Thread.currentThread().getName()).get(5L, TimeUnit.SECONDS);
+      assertTrue(thread, thread.startsWith("virtual_fallback_thread_"));
+      try {
+        VirtualThreads.newThreadPerTaskExecutor("virtual_fallback");
+        fail();
+      } catch (UnsupportedOperationException expected) {
+        // Java 21 or later only
+      }
+    } finally {
+      factory.shutdown();
+    }
+  }
+
+  @Test
+  public void virtualThreadPerTask() throws Exception {
+    Assume.assumeTrue(ThreadPoolFactory.isVirtualThreadSupported());
+    ThreadPoolFactory factory = ThreadPoolFactory.createVirtualThreadExecutor("virtual_per_task");
+    try {
+      assertNull(factory.getThreadPoolExecutor());
+      Thread thread = factory.getExecutor().submit(Thread::currentThread).get(5L, TimeUnit.SECONDS);
+      assertTrue(thread.getName(), thread.getName().startsWith("virtual_per_task_virtual_"));
+      assertEquals(Boolean.TRUE, Thread.class.getMethod("isVirtual").invoke(thread));
+    } finally {
+      factory.shutdown();
+    }
+  }
+
+  @Test
+  public void workStealing() throws Exception {
+    ThreadPoolFactory factory = ThreadPoolFactory.createWorkStealingPool("work_stealing", 2);
+    try {
+      assertNull(factory.getThreadPoolExecutor());
+      assertTrue(factory.getExecutor() instanceof ForkJoinPool);
+      ForkJoinPool pool = (ForkJoinPool) factory.getExecutor();
+      assertEquals(2, pool.getParallelism());
+      assertTrue(pool.getAsyncMode());
+      String thread = pool.submit(() -> Thread.currentThread().getName()).get(5L, TimeUnit.SECONDS);
+      assertTrue(thread, thread.startsWith("work_stealing_thread_"));
+      assertSame(factory, ThreadPoolFactory.createWorkStealingPool("work_stealing"));
+    } finally {
+      factory.shutdown();
+    }
+  }
+
+  private static void assertIllegal(ThreadPoolFactory.Builder builder) {
+    try {
+      builder.build();
+      fail();
+    } catch (IllegalArgumentException expected) {
+      assertFalse(ThreadPoolFactory.getThreadPools().stream()
+          .anyMatch(factory -> factory.getPoolName().equals("illegal")));
+    }
+  }
+}
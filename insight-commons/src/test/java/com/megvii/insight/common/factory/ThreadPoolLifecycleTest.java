@@ -0,0 +1,76 @@
+package com.megvii.insight.common.factory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class ThreadPoolLifecycleTest {
+
+  @Test
+  public void poolsShutDownTogether() throws InterruptedException {
+    AtomicInteger completed = new AtomicInteger();
+    AtomicInteger interrupted = new AtomicInteger();
+    List<ThreadPoolFactory> factories = new ArrayList<>();
+    CountDownLatch started = new CountDownLatch(4);
+    for (int i = 0; i < 4; i++) {
+      ThreadPoolFactory factory = ThreadPoolFactory.builder("lifecycle_" + i)
+          .corePoolSize(1)
+          .shutdownTimeout(i == 3 ? 200L : 2_000L, TimeUnit.MILLISECONDS)
+          .build();
+      // the last pool never finishes in time
+      long sleep = i == 3 ? 10_000L : 300L;
+      factory.getExecutor().execute(() -> {
+        started.countDown();
+        try {
+          Thread.sleep(sleep);
+          completed.incrementAndGet();
+        } catch (InterruptedException ex) {
+          interrupted.incrementAndGet();
+        }
+      });
+      factories.add(factory);
+    }
+    assertTrue(started.await(5L, TimeUnit.SECONDS));
+    ThreadPoolLifecycle lifecycle = new ThreadPoolLifecycle();
+    lifecycle.start();
+
+    long start = System.nanoTime();
+    lifecycle.stop();
+    long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+    // 300ms for all, rather than 3 x 300ms and 200ms one after another
+    assertTrue(elapsed + "ms", elapsed < 800L);
+    for (ThreadPoolFactory factory : factories) {
+      assertTrue(factory.getExecutor().awaitTermination(1L, TimeUnit.SECONDS));
+      assertFalse(ThreadPoolFactory.getThreadPools().contains(factory));
+    }
+    assertEquals(3, completed.get());
+    assertEquals(1, interrupted.get());
+  }
+
+  @Test
+  public void lastLifecycleShutsDown() throws InterruptedException {
+    ThreadPoolFactory factory = ThreadPoolFactory.builder("lifecycle_shared").corePoolSize(1).build();
+    ThreadPoolLifecycle parent = new ThreadPoolLifecycle();
+    ThreadPoolLifecycle child = new ThreadPoolLifecycle();
+    parent.start();
+    child.start();
+
+    child.stop();
+    child.stop();
+    assertFalse(factory.getExecutor().isShutdown());
+    assertTrue(ThreadPoolFactory.getThreadPools().contains(factory));
+
+    parent.stop();
+    assertTrue(factory.getExecutor().awaitTermination(1L, TimeUnit.SECONDS));
+    assertFalse(ThreadPoolFactory.getThreadPools().contains(factory));
+  }
+}
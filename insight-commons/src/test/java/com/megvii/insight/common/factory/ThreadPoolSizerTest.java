@@ -0,0 +1,51 @@
+package com.megvii.insight.common.factory;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class ThreadPoolSizerTest {
+
+  private static final long MS = TimeUnit.MILLISECONDS.toNanos(1L);
+
+  /**
+   * expected, current, min, max, then over an interval of 1s: tasks started, their wait (ms), tasks executed,
+   * their execution time (ms), active threads and queued tasks, for a target wait of 10ms.
+   */
+  private static final long[][] SIZES = {
+      // idle, shrinks a quarter at most
+      {6, 8, 1, 64, 0, 0, 0, 0, 0, 0},
+      {12, 16, 1, 64, 100, 0, 100, 1_000, 0, 0},
+      // the running tasks took the whole interval, with tasks queued: doubles, up to the max
+      {16, 8, 1, 64, 0, 0, 0, 0, 8, 10},
+      {64, 40, 1, 64, 0, 0, 0, 0, 40, 10},
+      // waited 40ms for 20ms tasks: (40 + 20) / (10 + 20) times the size
+      {8, 4, 1, 64, 100, 4_000, 100, 2_000, 4, 10},
+      // waited 200ms: grows twice at most
+      {8, 4, 1, 64, 100, 20_000, 100, 2_000, 4, 10},
+      {3, 2, 1, 3, 100, 20_000, 100, 2_000, 2, 10},
+      // 3 threads busy on average, at 75%
+      {4, 4, 1, 64, 100, 0, 100, 3_000, 1, 0},
+      // 3.1 threads busy, rounded up
+      {5, 4, 1, 64, 100, 0, 100, 3_100, 1, 0},
+      // more threads active than the completed tasks account for
+      {7, 4, 1, 64, 100, 0, 100, 1_000, 5, 0},
+      // above the waits in the interval, without started tasks
+      {4, 4, 1, 64, 0, 0, 100, 3_000, 0, 0},
+      // clamped to the min
+      {4, 4, 4, 64, 0, 0, 0, 0, 0, 0},
+      {1, 1, 1, 64, 0, 0, 0, 0, 0, 0},
+  };
+
+  @Test
+  public void size() {
+    for (long[] row : SIZES) {
+      int size = ThreadPoolSizer.size((int) row[1], (int) row[2], (int) row[3], 10 * MS, 1_000 * MS,
+          row[4], row[5] * MS, row[6], row[7] * MS, (int) row[8], (int) row[9]);
+      assertEquals(Arrays.toString(row), row[0], size);
+    }
+  }
+}
@@ -0,0 +1,197 @@
+package com.megvii.insight.common.lock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+
+public class KeyedLocksTest {
+
+  @Test
+  public void entryRemovedAfterLastUnlock() {
+    ExactKeyedLock<String> locks = (ExactKeyedLock<String>) KeyedLocks.<String>exact();
+
+    Locked first = locks.lock("a");
+    Locked reentered = locks.lock("a");
+    Locked other = locks.tryLock("b");
+    assertEquals(2, locks.size());
+
+    reentered.close();
+    other.close();
+    assertEquals(1, locks.size());
+    first.close();
+    assertEquals(0, locks.size());
+  }
+
+  @Test
+  public void failedTryLockReleasesEntry() throws InterruptedException {
+    ExactKeyedLock<String> locks = (ExactKeyedLock<String>) KeyedLocks.<String>exact();
+    Holder holder = Holder.hold(() -> locks.lock("a"));
+
+    assertNull(locks.tryLock("a"));
+    assertNull(locks.tryLock("a", 20L, TimeUnit.MILLISECONDS));
+    assertEquals(1, locks.size());
+
+    holder.release();
+    assertEquals(0, locks.size());
+  }
+
+  @Test
+  public void interruptedLockReleasesEntry() throws InterruptedException {
+    ExactKeyedLock<String> locks = (ExactKeyedLock<String>) KeyedLocks.<String>exact();
+    Holder holder = Holder.hold(() -> locks.lock("a"));
+    AtomicReference<Throwable> thrown = new AtomicReference<>();
+    Thread waiter = new Thread(() -> {
+      try {
+        locks.lockInterruptibly("a").close();
+      } catch (InterruptedException ex) {
+        thrown.set(ex);
+      }
+    });
+    waiter.start();
+    while (waiter.getState() != Thread.State.WAITING) {
+      Thread.sleep(1L);
+    }
+    assertEquals(1, locks.size());
+
+    waiter.interrupt();
+    waiter.join();
+    assertTrue(thrown.get() instanceof InterruptedException);
+    assertEquals(1, locks.size());
+    holder.release();
+    assertEquals(0, locks.size());
+  }
+
+  @Test
+  public void exactLocksOnlyTheKey() throws InterruptedException {
+    KeyedLock<String> locks = KeyedLocks.exact();
+    Holder holder = Holder.hold(() -> locks.lock("a"));
+
+    Locked other = locks.tryLock("b");
+    assertNotNull(other);
+    other.close();
+    holder.release();
+  }
+
+  @Test
+  public void mutualExclusionPerKey() throws InterruptedException {
+    assertMutualExclusion(KeyedLocks.exact());
+    assertMutualExclusion(KeyedLocks.striped(4));
+    assertMutualExclusion(KeyedLocks.<Integer>exactReadWrite().writeLock());
+    assertMutualExclusion(KeyedLocks.<Integer>stripedReadWrite(4).writeLock());
+  }
+
+  @Test
+  public void readsShareWritesExclude() throws InterruptedException {
+    assertReadWrite(KeyedLocks.exactReadWrite());
+    assertReadWrite(KeyedLocks.stripedReadWrite(1));
+  }
+
+  @Test
+  public void readWriteEntryRemovedAfterLastUnlock() {
+    KeyedReadWriteLock<String> locks = KeyedLocks.exactReadWrite();
+    ExactKeyedLock<String> read = (ExactKeyedLock<String>) locks.readLock();
+
+    Locked first = locks.readLock().lock("a");
+    Locked second = locks.readLock().lock("a");
+    assertNull(locks.writeLock().tryLock("a"));
+    assertEquals(1, read.size());
+
+    first.close();
+    second.close();
+    assertEquals(0, read.size());
+    locks.writeLock().lock("a").close();
+    assertEquals(0, read.size());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void illegalStripes() {
+    KeyedLocks.striped(0);
+  }
+
+  private static void assertMutualExclusion(KeyedLock<Integer> locks) throws InterruptedException {
+    int[] counters = new int[8];
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < 4; t++) {
+      Thread thread = new Thread(() -> {
+        for (int i = 0; i < 20_000; i++) {
+          int key = i % counters.length;
+          try (Locked ignored = locks.lock(key)) {
+            // a racy read-modify-write unless the key is locked
+            int value = counters[key];
+            Thread.yield();
+            counters[key] = value + 1;
+          }
+        }
+      });
+      threads.add(thread);
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    for (int counter : counters) {
+      assertEquals(4 * 20_000 / counters.length, counter);
+    }
+  }
+
+  private static void assertReadWrite(KeyedReadWriteLock<String> locks) throws InterruptedException {
+    Holder reader = Holder.hold(() -> locks.readLock().lock("a"));
+    Locked read = locks.readLock().tryLock("a");
+    assertNotNull(read);
+    assertNull(locks.writeLock().tryLock("a", 10L, TimeUnit.MILLISECONDS));
+    read.close();
+    reader.release();
+
+    Holder writer = Holder.hold(() -> locks.writeLock().lock("a"));
+    assertNull(locks.readLock().tryLock("a"));
+    assertNull(locks.writeLock().tryLock("a"));
+    writer.release();
+    Locked write = locks.writeLock().tryLock("a");
+    assertNotNull(write);
+    write.close();
+  }
+
+  /**
+   * Holds a lock in another thread, locks are released by the thread holding them.
+   */
+  private static final class Holder {
+
+    private final CountDownLatch acquired = new CountDownLatch(1);
+
+    private final CountDownLatch released = new CountDownLatch(1);
+
+    private Thread thread;
+
+    static Holder hold(Supplier<Locked> lock) throws InterruptedException {
+      Holder holder = new Holder();
+      holder.thread = new Thread(() -> {
+        try (Locked ignored = lock.get()) {
+          holder.acquired.countDown();
+          holder.released.await();
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+        }
+      });
+      holder.thread.start();
+      assertTrue(holder.acquired.await(5L, TimeUnit.SECONDS));
+      return holder;
+    }
+
+    void release() throws InterruptedException {
+      released.countDown();
+      thread.join();
+      assertFalse(thread.isAlive());
+    }
+  }
+}
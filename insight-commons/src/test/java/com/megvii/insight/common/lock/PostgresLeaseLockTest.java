@@ -0,0 +1,165 @@
+package com.megvii.insight.common.lock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import com.megvii.insight.common.PostgresTestSupport;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Against a local PostgreSQL, skipped when none is reachable, see {@link PostgresTestSupport}.
+ */
+public class PostgresLeaseLockTest {
+
+  private static final String TABLE = "insight_lock_lease_test";
+
+  private DataSource dataSource;
+
+  private boolean connected;
+
+  @Before
+  public void setUp() throws SQLException {
+    dataSource = PostgresTestSupport.dataSource();
+    connected = true;
+    execute("DROP TABLE IF EXISTS " + TABLE);
+    lock(30_000L).createTable();
+  }
+
+  @After
+  public void tearDown() throws SQLException {
+    if (connected) {
+      execute("DROP TABLE IF EXISTS " + TABLE);
+    }
+  }
+
+  private PostgresLeaseLock lock(long leaseMillis) {
+    return PostgresLeaseLock.builder(dataSource)
+        .table(TABLE)
+        .leaseTime(leaseMillis, TimeUnit.MILLISECONDS)
+        .retryInterval(20, TimeUnit.MILLISECONDS)
+        .build();
+  }
+
+  private void execute(String sql) throws SQLException {
+    try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+      statement.execute(sql);
+    }
+  }
+
+  @Test
+  public void exclusiveAndFenced() {
+    PostgresLeaseLock node1 = lock(30_000L);
+    PostgresLeaseLock node2 = lock(30_000L);
+
+    Lease lease = node1.tryAcquire("role:1");
+    assertNotNull(lease);
+    assertTrue(lease.isValid());
+    assertNull(node2.tryAcquire("role:1"));
+
+    Lease other = node2.tryAcquire("role:2");
+    assertNotNull(other);
+    other.close();
+
+    lease.close();
+    assertFalse(lease.isValid());
+    Lease next = node2.tryAcquire("role:1");
+    assertNotNull(next);
+    assertEquals(lease.getToken() + 1, next.getToken());
+    next.close();
+  }
+
+  @Test
+  public void expiredLease() throws Exception {
+    // left by a node that died holding the lock
+    execute("INSERT INTO " + TABLE + " (lock_key, owner, token, expires_at) "
+        + "VALUES ('role:1', 'dead', 7, now() + INTERVAL '300 milliseconds')");
+    PostgresLeaseLock node = lock(30_000L);
+
+    assertNull(node.tryAcquire("role:1"));
+    try (Lease lease = node.acquire("role:1", 5, TimeUnit.SECONDS)) {
+      assertNotNull(lease);
+      assertEquals(8L, lease.getToken());
+    }
+  }
+
+  @Test
+  public void renewal() throws Exception {
+    PostgresLeaseLock node1 = lock(300L);
+    PostgresLeaseLock node2 = lock(300L);
+
+    try (Lease lease = node1.tryAcquire("role:1")) {
+      Thread.sleep(1_000L);
+      assertTrue(lease.isValid());
+      assertNull(node2.acquire("role:1", 200, TimeUnit.MILLISECONDS));
+    }
+    try (Lease lease = node2.tryAcquire("role:1")) {
+      assertNotNull(lease);
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void notReentrant() {
+    PostgresLeaseLock node = lock(30_000L);
+    try (Lease ignored = node.tryAcquire("role:1")) {
+      node.tryAcquire("role:1");
+    }
+  }
+
+  @Test
+  public void waitersDoNotPoll() throws Exception {
+    PostgresLeaseLock node1 = lock(30_000L);
+    PostgresLeaseLock node2 = lock(30_000L);
+    int threads = 8;
+    long holdMillis = 500L;
+
+    Lease held = node1.tryAcquire("role:1");
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    CountDownLatch started = new CountDownLatch(threads);
+    AtomicInteger inside = new AtomicInteger();
+    List<Future<Long>> tokens = new ArrayList<>();
+    for (int i = 0; i < threads; i++) {
+      tokens.add(executor.submit(() -> {
+        started.countDown();
+        try (Lease lease = node2.acquire("role:1", 10, TimeUnit.SECONDS)) {
+          assertEquals(1, inside.incrementAndGet());
+          Thread.sleep(10L);
+          inside.decrementAndGet();
+          return lease.getToken();
+        }
+      }));
+    }
+    started.await();
+    Thread.sleep(holdMillis);
+    held.close();
+
+    List<Long> acquired = new ArrayList<>();
+    for (Future<Long> token : tokens) {
+      acquired.add(token.get());
+    }
+    executor.shutdown();
+    assertEquals(threads, acquired.stream().distinct().count());
+    // one acquisition and one release per thread, plus the polls of the thread at the head while node1 held
+    // the lease: every thread polling would take threads * holdMillis / retryInterval queries
+    long polls = node2.getQueryCount() - 2L * threads;
+    assertTrue("polls: " + polls, polls < 2L * holdMillis / 20L);
+  }
+}
@@ -0,0 +1,185 @@
+package com.megvii.insight.common.message;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.test.rule.KafkaEmbedded;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+
+/**
+ * Against an embedded Kafka broker.
+ */
+public class KafkaMessageTransportTest {
+
+  @ClassRule
+  public static final KafkaEmbedded KAFKA = new KafkaEmbedded(1, true, 2, "audit", "plain", "closing");
+
+  private static KafkaMessageTransport.Builder transport(String group) {
+    Map<String, Object> consumerConfigs = KafkaTestUtils.consumerProps(group, "true", KAFKA);
+    // records sent before the partitions are assigned
+    consumerConfigs.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+    return KafkaMessageTransport.builder(KafkaTestUtils.producerProps(KAFKA))
+        .consumer(consumerConfigs)
+        .codec(MessageCodec.STRING);
+  }
+
+  @Test
+  public void batches() throws Exception {
+    int count = 1000;
+    Set<String> received = ConcurrentHashMap.newKeySet();
+    LongAdder batches = new LongAdder();
+    LongAdder messages = new LongAdder();
+    LongAdder oversized = new LongAdder();
+    try (KafkaMessageTransport transport = transport("batches").batchSize(1024).build();
+        Subscription ignored = transport.subscribe("audit", String.class, received::addAll)) {
+      transport.addBatchListener((size, bytes, latencyNanos, failed) -> {
+        batches.increment();
+        messages.add(size);
+        if (bytes > 1024) {
+          oversized.increment();
+        }
+      });
+      List<CompletableFuture<Void>> futures = new ArrayList<>();
+      Set<String> published = new HashSet<>();
+      for (int i = 0; i < count; i++) {
+        String message = "audit event " + i;
+        published.add(message);
+        futures.add(transport.publish("audit", message));
+      }
+      CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(30, TimeUnit.SECONDS);
+
+      assertEquals(count, transport.getMessageCount());
+      assertEquals(0L, transport.getFailedCount());
+      assertEquals(0L, transport.getInFlightBytes());
+      assertEquals(count, messages.sum());
+      // about 1024 / (4 + 14) messages a batch
+      assertTrue("batches: " + batches.sum(), batches.sum() < count / 40);
+      assertEquals(0L, oversized.sum());
+
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+      while (received.size() < count && System.nanoTime() < deadline) {
+        Thread.sleep(50L);
+      }
+      assertEquals(published, received);
+    }
+  }
+
+  @Test
+  public void plainRecords() throws Exception {
+    Map<String, Object> producerConfigs = KafkaTestUtils.producerProps(KAFKA);
+    DefaultKafkaProducerFactory<String, String> producerFactory = new DefaultKafkaProducerFactory<>(
+        producerConfigs, new StringSerializer(), new StringSerializer());
+    List<List<String>> received = new ArrayList<>();
+    CompletableFuture<Void> handled = new CompletableFuture<>();
+    try (KafkaMessageTransport transport = transport("plain").build();
+        Subscription ignored = transport.subscribe("plain", String.class, messages -> {
+          received.add(messages);
+          handled.complete(null);
+        })) {
+      new KafkaTemplate<>(producerFactory).send("plain", "hello").get(10, TimeUnit.SECONDS);
+      handled.get(30, TimeUnit.SECONDS);
+    } finally {
+      producerFactory.destroy();
+    }
+    assertEquals(1, received.size());
+    assertEquals("hello", received.get(0).get(0));
+  }
+
+  @Test
+  public void backpressure() throws Exception {
+    Map<String, Object> producerConfigs = KafkaTestUtils.producerProps(KAFKA);
+    // no broker there: sending blocks for the metadata, then fails
+    producerConfigs.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:1");
+    producerConfigs.put(ProducerConfig.MAX_BLOCK_MS_CONFIG, 1000);
+    try (KafkaMessageTransport transport = KafkaMessageTransport.builder(producerConfigs)
+        .codec(MessageCodec.STRING)
+        .batchSize(64)
+        .maxInFlightBytes(64)
+        .linger(1, TimeUnit.MILLISECONDS)
+        .maxBlock(100, TimeUnit.MILLISECONDS)
+        .build()) {
+      CompletableFuture<Void> first = transport.publish("audit", new String(new char[36]));
+      assertEquals(40L, transport.getInFlightBytes());
+      try {
+        transport.publish("audit", new String(new char[36]));
+        fail();
+      } catch (RejectedExecutionException expected) {
+        // blocked for 100ms
+      }
+      try {
+        first.get(10, TimeUnit.SECONDS);
+        fail();
+      } catch (ExecutionException expected) {
+        assertEquals(1L, transport.getFailedCount());
+        assertEquals(0L, transport.getInFlightBytes());
+      }
+    }
+  }
+
+  @Test
+  public void closed() throws Exception {
+    KafkaMessageTransport transport = transport("closed").linger(1, TimeUnit.MINUTES).build();
+    List<CompletableFuture<Void>> futures = new ArrayList<>();
+    List<Thread> publishers = new ArrayList<>();
+    AtomicBoolean rejected = new AtomicBoolean();
+    for (int t = 0; t < 4; t++) {
+      Thread publisher = new Thread(() -> {
+        try {
+          while (true) {
+            CompletableFuture<Void> future = transport.publish("closing", "closing");
+            synchronized (futures) {
+              futures.add(future);
+            }
+          }
+        } catch (RejectedExecutionException ex) {
+          rejected.set(true);
+        }
+      });
+      publishers.add(publisher);
+      publisher.start();
+    }
+    Thread.sleep(100L);
+
+    transport.close();
+    for (Thread publisher : publishers) {
+      publisher.join(10_000L);
+      assertFalse(publisher.isAlive());
+    }
+
+    assertTrue(rejected.get());
+    // lingering batches sent by the close, all acknowledged
+    for (CompletableFuture<Void> future : futures) {
+      future.get(0, TimeUnit.SECONDS);
+    }
+    assertEquals(futures.size(), transport.getMessageCount());
+    assertEquals(0L, transport.getInFlightBytes());
+    try {
+      transport.publish("closing", "closed");
+      fail();
+    } catch (RejectedExecutionException expected) {
+      assertEquals(0L, transport.getInFlightBytes());
+    }
+  }
+}
@@ -0,0 +1,153 @@
+package com.megvii.insight.common.message;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class LocalMessageBusTest {
+
+  @Test
+  public void ordersEachPublisher() throws InterruptedException {
+    int publishers = 4;
+    int count = 50_000;
+    List<long[]> received = Collections.synchronizedList(new ArrayList<>());
+    LocalMessageBus bus = LocalMessageBus.builder().ringSize(64).maxBatch(16).waitStrategy(WaitStrategy.YIELD)
+        .build();
+    List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+    bus.subscribe("audit", long[].class, messages -> {
+      batchSizes.add(messages.size());
+      received.addAll(messages);
+    });
+    List<Thread> threads = new ArrayList<>();
+    for (int p = 0; p < publishers; p++) {
+      long publisher = p;
+      Thread thread = new Thread(() -> {
+        for (long i = 0; i < count; i++) {
+          bus.publish("audit", new long[] {publisher, i});
+        }
+      });
+      threads.add(thread);
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    bus.close();
+
+    assertEquals(publishers * count, received.size());
+    long[] next = new long[publishers];
+    for (long[] message : received) {
+      assertEquals(next[(int) message[0]]++, message[1]);
+    }
+    for (int size : batchSizes) {
+      assertTrue(String.valueOf(size), size > 0 && size <= 16);
+    }
+  }
+
+  @Test
+  public void blocksOnFullRingThenRejects() throws InterruptedException {
+    LocalMessageBus bus = LocalMessageBus.builder().ringSize(4).maxBatch(1)
+        .maxBlock(100, TimeUnit.MILLISECONDS).build();
+    CountDownLatch held = new CountDownLatch(1);
+    CountDownLatch open = new CountDownLatch(1);
+    List<Integer> received = Collections.synchronizedList(new ArrayList<>());
+    bus.subscribe("audit", Integer.class, messages -> {
+      held.countDown();
+      open.await();
+      received.addAll(messages);
+    });
+    // one held by the handler, the 4 slots of the ring taken
+    bus.publish("audit", 0);
+    assertTrue(held.await(5L, TimeUnit.SECONDS));
+    for (int i = 1; i < 5; i++) {
+      bus.publish("audit", i);
+    }
+    assertEquals(4, bus.getPendingCount("audit"));
+
+    long start = System.nanoTime();
+    try {
+      bus.publish("audit", 5);
+      fail();
+    } catch (RejectedExecutionException expected) {
+      assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(100L));
+    }
+
+    Thread publisher = new Thread(() -> bus.publish("audit", 6));
+    publisher.start();
+    publisher.join(50L);
+    assertTrue(publisher.isAlive());
+    open.countDown();
+    publisher.join(5_000L);
+    assertFalse(publisher.isAlive());
+    bus.close();
+
+    assertEquals(Arrays.asList(0, 1, 2, 3, 4, 6), received);
+  }
+
+  @Test
+  public void closeHandlesPublished() throws InterruptedException {
+    LocalMessageBus bus = LocalMessageBus.builder().ringSize(1024).maxBatch(8).build();
+    CountDownLatch open = new CountDownLatch(1);
+    List<Integer> received = new ArrayList<>();
+    Subscription subscription = bus.subscribe("audit", Integer.class, messages -> {
+      open.await();
+      received.addAll(messages);
+    });
+    for (int i = 0; i < 1000; i++) {
+      bus.publish("audit", i);
+    }
+
+    new Thread(open::countDown).start();
+    subscription.close();
+
+    assertEquals(1000, received.size());
+    for (int i = 0; i < 1000; i++) {
+      assertEquals(i, received.get(i).intValue());
+    }
+    // not subscribed anymore
+    bus.publish("audit", 1000);
+    assertEquals(0, bus.getPendingCount("audit"));
+  }
+
+  @Test
+  public void dropsMessagesOfOtherTypes() {
+    LocalMessageBus bus = LocalMessageBus.builder().build();
+    List<List<String>> received = new ArrayList<>();
+    bus.subscribe("audit", String.class, messages -> received.add(new ArrayList<>(messages)));
+
+    bus.publish("audit", "a");
+    bus.publish("audit", 1);
+    bus.publish("audit", "b");
+    bus.publish("audit", 2L);
+    bus.close();
+
+    List<String> strings = new ArrayList<>();
+    received.forEach(strings::addAll);
+    assertEquals(Arrays.asList("a", "b"), strings);
+  }
+
+  @Test
+  public void futuresNotShared() throws Exception {
+    LocalMessageBus bus = LocalMessageBus.builder().build();
+    CompletableFuture<Void> first = bus.publish("audit", "a");
+    first.obtrudeException(new IllegalStateException("obtruded"));
+
+    CompletableFuture<Void> second = bus.publish("audit", "b");
+    assertNotSame(first, second);
+    second.get(0, TimeUnit.SECONDS);
+    bus.close();
+  }
+}
@@ -0,0 +1,94 @@
+package com.megvii.insight.common.message;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class RingBufferTest {
+
+  @Test
+  public void fullUntilDrained() {
+    RingBuffer<Integer> ring = new RingBuffer<>(4);
+    for (int i = 0; i < 4; i++) {
+      assertTrue(ring.offer(i));
+    }
+    assertFalse(ring.offer(4));
+    assertEquals(4, ring.size());
+
+    List<Integer> drained = new ArrayList<>();
+    assertEquals(1, ring.drain(drained, 1));
+    assertTrue(ring.offer(4));
+    assertFalse(ring.offer(5));
+    assertEquals(4, ring.drain(drained, 8));
+    assertEquals(Arrays.asList(0, 1, 2, 3, 4), drained);
+    assertEquals(0, ring.size());
+    assertEquals(0, ring.drain(drained, 8));
+  }
+
+  @Test
+  public void wrapsAroundInOrder() {
+    RingBuffer<Integer> ring = new RingBuffer<>(4);
+    List<Integer> drained = new ArrayList<>();
+    int next = 0;
+    for (int round = 0; round < 100; round++) {
+      while (ring.offer(next)) {
+        next++;
+      }
+      // up to 3 at a time, the slots taken in a different place each round
+      ring.drain(drained, 3);
+    }
+    ring.drain(drained, 4);
+
+    assertEquals(next, drained.size());
+    for (int i = 0; i < next; i++) {
+      assertEquals(i, drained.get(i).intValue());
+    }
+  }
+
+  @Test
+  public void ordersEachProducer() throws InterruptedException {
+    int producers = 4;
+    int count = 20_000;
+    RingBuffer<long[]> ring = new RingBuffer<>(64);
+    List<Thread> threads = new ArrayList<>();
+    for (int p = 0; p < producers; p++) {
+      long producer = p;
+      Thread thread = new Thread(() -> {
+        for (long i = 0; i < count; i++) {
+          long[] element = {producer, i};
+          while (!ring.offer(element)) {
+            Thread.yield();
+          }
+        }
+      });
+      threads.add(thread);
+      thread.start();
+    }
+
+    long[] next = new long[producers];
+    List<long[]> drained = new ArrayList<>();
+    int total = 0;
+    while (total < producers * count) {
+      int drainedCount = ring.drain(drained, 16);
+      assertTrue(drainedCount <= 16);
+      if (drainedCount == 0) {
+        Thread.yield();
+      }
+      for (long[] element : drained) {
+        assertEquals(next[(int) element[0]]++, element[1]);
+      }
+      total += drainedCount;
+      drained.clear();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(0, ring.size());
+  }
+}
@@ -0,0 +1,66 @@
+package com.megvii.insight.common.message;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Test;
+
+public class RoutingMessageTransportTest {
+
+  @Test
+  public void routesTopics() throws Exception {
+    Recording local = new Recording();
+    Recording remote = new Recording();
+    RoutingMessageTransport transport = new RoutingMessageTransport(local, remote, Collections.singleton("audit"));
+
+    transport.publish("audit", "a");
+    transport.publish("order", "b");
+    transport.subscribe("audit", String.class, messages -> {
+    });
+    transport.subscribe("order", String.class, messages -> {
+    });
+
+    assertSame(local, transport.route("audit"));
+    assertSame(remote, transport.route("order"));
+    assertEquals(Arrays.asList("publish audit", "subscribe audit"), local.calls);
+    assertEquals(Arrays.asList("publish order", "subscribe order"), remote.calls);
+  }
+
+  @Test
+  public void localTopicsThroughLocalBus() throws Exception {
+    LocalMessageBus bus = LocalMessageBus.builder().build();
+    Recording remote = new Recording();
+    RoutingMessageTransport transport = new RoutingMessageTransport(bus, remote, Collections.singleton("audit"));
+    List<String> received = new ArrayList<>();
+    transport.subscribe("audit", String.class, received::addAll);
+
+    transport.publish("audit", "a").get();
+    bus.close();
+
+    assertEquals(Collections.singletonList("a"), received);
+    assertEquals(0, remote.calls.size());
+  }
+
+  private static final class Recording implements MessageTransport {
+
+    private final List<String> calls = new ArrayList<>();
+
+    @Override
+    public CompletableFuture<Void> publish(String topic, Object message) {
+      calls.add("publish " + topic);
+      return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public <T> Subscription subscribe(String topic, Class<T> type, MessageHandler<T> handler) {
+      calls.add("subscribe " + topic);
+      return () -> calls.add("close " + topic);
+    }
+  }
+}
@@ -0,0 +1,66 @@
+package com.megvii.insight.framework.commons;
+
+import java.util.concurrent.TimeUnit;
+
+import com.megvii.insight.common.message.PublisherMetrics;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Publishes the {@link PublisherMetrics} of a batching publisher as message.* meters tagged with its name, each
+ * completed batch recorded into the distributions of the batch sizes and latencies, e.g.
+ *
+ * <pre>
+ *
+ *    &#64;Bean
+ *    public MeterBinder auditPublisherMeters(KafkaMessageTransport auditTransport) {
+ *      return new PublisherMeterBinder("audit", auditTransport);
+ *    }
+ *
+ * </pre>
+ */
+public final class PublisherMeterBinder implements MeterBinder {
+
+  private final String name;
+
+  private final PublisherMetrics publisher;
+
+  public PublisherMeterBinder(String name, PublisherMetrics publisher) {
+    this.name = name;
+    this.publisher = publisher;
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    Tags tags = Tags.of("name", name);
+    FunctionCounter.builder("message.published", publisher, PublisherMetrics::getMessageCount)
+        .description("messages of the acknowledged or failed batches")
+        .tags(tags).register(registry);
+    FunctionCounter.builder("message.failed", publisher, PublisherMetrics::getFailedCount)
+        .tags(tags).register(registry);
+    DistributionSummary messages = DistributionSummary.builder("message.batch.messages")
+        .description("messages of a batch")
+        .tags(tags).register(registry);
+    DistributionSummary bytes = DistributionSummary.builder("message.batch.bytes")
+        .description("serialized size of a batch")
+        .baseUnit("bytes")
+        .tags(tags).register(registry);
+    Timer latency = Timer.builder("message.batch")
+        .description("time from the first message of a batch to its acknowledgement")
+        .tags(tags).register(registry);
+    publisher.addBatchListener((count, size, latencyNanos, failed) -> {
+      messages.record(count);
+      bytes.record(size);
+      latency.record(latencyNanos, TimeUnit.NANOSECONDS);
+    });
+    Gauge.builder("message.inflight.bytes", publisher, PublisherMetrics::getInFlightBytes)
+        .description("bytes published and not acknowledged yet")
+        .baseUnit("bytes")
+        .tags(tags).register(registry);
+  }
+}
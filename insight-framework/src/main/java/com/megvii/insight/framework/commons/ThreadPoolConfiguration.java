@@ -0,0 +1,31 @@
+package com.megvii.insight.framework.commons;
+
+import com.megvii.insight.common.factory.ThreadPoolLifecycle;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Graceful shutdown and metrics of the ThreadPoolFactory thread pools, see
+ * {@link com.megvii.insight.framework.commons.annotation.EnableThreadPool}.
+ */
+@Configuration
+public class ThreadPoolConfiguration {
+
+  @Bean
+  @ConditionalOnMissingBean
+  public ThreadPoolLifecycle threadPoolLifecycle() {
+    return new ThreadPoolLifecycle();
+  }
+
+  @Configuration
+  @ConditionalOnClass(name = "io.micrometer.core.instrument.MeterRegistry")
+  static class MetricsConfiguration {
+
+    @Bean
+    ThreadPoolMeterBinder threadPoolMeterBinder() {
+      return new ThreadPoolMeterBinder();
+    }
+  }
+}
@@ -0,0 +1,139 @@
+package com.megvii.insight.framework.commons;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+
+import com.megvii.insight.common.factory.MonitoredThreadPoolExecutor;
+import com.megvii.insight.common.factory.ThreadPoolFactory;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.DisposableBean;
+
+/**
+ * Publishes every {@link ThreadPoolFactory} thread pool as Micrometer meters tagged with its name, the pools
+ * created after binding included. A pool shut down and created again under the same name is published by the
+ * same meters. Virtual thread executors have no meters.
+ */
+final class ThreadPoolMeterBinder implements MeterBinder, DisposableBean {
+
+  private final Set<MeterRegistry> registries = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+  /**
+   * Held here, as the meters only hold their state weakly.
+   */
+  private final ConcurrentHashMap<String, Pool> pools = new ConcurrentHashMap<>();
+
+  private final Consumer<ThreadPoolFactory> listener = factory -> registries.forEach(registry -> bind(factory, registry));
+
+  ThreadPoolMeterBinder() {
+    ThreadPoolFactory.addListener(listener);
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    registries.add(registry);
+    ThreadPoolFactory.getThreadPools().forEach(factory -> bind(factory, registry));
+  }
+
+  @Override
+  public void destroy() {
+    ThreadPoolFactory.removeListener(listener);
+  }
+
+  private void bind(ThreadPoolFactory factory, MeterRegistry registry) {
+    Pool pool = pools.computeIfAbsent(factory.getPoolName(), name -> new Pool());
+    ExecutorService executor = factory.getExecutor();
+    pool.executor = executor;
+    Tags tags = Tags.of("name", factory.getPoolName());
+    if (executor instanceof MonitoredThreadPoolExecutor) {
+      bindThreadPool(pool, tags, registry);
+    } else if (executor instanceof ForkJoinPool) {
+      bindForkJoinPool(pool, tags, registry);
+    }
+  }
+
+  private void bindForkJoinPool(Pool pool, Tags tags, MeterRegistry registry) {
+    Gauge.builder("executor.queued", pool, forkJoin(p -> p.getQueuedSubmissionCount() + p.getQueuedTaskCount()))
+        .description("tasks waiting in the submission and work queues")
+        .tags(tags).register(registry);
+    Gauge.builder("executor.active", pool, forkJoin(ForkJoinPool::getActiveThreadCount))
+        .tags(tags).register(registry);
+    Gauge.builder("executor.pool.size", pool, forkJoin(ForkJoinPool::getPoolSize))
+        .tags(tags).register(registry);
+    FunctionCounter.builder("executor.steals", pool, forkJoin(ForkJoinPool::getStealCount))
+        .description("tasks stolen from another thread's work queue")
+        .tags(tags).register(registry);
+  }
+
+  private void bindThreadPool(Pool pool, Tags tags, MeterRegistry registry) {
+    Gauge.builder("executor.queued", pool, monitored(MonitoredThreadPoolExecutor::getQueueSize))
+        .description("tasks waiting in the queue")
+        .tags(tags).register(registry);
+    Gauge.builder("executor.queue.remaining", pool, monitored(MonitoredThreadPoolExecutor::getQueueRemainingCapacity))
+        .tags(tags).register(registry);
+    Gauge.builder("executor.active", pool, monitored(MonitoredThreadPoolExecutor::getActiveCount))
+        .description("threads running a task")
+        .tags(tags).register(registry);
+    Gauge.builder("executor.pool.size", pool, monitored(MonitoredThreadPoolExecutor::getPoolSize))
+        .tags(tags).register(registry);
+    Gauge.builder("executor.pool.core", pool, monitored(MonitoredThreadPoolExecutor::getCorePoolSize))
+        .description("core size, adjusted by adaptive pools")
+        .tags(tags).register(registry);
+    FunctionCounter.builder("executor.completed", pool, monitored(MonitoredThreadPoolExecutor::getCompletedTaskCount))
+        .tags(tags).register(registry);
+    FunctionCounter.builder("executor.rejected", pool, monitored(MonitoredThreadPoolExecutor::getRejectedCount))
+        .description("tasks rejected by the full pool, whatever the rejection policy")
+        .tags(tags).register(registry);
+    FunctionTimer.builder("executor.wait", pool, count(MonitoredThreadPoolExecutor::getWaitCount),
+        monitored(executor -> executor.getWaitTime(TimeUnit.NANOSECONDS)), TimeUnit.NANOSECONDS)
+        .description("time tasks waited in the queue")
+        .tags(tags).register(registry);
+    FunctionTimer.builder("executor.execution", pool, count(MonitoredThreadPoolExecutor::getExecutionCount),
+        monitored(executor -> executor.getExecutionTime(TimeUnit.NANOSECONDS)), TimeUnit.NANOSECONDS)
+        .tags(tags).register(registry);
+  }
+
+  private static ToDoubleFunction<Pool> monitored(ToDoubleFunction<MonitoredThreadPoolExecutor> value) {
+    return pool -> {
+      ExecutorService executor = pool.executor;
+      return executor instanceof MonitoredThreadPoolExecutor
+          ? value.applyAsDouble((MonitoredThreadPoolExecutor) executor) : 0.0;
+    };
+  }
+
+  private static ToLongFunction<Pool> count(ToLongFunction<MonitoredThreadPoolExecutor> value) {
+    return pool -> {
+      ExecutorService executor = pool.executor;
+      return executor instanceof MonitoredThreadPoolExecutor ? value.applyAsLong((MonitoredThreadPoolExecutor) executor)
+          : 0L;
+    };
+  }
+
+  private static ToDoubleFunction<Pool> forkJoin(ToDoubleFunction<ForkJoinPool> value) {
+    return pool -> {
+      ExecutorService executor = pool.executor;
+      return executor instanceof ForkJoinPool ? value.applyAsDouble((ForkJoinPool) executor) : 0.0;
+    };
+  }
+
+  /**
+   * The pool last created under a name. Meters cannot be removed from a registry before Micrometer 1.1, and
+   * registering them again for a pool created anew returns the ones bound to the pool shut down, so the
+   * meters of a name read whichever pool it currently refers to.
+   */
+  private static final class Pool {
+
+    private volatile ExecutorService executor;
+  }
+}
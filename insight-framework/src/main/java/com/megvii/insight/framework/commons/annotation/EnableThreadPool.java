@@ -0,0 +1,25 @@
+package com.megvii.insight.framework.commons.annotation;
+
+import com.megvii.insight.framework.commons.ThreadPoolConfiguration;
+import org.springframework.context.annotation.Import;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Indicates that the ThreadPoolFactory thread pools are managed by the application context: they are shut
+ * down gracefully when it stops, and published as executor.* meters when Micrometer is present.
+ * <p>
+ * This should be applied to a Spring java config and should have an accompanying '@Configuration'
+ * annotation.
+ * </p>
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+@Documented
+@Import(ThreadPoolConfiguration.class)
+public @interface EnableThreadPool {
+}
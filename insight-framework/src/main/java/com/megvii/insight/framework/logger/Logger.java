@@ -3,6 +3,7 @@ package com.megvii.insight.framework.logger;
 import java.util.Objects;
 
 import org.slf4j.LoggerFactory;
+import org.slf4j.Marker;
 import org.springframework.boot.logging.LogLevel;
 import org.springframework.stereotype.Component;
 
@@ -12,7 +13,7 @@ import org.springframework.stereotype.Component;
 @Component
 public final class Logger {
 
-  private void log(org.slf4j.Logger logger, LogLevel level, String message) {
+  public void log(org.slf4j.Logger logger, LogLevel level, String message) {
     Objects.requireNonNull(level, "LogLevel must not be null.");
     switch (level) {
       case TRACE:
@@ -36,7 +37,7 @@ public final class Logger {
     }
   }
 
-  private void log(org.slf4j.Logger logger, LogLevel level, String message, Throwable err) {
+  public void log(org.slf4j.Logger logger, LogLevel level, String message, Throwable err) {
     Objects.requireNonNull(level, "LogLevel must not be null.");
     switch (level) {
       case TRACE:
@@ -60,6 +61,30 @@ public final class Logger {
     }
   }
 
+  public void log(org.slf4j.Logger logger, LogLevel level, Marker marker, String message, Throwable err) {
+    Objects.requireNonNull(level, "LogLevel must not be null.");
+    switch (level) {
+      case TRACE:
+        logger.trace(marker, message, err);
+        break;
+      case DEBUG:
+        logger.debug(marker, message, err);
+        break;
+      case INFO:
+        logger.info(marker, message, err);
+        break;
+      case WARN:
+        logger.warn(marker, message, err);
+        break;
+      case ERROR:
+      case FATAL:
+        logger.error(marker, message, err);
+        break;
+      default:
+        break;
+    }
+  }
+
   public void log(LogLevel level, Class<?> clazz, String message) {
     log(LoggerFactory.getLogger(clazz), level, message);
   }
@@ -76,7 +101,7 @@ public final class Logger {
     log(LoggerFactory.getLogger(name), level, message, err);
   }
 
-  private boolean isEnabled(org.slf4j.Logger logger, LogLevel level) {
+  public boolean isEnabled(org.slf4j.Logger logger, LogLevel level) {
     Objects.requireNonNull(level, "LogLevel must not be null.");
     switch (level) {
       case TRACE:
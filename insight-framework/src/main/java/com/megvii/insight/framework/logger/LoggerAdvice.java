@@ -0,0 +1,26 @@
+package com.megvii.insight.framework.logger;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.ProxyMethodInvocation;
+import org.springframework.aop.aspectj.MethodInvocationProceedingJoinPoint;
+
+/**
+ * Around advice of the Spring AOP proxies, in PROXY mode.
+ */
+final class LoggerAdvice implements MethodInterceptor {
+
+  private final LoggerInterceptor interceptor;
+
+  LoggerAdvice(LoggerInterceptor interceptor) {
+    this.interceptor = interceptor;
+  }
+
+  @Override
+  public Object invoke(MethodInvocation invocation) throws Throwable {
+    if (!(invocation instanceof ProxyMethodInvocation)) {
+      throw new IllegalStateException("MethodInvocation is not a Spring ProxyMethodInvocation: " + invocation);
+    }
+    return interceptor.intercept(new MethodInvocationProceedingJoinPoint((ProxyMethodInvocation) invocation), null);
+  }
+}
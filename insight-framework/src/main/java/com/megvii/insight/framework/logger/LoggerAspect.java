@@ -0,0 +1,62 @@
+package com.megvii.insight.framework.logger;
+
+import com.megvii.insight.framework.logger.annotation.Loggable;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.annotation.Pointcut;
+
+/**
+ * AspectJ to intercept {@link Loggable} methods or classes, when woven at compile time or load time, see
+ * {@link com.megvii.insight.framework.logger.annotation.EnableLogger#mode()}.
+ * <p>
+ * Compiled by ajc in the insight-framework build, so the woven classes find its aspectOf(). It is a
+ * singleton outside of Spring, the {@link LoggerInterceptor} is attached by the ASPECTJ mode configuration
+ * and until then the woven methods just proceed.
+ * </p>
+ */
+@Aspect
+public class LoggerAspect {
+
+  private volatile LoggerInterceptor interceptor;
+
+  void attach(LoggerInterceptor interceptor) {
+    this.interceptor = interceptor;
+  }
+
+  void detach() {
+    this.interceptor = null;
+  }
+
+  @Pointcut("execution(public * *(..))"
+      + " && !execution(String *.toString())"
+      + " && !execution(int *.hashCode())"
+      + " && !execution(boolean *.canEqual(Object))"
+      + " && !execution(boolean *.equals(Object))")
+  protected void publicMethod() {
+  }
+
+  @Pointcut("@annotation(loggable)")
+  protected void loggableMethod(Loggable loggable) {
+  }
+
+  @Pointcut("@within(loggable)")
+  protected void loggableClass(Loggable loggable) {
+  }
+
+  @Around(value = "publicMethod() && loggableMethod(loggable)", argNames = "joinPoint,loggable")
+  public Object logExecutionMethod(ProceedingJoinPoint joinPoint, Loggable loggable) throws Throwable {
+    return logMethod(joinPoint, loggable);
+  }
+
+  @Around(value = "publicMethod() && loggableClass(loggable) " +
+      "&& !loggableMethod(com.megvii.insight.framework.logger.annotation.Loggable)", argNames = "joinPoint,loggable")
+  public Object logExecutionClass(ProceedingJoinPoint joinPoint, Loggable loggable) throws Throwable {
+    return logMethod(joinPoint, loggable);
+  }
+
+  private Object logMethod(ProceedingJoinPoint joinPoint, Loggable loggable) throws Throwable {
+    LoggerInterceptor attached = interceptor;
+    return attached == null ? joinPoint.proceed() : attached.intercept(joinPoint, loggable);
+  }
+}
@@ -0,0 +1,18 @@
+package com.megvii.insight.framework.logger;
+
+import org.aspectj.lang.Aspects;
+import org.springframework.context.annotation.Bean;
+
+/**
+ * ASPECTJ mode, {@link com.megvii.insight.framework.logger.annotation.Loggable} classes are woven with
+ * {@link LoggerAspect} at compile time or load time. Imported by {@link LoggerConfigurationSelector}, not scanned.
+ */
+class LoggerAspectJConfiguration {
+
+  @Bean(destroyMethod = "detach")
+  LoggerAspect loggerAspect(LoggerInterceptor interceptor) {
+    LoggerAspect aspect = Aspects.aspectOf(LoggerAspect.class);
+    aspect.attach(interceptor);
+    return aspect;
+  }
+}
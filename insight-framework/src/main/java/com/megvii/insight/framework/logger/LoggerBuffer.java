@@ -0,0 +1,219 @@
+package com.megvii.insight.framework.logger;
+
+import java.lang.reflect.Array;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Thread-local buffer that log messages are rendered into.
+ * <p>
+ * Arguments and results are streamed into the buffer within a budget of characters, elements and nesting
+ * depth. Rendering stops early with a ...(+N more) marker, so a huge value is never turned into one
+ * string, except for what its own toString() returns.
+ * </p>
+ */
+final class LoggerBuffer {
+
+  private static final int INITIAL_CAPACITY = 256;
+
+  private static final int MAX_RETAINED_CAPACITY = 16 * 1024;
+
+  private static final ThreadLocal<LoggerBuffer> BUFFER = ThreadLocal.withInitial(LoggerBuffer::new);
+
+  private final StringBuilder out = new StringBuilder(INITIAL_CAPACITY);
+
+  private int limit;
+
+  private int maxElements;
+
+  private int maxDepth;
+
+  /**
+   * The character budget of the current value is spent, nothing more is appended to it.
+   */
+  private boolean truncated;
+
+  static LoggerBuffer acquire() {
+    LoggerBuffer buffer = BUFFER.get();
+    if (buffer == null) {
+      // re-entered while rendering, e.g. from a toString() of a logged argument
+      return new LoggerBuffer();
+    }
+    BUFFER.set(null);
+    return buffer;
+  }
+
+  static void release(LoggerBuffer buffer) {
+    if (buffer.out.capacity() <= MAX_RETAINED_CAPACITY) {
+      buffer.out.setLength(0);
+      BUFFER.set(buffer);
+    } else {
+      BUFFER.set(new LoggerBuffer());
+    }
+  }
+
+  StringBuilder getOut() {
+    return out;
+  }
+
+  /**
+   * Negative limits mean unlimited.
+   */
+  void appendValue(Object value, int maxLength, int maxElements, int maxDepth) {
+    this.limit = maxLength < 0 || maxLength > Integer.MAX_VALUE - out.length()
+        ? Integer.MAX_VALUE : out.length() + maxLength;
+    this.maxElements = maxElements < 0 ? Integer.MAX_VALUE : maxElements;
+    this.maxDepth = maxDepth < 0 ? Integer.MAX_VALUE : maxDepth;
+    this.truncated = false;
+    appendValue(value, 0);
+  }
+
+  private void appendValue(Object value, int depth) {
+    if (value == null) {
+      appendText("NULL");
+    } else if (value.getClass().isArray()) {
+      appendArray(value, depth);
+    } else if (value instanceof Collection) {
+      appendCollection((Collection<?>) value, depth);
+    } else if (value instanceof Map) {
+      appendMap((Map<?, ?>) value, depth);
+    } else if (value instanceof String) {
+      appendText("'");
+      appendText((String) value);
+      appendText("'");
+    } else {
+      String origin = value.toString();
+      appendText(origin.isEmpty() ? "''" : origin);
+    }
+  }
+
+  private void appendArray(Object array, int depth) {
+    if (depth >= maxDepth) {
+      appendText("[...]");
+      return;
+    }
+    int length = Array.getLength(array);
+    appendText("[");
+    for (int i = 0; i < length; i++) {
+      if (!next(i, length, ']')) {
+        return;
+      }
+      if (array instanceof Object[]) {
+        appendValue(((Object[]) array)[i], depth + 1);
+      } else {
+        appendPrimitive(array, i);
+      }
+    }
+    close(']');
+  }
+
+  private void appendCollection(Collection<?> collection, int depth) {
+    if (depth >= maxDepth) {
+      appendText("[...]");
+      return;
+    }
+    int size = collection.size();
+    appendText("[");
+    Iterator<?> iterator = collection.iterator();
+    for (int i = 0; iterator.hasNext(); i++) {
+      if (!next(i, size, ']')) {
+        return;
+      }
+      appendValue(iterator.next(), depth + 1);
+    }
+    close(']');
+  }
+
+  private void appendMap(Map<?, ?> map, int depth) {
+    if (depth >= maxDepth) {
+      appendText("{...}");
+      return;
+    }
+    int size = map.size();
+    appendText("{");
+    Iterator<? extends Map.Entry<?, ?>> iterator = map.entrySet().iterator();
+    for (int i = 0; iterator.hasNext(); i++) {
+      if (!next(i, size, '}')) {
+        return;
+      }
+      Map.Entry<?, ?> entry = iterator.next();
+      appendValue(entry.getKey(), depth + 1);
+      appendText("=");
+      appendValue(entry.getValue(), depth + 1);
+    }
+    close('}');
+  }
+
+  private void appendPrimitive(Object array, int index) {
+    if (array instanceof int[]) {
+      out.append(((int[]) array)[index]);
+    } else if (array instanceof long[]) {
+      out.append(((long[]) array)[index]);
+    } else if (array instanceof byte[]) {
+      out.append(((byte[]) array)[index]);
+    } else if (array instanceof char[]) {
+      out.append(((char[]) array)[index]);
+    } else if (array instanceof double[]) {
+      out.append(((double[]) array)[index]);
+    } else if (array instanceof float[]) {
+      out.append(((float[]) array)[index]);
+    } else if (array instanceof short[]) {
+      out.append(((short[]) array)[index]);
+    } else if (array instanceof boolean[]) {
+      out.append(((boolean[]) array)[index]);
+    }
+  }
+
+  /**
+   * Separator before the element at index, false when the rest of the elements is skipped.
+   */
+  private boolean next(int index, int size, char close) {
+    if (truncated) {
+      return false;
+    }
+    if (out.length() >= limit) {
+      more(size - index);
+      truncated = true;
+      return false;
+    }
+    if (index > 0) {
+      out.append(", ");
+    }
+    if (index >= maxElements) {
+      more(size - index);
+      close(close);
+      return false;
+    }
+    return true;
+  }
+
+  private void close(char close) {
+    if (!truncated) {
+      out.append(close);
+    }
+  }
+
+  private void appendText(String text) {
+    if (truncated) {
+      return;
+    }
+    int room = Math.max(limit - out.length(), 0);
+    if (text.length() <= room) {
+      out.append(text);
+    } else {
+      out.append(text, 0, room);
+      more(text.length() - room);
+      truncated = true;
+    }
+  }
+
+  private void more(int count) {
+    out.append("...(+").append(count).append(" more)");
+  }
+
+  @Override
+  public String toString() {
+    return out.toString();
+  }
+}
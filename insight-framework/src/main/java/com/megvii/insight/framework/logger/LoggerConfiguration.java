@@ -1,12 +1,20 @@
 package com.megvii.insight.framework.logger;
 
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
 
 @Configuration
 @ComponentScan
+@EnableConfigurationProperties(LoggerProperties.class)
 public class LoggerConfiguration {
 
   @Bean
@@ -27,4 +35,56 @@ public class LoggerConfiguration {
             + "\n${error.stacktrace}")
         .build();
   }
-}
\ No newline at end of file
+
+  /**
+   * Formats are compiled once here, not on every logged call.
+   */
+  @Bean
+  LoggerFormatter loggerFormatter(LoggerFormat format) {
+    return new LoggerFormatter(format);
+  }
+
+  @Configuration
+  @ConditionalOnClass(name = "io.micrometer.core.instrument.MeterRegistry")
+  static class MetricsConfiguration {
+
+    @Bean
+    LoggerMeterBinder loggerMeterBinder(ObjectProvider<MeterRegistry> registry) {
+      return new LoggerMeterBinder(registry);
+    }
+
+    @Bean
+    MeterBinder loggerPipelineMeterBinder(LoggerInterceptor interceptor) {
+      return registry -> FunctionCounter.builder("loggable.dropped", interceptor,
+          bean -> bean.getPipeline().getDropped())
+          .description("messages dropped while the async buffer was full")
+          .register(registry);
+    }
+  }
+
+  @Configuration
+  @ConditionalOnClass(name = "brave.Tracing")
+  @ConditionalOnProperty(prefix = "insight.logger.tracing", name = "enabled", havingValue = "true")
+  static class TracingConfiguration {
+
+    @Bean
+    LoggerTracer loggerTracer(ObjectProvider<brave.Tracing> tracing) {
+      brave.Tracing available = tracing.getIfAvailable(brave.Tracing::current);
+      if (available == null) {
+        throw new IllegalStateException("insight.logger.tracing requires a brave Tracing");
+      }
+      return new LoggerTracer(available);
+    }
+  }
+
+  @Configuration
+  @ConditionalOnClass(name = "org.springframework.boot.actuate.endpoint.annotation.Endpoint")
+  static class EndpointConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean
+    LoggerEndpoint loggerEndpoint(LoggerInterceptor interceptor) {
+      return new LoggerEndpoint(interceptor);
+    }
+  }
+}
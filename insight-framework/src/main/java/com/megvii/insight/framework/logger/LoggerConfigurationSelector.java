@@ -0,0 +1,23 @@
+package com.megvii.insight.framework.logger;
+
+import com.megvii.insight.framework.logger.annotation.EnableLogger;
+import org.springframework.context.annotation.AdviceMode;
+import org.springframework.context.annotation.AdviceModeImportSelector;
+
+/**
+ * Imports {@link LoggerConfiguration} with the advice of {@link EnableLogger#mode()}.
+ */
+public class LoggerConfigurationSelector extends AdviceModeImportSelector<EnableLogger> {
+
+  @Override
+  protected String[] selectImports(AdviceMode adviceMode) {
+    switch (adviceMode) {
+      case PROXY:
+        return new String[]{LoggerConfiguration.class.getName(), LoggerProxyConfiguration.class.getName()};
+      case ASPECTJ:
+        return new String[]{LoggerConfiguration.class.getName(), LoggerAspectJConfiguration.class.getName()};
+      default:
+        return null;
+    }
+  }
+}
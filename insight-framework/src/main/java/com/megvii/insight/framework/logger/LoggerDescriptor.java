@@ -0,0 +1,187 @@
+package com.megvii.insight.framework.logger;
+
+import java.lang.reflect.Method;
+import java.util.StringJoiner;
+import java.util.concurrent.CompletionStage;
+
+import com.megvii.insight.framework.logger.annotation.Loggable;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.logging.LogLevel;
+
+/**
+ * Everything {@link LoggerInterceptor} needs to know about one {@link Loggable} method, resolved once when
+ * the method is first intercepted.
+ */
+@Getter
+final class LoggerDescriptor {
+
+  private final Method method;
+
+  /**
+   * e.g. com.megvii.insight.auth.UserService#find(String,int)
+   */
+  private final String id;
+
+  /**
+   * e.g. find(String,int)
+   */
+  private final String signature;
+
+  private final Loggable loggable;
+
+  private final org.slf4j.Logger logger;
+
+  /**
+   * warnOver in nanos, negative if the method never warns.
+   */
+  private final long warnNanos;
+
+  @Getter(AccessLevel.NONE)
+  private final ClassValue<Boolean> ignored;
+
+  /**
+   * Render budget, from {@link Loggable} or else insight.logger.render.
+   */
+  private final int maxLength;
+
+  private final int maxElements;
+
+  private final int maxDepth;
+
+  /**
+   * How the method completes, its duration is measured up to the completion.
+   */
+  private final Completion completion;
+
+  /**
+   * Switched at runtime through {@link LoggerSettings}, a disabled method is not intercepted at all.
+   */
+  @Setter(AccessLevel.PACKAGE)
+  private volatile boolean enabled = true;
+
+  /**
+   * {@link Loggable#value()}, unless switched at runtime.
+   */
+  @Setter(AccessLevel.PACKAGE)
+  private volatile LogLevel level;
+
+  /**
+   * null when every call is logged.
+   */
+  private final LoggerSampler sampler;
+
+  /**
+   * null when insight.logger.metrics.enabled=false
+   */
+  private final LoggerStatistics statistics;
+
+  LoggerDescriptor(Method method, Loggable loggable, LoggerProperties properties) {
+    this.method = method;
+    this.signature = signature(method);
+    this.id = method.getDeclaringClass().getName() + "#" + signature;
+    this.loggable = loggable;
+    this.level = loggable.value();
+    this.completion = Completion.of(method.getReturnType());
+    this.logger = loggable.name().isEmpty()
+        ? LoggerFactory.getLogger(method.getDeclaringClass())
+        : LoggerFactory.getLogger(loggable.name());
+    this.warnNanos = loggable.warnOver() >= 0 ? loggable.warnUnit().toNanos(loggable.warnOver()) : -1L;
+    this.ignored = loggable.ignore().length == 0 ? null : new ClassValue<Boolean>() {
+      @Override
+      protected Boolean computeValue(Class<?> type) {
+        for (Class<? extends Throwable> ignore : loggable.ignore()) {
+          if (ignore.isAssignableFrom(type)) {
+            return Boolean.TRUE;
+          }
+        }
+        return Boolean.FALSE;
+      }
+    };
+    LoggerProperties.Render render = properties.getRender();
+    this.maxLength = loggable.maxLength() >= 0 ? loggable.maxLength() : render.getMaxLength();
+    this.maxElements = loggable.maxElements() >= 0 ? loggable.maxElements() : render.getMaxElements();
+    this.maxDepth = loggable.maxDepth() >= 0 ? loggable.maxDepth() : render.getMaxDepth();
+    this.sampler = LoggerSampler.of(loggable);
+    this.statistics = properties.getMetrics().isEnabled() ? new LoggerStatistics(properties.getMetrics()) : null;
+  }
+
+  private static String signature(Method method) {
+    StringJoiner joiner = new StringJoiner(",", method.getName() + "(", ")");
+    for (Class<?> type : method.getParameterTypes()) {
+      joiner.add(type.getSimpleName());
+    }
+    return joiner.toString();
+  }
+
+  public String getName() {
+    return method.getName();
+  }
+
+  public boolean isWarnable() {
+    return warnNanos >= 0;
+  }
+
+  public boolean isOver(long nano) {
+    return warnNanos >= 0 && nano > warnNanos;
+  }
+
+  /**
+   * Whether the call started at nanoTime is logged, errors and warnOver breaches are logged regardless.
+   */
+  public boolean isSampled(long start) {
+    return sampler == null || sampler.sample(start);
+  }
+
+  public void suppress() {
+    if (sampler != null) {
+      sampler.suppress();
+    }
+  }
+
+  /**
+   * Whether the exception is one of {@link Loggable#ignore()}, memoized per exception type.
+   */
+  public boolean isIgnored(Throwable err) {
+    return ignored != null && ignored.get(err.getClass());
+  }
+
+  enum Completion {
+
+    /**
+     * Done when the method returns or throws.
+     */
+    RETURN,
+
+    /**
+     * Done when the returned CompletionStage completes.
+     */
+    STAGE,
+
+    /**
+     * Done when each subscription of the returned reactor Mono or Flux completes.
+     */
+    MONO,
+    FLUX;
+
+    static Completion of(Class<?> type) {
+      if (CompletionStage.class.isAssignableFrom(type)) {
+        return STAGE;
+      }
+      // by name, reactor is an optional dependency
+      if ("reactor.core.publisher.Mono".equals(type.getName())) {
+        return MONO;
+      }
+      if ("reactor.core.publisher.Flux".equals(type.getName())) {
+        return FLUX;
+      }
+      return RETURN;
+    }
+
+    boolean isPublisher() {
+      return this == MONO || this == FLUX;
+    }
+  }
+}
@@ -0,0 +1,9 @@
+package com.megvii.insight.framework.logger;
+
+/**
+ * Notified once per {@link LoggerDescriptor}, when its method is intercepted for the first time.
+ */
+interface LoggerDescriptorListener {
+
+  void created(LoggerDescriptor descriptor);
+}
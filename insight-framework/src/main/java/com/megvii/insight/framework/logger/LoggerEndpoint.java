@@ -0,0 +1,82 @@
+package com.megvii.insight.framework.logger;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.logging.LogLevel;
+import org.springframework.lang.Nullable;
+
+/**
+ * Actuator endpoint /actuator/loggable with the latency of every intercepted method, and runtime switches
+ * of the intercepted methods.
+ */
+@Endpoint(id = "loggable")
+public class LoggerEndpoint {
+
+  private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+  private final LoggerInterceptor interceptor;
+
+  LoggerEndpoint(LoggerInterceptor interceptor) {
+    this.interceptor = interceptor;
+  }
+
+  @ReadOperation
+  public Map<String, MethodStatistics> statistics() {
+    Map<String, MethodStatistics> result = new TreeMap<>();
+    for (LoggerDescriptor descriptor : interceptor.getDescriptors()) {
+      result.put(descriptor.getId(), of(descriptor));
+    }
+    return result;
+  }
+
+  /**
+   * e.g. {"target": "com.megvii.insight.auth.UserService", "enabled": false}, or "level": "DEBUG". The
+   * target is "*", a class name, a class#method name or an id of {@link #statistics()}; neither enabled
+   * nor level resets it.
+   */
+  @WriteOperation
+  public void configure(String target, @Nullable Boolean enabled, @Nullable LogLevel level) {
+    interceptor.configure(target, enabled, level);
+  }
+
+  private static MethodStatistics of(LoggerDescriptor descriptor) {
+    LoggerStatistics statistics = descriptor.getStatistics();
+    if (statistics == null) {
+      return new MethodStatistics(descriptor.isEnabled(), descriptor.getLevel(), 0L, 0L, 0L, 0, 0, 0, 0, 0);
+    }
+    LoggerHistogram.Snapshot snapshot = statistics.snapshot();
+    return new MethodStatistics(descriptor.isEnabled(), descriptor.getLevel(),
+        statistics.getCalls(), statistics.getErrors(), statistics.getWarns(),
+        statistics.getMeanNanos() / NANOS_PER_MILLI,
+        snapshot.getMax() / NANOS_PER_MILLI,
+        snapshot.percentile(0.5) / NANOS_PER_MILLI,
+        snapshot.percentile(0.99) / NANOS_PER_MILLI,
+        snapshot.percentile(0.999) / NANOS_PER_MILLI);
+  }
+
+  /**
+   * Durations in milliseconds; counters and mean are since startup, max and percentiles of the metrics window.
+   */
+  @Getter
+  @AllArgsConstructor
+  public static class MethodStatistics {
+
+    private boolean enabled;
+    private LogLevel level;
+    private long calls;
+    private long errors;
+    private long warns;
+    private double mean;
+    private double max;
+    private double p50;
+    private double p99;
+    private double p999;
+  }
+}
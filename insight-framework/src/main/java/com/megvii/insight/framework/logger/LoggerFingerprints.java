@@ -0,0 +1,77 @@
+package com.megvii.insight.framework.logger;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * Counts the exceptions of the error path by fingerprint, the exception type and its top stack frames, so
+ * only the first occurrence in a window is logged with its stack trace.
+ * <p>
+ * Fingerprints are hashed from the class names, method names and line numbers of the frames, the stack
+ * trace is never turned into a string for that.
+ * </p>
+ */
+final class LoggerFingerprints {
+
+  private final long windowNanos;
+
+  private final int frames;
+
+  private final int maxSize;
+
+  private final Map<Long, Occurrence> occurrences = new ConcurrentHashMap<>();
+
+  LoggerFingerprints(LoggerProperties.Fingerprint properties) {
+    this.windowNanos = properties.getWindow().toNanos();
+    this.frames = properties.getFrames();
+    this.maxSize = properties.getMaxSize();
+  }
+
+  /**
+   * Occurrences of the exception's fingerprint in the current window, this one included. 1 for the first.
+   */
+  long seen(Throwable err) {
+    long now = System.nanoTime();
+    Long fingerprint = fingerprint(err);
+    Occurrence occurrence = occurrences.get(fingerprint);
+    if (occurrence == null) {
+      if (occurrences.size() >= maxSize) {
+        // a storm of distinct errors, start over rather than grow
+        occurrences.clear();
+      }
+      occurrence = occurrences.computeIfAbsent(fingerprint, key -> new Occurrence(now));
+    }
+    long start = occurrence.start;
+    if (now - start > windowNanos && Occurrence.START.compareAndSet(occurrence, start, now)) {
+      occurrence.count.set(0L);
+    }
+    return occurrence.count.incrementAndGet();
+  }
+
+  private long fingerprint(Throwable err) {
+    long hash = err.getClass().getName().hashCode();
+    StackTraceElement[] trace = err.getStackTrace();
+    for (int i = 0; i < Math.min(frames, trace.length); i++) {
+      hash = 31 * hash + trace[i].getClassName().hashCode();
+      hash = 31 * hash + trace[i].getMethodName().hashCode();
+      hash = 31 * hash + trace[i].getLineNumber();
+    }
+    return hash;
+  }
+
+  private static final class Occurrence {
+
+    private static final AtomicLongFieldUpdater<Occurrence> START =
+        AtomicLongFieldUpdater.newUpdater(Occurrence.class, "start");
+
+    private volatile long start;
+
+    private final AtomicLong count = new AtomicLong();
+
+    Occurrence(long start) {
+      this.start = start;
+    }
+  }
+}
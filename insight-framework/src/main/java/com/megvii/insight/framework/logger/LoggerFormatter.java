@@ -1,112 +1,182 @@
 package com.megvii.insight.framework.logger;
 
+import static com.megvii.insight.framework.logger.LoggerTemplate.Placeholder.ERROR_CLASS_NAME;
+import static com.megvii.insight.framework.logger.LoggerTemplate.Placeholder.ERROR_MESSAGE;
+import static com.megvii.insight.framework.logger.LoggerTemplate.Placeholder.ERROR_SOURCE_CLASS_NAME;
+import static com.megvii.insight.framework.logger.LoggerTemplate.Placeholder.ERROR_SOURCE_LINE;
+import static com.megvii.insight.framework.logger.LoggerTemplate.Placeholder.ERROR_STACKTRACE;
+import static com.megvii.insight.framework.logger.LoggerTemplate.Placeholder.METHOD_ARGS;
+import static com.megvii.insight.framework.logger.LoggerTemplate.Placeholder.METHOD_DURATION;
+import static com.megvii.insight.framework.logger.LoggerTemplate.Placeholder.METHOD_NAME;
+import static com.megvii.insight.framework.logger.LoggerTemplate.Placeholder.METHOD_RESULT;
+import static com.megvii.insight.framework.logger.LoggerTemplate.Placeholder.METHOD_WARN_DURATION;
+
+import com.megvii.insight.framework.logger.LoggerTemplate.Segment;
 import com.megvii.insight.framework.logger.annotation.Loggable;
 import org.apache.commons.lang3.exception.ExceptionUtils;
-import org.apache.commons.lang3.text.StrSubstitutor;
-import org.aspectj.lang.JoinPoint;
-import org.aspectj.lang.ProceedingJoinPoint;
-import org.aspectj.lang.reflect.MethodSignature;
 
 import java.time.Duration;
-import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.EnumSet;
 import java.util.concurrent.TimeUnit;
 
 /**
  * Helper class for log message format.
+ * <p>
+ * Templates are compiled once, messages are rendered into a thread-local {@link LoggerBuffer}.
+ * </p>
  */
 final class LoggerFormatter {
 
   private static final String DOTS = "...";
 
-  private static final String METHOD_NAME = "method.name";
-  private static final String METHOD_ARGS = "method.args";
-  private static final String METHOD_RESULT = "method.result";
-  private static final String METHOD_DURATION = "method.duration";
-  private static final String METHOD_WARN_DURATION = "method.warn.duration";
-  private static final String ERROR_CLASS_NAME = "error.class.name";
-  private static final String ERROR_MESSAGE = "error.message";
-  private static final String ERROR_SOURCE_CLASS_NAME = "error.source.class.name";
-  private static final String ERROR_SOURCE_LINE = "error.source.line";
-  private static final String ERROR_STACKTRACE = "error.stacktrace";
-
-  private LoggerFormat format;
+  private final LoggerTemplate enter;
+  private final LoggerTemplate warnBefore;
+  private final LoggerTemplate warnAfter;
+  private final LoggerTemplate after;
+  private final LoggerTemplate error;
 
   public LoggerFormatter(LoggerFormat format) {
-    this.format = format;
+    this.enter = LoggerTemplate.compile(format.getEnter(),
+        EnumSet.of(METHOD_NAME, METHOD_ARGS));
+    this.warnBefore = LoggerTemplate.compile(format.getWarnBefore(),
+        EnumSet.of(METHOD_NAME, METHOD_ARGS, METHOD_DURATION, METHOD_WARN_DURATION));
+    this.warnAfter = LoggerTemplate.compile(format.getWarnAfter(),
+        EnumSet.of(METHOD_NAME, METHOD_ARGS, METHOD_DURATION, METHOD_WARN_DURATION, METHOD_RESULT));
+    this.after = LoggerTemplate.compile(format.getAfter(),
+        EnumSet.of(METHOD_NAME, METHOD_ARGS, METHOD_DURATION, METHOD_RESULT));
+    this.error = LoggerTemplate.compile(format.getError(),
+        EnumSet.of(METHOD_NAME, METHOD_ARGS, METHOD_DURATION, ERROR_CLASS_NAME, ERROR_MESSAGE,
+            ERROR_SOURCE_CLASS_NAME, ERROR_SOURCE_LINE, ERROR_STACKTRACE));
   }
 
-  public String enter(ProceedingJoinPoint joinPoint, Loggable loggable) {
-    Map<String, Object> values = new HashMap<>();
-    values.put(METHOD_NAME, getMethodName(joinPoint));
-    values.put(METHOD_ARGS, getMethodArgs(joinPoint, loggable));
-    return StrSubstitutor.replace(format.getEnter(), values);
+  public String enter(LoggerDescriptor descriptor, Object[] args) {
+    return render(enter, true, descriptor, args, null, 0L, null, 1L);
   }
 
-  public String warnBefore(ProceedingJoinPoint joinPoint, Loggable loggable, long nano) {
-    Map<String, Object> values = new HashMap<>();
-    values.put(METHOD_NAME, getMethodName(joinPoint));
-    values.put(METHOD_ARGS, getMethodArgs(joinPoint, loggable));
-    values.put(METHOD_DURATION, durationToString(nano));
-    values.put(METHOD_WARN_DURATION, getMethodWarnDuration(loggable));
-    return StrSubstitutor.replace(format.getWarnBefore(), values);
+  public String warnBefore(LoggerDescriptor descriptor, Object[] args, long nano) {
+    return render(warnBefore, false, descriptor, args, null, nano, null, 1L);
   }
 
-  public String warnAfter(ProceedingJoinPoint joinPoint, Loggable loggable, Object result, long nano) {
-    Map<String, Object> values = new HashMap<>();
-    values.put(METHOD_NAME, getMethodName(joinPoint));
-    values.put(METHOD_ARGS, getMethodArgs(joinPoint, loggable));
-    values.put(METHOD_DURATION, durationToString(nano));
-    values.put(METHOD_WARN_DURATION, getMethodWarnDuration(loggable));
-    values.put(METHOD_RESULT, getMethodResults(result, loggable));
-    return StrSubstitutor.replace(format.getWarnAfter(), values);
+  public String warnAfter(LoggerDescriptor descriptor, Object[] args, Object result, long nano) {
+    return render(warnAfter, false, descriptor, args, result, nano, null, 1L);
   }
 
-  public String after(ProceedingJoinPoint joinPoint, Loggable loggable, Object result, long nano) {
-    Map<String, Object> values = new HashMap<>();
-    values.put(METHOD_NAME, getMethodName(joinPoint));
-    values.put(METHOD_ARGS, getMethodArgs(joinPoint, loggable));
-    values.put(METHOD_DURATION, durationToString(nano));
-    values.put(METHOD_RESULT, getMethodResults(result, loggable));
-    return StrSubstitutor.replace(format.getAfter(), values);
+  public String after(LoggerDescriptor descriptor, Object[] args, Object result, long nano) {
+    return render(after, true, descriptor, args, result, nano, null, 1L);
   }
 
-  public String error(ProceedingJoinPoint joinPoint, Loggable loggable, long nano, Throwable err) {
-    Map<String, Object> values = new HashMap<>();
-    values.put(METHOD_NAME, getMethodName(joinPoint));
-    values.put(METHOD_ARGS, getMethodArgs(joinPoint, loggable));
-    values.put(METHOD_DURATION, durationToString(nano));
-    values.put(ERROR_CLASS_NAME, getErrorClass(err));
-    values.put(ERROR_MESSAGE, getErrorMsg(err));
-    values.put(ERROR_SOURCE_CLASS_NAME, getErrorSourceClass(err));
-    values.put(ERROR_SOURCE_LINE, getErrorLine(err));
-    values.put(ERROR_STACKTRACE, getErrorStackTrace(err, loggable));
-    return StrSubstitutor.replace(format.getError(), values);
+  public String error(LoggerDescriptor descriptor, Object[] args, long nano, Throwable err) {
+    return error(descriptor, args, nano, err, 1L);
   }
 
-  private String getMethodWarnDuration(Loggable loggable) {
-    return Duration.ofMillis(loggable.warnUnit().toMillis(loggable.warnOver())).toString();
+  /**
+   * The stack trace of an exception seen more than once in its window is replaced by "seen N times".
+   */
+  public String error(LoggerDescriptor descriptor, Object[] args, long nano, Throwable err, long seen) {
+    return render(error, false, descriptor, args, null, nano, err, seen);
   }
 
-  private String getMethodName(JoinPoint joinPoint) {
-    return ((MethodSignature) joinPoint.getSignature()).getMethod().getName();
+  /**
+   * @param sampled whether the message is one of the sampled level, the others are logged regardless
+   */
+  private String render(LoggerTemplate template, boolean sampled, LoggerDescriptor descriptor, Object[] args,
+      Object result, long nano, Throwable err, long seen) {
+    LoggerBuffer buffer = LoggerBuffer.acquire();
+    StringBuilder out = buffer.getOut();
+    try {
+      if (sampled) {
+        appendSuppressed(out, descriptor);
+      }
+      for (Segment segment : template.getSegments()) {
+        if (segment.getPlaceholder() == null) {
+          out.append(segment.getText());
+        } else {
+          append(buffer, segment, descriptor, args, result, nano, err, seen);
+        }
+      }
+      return out.toString();
+    } finally {
+      LoggerBuffer.release(buffer);
+    }
   }
 
-  private String getMethodArgs(JoinPoint joinPoint, Loggable loggable) {
-    return loggable.skipArgs() ? DOTS : argsToString(joinPoint.getArgs());
+  private void append(LoggerBuffer buffer, Segment segment, LoggerDescriptor descriptor, Object[] args,
+      Object result, long nano, Throwable err, long seen) {
+    StringBuilder out = buffer.getOut();
+    Loggable loggable = descriptor.getLoggable();
+    switch (segment.getPlaceholder()) {
+      case METHOD_NAME:
+        out.append(descriptor.getName());
+        break;
+      case METHOD_ARGS:
+        appendMethodArgs(buffer, args, descriptor);
+        break;
+      case METHOD_RESULT:
+        appendMethodResults(buffer, result, descriptor);
+        break;
+      case METHOD_DURATION:
+        appendDuration(out, TimeUnit.NANOSECONDS.toMillis(nano));
+        break;
+      case METHOD_WARN_DURATION:
+        appendDuration(out, loggable.warnUnit().toMillis(loggable.warnOver()));
+        break;
+      case ERROR_CLASS_NAME:
+        out.append(err.getClass().getName());
+        break;
+      case ERROR_MESSAGE:
+        // unresolved placeholder is kept as is, like it used to be with StrSubstitutor
+        out.append(err.getMessage() == null ? segment.getText() : err.getMessage());
+        break;
+      case ERROR_SOURCE_CLASS_NAME:
+        out.append(getErrorSourceClass(err));
+        break;
+      case ERROR_SOURCE_LINE:
+        out.append(getErrorLine(err));
+        break;
+      case ERROR_STACKTRACE:
+        if (seen > 1) {
+          out.append("seen ").append(seen).append(" times");
+        } else {
+          out.append(getErrorStackTrace(err, loggable));
+        }
+        break;
+      default:
+        out.append(segment.getText());
+        break;
+    }
   }
 
-  private String getMethodResults(Object result, Loggable loggable) {
-    return loggable.skipResult() ? DOTS : argsToString(result);
+  /**
+   * Every rendered enter or after message is logged, so it reports the calls suppressed by sampling since the
+   * previous one.
+   */
+  private void appendSuppressed(StringBuilder out, LoggerDescriptor descriptor) {
+    if (descriptor.getSampler() != null) {
+      long suppressed = descriptor.getSampler().drain();
+      if (suppressed > 0) {
+        out.append('(').append(suppressed).append(" calls suppressed) ");
+      }
+    }
   }
 
-  private String getErrorClass(Throwable err) {
-    return err.getClass().getName();
+  private void appendMethodArgs(LoggerBuffer buffer, Object[] args, LoggerDescriptor descriptor) {
+    if (descriptor.getLoggable().skipArgs()) {
+      buffer.getOut().append(DOTS);
+    } else {
+      appendValue(buffer, args, descriptor);
+    }
+  }
+
+  private void appendMethodResults(LoggerBuffer buffer, Object result, LoggerDescriptor descriptor) {
+    if (descriptor.getLoggable().skipResult()) {
+      buffer.getOut().append(DOTS);
+    } else {
+      appendValue(buffer, result, descriptor);
+    }
   }
 
-  private String getErrorMsg(Throwable err) {
-    return err.getMessage();
+  private void appendValue(LoggerBuffer buffer, Object value, LoggerDescriptor descriptor) {
+    buffer.appendValue(value, descriptor.getMaxLength(), descriptor.getMaxElements(), descriptor.getMaxDepth());
   }
 
   private int getErrorLine(Throwable err) {
@@ -130,64 +200,39 @@ final class LoggerFormatter {
     return "somewhere";
   }
 
-  private String durationToString(long nano) {
-    return Duration.ofMillis(TimeUnit.NANOSECONDS.toMillis(nano)).toString();
-  }
-
-  private String argsToString(Object arg) {
-    String text;
-    if (arg == null) {
-      return "NULL";
-    } else if (arg.getClass().isArray()) {
-      if (arg instanceof Object[]) {
-        text = objectArraysToString((Object[]) arg);
-      } else {
-        text = primitiveArrayToString(arg);
-      }
-    } else {
-      String origin = arg.toString();
-      if (arg instanceof String || origin.isEmpty()) {
-        text = String.format("'%s'", origin);
-      } else {
-        text = origin;
-      }
+  /**
+   * Same output as {@link Duration#toString()} of the millis, without creating the intermediate objects.
+   */
+  private void appendDuration(StringBuilder out, long millis) {
+    if (millis < 0) {
+      out.append(Duration.ofMillis(millis));
+      return;
     }
-    return text;
-  }
-
-  private String objectArraysToString(Object... arg) {
-    StringBuilder bldr = new StringBuilder();
-    bldr.append('[');
-    for (Object item : arg) {
-      if (bldr.length() > 1) {
-        bldr.append(",").append(" ");
-      }
-      bldr.append(argsToString(item));
+    long seconds = millis / 1000;
+    long hours = seconds / 3600;
+    long minutes = seconds % 3600 / 60;
+    long secs = seconds % 60;
+    long fraction = millis % 1000;
+    int start = out.length();
+    out.append("PT");
+    if (hours != 0) {
+      out.append(hours).append('H');
     }
-    return bldr.append(']').toString();
-  }
-
-  private String primitiveArrayToString(Object arg) {
-    String text;
-    if (arg instanceof char[]) {
-      text = Arrays.toString((char[]) arg);
-    } else if (arg instanceof byte[]) {
-      text = Arrays.toString((byte[]) arg);
-    } else if (arg instanceof short[]) {
-      text = Arrays.toString((short[]) arg);
-    } else if (arg instanceof int[]) {
-      text = Arrays.toString((int[]) arg);
-    } else if (arg instanceof long[]) {
-      text = Arrays.toString((long[]) arg);
-    } else if (arg instanceof float[]) {
-      text = Arrays.toString((float[]) arg);
-    } else if (arg instanceof double[]) {
-      text = Arrays.toString((double[]) arg);
-    } else if (arg instanceof boolean[]) {
-      text = Arrays.toString((boolean[]) arg);
-    } else {
-      text = "[unknown]";
+    if (minutes != 0) {
+      out.append(minutes).append('M');
+    }
+    if (secs == 0 && fraction == 0 && out.length() - start > 2) {
+      return;
+    }
+    out.append(secs);
+    if (fraction > 0) {
+      int pos = out.length();
+      out.append(fraction + 1000);
+      while (out.charAt(out.length() - 1) == '0') {
+        out.setLength(out.length() - 1);
+      }
+      out.setCharAt(pos, '.');
     }
-    return text;
+    out.append('S');
   }
 }
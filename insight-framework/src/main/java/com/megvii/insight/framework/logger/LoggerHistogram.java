@@ -0,0 +1,134 @@
+package com.megvii.insight.framework.logger;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with log-linear buckets.
+ * <p>
+ * Every power of two is split into 8 linear buckets, so a percentile is reported within 12.5% of the
+ * recorded value, for any value, at a fixed 488 counters per histogram.
+ * </p>
+ * <p>
+ * A histogram counts from its last {@link #reset()}, values recorded during a reset may be lost.
+ * </p>
+ */
+final class LoggerHistogram {
+
+  private static final int SUB_BUCKET_BITS = 3;
+
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+  private static final int BUCKETS = index(Long.MAX_VALUE) + 1;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+  private final AtomicLong max = new AtomicLong();
+
+  static int index(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) Math.max(value, 0L);
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+  }
+
+  static long lowest(int index) {
+    if (index < SUB_BUCKETS) {
+      return index;
+    }
+    int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+    return (long) (SUB_BUCKETS + index % SUB_BUCKETS) << (exponent - SUB_BUCKET_BITS);
+  }
+
+  static long highest(int index) {
+    return index + 1 < BUCKETS ? lowest(index + 1) - 1 : Long.MAX_VALUE;
+  }
+
+  void record(long value) {
+    counts.incrementAndGet(index(value));
+    long current = max.get();
+    while (value > current && !max.compareAndSet(current, value)) {
+      current = max.get();
+    }
+  }
+
+  void reset() {
+    for (int i = 0; i < BUCKETS; i++) {
+      counts.set(i, 0L);
+    }
+    max.set(0L);
+  }
+
+  /**
+   * Copy of the counters, percentiles of one snapshot are consistent with each other.
+   */
+  Snapshot snapshot() {
+    return merge(this);
+  }
+
+  /**
+   * Copy of the counters of the histograms added up, e.g. the phases of a window.
+   */
+  static Snapshot merge(LoggerHistogram... histograms) {
+    long[] copy = new long[BUCKETS];
+    long total = 0;
+    long max = 0;
+    for (LoggerHistogram histogram : histograms) {
+      for (int i = 0; i < BUCKETS; i++) {
+        long count = histogram.counts.get(i);
+        copy[i] += count;
+        total += count;
+      }
+      max = Math.max(max, histogram.max.get());
+    }
+    return new Snapshot(copy, total, max);
+  }
+
+  static final class Snapshot {
+
+    private final long[] counts;
+
+    private final long total;
+
+    private final long max;
+
+    private Snapshot(long[] counts, long total, long max) {
+      this.counts = counts;
+      this.total = total;
+      this.max = max;
+    }
+
+    long getTotal() {
+      return total;
+    }
+
+    /**
+     * Exact, unlike the percentiles.
+     */
+    long getMax() {
+      return max;
+    }
+
+    /**
+     * @param quantile between 0 and 1, e.g. 0.99
+     * @return middle of the bucket holding the quantile, 0 when nothing was recorded
+     */
+    long percentile(double quantile) {
+      if (total == 0) {
+        return 0L;
+      }
+      long rank = Math.max((long) Math.ceil(quantile * total), 1L);
+      long seen = 0;
+      for (int i = 0; i < counts.length; i++) {
+        seen += counts[i];
+        if (seen >= rank) {
+          long lowest = lowest(i);
+          return lowest + (highest(i) - lowest) / 2;
+        }
+      }
+      return highest(counts.length - 1);
+    }
+  }
+}
@@ -1,199 +1,286 @@
 package com.megvii.insight.framework.logger;
 
-import java.util.Set;
-import java.util.concurrent.ConcurrentSkipListSet;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 
 import com.megvii.insight.framework.logger.annotation.Loggable;
-import lombok.AllArgsConstructor;
-import lombok.EqualsAndHashCode;
-import lombok.Getter;
 import org.aspectj.lang.ProceedingJoinPoint;
-import org.aspectj.lang.annotation.Around;
-import org.aspectj.lang.annotation.Aspect;
-import org.aspectj.lang.annotation.Pointcut;
 import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.aop.support.AopUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.logging.LogLevel;
 import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
 
 /**
- * AspectJ to intercept {@link Loggable} methods or classes.
+ * Intercepts {@link Loggable} methods or classes, advised through Spring AOP proxies or AspectJ weaving,
+ * see {@link com.megvii.insight.framework.logger.annotation.EnableLogger#mode()}.
  */
-@Aspect
 @Component
 public class LoggerInterceptor {
 
+  private static final String STRUCTURED_MARKER = "net.logstash.logback.marker.LogstashMarker";
+
   private Logger logger;
 
   private LoggerFormatter formatter;
 
-  private Set<WarnPoint> warnPoints;
+  private LoggerProperties properties;
+
+  private LoggerWatchdog watchdog;
+
+  private LoggerPipeline pipeline;
+
+  private final Map<Method, LoggerDescriptor> descriptors = new ConcurrentHashMap<>();
+
+  private final LoggerSettings settings = new LoggerSettings();
+
+  private List<LoggerDescriptorListener> listeners = Collections.emptyList();
+
+  private LoggerTracer tracer;
 
   @Autowired
-  public LoggerInterceptor(Logger logger, LoggerFormat format) {
-    this.formatter = new LoggerFormatter(format);
+  LoggerInterceptor(Logger logger, LoggerFormatter formatter, LoggerProperties properties) {
+    this.formatter = formatter;
     this.logger = logger;
+    this.properties = properties;
   }
 
-  @PostConstruct
-  protected void construct() {
-    warnPoints = new ConcurrentSkipListSet<>();
-
-    ScheduledExecutorService warnService = Executors.newSingleThreadScheduledExecutor();
-
-    warnService.scheduleAtFixedRate(() -> {
-      for (WarnPoint wp : warnPoints) {
-        long duration = System.nanoTime() - wp.getStart();
-        if (isOver(duration, wp.getLoggable())) {
-          log(LogLevel.WARN, formatter.warnBefore(wp.getPoint(), wp.getLoggable(), duration), wp.getPoint(),
-              wp.getLoggable());
-          warnPoints.remove(wp);
-        }
-      }
-    }, 1L, 1L, TimeUnit.SECONDS);
+  @Autowired(required = false)
+  void setListeners(List<LoggerDescriptorListener> listeners) {
+    this.listeners = listeners;
   }
 
-  @Pointcut("execution(public * *(..))"
-      + " && !execution(String *.toString())"
-      + " && !execution(int *.hashCode())"
-      + " && !execution(boolean *.canEqual(Object))"
-      + " && !execution(boolean *.equals(Object))")
-  protected void publicMethod() {
+  /**
+   * Present with insight.logger.tracing.enabled=true.
+   */
+  @Autowired(required = false)
+  void setTracer(LoggerTracer tracer) {
+    this.tracer = tracer;
   }
 
-  @Pointcut("@annotation(loggable)")
-  protected void loggableMethod(Loggable loggable) {
+  @PostConstruct
+  protected void construct() {
+    if (properties.isStructured() && !ClassUtils.isPresent(STRUCTURED_MARKER, getClass().getClassLoader())) {
+      throw new IllegalStateException("insight.logger.structured requires logstash-logback-encoder");
+    }
+    pipeline = new LoggerPipeline(logger, formatter, properties);
+    pipeline.start();
+    watchdog = new LoggerWatchdog(properties.getWarn(), wp -> pipeline.warnBefore(wp.getDescriptor(),
+        wp.getPoint().getArgs(), System.nanoTime() - wp.getStart()));
+    watchdog.start();
   }
 
-  @Pointcut("@within(loggable)")
-  protected void loggableClass(Loggable loggable) {
+  @PreDestroy
+  protected void destroy() {
+    watchdog.stop();
+    pipeline.stop();
   }
 
-  @Around(value = "publicMethod() && loggableMethod(loggable)", argNames = "joinPoint,loggable")
-  public Object logExecutionMethod(ProceedingJoinPoint joinPoint, Loggable loggable) throws Throwable {
-    return logMethod(joinPoint, loggable);
-  }
+  /**
+   * Around advice of a {@link Loggable} method, from the proxy advisor or the woven {@link LoggerAspect}.
+   *
+   * @param loggable the annotation bound by the pointcut, or null to look it up once per method
+   */
+  Object intercept(ProceedingJoinPoint joinPoint, Loggable loggable) throws Throwable {
 
-  @Around(value = "publicMethod() && loggableClass(loggable) " +
-      "&& !loggableMethod(com.megvii.insight.framework.logger.annotation.Loggable)", argNames = "joinPoint,loggable")
-  public Object logExecutionClass(ProceedingJoinPoint joinPoint, Loggable loggable) throws Throwable {
-    return logMethod(joinPoint, loggable);
-  }
+    LoggerDescriptor descriptor = descriptor(joinPoint, loggable);
 
-  private Object logMethod(ProceedingJoinPoint joinPoint, Loggable loggable) throws Throwable {
+    if (!descriptor.isEnabled()) {
+      return joinPoint.proceed();
+    }
 
     long start = System.nanoTime();
 
-    WarnPoint warnPoint = null;
+    LoggerWatchdog.WarnPoint warnPoint = watch(joinPoint, descriptor, start);
 
-    if (isLevelEnabled(joinPoint, loggable) && loggable.warnOver() >= 0) {
-      warnPoint = new WarnPoint(joinPoint, loggable, start);
-      warnPoints.add(warnPoint);
-    }
-    if (loggable.entered()) {
-      log(loggable.value(), formatter.enter(joinPoint, loggable), joinPoint, loggable);
+    // only the calls of an enabled level are sampled, or counted as suppressed
+    boolean sampled = isEnabled(descriptor, descriptor.getLevel()) && descriptor.isSampled(start);
+
+    // a publisher is traced per subscription, not while it is assembled
+    LoggerTracer.Trace trace = descriptor.getCompletion().isPublisher() ? null : trace(descriptor, start, true);
+
+    if (sampled && descriptor.getLoggable().entered()) {
+      pipeline.enter(descriptor, joinPoint.getArgs());
     }
     Object returnVal;
     try {
       returnVal = joinPoint.proceed();
-
-      long nano = System.nanoTime() - start;
-      
-      if (isOver(nano, loggable)) {
-        log(LogLevel.WARN, formatter.warnAfter(joinPoint, loggable, returnVal, nano), joinPoint, loggable);
-      } else {
-        log(loggable.value(), formatter.after(joinPoint, loggable, returnVal, nano), joinPoint, loggable);
-      }
-      return returnVal;
     } catch (Throwable ex) {
-      if (contains(loggable.ignore(), ex)) {
-        log(LogLevel.ERROR, formatter.error(joinPoint, loggable, System.nanoTime() - start, ex),
-            joinPoint, loggable);
-      } else {
-        log(formatter.error(joinPoint, loggable, System.nanoTime() - start, ex),
-            joinPoint, loggable, ex);
-      }
+      complete(joinPoint, descriptor, start, warnPoint, trace, sampled, null, ex);
       throw ex;
     } finally {
+      if (trace != null) {
+        trace.close();
+      }
+    }
+    if (returnVal == null || descriptor.getCompletion() == LoggerDescriptor.Completion.RETURN) {
+      complete(joinPoint, descriptor, start, warnPoint, trace, sampled, returnVal, null);
+    } else if (descriptor.getCompletion() == LoggerDescriptor.Completion.STAGE) {
+      Execution execution = new Execution(joinPoint, descriptor, start, warnPoint, trace, sampled);
+      ((CompletionStage<?>) returnVal).whenComplete(execution::complete);
+    } else {
+      // the publisher is only assembled yet, each subscription is measured on its own
       if (warnPoint != null) {
-        warnPoints.remove(warnPoint);
+        watchdog.cancel(warnPoint);
       }
+      return LoggerReactive.watch(descriptor.getCompletion(), returnVal, () -> {
+        long subscribed = System.nanoTime();
+        return new Execution(joinPoint, descriptor, subscribed, watch(joinPoint, descriptor, subscribed),
+            trace(descriptor, subscribed, false), sampled);
+      });
     }
+    return returnVal;
   }
 
-  private void log(LogLevel level, String message, ProceedingJoinPoint joinPoint, Loggable loggable) {
-    if (loggable.name().isEmpty()) {
-      logger.log(level,
-          ((MethodSignature) joinPoint.getSignature()).getMethod().getDeclaringClass(), message);
-    } else {
-      logger.log(level, loggable.name(), message);
+  private LoggerWatchdog.WarnPoint watch(ProceedingJoinPoint joinPoint, LoggerDescriptor descriptor,
+      long start) {
+    if (descriptor.isWarnable() && isEnabled(descriptor, LogLevel.WARN)) {
+      return watchdog.schedule(joinPoint, descriptor, start);
     }
+    return null;
   }
 
-  private void log(String message, ProceedingJoinPoint joinPoint, Loggable loggable, Throwable ex) {
-    if (loggable.name().isEmpty()) {
-      logger.log(
-          ((MethodSignature) joinPoint.getSignature()).getMethod().getDeclaringClass(), message, ex);
-    } else {
-      logger.log(LogLevel.ERROR, loggable.name(), message, ex);
+  private LoggerTracer.Trace trace(LoggerDescriptor descriptor, long start, boolean scoped) {
+    return tracer == null ? null : tracer.open(descriptor, start, scoped);
+  }
+
+  private void complete(ProceedingJoinPoint joinPoint, LoggerDescriptor descriptor, long start,
+      LoggerWatchdog.WarnPoint warnPoint, LoggerTracer.Trace trace, boolean sampled, Object returnVal,
+      Throwable ex) {
+    long nano = System.nanoTime() - start;
+    if (warnPoint != null) {
+      watchdog.cancel(warnPoint);
+    }
+    if (trace != null) {
+      trace.finish(start + nano, ex);
+    }
+    record(descriptor, nano, ex != null);
+    if (ex != null) {
+      if (isEnabled(descriptor, LogLevel.ERROR)) {
+        pipeline.error(descriptor, joinPoint.getArgs(), nano, ex);
+      }
+    } else if (descriptor.isOver(nano)) {
+      if (isEnabled(descriptor, LogLevel.WARN)) {
+        pipeline.warnAfter(descriptor, joinPoint.getArgs(), returnVal, nano);
+      }
+    } else if (isEnabled(descriptor, descriptor.getLevel())) {
+      if (sampled) {
+        pipeline.after(descriptor, joinPoint.getArgs(), returnVal, nano);
+      } else {
+        descriptor.suppress();
+      }
     }
   }
 
-  private boolean isLevelEnabled(ProceedingJoinPoint joinPoint, Loggable loggable) {
-    return loggable.name().isEmpty()
-        ? logger.isEnabled(LogLevel.WARN,
-        ((MethodSignature) joinPoint.getSignature()).getMethod().getDeclaringClass())
-        : logger.isEnabled(LogLevel.WARN, loggable.name());
+  private void record(LoggerDescriptor descriptor, long nano, boolean error) {
+    if (descriptor.getStatistics() != null) {
+      descriptor.getStatistics().record(nano, error, descriptor.isOver(nano));
+    }
   }
 
-  private boolean isOver(long nano, Loggable loggable) {
-    return loggable.warnOver() >= 0
-        && TimeUnit.NANOSECONDS.toMillis(nano) > loggable.warnUnit().toMillis(loggable.warnOver());
+  /**
+   * Messages are only rendered after this check, so arguments and results of disabled levels are never
+   * turned into strings.
+   */
+  private boolean isEnabled(LoggerDescriptor descriptor, LogLevel level) {
+    return level != LogLevel.OFF && logger.isEnabled(descriptor.getLogger(), level);
   }
 
-  private boolean contains(Class<? extends Throwable>[] array, Throwable exp) {
-    boolean contains = false;
-    for (final Class<? extends Throwable> type : array) {
-      if (instanceOf(exp.getClass(), type)) {
-        contains = true;
-        break;
-      }
+  private LoggerDescriptor descriptor(ProceedingJoinPoint joinPoint, Loggable loggable) {
+    Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+    LoggerDescriptor descriptor = descriptors.get(method);
+    if (descriptor == null) {
+      descriptor = descriptors.computeIfAbsent(method, key -> {
+        LoggerDescriptor created = new LoggerDescriptor(key,
+            loggable != null ? loggable : findLoggable(joinPoint, key), properties);
+        settings.apply(created);
+        listeners.forEach(listener -> listener.created(created));
+        return created;
+      });
     }
-    return contains;
-  }
-
-  private boolean instanceOf(Class<?> child, Class<?> parent) {
-    boolean instance = child.equals(parent)
-        || child.getSuperclass() != null && instanceOf(child.getSuperclass(), parent);
-    if (!instance) {
-      for (final Class<?> iface : child.getInterfaces()) {
-        instance = instanceOf(iface, parent);
-        if (instance) {
-          break;
-        }
-      }
-    }
-    return instance;
+    return descriptor;
+  }
+
+  /**
+   * Same as the pointcuts of {@link LoggerAspect}: the method's annotation, else its declaring class's.
+   */
+  private static Loggable findLoggable(ProceedingJoinPoint joinPoint, Method method) {
+    Class<?> type = joinPoint.getTarget() == null
+        ? method.getDeclaringClass() : AopUtils.getTargetClass(joinPoint.getTarget());
+    Method specific = AopUtils.getMostSpecificMethod(method, type);
+    Loggable loggable = specific.getAnnotation(Loggable.class);
+    return loggable != null ? loggable : specific.getDeclaringClass().getAnnotation(Loggable.class);
   }
 
-  @EqualsAndHashCode(of = "point")
-  @AllArgsConstructor
-  @Getter
-  protected static class WarnPoint implements Comparable<WarnPoint> {
+  /**
+   * Enable or disable interception and change the level of a target at runtime, see {@link LoggerSettings}.
+   */
+  void configure(String target, Boolean enabled, LogLevel level) {
+    settings.put(target, enabled, level);
+    descriptors.values().forEach(settings::apply);
+  }
+
+  /**
+   * A call of an async method, completed by a callback of its CompletionStage, Mono or Flux.
+   */
+  final class Execution {
+
+    private final ProceedingJoinPoint joinPoint;
 
-    private ProceedingJoinPoint point;
-    private Loggable loggable;
-    private long start;
+    private final LoggerDescriptor descriptor;
 
-    @Override
-    public int compareTo(WarnPoint obj) {
-      return Long.compare(obj.getStart(), start);
+    private final long start;
+
+    private final LoggerWatchdog.WarnPoint warnPoint;
+
+    private final LoggerTracer.Trace trace;
+
+    private final boolean sampled;
+
+    private Execution(ProceedingJoinPoint joinPoint, LoggerDescriptor descriptor, long start,
+        LoggerWatchdog.WarnPoint warnPoint, LoggerTracer.Trace trace, boolean sampled) {
+      this.joinPoint = joinPoint;
+      this.descriptor = descriptor;
+      this.start = start;
+      this.warnPoint = warnPoint;
+      this.trace = trace;
+      this.sampled = sampled;
     }
+
+    void complete(Object result, Throwable err) {
+      Throwable cause = err instanceof CompletionException && err.getCause() != null ? err.getCause() : err;
+      LoggerInterceptor.this.complete(joinPoint, descriptor, start, warnPoint, trace, sampled, result, cause);
+    }
+
+    /**
+     * Unsubscribed before completion, nothing to log.
+     */
+    void cancel() {
+      if (warnPoint != null) {
+        watchdog.cancel(warnPoint);
+      }
+      if (trace != null) {
+        trace.cancel(System.nanoTime());
+      }
+    }
+  }
+
+  LoggerPipeline getPipeline() {
+    return pipeline;
+  }
+
+  Collection<LoggerDescriptor> getDescriptors() {
+    return descriptors.values();
   }
 
 }
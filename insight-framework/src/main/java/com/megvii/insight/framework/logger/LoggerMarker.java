@@ -0,0 +1,110 @@
+package com.megvii.insight.framework.logger;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import net.logstash.logback.marker.LogstashMarker;
+import org.slf4j.Marker;
+
+/**
+ * Writes the details of one {@link LoggerInterceptor} message as typed JSON fields, when the events are
+ * encoded by logstash-logback-encoder, e.g. {"method":"find(String,int)","duration":1250000,...}, next to
+ * the level and logger name written by the encoder itself.
+ * <p>
+ * Only loaded with insight.logger.structured=true, logstash-logback-encoder is an optional dependency.
+ * </p>
+ */
+final class LoggerMarker extends LogstashMarker {
+
+  private static final String MARKER_NAME = LogstashMarker.MARKER_NAME_PREFIX + "LOGGABLE";
+
+  private final LoggerPipeline.Kind kind;
+
+  private final LoggerDescriptor descriptor;
+
+  private final Object[] args;
+
+  private final Object result;
+
+  private final long nano;
+
+  private final Throwable err;
+
+  private final long seen;
+
+  private final long suppressed;
+
+  private LoggerMarker(LoggerPipeline.Kind kind, LoggerDescriptor descriptor, Object[] args,
+      Object result, long nano, Throwable err, long seen) {
+    super(MARKER_NAME);
+    this.kind = kind;
+    this.descriptor = descriptor;
+    this.args = args;
+    this.result = result;
+    this.nano = nano;
+    this.err = err;
+    this.seen = seen;
+    this.suppressed = descriptor.getSampler() == null
+        || kind != LoggerPipeline.Kind.ENTER && kind != LoggerPipeline.Kind.AFTER
+        ? 0L : descriptor.getSampler().drain();
+  }
+
+  /**
+   * Declared as {@link Marker}, so callers resolve this class only when structured output is used.
+   */
+  static Marker of(LoggerPipeline.Kind kind, LoggerDescriptor descriptor, Object[] args,
+      Object result, long nano, Throwable err, long seen) {
+    return new LoggerMarker(kind, descriptor, args, result, nano, err, seen);
+  }
+
+  @Override
+  public void writeTo(JsonGenerator generator) throws IOException {
+    generator.writeStringField("method", descriptor.getSignature());
+    generator.writeStringField("class", descriptor.getMethod().getDeclaringClass().getName());
+    if (kind != LoggerPipeline.Kind.ENTER) {
+      generator.writeNumberField("duration", nano);
+    }
+    if (kind == LoggerPipeline.Kind.WARN_BEFORE || kind == LoggerPipeline.Kind.WARN_AFTER) {
+      generator.writeNumberField("warnDuration", descriptor.getWarnNanos());
+    }
+    if (!descriptor.getLoggable().skipArgs()) {
+      writeValue(generator, "args", args);
+    }
+    if ((kind == LoggerPipeline.Kind.AFTER || kind == LoggerPipeline.Kind.WARN_AFTER)
+        && !descriptor.getLoggable().skipResult()) {
+      writeValue(generator, "result", result);
+    }
+    if (err != null) {
+      generator.writeStringField("errorClass", err.getClass().getName());
+      if (err.getMessage() != null) {
+        generator.writeStringField("errorMessage", err.getMessage());
+      }
+      if (seen > 1) {
+        generator.writeNumberField("seen", seen);
+      }
+    }
+    if (suppressed > 0) {
+      generator.writeNumberField("suppressed", suppressed);
+    }
+  }
+
+  private void writeValue(JsonGenerator generator, String field, Object value) throws IOException {
+    LoggerBuffer buffer = LoggerBuffer.acquire();
+    try {
+      buffer.appendValue(value, descriptor.getMaxLength(), descriptor.getMaxElements(), descriptor.getMaxDepth());
+      generator.writeStringField(field, buffer.toString());
+    } finally {
+      LoggerBuffer.release(buffer);
+    }
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    return this == other;
+  }
+
+  @Override
+  public int hashCode() {
+    return System.identityHashCode(this);
+  }
+}
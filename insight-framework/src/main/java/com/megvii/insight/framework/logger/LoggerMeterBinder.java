@@ -0,0 +1,79 @@
+package com.megvii.insight.framework.logger;
+
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.TimeGauge;
+import org.springframework.beans.factory.ObjectProvider;
+
+/**
+ * Publishes the {@link LoggerStatistics} of every intercepted method as Micrometer meters, tagged with
+ * class and method.
+ */
+final class LoggerMeterBinder implements LoggerDescriptorListener {
+
+  private static final double[] QUANTILES = {0.5, 0.99, 0.999};
+
+  private final ObjectProvider<MeterRegistry> registry;
+
+  LoggerMeterBinder(ObjectProvider<MeterRegistry> registry) {
+    this.registry = registry;
+  }
+
+  @Override
+  public void created(LoggerDescriptor descriptor) {
+    LoggerStatistics statistics = descriptor.getStatistics();
+    MeterRegistry meterRegistry = registry.getIfAvailable();
+    if (statistics == null || meterRegistry == null) {
+      return;
+    }
+    Tags tags = Tags.of("class", descriptor.getMethod().getDeclaringClass().getName(),
+        "method", descriptor.getSignature());
+    FunctionCounter.builder("loggable.calls", statistics, LoggerStatistics::getCalls)
+        .tags(tags).register(meterRegistry);
+    FunctionCounter.builder("loggable.errors", statistics, LoggerStatistics::getErrors)
+        .tags(tags).register(meterRegistry);
+    FunctionCounter.builder("loggable.warns", statistics, LoggerStatistics::getWarns)
+        .description("calls over their warnOver")
+        .tags(tags).register(meterRegistry);
+    Scrape scrape = new Scrape(statistics);
+    TimeGauge.builder("loggable.latency.max", scrape, TimeUnit.NANOSECONDS, s -> s.snapshot().getMax())
+        .tags(tags).register(meterRegistry);
+    for (double quantile : QUANTILES) {
+      TimeGauge.builder("loggable.latency", scrape, TimeUnit.NANOSECONDS, s -> s.snapshot().percentile(quantile))
+          .tags(tags).tag("quantile", String.valueOf(quantile)).register(meterRegistry);
+    }
+  }
+
+  /**
+   * The latency gauges of a method read by one scrape share a snapshot, rather than copying the histogram
+   * once per gauge.
+   */
+  private static final class Scrape {
+
+    private static final long REUSE_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final LoggerStatistics statistics;
+
+    private volatile LoggerHistogram.Snapshot snapshot;
+
+    private volatile long taken;
+
+    private Scrape(LoggerStatistics statistics) {
+      this.statistics = statistics;
+    }
+
+    LoggerHistogram.Snapshot snapshot() {
+      long now = System.nanoTime();
+      LoggerHistogram.Snapshot current = snapshot;
+      if (current == null || now - taken > REUSE_NANOS) {
+        current = statistics.snapshot();
+        taken = now;
+        snapshot = current;
+      }
+      return current;
+    }
+  }
+}
@@ -0,0 +1,345 @@
+package com.megvii.insight.framework.logger;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.logging.LogLevel;
+
+/**
+ * Renders and writes the messages of {@link LoggerInterceptor}, on the calling thread or, with
+ * insight.logger.async.enabled, on a single background thread.
+ * <p>
+ * Async messages are captured as events into a preallocated ring buffer of slots claimed by sequence, so
+ * publishing is one CAS and a few field writes. Arguments, result and exception are kept by reference and
+ * rendered when consumed.
+ * </p>
+ */
+final class LoggerPipeline {
+
+  private static final org.slf4j.Logger LOG = LoggerFactory.getLogger(LoggerPipeline.class);
+
+  private static final long MIN_IDLE_NANOS = TimeUnit.MICROSECONDS.toNanos(10);
+
+  private static final long MAX_IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+  private final Logger logger;
+
+  private final LoggerFormatter formatter;
+
+  private final LoggerProperties.Overflow overflow;
+
+  private final boolean structured;
+
+  /**
+   * null when every exception is logged with its stack trace.
+   */
+  private final LoggerFingerprints fingerprints;
+
+  /**
+   * null when messages are written on the calling thread.
+   */
+  private final Event[] ring;
+
+  private final int mask;
+
+  private final AtomicLong tail = new AtomicLong();
+
+  private final LongAdder dropped = new LongAdder();
+
+  private final ExecutorService executor;
+
+  private volatile boolean running;
+
+  /**
+   * Guards the ring buffer once the consumer thread exits: events published by the callers racing with stop
+   * are then written by these callers.
+   */
+  private final Object drainLock = new Object();
+
+  /**
+   * Guarded by drainLock.
+   */
+  private boolean drained;
+
+  /**
+   * Only accessed by the consumer thread, then under drainLock.
+   */
+  private long head;
+
+  private long reported;
+
+  LoggerPipeline(Logger logger, LoggerFormatter formatter, LoggerProperties properties) {
+    LoggerProperties.Async async = properties.getAsync();
+    this.logger = logger;
+    this.formatter = formatter;
+    this.overflow = async.getOverflow();
+    this.structured = properties.isStructured();
+    this.fingerprints = properties.getFingerprint().isEnabled()
+        ? new LoggerFingerprints(properties.getFingerprint()) : null;
+    if (async.isEnabled()) {
+      int size = Integer.highestOneBit(Math.max(async.getBufferSize(), 2) - 1) << 1;
+      this.ring = new Event[size];
+      for (int i = 0; i < size; i++) {
+        ring[i] = new Event(i);
+      }
+      this.mask = size - 1;
+      this.executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "logger_pipeline");
+        thread.setDaemon(true);
+        return thread;
+      });
+    } else {
+      this.ring = null;
+      this.mask = 0;
+      this.executor = null;
+    }
+  }
+
+  void start() {
+    if (executor != null) {
+      running = true;
+      executor.execute(this::run);
+    }
+  }
+
+  /**
+   * Waits up to 5 seconds for the events still in the ring buffer to be written, later messages are written
+   * synchronously.
+   */
+  void stop() {
+    if (executor != null) {
+      running = false;
+      executor.shutdown();
+      try {
+        if (!executor.awaitTermination(5L, TimeUnit.SECONDS)) {
+          LOG.warn("Messages of insight.logger.async still being written after 5s");
+        }
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * Written on the calling thread, the watchdog thread.
+   */
+  void warnBefore(LoggerDescriptor descriptor, Object[] args, long nano) {
+    write(Kind.WARN_BEFORE, descriptor, args, null, nano, null);
+  }
+
+  void enter(LoggerDescriptor descriptor, Object[] args) {
+    publish(Kind.ENTER, descriptor, args, null, 0L, null);
+  }
+
+  void after(LoggerDescriptor descriptor, Object[] args, Object result, long nano) {
+    publish(Kind.AFTER, descriptor, args, result, nano, null);
+  }
+
+  void warnAfter(LoggerDescriptor descriptor, Object[] args, Object result, long nano) {
+    publish(Kind.WARN_AFTER, descriptor, args, result, nano, null);
+  }
+
+  void error(LoggerDescriptor descriptor, Object[] args, long nano, Throwable err) {
+    publish(Kind.ERROR, descriptor, args, null, nano, err);
+  }
+
+  long getDropped() {
+    return dropped.sum();
+  }
+
+  private void publish(Kind kind, LoggerDescriptor descriptor, Object[] args, Object result, long nano,
+      Throwable err) {
+    if (!running) {
+      write(kind, descriptor, args, result, nano, err);
+      return;
+    }
+    long idle = MIN_IDLE_NANOS;
+    while (!offer(kind, descriptor, args, result, nano, err)) {
+      if (overflow == LoggerProperties.Overflow.DROP) {
+        dropped.increment();
+        return;
+      }
+      if (overflow == LoggerProperties.Overflow.SYNC || !running) {
+        write(kind, descriptor, args, result, nano, err);
+        return;
+      }
+      LockSupport.parkNanos(this, idle);
+      idle = Math.min(idle << 1, MAX_IDLE_NANOS);
+    }
+    if (!running) {
+      // stopped while publishing, the consumer may have exited without seeing the event
+      synchronized (drainLock) {
+        if (drained) {
+          drain();
+        }
+      }
+    }
+  }
+
+  /**
+   * Claims the next slot, false when the ring buffer is full.
+   */
+  private boolean offer(Kind kind, LoggerDescriptor descriptor, Object[] args, Object result, long nano,
+      Throwable err) {
+    for (; ; ) {
+      long sequence = tail.get();
+      Event event = ring[(int) (sequence & mask)];
+      long available = event.sequence - sequence;
+      if (available < 0) {
+        return false;
+      }
+      if (available == 0 && tail.compareAndSet(sequence, sequence + 1)) {
+        event.kind = kind;
+        event.descriptor = descriptor;
+        event.args = args;
+        event.result = result;
+        event.nano = nano;
+        event.err = err;
+        // publishes the fields above to the consumer
+        event.sequence = sequence + 1;
+        return true;
+      }
+    }
+  }
+
+  private void run() {
+    long idle = MIN_IDLE_NANOS;
+    while (true) {
+      Event event = ring[(int) (head & mask)];
+      if (event.sequence == head + 1) {
+        consume(event);
+        idle = MIN_IDLE_NANOS;
+      } else if (running) {
+        reportDropped();
+        LockSupport.parkNanos(this, idle);
+        idle = Math.min(idle << 1, MAX_IDLE_NANOS);
+      } else if (head == tail.get()) {
+        synchronized (drainLock) {
+          drained = true;
+          // published since, a caller claiming a slot later writes it when it sees the flag
+          drain();
+        }
+        reportDropped();
+        return;
+      } else {
+        // claimed by a producer, not yet published
+        Thread.yield();
+      }
+    }
+  }
+
+  private void drain() {
+    Event event;
+    while ((event = ring[(int) (head & mask)]).sequence == head + 1) {
+      consume(event);
+    }
+  }
+
+  private void consume(Event event) {
+    try {
+      write(event.kind, event.descriptor, event.args, event.result, event.nano, event.err);
+    } catch (RuntimeException ex) {
+      LOG.error("Failed to write the message of {}", event.descriptor.getId(), ex);
+    } finally {
+      event.descriptor = null;
+      event.args = null;
+      event.result = null;
+      event.err = null;
+      event.sequence = head + ring.length;
+      head++;
+    }
+  }
+
+  private void reportDropped() {
+    long total = dropped.sum();
+    if (total > reported) {
+      LOG.warn("{} messages dropped, the ring buffer of insight.logger.async is full", total - reported);
+      reported = total;
+    }
+  }
+
+  private void write(Kind kind, LoggerDescriptor descriptor, Object[] args, Object result, long nano,
+      Throwable err) {
+    LogLevel level = kind == Kind.WARN_BEFORE || kind == Kind.WARN_AFTER ? LogLevel.WARN
+        : kind == Kind.ERROR ? LogLevel.ERROR : descriptor.getLevel();
+    long seen = err != null && fingerprints != null ? fingerprints.seen(err) : 1L;
+    Throwable thrown = err == null || seen > 1 || descriptor.isIgnored(err) ? null : err;
+    if (structured) {
+      logger.log(descriptor.getLogger(), level,
+          LoggerMarker.of(kind, descriptor, args, result, nano, err, seen), describe(kind), thrown);
+    } else {
+      logger.log(descriptor.getLogger(), level, format(kind, descriptor, args, result, nano, err, seen),
+          thrown);
+    }
+  }
+
+  private String format(Kind kind, LoggerDescriptor descriptor, Object[] args, Object result, long nano,
+      Throwable err, long seen) {
+    switch (kind) {
+      case ENTER:
+        return formatter.enter(descriptor, args);
+      case AFTER:
+        return formatter.after(descriptor, args, result, nano);
+      case WARN_BEFORE:
+        return formatter.warnBefore(descriptor, args, nano);
+      case WARN_AFTER:
+        return formatter.warnAfter(descriptor, args, result, nano);
+      default:
+        return formatter.error(descriptor, args, nano, err, seen);
+    }
+  }
+
+  /**
+   * Constant message of the structured output, the details are the fields of {@link LoggerMarker}.
+   */
+  private static String describe(Kind kind) {
+    switch (kind) {
+      case ENTER:
+        return "entered";
+      case AFTER:
+        return "returned";
+      case WARN_BEFORE:
+        return "still running";
+      case WARN_AFTER:
+        return "returned late";
+      default:
+        return "thrown";
+    }
+  }
+
+  enum Kind {
+    ENTER, AFTER, WARN_BEFORE, WARN_AFTER, ERROR
+  }
+
+  /**
+   * Slot of the ring buffer, reused for every lap.
+   */
+  private static final class Event {
+
+    /**
+     * index + 1 when published for the index, index + size when free for the next lap.
+     */
+    private volatile long sequence;
+
+    private Kind kind;
+
+    private LoggerDescriptor descriptor;
+
+    private Object[] args;
+
+    private Object result;
+
+    private long nano;
+
+    private Throwable err;
+
+    Event(long sequence) {
+      this.sequence = sequence;
+    }
+  }
+}
@@ -0,0 +1,158 @@
+package com.megvii.insight.framework.logger;
+
+import java.time.Duration;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Logger settings, e.g. insight.logger.warn.tick=10ms
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "insight.logger")
+public class LoggerProperties {
+
+  /**
+   * Write the details of the messages as JSON fields through logstash-logback-encoder, instead of
+   * rendering {@link LoggerFormat}.
+   */
+  private boolean structured = false;
+
+  private final Warn warn = new Warn();
+
+  private final Metrics metrics = new Metrics();
+
+  private final Render render = new Render();
+
+  private final Async async = new Async();
+
+  private final Fingerprint fingerprint = new Fingerprint();
+
+  private final Tracing tracing = new Tracing();
+
+  /**
+   * Watchdog of the calls still running after their {@code Loggable.warnOver()}.
+   */
+  @Getter
+  @Setter
+  public static class Warn {
+
+    /**
+     * How often the running calls are checked, warnOver below the tick is detected one tick late.
+     */
+    private Duration tick = Duration.ofMillis(10);
+
+    /**
+     * Number of buckets of the timing wheel, rounded up to a power of two.
+     */
+    private int wheelSize = 512;
+  }
+
+  /**
+   * Latency histogram and counters of every intercepted method.
+   */
+  @Getter
+  @Setter
+  public static class Metrics {
+
+    private boolean enabled = true;
+
+    /**
+     * Latency percentiles and max are of the calls of the last window, the counters are since startup.
+     */
+    private Duration window = Duration.ofMinutes(2);
+
+    /**
+     * Histograms rotated through the window, one is cleared every window / phases.
+     */
+    private int phases = 3;
+  }
+
+  /**
+   * Budget of each rendered argument list or result, negative for no limit.
+   */
+  @Getter
+  @Setter
+  public static class Render {
+
+    private int maxLength = 4096;
+
+    private int maxElements = 100;
+
+    private int maxDepth = 5;
+  }
+
+  /**
+   * Messages rendered and written by a background thread instead of the calling thread.
+   */
+  @Getter
+  @Setter
+  public static class Async {
+
+    private boolean enabled = false;
+
+    /**
+     * Number of messages waiting to be written, rounded up to a power of two.
+     */
+    private int bufferSize = 8192;
+
+    private Overflow overflow = Overflow.SYNC;
+  }
+
+  /**
+   * Repeated exceptions, same type and top stack frames, are logged with their stack trace once per window,
+   * then as "seen N times".
+   */
+  @Getter
+  @Setter
+  public static class Fingerprint {
+
+    private boolean enabled = true;
+
+    private Duration window = Duration.ofMinutes(1);
+
+    /**
+     * Number of top stack frames in the fingerprint.
+     */
+    private int frames = 5;
+
+    /**
+     * Number of fingerprints tracked, all are forgotten when reached.
+     */
+    private int maxSize = 1024;
+  }
+
+  /**
+   * Child spans of the current brave trace around the calls, requires brave, e.g. from
+   * spring-cloud-starter-zipkin.
+   */
+  @Getter
+  @Setter
+  public static class Tracing {
+
+    private boolean enabled = false;
+  }
+
+  /**
+   * What a caller does when the async buffer is full.
+   */
+  public enum Overflow {
+
+    /**
+     * Wait for a free slot.
+     */
+    BLOCK,
+
+    /**
+     * Drop the message, the dropped messages are counted and reported.
+     */
+    DROP,
+
+    /**
+     * Write the message on the calling thread.
+     */
+    SYNC
+  }
+}
@@ -0,0 +1,32 @@
+package com.megvii.insight.framework.logger;
+
+import org.springframework.aop.Advisor;
+import org.springframework.aop.aspectj.AspectJExpressionPointcut;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.context.annotation.Bean;
+
+/**
+ * PROXY mode, {@link com.megvii.insight.framework.logger.annotation.Loggable} beans are advised by the Spring
+ * AOP auto proxy creator, e.g. from {@code @EnableAspectJAutoProxy}. Imported by
+ * {@link LoggerConfigurationSelector}, not scanned.
+ */
+class LoggerProxyConfiguration {
+
+  /**
+   * Pointcuts of {@link LoggerAspect}, public methods with Loggable on the method or its class.
+   */
+  private static final String EXPRESSION = "execution(public * *(..))"
+      + " && !execution(String *.toString())"
+      + " && !execution(int *.hashCode())"
+      + " && !execution(boolean *.canEqual(Object))"
+      + " && !execution(boolean *.equals(Object))"
+      + " && (@annotation(com.megvii.insight.framework.logger.annotation.Loggable)"
+      + " || @within(com.megvii.insight.framework.logger.annotation.Loggable))";
+
+  @Bean
+  Advisor loggerAdvisor(LoggerInterceptor interceptor) {
+    AspectJExpressionPointcut pointcut = new AspectJExpressionPointcut();
+    pointcut.setExpression(EXPRESSION);
+    return new DefaultPointcutAdvisor(pointcut, new LoggerAdvice(interceptor));
+  }
+}
@@ -0,0 +1,43 @@
+package com.megvii.insight.framework.logger;
+
+import java.util.function.Supplier;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Measures every subscription of a Mono or Flux returned by a {@code @Loggable} method, instead of the
+ * assembly. Only loaded for such methods, reactor is an optional dependency.
+ */
+final class LoggerReactive {
+
+  private LoggerReactive() {
+  }
+
+  /**
+   * The result of a Mono is its value, the result of a Flux the number of its elements.
+   */
+  static Object watch(LoggerDescriptor.Completion completion, Object publisher,
+      Supplier<LoggerInterceptor.Execution> subscribe) {
+    if (completion == LoggerDescriptor.Completion.MONO) {
+      Mono<?> mono = (Mono<?>) publisher;
+      return Mono.defer(() -> {
+        LoggerInterceptor.Execution execution = subscribe.get();
+        return mono
+            .doOnSuccess(value -> execution.complete(value, null))
+            .doOnError(err -> execution.complete(null, err))
+            .doOnCancel(execution::cancel);
+      });
+    }
+    Flux<?> flux = (Flux<?>) publisher;
+    return Flux.defer(() -> {
+      LoggerInterceptor.Execution execution = subscribe.get();
+      long[] count = new long[1];
+      return flux
+          .doOnNext(value -> count[0]++)
+          .doOnComplete(() -> execution.complete(count[0], null))
+          .doOnError(err -> execution.complete(null, err))
+          .doOnCancel(execution::cancel);
+    });
+  }
+}
@@ -0,0 +1,138 @@
+package com.megvii.insight.framework.logger;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.megvii.insight.framework.logger.annotation.Loggable;
+import com.megvii.insight.framework.logger.annotation.Sampling;
+
+/**
+ * Decides which calls of a {@link Loggable} method are logged, and counts the suppressed ones until they
+ * are reported by the next logged message.
+ * <p>
+ * Deciding never allocates, it only touches thread-local random and striped counters, and a shared counter
+ * at most once per second or sampleBudget times per second.
+ * </p>
+ */
+abstract class LoggerSampler {
+
+  private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+  private final LongAdder suppressed = new LongAdder();
+
+  private final AtomicLong reported = new AtomicLong();
+
+  /**
+   * null for {@link Sampling#NONE}.
+   */
+  static LoggerSampler of(Loggable loggable) {
+    switch (loggable.sampling()) {
+      case RATE:
+        return new RateSampler(loggable.sampleRate());
+      case BUDGET:
+        return new BudgetSampler(loggable.sampleBudget());
+      case ADAPTIVE:
+        return new AdaptiveSampler(loggable.sampleBudget());
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * The call was not logged, neither did it fail nor breach warnOver.
+   */
+  void suppress() {
+    suppressed.increment();
+  }
+
+  /**
+   * Number of calls suppressed since the previous drain.
+   */
+  long drain() {
+    long total = suppressed.sum();
+    long previous = reported.get();
+    while (total > previous) {
+      if (reported.compareAndSet(previous, total)) {
+        return total - previous;
+      }
+      previous = reported.get();
+    }
+    return 0L;
+  }
+
+  /**
+   * Whether the call started at nanoTime is logged.
+   */
+  abstract boolean sample(long start);
+
+  private static final class RateSampler extends LoggerSampler {
+
+    private final double rate;
+
+    RateSampler(double rate) {
+      this.rate = rate;
+    }
+
+    @Override
+    boolean sample(long start) {
+      return rate >= 1 || rate > 0 && ThreadLocalRandom.current().nextDouble() < rate;
+    }
+  }
+
+  private static final class BudgetSampler extends LoggerSampler {
+
+    private final int budget;
+
+    private final AtomicLong second = new AtomicLong(Long.MIN_VALUE);
+
+    private final AtomicInteger permits = new AtomicInteger();
+
+    BudgetSampler(int budget) {
+      this.budget = budget;
+    }
+
+    @Override
+    boolean sample(long start) {
+      long current = Math.floorDiv(start, SECOND);
+      long previous = second.get();
+      if (current > previous && second.compareAndSet(previous, current)) {
+        permits.set(budget);
+      }
+      // once the budget is spent, only reads until the next second
+      return permits.get() > 0 && permits.getAndDecrement() > 0;
+    }
+  }
+
+  private static final class AdaptiveSampler extends LoggerSampler {
+
+    private final int budget;
+
+    private final LongAdder calls = new LongAdder();
+
+    private final AtomicLong second = new AtomicLong(Long.MIN_VALUE);
+
+    private volatile double rate = 1;
+
+    AdaptiveSampler(int budget) {
+      this.budget = budget;
+    }
+
+    @Override
+    boolean sample(long start) {
+      calls.increment();
+      long current = Math.floorDiv(start, SECOND);
+      long previous = second.get();
+      if (current > previous && second.compareAndSet(previous, current)) {
+        // throughput of the seconds since the previous adjustment
+        long elapsed = previous == Long.MIN_VALUE ? 1 : current - previous;
+        double throughput = (double) calls.sumThenReset() / elapsed;
+        rate = throughput <= budget ? 1 : budget / throughput;
+      }
+      double sampleRate = rate;
+      return sampleRate >= 1 || ThreadLocalRandom.current().nextDouble() < sampleRate;
+    }
+  }
+}
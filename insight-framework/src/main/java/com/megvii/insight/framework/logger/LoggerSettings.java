@@ -0,0 +1,52 @@
+package com.megvii.insight.framework.logger;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import lombok.AllArgsConstructor;
+import org.springframework.boot.logging.LogLevel;
+
+/**
+ * Runtime overrides of {@link com.megvii.insight.framework.logger.annotation.Loggable}, by target: "*",
+ * a class name, a class#method name or a descriptor id, the most specific wins.
+ */
+final class LoggerSettings {
+
+  static final String ALL = "*";
+
+  private final Map<String, Setting> settings = new ConcurrentHashMap<>();
+
+  /**
+   * Both null removes the override of the target.
+   */
+  synchronized void put(String target, Boolean enabled, LogLevel level) {
+    if (enabled == null && level == null) {
+      settings.remove(target);
+    } else {
+      settings.put(target, new Setting(enabled, level));
+    }
+  }
+
+  synchronized void apply(LoggerDescriptor descriptor) {
+    String type = descriptor.getMethod().getDeclaringClass().getName();
+    String[] targets = {descriptor.getId(), type + "#" + descriptor.getName(), type, ALL};
+    Boolean enabled = null;
+    LogLevel level = null;
+    for (String target : targets) {
+      Setting setting = settings.get(target);
+      if (setting != null) {
+        enabled = enabled == null ? setting.enabled : enabled;
+        level = level == null ? setting.level : level;
+      }
+    }
+    descriptor.setEnabled(enabled == null || enabled);
+    descriptor.setLevel(level == null ? descriptor.getLoggable().value() : level);
+  }
+
+  @AllArgsConstructor
+  private static final class Setting {
+
+    private final Boolean enabled;
+    private final LogLevel level;
+  }
+}
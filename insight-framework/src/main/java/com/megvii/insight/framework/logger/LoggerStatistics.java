@@ -0,0 +1,111 @@
+package com.megvii.insight.framework.logger;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Calls, errors, warnOver breaches and latency of one {@link LoggerDescriptor}, in nanos.
+ * <p>
+ * Counters are since startup. Latency is recorded into the active one of a ring of histograms, the ring is
+ * advanced every window / phases onto the oldest one, which is cleared, and all of them are added up when
+ * read: percentiles and max cover the last window, so they follow a latency regression after hours of uptime.
+ * </p>
+ */
+final class LoggerStatistics {
+
+  private static final AtomicIntegerFieldUpdater<LoggerStatistics> ROTATING =
+      AtomicIntegerFieldUpdater.newUpdater(LoggerStatistics.class, "rotating");
+
+  private final LoggerHistogram[] phases;
+
+  private final long phaseNanos;
+
+  private final LongAdder calls = new LongAdder();
+
+  private final LongAdder errors = new LongAdder();
+
+  private final LongAdder warns = new LongAdder();
+
+  private final LongAdder totalNanos = new LongAdder();
+
+  /**
+   * Index of the phase recorded into, the newest one.
+   */
+  private volatile int active;
+
+  private volatile long nextRotation;
+
+  private volatile int rotating;
+
+  LoggerStatistics(LoggerProperties.Metrics properties) {
+    this.phases = new LoggerHistogram[Math.max(properties.getPhases(), 1)];
+    for (int i = 0; i < phases.length; i++) {
+      phases[i] = new LoggerHistogram();
+    }
+    this.phaseNanos = Math.max(properties.getWindow().toNanos() / phases.length, TimeUnit.MILLISECONDS.toNanos(1));
+    this.nextRotation = System.nanoTime() + phaseNanos;
+  }
+
+  void record(long nano, boolean error, boolean over) {
+    calls.increment();
+    totalNanos.add(nano);
+    if (error) {
+      errors.increment();
+    }
+    if (over) {
+      warns.increment();
+    }
+    rotate();
+    phases[active].record(nano);
+  }
+
+  long getCalls() {
+    return calls.sum();
+  }
+
+  long getErrors() {
+    return errors.sum();
+  }
+
+  long getWarns() {
+    return warns.sum();
+  }
+
+  double getMeanNanos() {
+    long count = calls.sum();
+    return count == 0 ? 0D : (double) totalNanos.sum() / count;
+  }
+
+  /**
+   * Latency of the calls of the last window.
+   */
+  LoggerHistogram.Snapshot snapshot() {
+    rotate();
+    return LoggerHistogram.merge(phases);
+  }
+
+  /**
+   * Moves on to the oldest phase, cleared first, once per phaseNanos, by whichever thread notices first.
+   */
+  private void rotate() {
+    long now = System.nanoTime();
+    if (now - nextRotation < 0 || !ROTATING.compareAndSet(this, 0, 1)) {
+      return;
+    }
+    try {
+      // idle for a whole window, every phase is cleared once
+      for (int i = 0; i < phases.length && now - nextRotation >= 0; i++) {
+        int oldest = (active + 1) % phases.length;
+        phases[oldest].reset();
+        active = oldest;
+        nextRotation += phaseNanos;
+      }
+      if (now - nextRotation >= 0) {
+        nextRotation = now + phaseNanos;
+      }
+    } finally {
+      rotating = 0;
+    }
+  }
+}
@@ -0,0 +1,114 @@
+package com.megvii.insight.framework.logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Log message template compiled once from a {@link LoggerFormat} pattern.
+ * <p>
+ * The pattern is split into literal and placeholder segments up front, so rendering a message only walks
+ * the segments instead of parsing the ${...} placeholders again on every call.
+ * </p>
+ */
+final class LoggerTemplate {
+
+  private static final String PREFIX = "${";
+  private static final char SUFFIX = '}';
+  private static final char ESCAPE = '$';
+
+  private final Segment[] segments;
+
+  private LoggerTemplate(Segment[] segments) {
+    this.segments = segments;
+  }
+
+  /**
+   * Compile the pattern, placeholders outside {@code available} are kept as literal text.
+   */
+  static LoggerTemplate compile(String pattern, Set<Placeholder> available) {
+    List<Segment> segments = new ArrayList<>();
+    String text = pattern == null ? "" : pattern;
+    StringBuilder literal = new StringBuilder();
+    int i = 0;
+    while (i < text.length()) {
+      if (text.charAt(i) == ESCAPE && text.startsWith(PREFIX, i + 1)) {
+        literal.append(PREFIX);
+        i += PREFIX.length() + 1;
+        continue;
+      }
+      int end = text.startsWith(PREFIX, i) ? text.indexOf(SUFFIX, i + PREFIX.length()) : -1;
+      if (end < 0) {
+        literal.append(text.charAt(i++));
+        continue;
+      }
+      String raw = text.substring(i, end + 1);
+      Placeholder placeholder = Placeholder.of(text.substring(i + PREFIX.length(), end));
+      if (placeholder != null && available.contains(placeholder)) {
+        flush(segments, literal);
+        segments.add(new Segment(raw, placeholder));
+      } else {
+        literal.append(raw);
+      }
+      i = end + 1;
+    }
+    flush(segments, literal);
+    return new LoggerTemplate(segments.toArray(new Segment[0]));
+  }
+
+  private static void flush(List<Segment> segments, StringBuilder literal) {
+    if (literal.length() > 0) {
+      segments.add(new Segment(literal.toString(), null));
+      literal.setLength(0);
+    }
+  }
+
+  Segment[] getSegments() {
+    return segments;
+  }
+
+  /**
+   * Literal text, or a placeholder together with its raw ${...} text.
+   */
+  @Getter
+  @AllArgsConstructor
+  static final class Segment {
+
+    private final String text;
+    private final Placeholder placeholder;
+  }
+
+  /**
+   * Placeholders supported by {@link LoggerFormat}.
+   */
+  enum Placeholder {
+    METHOD_NAME("method.name"),
+    METHOD_ARGS("method.args"),
+    METHOD_RESULT("method.result"),
+    METHOD_DURATION("method.duration"),
+    METHOD_WARN_DURATION("method.warn.duration"),
+    ERROR_CLASS_NAME("error.class.name"),
+    ERROR_MESSAGE("error.message"),
+    ERROR_SOURCE_CLASS_NAME("error.source.class.name"),
+    ERROR_SOURCE_LINE("error.source.line"),
+    ERROR_STACKTRACE("error.stacktrace");
+
+    private final String key;
+
+    Placeholder(String key) {
+      this.key = key;
+    }
+
+    static Placeholder of(String key) {
+      for (Placeholder placeholder : values()) {
+        if (placeholder.key.equals(key)) {
+          return placeholder;
+        }
+      }
+      return null;
+    }
+  }
+}
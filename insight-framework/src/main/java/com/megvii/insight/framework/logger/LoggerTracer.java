@@ -0,0 +1,135 @@
+package com.megvii.insight.framework.logger;
+
+import java.util.concurrent.TimeUnit;
+
+import brave.Span;
+import brave.Tracer;
+import brave.Tracing;
+import brave.propagation.CurrentTraceContext;
+import brave.propagation.TraceContext;
+
+/**
+ * Opens a brave child span around each {@link com.megvii.insight.framework.logger.annotation.Loggable} call
+ * of a sampled trace, with insight.logger.tracing.enabled=true.
+ * <p>
+ * Spans are timed with the System.nanoTime() the interceptor already measures, converted to epoch micros
+ * against a wall clock anchor refreshed once a minute, like the per trace clock of brave itself, so no clock
+ * is read for tracing. Without a sampled trace in scope nothing is allocated.
+ * </p>
+ * <p>
+ * Only loaded with insight.logger.tracing.enabled=true, brave is an optional dependency.
+ * </p>
+ */
+final class LoggerTracer {
+
+  static final String TAG_CLASS = "class";
+
+  static final String TAG_METHOD = "method";
+
+  private static final long ANCHOR_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+  private final Tracer tracer;
+
+  private final CurrentTraceContext current;
+
+  private volatile Anchor anchor;
+
+  LoggerTracer(Tracing tracing) {
+    this.tracer = tracing.tracer();
+    this.current = tracing.currentTraceContext();
+    this.anchor = new Anchor(System.nanoTime());
+  }
+
+  /**
+   * Start a child span of the current sampled trace, put in scope of the calling thread when
+   * {@code scoped}, so the calls it makes are its children.
+   *
+   * @return null when no sampled trace is in scope
+   */
+  Trace open(LoggerDescriptor descriptor, long start, boolean scoped) {
+    TraceContext parent = current.get();
+    if (parent == null || !Boolean.TRUE.equals(parent.sampled())) {
+      return null;
+    }
+    Span span = tracer.newChild(parent)
+        .name(descriptor.getName())
+        .tag(TAG_CLASS, descriptor.getMethod().getDeclaringClass().getName())
+        .tag(TAG_METHOD, descriptor.getSignature());
+    Anchor anchor = anchor(start);
+    span.start(anchor.micros(start));
+    return new Trace(span, scoped ? tracer.withSpanInScope(span) : null, anchor);
+  }
+
+  private Anchor anchor(long nanoTime) {
+    Anchor anchor = this.anchor;
+    if (nanoTime - anchor.nanoTime > ANCHOR_NANOS) {
+      // racy refresh, any anchor read by a caller is valid
+      anchor = new Anchor(System.nanoTime());
+      this.anchor = anchor;
+    }
+    return anchor;
+  }
+
+  /**
+   * Epoch micros at a System.nanoTime().
+   */
+  private static final class Anchor {
+
+    private final long nanoTime;
+
+    private final long micros;
+
+    private Anchor(long nanoTime) {
+      this.nanoTime = nanoTime;
+      this.micros = TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+    }
+
+    long micros(long nanoTime) {
+      return micros + TimeUnit.NANOSECONDS.toMicros(nanoTime - this.nanoTime);
+    }
+  }
+
+  /**
+   * One traced call, its scope is closed by the calling thread and its span finished on completion, both ends
+   * timed against the same anchor.
+   */
+  static final class Trace {
+
+    private final Span span;
+
+    private final Tracer.SpanInScope scope;
+
+    private final Anchor anchor;
+
+    private Trace(Span span, Tracer.SpanInScope scope, Anchor anchor) {
+      this.span = span;
+      this.scope = scope;
+      this.anchor = anchor;
+    }
+
+    /**
+     * Restore the scope of the caller, when the method returns.
+     */
+    void close() {
+      if (scope != null) {
+        scope.close();
+      }
+    }
+
+    void finish(long end, Throwable err) {
+      if (err != null) {
+        span.error(err);
+      }
+      span.finish(anchor.micros(end));
+    }
+
+    /**
+     * Unsubscribed before completion.
+     */
+    void cancel(long end) {
+      long micros = anchor.micros(end);
+      span.annotate(micros, "cancel");
+      span.finish(micros);
+    }
+  }
+}
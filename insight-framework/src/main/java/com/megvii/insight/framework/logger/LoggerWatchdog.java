@@ -0,0 +1,252 @@
+package com.megvii.insight.framework.logger;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+import lombok.Getter;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hashed timing wheel that reports {@link com.megvii.insight.framework.logger.annotation.Loggable} calls
+ * still running after their warnOver.
+ * <p>
+ * Scheduling and cancelling are O(1) lock-free queue offers on the calling thread. The buckets are only
+ * touched by the single worker thread, which advances one bucket per tick.
+ * </p>
+ */
+final class LoggerWatchdog {
+
+  private static final org.slf4j.Logger LOG = LoggerFactory.getLogger(LoggerWatchdog.class);
+
+  private static final int MAX_TRANSFERS_PER_TICK = 100_000;
+
+  private final Queue<WarnPoint> pending = new ConcurrentLinkedQueue<>();
+
+  private final Queue<WarnPoint> cancelled = new ConcurrentLinkedQueue<>();
+
+  private final Bucket[] wheel;
+
+  private final int mask;
+
+  private final long tickNanos;
+
+  private final long startTime;
+
+  private final Consumer<WarnPoint> listener;
+
+  private final ExecutorService executor;
+
+  private volatile boolean running;
+
+  /**
+   * Only accessed by the worker thread.
+   */
+  private long tick;
+
+  LoggerWatchdog(LoggerProperties.Warn properties, Consumer<WarnPoint> listener) {
+    int size = Integer.highestOneBit(Math.max(properties.getWheelSize(), 2) - 1) << 1;
+    this.wheel = new Bucket[size];
+    for (int i = 0; i < size; i++) {
+      wheel[i] = new Bucket();
+    }
+    this.mask = size - 1;
+    this.tickNanos = Math.max(properties.getTick().toNanos(), TimeUnit.MILLISECONDS.toNanos(1));
+    this.startTime = System.nanoTime();
+    this.listener = listener;
+    this.executor = Executors.newSingleThreadExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "logger_watchdog");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  void start() {
+    running = true;
+    executor.execute(this::run);
+  }
+
+  void stop() {
+    running = false;
+    executor.shutdownNow();
+    try {
+      executor.awaitTermination(1L, TimeUnit.SECONDS);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  WarnPoint schedule(ProceedingJoinPoint point, LoggerDescriptor descriptor, long start) {
+    WarnPoint warnPoint = new WarnPoint(point, descriptor, start);
+    pending.offer(warnPoint);
+    return warnPoint;
+  }
+
+  /**
+   * @return false when the call was reported already
+   */
+  boolean cancel(WarnPoint warnPoint) {
+    if (WarnPoint.STATE.compareAndSet(warnPoint, WarnPoint.WAITING, WarnPoint.CANCELLED)) {
+      cancelled.offer(warnPoint);
+      return true;
+    }
+    return false;
+  }
+
+  private void run() {
+    while (running && waitForNextTick()) {
+      removeCancelled();
+      transferPending();
+      expire(wheel[(int) (tick & mask)], System.nanoTime());
+      tick++;
+    }
+  }
+
+  /**
+   * @return false when stopped while waiting
+   */
+  private boolean waitForNextTick() {
+    long deadline = startTime + (tick + 1) * tickNanos;
+    for (; ; ) {
+      long remaining = deadline - System.nanoTime();
+      if (remaining <= 0) {
+        return true;
+      }
+      LockSupport.parkNanos(this, remaining);
+      if (!running || Thread.currentThread().isInterrupted()) {
+        return false;
+      }
+    }
+  }
+
+  private void removeCancelled() {
+    WarnPoint warnPoint;
+    while ((warnPoint = cancelled.poll()) != null) {
+      if (warnPoint.bucket != null) {
+        warnPoint.bucket.remove(warnPoint);
+      }
+    }
+  }
+
+  private void transferPending() {
+    for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+      WarnPoint warnPoint = pending.poll();
+      if (warnPoint == null) {
+        break;
+      }
+      if (warnPoint.state == WarnPoint.WAITING) {
+        place(warnPoint);
+      }
+    }
+  }
+
+  private void place(WarnPoint warnPoint) {
+    long calculated = (warnPoint.deadline - startTime) / tickNanos;
+    warnPoint.rounds = (calculated - tick) / wheel.length;
+    wheel[(int) (Math.max(calculated, tick) & mask)].add(warnPoint);
+  }
+
+  private void expire(Bucket bucket, long now) {
+    WarnPoint warnPoint = bucket.head;
+    while (warnPoint != null) {
+      WarnPoint next = warnPoint.next;
+      if (warnPoint.rounds > 0) {
+        warnPoint.rounds--;
+      } else {
+        bucket.remove(warnPoint);
+        if (warnPoint.deadline - now > 0) {
+          pending.offer(warnPoint);
+        } else if (WarnPoint.STATE.compareAndSet(warnPoint, WarnPoint.WAITING, WarnPoint.EXPIRED)) {
+          notify(warnPoint);
+        }
+      }
+      warnPoint = next;
+    }
+  }
+
+  private void notify(WarnPoint warnPoint) {
+    try {
+      listener.accept(warnPoint);
+    } catch (RuntimeException ex) {
+      LOG.warn("Failed to report a running call of #{}", warnPoint.getDescriptor().getName(), ex);
+    }
+  }
+
+  /**
+   * An in-flight call, linked into one bucket of the wheel by the worker thread.
+   */
+  static final class WarnPoint {
+
+    private static final int WAITING = 0;
+    private static final int CANCELLED = 1;
+    private static final int EXPIRED = 2;
+
+    private static final AtomicIntegerFieldUpdater<WarnPoint> STATE =
+        AtomicIntegerFieldUpdater.newUpdater(WarnPoint.class, "state");
+
+    @Getter
+    private final ProceedingJoinPoint point;
+    @Getter
+    private final LoggerDescriptor descriptor;
+    @Getter
+    private final long start;
+    private final long deadline;
+
+    private volatile int state;
+
+    private long rounds;
+    private WarnPoint prev;
+    private WarnPoint next;
+    private Bucket bucket;
+
+    private WarnPoint(ProceedingJoinPoint point, LoggerDescriptor descriptor, long start) {
+      this.point = point;
+      this.descriptor = descriptor;
+      this.start = start;
+      this.deadline = start + descriptor.getWarnNanos();
+    }
+  }
+
+  /**
+   * Doubly linked list of the calls expiring at the same slot of the wheel.
+   */
+  private static final class Bucket {
+
+    private WarnPoint head;
+    private WarnPoint tail;
+
+    void add(WarnPoint warnPoint) {
+      warnPoint.bucket = this;
+      if (head == null) {
+        head = warnPoint;
+        tail = warnPoint;
+      } else {
+        tail.next = warnPoint;
+        warnPoint.prev = tail;
+        tail = warnPoint;
+      }
+    }
+
+    void remove(WarnPoint warnPoint) {
+      if (warnPoint.prev == null) {
+        head = warnPoint.next;
+      } else {
+        warnPoint.prev.next = warnPoint.next;
+      }
+      if (warnPoint.next == null) {
+        tail = warnPoint.prev;
+      } else {
+        warnPoint.next.prev = warnPoint.prev;
+      }
+      warnPoint.prev = null;
+      warnPoint.next = null;
+      warnPoint.bucket = null;
+    }
+  }
+}
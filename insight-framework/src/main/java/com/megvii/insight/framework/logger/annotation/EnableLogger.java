@@ -1,7 +1,8 @@
 package com.megvii.insight.framework.logger.annotation;
 
-import com.megvii.insight.framework.logger.LoggerConfiguration;
+import com.megvii.insight.framework.logger.LoggerConfigurationSelector;
 import com.megvii.insight.framework.logger.LoggerFormat;
+import org.springframework.context.annotation.AdviceMode;
 import org.springframework.context.annotation.Import;
 
 import java.lang.annotation.Documented;
@@ -22,6 +23,14 @@ import java.lang.annotation.Target;
 @Retention(RetentionPolicy.RUNTIME)
 @Target(ElementType.TYPE)
 @Documented
-@Import(LoggerConfiguration.class)
+@Import(LoggerConfigurationSelector.class)
 public @interface EnableLogger {
+
+  /**
+   * PROXY advises the beans through Spring AOP proxies, which needs an auto proxy creator such as
+   * {@code @EnableAspectJAutoProxy}. ASPECTJ advises the classes woven with the LoggerAspect of
+   * insight-framework, at compile time (aspectj-maven-plugin) or load time (aspectjweaver agent and
+   * META-INF/aop.xml), self-invocations included. (default: PROXY)
+   */
+  AdviceMode mode() default AdviceMode.PROXY;
 }
\ No newline at end of file
@@ -61,4 +61,34 @@ public @interface Loggable {
    * Time unit for the warnOver. (default: MINUTES)
    */
   TimeUnit warnUnit() default TimeUnit.MINUTES;
+
+  /**
+   * Max characters of each rendered argument list or result, negative for insight.logger.render.max-length.
+   */
+  int maxLength() default -1;
+
+  /**
+   * Max rendered elements of each array, collection or map, negative for insight.logger.render.max-elements.
+   */
+  int maxElements() default -1;
+
+  /**
+   * Max nesting of rendered arrays, collections and maps, negative for insight.logger.render.max-depth.
+   */
+  int maxDepth() default -1;
+
+  /**
+   * Sample the logged calls under high call rates? (default: NONE)
+   */
+  Sampling sampling() default Sampling.NONE;
+
+  /**
+   * Share of the calls logged with {@link Sampling#RATE}, from 0 to 1. (default: 1)
+   */
+  double sampleRate() default 1;
+
+  /**
+   * Calls logged per second with {@link Sampling#BUDGET} and {@link Sampling#ADAPTIVE}. (default: 100)
+   */
+  int sampleBudget() default 100;
 }
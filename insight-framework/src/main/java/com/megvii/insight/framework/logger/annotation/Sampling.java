@@ -0,0 +1,28 @@
+package com.megvii.insight.framework.logger.annotation;
+
+/**
+ * How the calls of a {@link Loggable} method are sampled, errors and warnOver breaches are always logged.
+ */
+public enum Sampling {
+
+  /**
+   * Every call is logged.
+   */
+  NONE,
+
+  /**
+   * A random share of the calls is logged, see {@link Loggable#sampleRate()}.
+   */
+  RATE,
+
+  /**
+   * The first calls of every second are logged, see {@link Loggable#sampleBudget()}.
+   */
+  BUDGET,
+
+  /**
+   * The calls are logged at a random rate lowered as throughput rises, so that about
+   * {@link Loggable#sampleBudget()} calls per second are logged, spread over the second.
+   */
+  ADAPTIVE
+}
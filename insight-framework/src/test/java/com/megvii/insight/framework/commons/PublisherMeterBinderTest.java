@@ -0,0 +1,67 @@
+package com.megvii.insight.framework.commons;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.megvii.insight.common.message.PublisherMetrics;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+
+public class PublisherMeterBinderTest {
+
+  @Test
+  public void recordsEachBatch() {
+    Batches publisher = new Batches();
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    new PublisherMeterBinder("audit", publisher).bindTo(registry);
+
+    publisher.completed(10, 1_000, TimeUnit.MILLISECONDS.toNanos(5L));
+    publisher.completed(30, 3_000, TimeUnit.MILLISECONDS.toNanos(15L));
+
+    DistributionSummary messages = registry.get("message.batch.messages").tag("name", "audit").summary();
+    assertEquals(2L, messages.count());
+    assertEquals(40.0, messages.totalAmount(), 0.0);
+    assertEquals(30.0, messages.max(), 0.0);
+    DistributionSummary bytes = registry.get("message.batch.bytes").tag("name", "audit").summary();
+    assertEquals(4_000.0, bytes.totalAmount(), 0.0);
+    assertEquals(3_000.0, bytes.max(), 0.0);
+    Timer latency = registry.get("message.batch").tag("name", "audit").timer();
+    assertEquals(2L, latency.count());
+    assertEquals(20.0, latency.totalTime(TimeUnit.MILLISECONDS), 0.0);
+    assertEquals(15.0, latency.max(TimeUnit.MILLISECONDS), 0.0);
+  }
+
+  private static final class Batches implements PublisherMetrics {
+
+    private final List<BatchListener> listeners = new ArrayList<>();
+
+    void completed(int messages, int bytes, long latencyNanos) {
+      listeners.forEach(listener -> listener.completed(messages, bytes, latencyNanos, false));
+    }
+
+    @Override
+    public long getMessageCount() {
+      return 0L;
+    }
+
+    @Override
+    public long getFailedCount() {
+      return 0L;
+    }
+
+    @Override
+    public long getInFlightBytes() {
+      return 0L;
+    }
+
+    @Override
+    public void addBatchListener(BatchListener listener) {
+      listeners.add(listener);
+    }
+  }
+}
@@ -0,0 +1,98 @@
+package com.megvii.insight.framework.commons;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import com.megvii.insight.common.factory.ThreadPoolFactory;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ThreadPoolMeterBinderTest {
+
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+  private ThreadPoolMeterBinder binder;
+
+  @Before
+  public void setUp() {
+    binder = new ThreadPoolMeterBinder();
+    binder.bindTo(registry);
+  }
+
+  @After
+  public void tearDown() {
+    binder.destroy();
+  }
+
+  @Test
+  public void recreatedPoolPublished() throws Exception {
+    ThreadPoolFactory first = ThreadPoolFactory.builder("meters_recreated").corePoolSize(2).maximumPoolSize(2).build();
+    first.getExecutor().submit(() -> null).get();
+    assertEquals(2.0, gauge("meters_recreated", "executor.pool.core"), 0.0);
+    // counted once the task completed, after its future
+    first.shutdown();
+    assertEquals(1.0, counter("meters_recreated", "executor.completed"), 0.0);
+
+    ThreadPoolFactory second = ThreadPoolFactory.builder("meters_recreated").corePoolSize(3).maximumPoolSize(3)
+        .queue(ThreadPoolFactory.QueueType.ARRAY, 10).build();
+    for (int i = 0; i < 3; i++) {
+      second.getExecutor().submit(() -> null).get();
+    }
+    assertEquals(3.0, gauge("meters_recreated", "executor.pool.core"), 0.0);
+    assertEquals(3.0, gauge("meters_recreated", "executor.pool.size"), 0.0);
+    assertEquals(10.0, gauge("meters_recreated", "executor.queue.remaining"), 0.0);
+    second.shutdown();
+
+    assertEquals(3.0, counter("meters_recreated", "executor.completed"), 0.0);
+    FunctionTimer execution = registry.get("executor.execution").tag("name", "meters_recreated").functionTimer();
+    assertEquals(3.0, execution.count(), 0.0);
+    assertTrue(execution.totalTime(TimeUnit.NANOSECONDS) > 0.0);
+  }
+
+  @Test
+  public void workStealingPoolPublished() throws Exception {
+    ThreadPoolFactory factory = ThreadPoolFactory.createWorkStealingPool("meters_work_stealing", 2);
+    try {
+      factory.getExecutor().submit(() -> null).get();
+
+      assertTrue(gauge("meters_work_stealing", "executor.pool.size") >= 1.0);
+      assertEquals(0.0, gauge("meters_work_stealing", "executor.queued"), 0.0);
+      assertTrue(gauge("meters_work_stealing", "executor.active") >= 0.0);
+      assertTrue(counter("meters_work_stealing", "executor.steals") >= 0.0);
+      // no queue capacity, rejection or timers for a ForkJoinPool
+      assertNull(registry.find("executor.rejected").tag("name", "meters_work_stealing").functionCounter());
+    } finally {
+      factory.shutdown();
+    }
+  }
+
+  @Test
+  public void virtualFallbackPublished() throws Exception {
+    Assume.assumeFalse(ThreadPoolFactory.isVirtualThreadSupported());
+    ThreadPoolFactory factory = ThreadPoolFactory.createVirtualThreadExecutor("meters_virtual");
+    try {
+      factory.getExecutor().submit(() -> null).get();
+
+      assertEquals(0.0, gauge("meters_virtual", "executor.pool.core"), 0.0);
+      assertEquals(0.0, gauge("meters_virtual", "executor.queue.remaining"), 0.0);
+      assertEquals(1.0, gauge("meters_virtual", "executor.pool.size"), 0.0);
+    } finally {
+      factory.shutdown();
+    }
+  }
+
+  private double gauge(String pool, String meter) {
+    return registry.get(meter).tag("name", pool).gauge().value();
+  }
+
+  private double counter(String pool, String meter) {
+    return registry.get(meter).tag("name", pool).functionCounter().count();
+  }
+}
@@ -0,0 +1,64 @@
+package com.megvii.insight.framework.logger;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.UnsynchronizedAppenderBase;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Records the events of one logger, which is detached from the console meanwhile.
+ */
+final class LoggerAppender extends UnsynchronizedAppenderBase<ILoggingEvent> {
+
+  private final List<ILoggingEvent> events = new ArrayList<>();
+
+  private final ch.qos.logback.classic.Logger target;
+
+  private final Level level;
+
+  private LoggerAppender(String name) {
+    this.target = (ch.qos.logback.classic.Logger) LoggerFactory.getLogger(name);
+    this.level = target.getLevel();
+  }
+
+  static LoggerAppender attach(String name) {
+    LoggerAppender appender = new LoggerAppender(name);
+    appender.start();
+    appender.target.setAdditive(false);
+    appender.target.addAppender(appender);
+    return appender;
+  }
+
+  void detach() {
+    target.detachAppender(this);
+    target.setAdditive(true);
+    target.setLevel(level);
+    stop();
+  }
+
+  void setLevel(Level level) {
+    target.setLevel(level);
+  }
+
+  @Override
+  protected synchronized void append(ILoggingEvent event) {
+    events.add(event);
+  }
+
+  synchronized List<ILoggingEvent> events() {
+    return new ArrayList<>(events);
+  }
+
+  synchronized List<String> messages() {
+    List<String> messages = new ArrayList<>();
+    events.forEach(event -> messages.add(event.getFormattedMessage()));
+    return messages;
+  }
+
+  synchronized void clear() {
+    events.clear();
+  }
+}
@@ -0,0 +1,85 @@
+package com.megvii.insight.framework.logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import com.megvii.insight.framework.logger.annotation.EnableLogger;
+import com.megvii.insight.framework.logger.woven.WovenCalls;
+import com.megvii.insight.framework.logger.woven.WovenType;
+import org.aspectj.lang.Aspects;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.annotation.AdviceMode;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+
+/**
+ * ASPECTJ mode, calls of the classes woven at test-compile, created outside of the context.
+ */
+public class LoggerAspectTest {
+
+  private LoggerAppender appender;
+
+  private AnnotationConfigApplicationContext context;
+
+  private final WovenCalls calls = new WovenCalls();
+
+  @Before
+  public void setUp() {
+    appender = LoggerAppender.attach(WovenCalls.LOGGER);
+    context = new AnnotationConfigApplicationContext(AspectJConfig.class);
+  }
+
+  @After
+  public void tearDown() {
+    context.close();
+    appender.detach();
+  }
+
+  @Test
+  public void interceptorAttached() {
+    LoggerAspect aspect = Aspects.aspectOf(LoggerAspect.class);
+    assertSame(aspect, context.getBean(LoggerAspect.class));
+
+    assertEquals("a", calls.method("a"));
+    assertEquals("b", new WovenType().type("b"));
+
+    assertEquals(Arrays.asList("method 'a'", "type 'b'"), appender.messages());
+    // the descriptors of the context's interceptor
+    assertEquals(2, context.getBean(LoggerInterceptor.class).getDescriptors().size());
+  }
+
+  @Test
+  public void selfInvocation() {
+    assertEquals("a", calls.plain("a"));
+    assertEquals("b", calls.selfInvocation("b"));
+    assertEquals("woven", new WovenType().toString());
+
+    assertEquals(Collections.singletonList("method 'b'"), appender.messages());
+  }
+
+  @Test
+  public void detachedOnClose() {
+    context.close();
+
+    assertEquals("a", calls.method("a"));
+    assertEquals("b", new WovenType().type("b"));
+    assertTrue(appender.messages().isEmpty());
+  }
+
+  @EnableLogger(mode = AdviceMode.ASPECTJ)
+  static class AspectJConfig {
+
+    @Bean
+    LoggerFormat loggerFormat() {
+      return LoggerFormat.builder()
+          .after("${method.name} ${method.result}")
+          .build();
+    }
+  }
+}
@@ -0,0 +1,110 @@
+package com.megvii.insight.framework.logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class LoggerBufferTest {
+
+  @Test
+  public void unlimited() {
+    Object[] args = {"a", 1, null, new int[]{1, 2}, Collections.singletonList('x'), map("k", "v"), ""};
+
+    assertEquals("['a', 1, NULL, [1, 2], [x], {'k'='v'}, '']", render(args, -1, -1, -1));
+  }
+
+  @Test
+  public void maxLengthCutsText() {
+    assertEquals("'abcd...(+6 more)", render("abcdefghij", 5, -1, -1));
+    assertEquals("'abcdefghij'", render("abcdefghij", 12, -1, -1));
+  }
+
+  @Test
+  public void maxLengthSkipsElements() {
+    assertEquals("['aaaa'...(+2 more)", render(Arrays.asList("aaaa", "bbbb", "cccc"), 7, -1, -1));
+    assertEquals("[[1, 2]...(+1 more)", render(Arrays.asList(Arrays.asList(1, 2), Arrays.asList(3, 4)), 7, -1, -1));
+  }
+
+  @Test
+  public void maxLengthOfEachValue() {
+    LoggerBuffer buffer = new LoggerBuffer();
+    buffer.getOut().append("#find(");
+    buffer.appendValue("abcdef", 3, -1, -1);
+    buffer.getOut().append("): ");
+    buffer.appendValue(12345, 3, -1, -1);
+
+    assertEquals("#find('ab...(+4 more)): 123...(+2 more)", buffer.toString());
+  }
+
+  @Test
+  public void maxElements() {
+    assertEquals("[1, 2, ...(+3 more)]", render(Arrays.asList(1, 2, 3, 4, 5), -1, 2, -1));
+    assertEquals("[1, 2, ...(+3 more)]", render(new long[]{1, 2, 3, 4, 5}, -1, 2, -1));
+    assertEquals("{'a'=1, ...(+2 more)}", render(map("a", 1, "b", 2, "c", 3), -1, 1, -1));
+    assertEquals("[...(+3 more)]", render(Arrays.asList(1, 2, 3), -1, 0, -1));
+    assertEquals("[1, 2]", render(Arrays.asList(1, 2), -1, 2, -1));
+  }
+
+  @Test
+  public void maxElementsOfEachCollection() {
+    Object nested = Arrays.asList(Arrays.asList(1, 2, 3), map("a", Arrays.asList(4, 5, 6), "b", 7, "c", 8));
+
+    assertEquals("[[1, 2, ...(+1 more)], {'a'=[4, 5, ...(+1 more)], 'b'=7, ...(+1 more)}]",
+        render(nested, -1, 2, -1));
+  }
+
+  @Test
+  public void maxDepth() {
+    Object nested = Arrays.asList(Arrays.asList(1, Arrays.asList(2)), map("k", map("x", 1)));
+
+    assertEquals("[[1, [...]], {'k'={...}}]", render(nested, -1, -1, 2));
+    assertEquals("[[...], {...}]", render(nested, -1, -1, 1));
+    assertEquals("[[1, [2]], {'k'={'x'=1}}]", render(nested, -1, -1, 3));
+  }
+
+  @Test
+  public void argsArrayIsDepthZero() {
+    Object[] args = {Arrays.asList(1, 2), new int[]{3}, "s"};
+
+    assertEquals("[...]", render(args, -1, -1, 0));
+    assertEquals("[[...], [...], 's']", render(args, -1, -1, 1));
+    assertEquals("[[1, 2], [3], 's']", render(args, -1, -1, 2));
+  }
+
+  @Test
+  public void reusedPerThread() {
+    LoggerBuffer buffer = LoggerBuffer.acquire();
+    buffer.getOut().append("message");
+    // re-entered from a toString() while rendering
+    LoggerBuffer nested = LoggerBuffer.acquire();
+    assertNotSame(buffer, nested);
+    LoggerBuffer.release(nested);
+    LoggerBuffer.release(buffer);
+
+    LoggerBuffer again = LoggerBuffer.acquire();
+    LoggerBuffer.release(again);
+    assertSame(buffer, again);
+    assertEquals("", again.toString());
+  }
+
+  private static String render(Object value, int maxLength, int maxElements, int maxDepth) {
+    LoggerBuffer buffer = new LoggerBuffer();
+    buffer.appendValue(value, maxLength, maxElements, maxDepth);
+    return buffer.toString();
+  }
+
+  private static Map<Object, Object> map(Object... keyValues) {
+    Map<Object, Object> map = new LinkedHashMap<>();
+    for (int i = 0; i < keyValues.length; i += 2) {
+      map.put(keyValues[i], keyValues[i + 1]);
+    }
+    return map;
+  }
+}
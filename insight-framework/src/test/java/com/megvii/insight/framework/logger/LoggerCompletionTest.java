@@ -0,0 +1,262 @@
+package com.megvii.insight.framework.logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+import com.megvii.insight.framework.logger.annotation.EnableLogger;
+import com.megvii.insight.framework.logger.annotation.Loggable;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.EnableAspectJAutoProxy;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Methods returning a CompletionStage, Mono or Flux are logged when they complete, each subscription of a
+ * publisher on its own.
+ */
+public class LoggerCompletionTest {
+
+  private LoggerAppender appender;
+
+  private AnnotationConfigApplicationContext context;
+
+  private Service service;
+
+  @Before
+  public void setUp() {
+    appender = LoggerAppender.attach(Service.class.getName());
+    context = new AnnotationConfigApplicationContext(CompletionConfig.class);
+    service = context.getBean(Service.class);
+  }
+
+  @After
+  public void tearDown() {
+    context.close();
+    appender.detach();
+  }
+
+  @Test
+  public void stageTimedToCompletion() throws InterruptedException {
+    CompletableFuture<String> source = new CompletableFuture<>();
+    CompletableFuture<String> future = service.stage(source);
+    CompletableFuture.runAsync(() -> {
+      sleep(100L);
+      source.complete("done");
+    });
+    assertTrue(appender.events().isEmpty());
+
+    assertEquals("done", future.join());
+    await(() -> !appender.events().isEmpty());
+    List<String> logged = logged();
+    assertEquals(1, logged.size());
+    assertTrue(logged.get(0), logged.get(0).startsWith("INFO stage 'done' PT"));
+    assertTrue(logged.get(0), duration(logged.get(0)).toMillis() >= 100L);
+  }
+
+  @Test
+  public void stageError() throws InterruptedException {
+    CompletableFuture<String> source = new CompletableFuture<>();
+    CompletableFuture<String> future = service.stage(source);
+    CompletableFuture.runAsync(() -> {
+      sleep(50L);
+      source.completeExceptionally(new CompletionException(new IllegalStateException("boom")));
+    });
+
+    try {
+      future.join();
+      fail();
+    } catch (RuntimeException expected) {
+      // completed exceptionally
+    }
+    await(() -> !appender.events().isEmpty());
+    // the CompletionException is unwrapped
+    List<String> logged = logged();
+    assertTrue(logged.get(0), logged.get(0).startsWith("ERROR stage boom PT"));
+    assertTrue(logged.get(0), duration(logged.get(0)).toMillis() >= 50L);
+  }
+
+  @Test
+  public void monoTimedPerSubscription() {
+    Mono<String> mono = service.mono(100L);
+    // assembled, not subscribed
+    sleep(200L);
+    assertTrue(appender.events().isEmpty());
+
+    assertEquals("mono", mono.block());
+    assertEquals("mono", mono.block());
+
+    List<String> logged = logged();
+    assertEquals(2, logged.size());
+    for (String message : logged) {
+      assertTrue(message, message.startsWith("INFO mono 'mono' PT"));
+      long millis = duration(message).toMillis();
+      // from the subscription, the 200ms after the assembly excluded
+      assertTrue(message, millis >= 100L && millis < 200L);
+    }
+  }
+
+  @Test
+  public void fluxCountsElements() {
+    assertEquals(Arrays.asList(1, 2, 3), service.flux(false).collectList().block());
+
+    List<String> logged = logged();
+    assertEquals(1, logged.size());
+    assertTrue(logged.get(0), logged.get(0).startsWith("INFO flux 3 PT"));
+  }
+
+  @Test
+  public void fluxError() {
+    try {
+      service.flux(true).collectList().block();
+      fail();
+    } catch (IllegalStateException expected) {
+      // signalled after 3 elements
+    }
+
+    List<String> logged = logged();
+    assertEquals(1, logged.size());
+    assertTrue(logged.get(0), logged.get(0).startsWith("ERROR flux boom PT"));
+  }
+
+  @Test
+  public void warnPointCancelledAtAssembly() throws InterruptedException {
+    // the first assembly loads the classes of reactor, and may well take more than warnOver itself
+    service.watched(10L).block();
+    sleep(100L);
+    logged();
+
+    Mono<String> mono = service.watched(10L);
+    // past warnOver, without a subscription
+    sleep(150L);
+    assertEquals(Collections.emptyList(), logged());
+
+    assertEquals("watched", mono.block());
+    List<String> logged = logged();
+    assertEquals(1, logged.size());
+    assertTrue(logged.get(0), logged.get(0).startsWith("INFO watched 'watched' PT"));
+
+    // a subscription of its own past warnOver
+    assertEquals("watched", service.watched(150L).block());
+    await(() -> appender.events().size() == 2);
+    logged = logged();
+    assertEquals("WARN watched still running", logged.get(0));
+    assertTrue(logged.get(1), logged.get(1).startsWith("WARN watched 'watched' PT"));
+    assertTrue(logged.get(1), logged.get(1).endsWith(" over"));
+  }
+
+  @Test
+  public void cancelled() throws InterruptedException {
+    Disposable subscription = service.never().subscribe();
+    subscription.dispose();
+    // the warn point of the subscription is cancelled too
+    sleep(150L);
+
+    assertEquals(Collections.emptyList(), logged());
+    LoggerDescriptor descriptor = context.getBean(LoggerInterceptor.class).getDescriptors().stream()
+        .filter(candidate -> candidate.getName().equals("never"))
+        .findFirst()
+        .orElseThrow(AssertionError::new);
+    assertEquals(0L, descriptor.getStatistics().getCalls());
+  }
+
+  /**
+   * The events logged since the previous call, as "LEVEL message".
+   */
+  private List<String> logged() {
+    List<String> logged = appender.events().stream()
+        .map(event -> event.getLevel() + " " + event.getFormattedMessage())
+        .collect(Collectors.toList());
+    appender.clear();
+    return logged;
+  }
+
+  /**
+   * ${method.duration} of the message.
+   */
+  private static Duration duration(String message) {
+    for (String token : message.split(" ")) {
+      if (token.startsWith("PT")) {
+        return Duration.parse(token);
+      }
+    }
+    throw new AssertionError(message);
+  }
+
+  private static void await(BooleanSupplier condition) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (!condition.getAsBoolean()) {
+      assertTrue(System.nanoTime() - deadline < 0);
+      Thread.sleep(5L);
+    }
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @EnableLogger
+  @EnableAspectJAutoProxy(proxyTargetClass = true)
+  static class CompletionConfig {
+
+    @Bean
+    LoggerFormat loggerFormat() {
+      return LoggerFormat.builder()
+          .warnBefore("${method.name} still running")
+          .warnAfter("${method.name} ${method.result} ${method.duration} over")
+          .after("${method.name} ${method.result} ${method.duration}")
+          .error("${method.name} ${error.message} ${method.duration}")
+          .build();
+    }
+
+    @Bean
+    Service service() {
+      return new Service();
+    }
+  }
+
+  @Loggable(skipStackTrace = true)
+  static class Service {
+
+    public CompletableFuture<String> stage(CompletableFuture<String> future) {
+      return future;
+    }
+
+    public Mono<String> mono(long millis) {
+      return Mono.delay(Duration.ofMillis(millis)).map(tick -> "mono");
+    }
+
+    public Flux<Integer> flux(boolean fail) {
+      return Flux.range(1, 3).concatWith(fail ? Flux.error(new IllegalStateException("boom")) : Flux.empty());
+    }
+
+    @Loggable(warnOver = 50, warnUnit = TimeUnit.MILLISECONDS)
+    public Mono<String> watched(long millis) {
+      return Mono.delay(Duration.ofMillis(millis)).map(tick -> "watched");
+    }
+
+    @Loggable(warnOver = 50, warnUnit = TimeUnit.MILLISECONDS)
+    public Flux<Long> never() {
+      return Flux.never();
+    }
+  }
+}
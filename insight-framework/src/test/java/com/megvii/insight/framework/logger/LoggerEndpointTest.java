@@ -0,0 +1,180 @@
+package com.megvii.insight.framework.logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import com.megvii.insight.framework.logger.annotation.EnableLogger;
+import com.megvii.insight.framework.logger.annotation.Loggable;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.boot.logging.LogLevel;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.EnableAspectJAutoProxy;
+
+/**
+ * Runtime switches of {@link LoggerEndpoint}, applied to the descriptors already created and to the ones
+ * created later, without a restart.
+ */
+public class LoggerEndpointTest {
+
+  private static final String TYPE = Service.class.getName();
+
+  private LoggerAppender appender;
+
+  private AnnotationConfigApplicationContext context;
+
+  private LoggerEndpoint endpoint;
+
+  private Service service;
+
+  @Before
+  public void setUp() {
+    appender = LoggerAppender.attach(TYPE);
+    appender.setLevel(ch.qos.logback.classic.Level.INFO);
+    context = new AnnotationConfigApplicationContext(EndpointConfig.class);
+    endpoint = context.getBean(LoggerEndpoint.class);
+    service = context.getBean(Service.class);
+  }
+
+  @After
+  public void tearDown() {
+    context.close();
+    appender.detach();
+  }
+
+  @Test
+  public void disableAndEnable() {
+    service.find("a");
+    assertEquals(Collections.singletonList("INFO find"), logged());
+
+    endpoint.configure(TYPE, false, null);
+    service.find("b");
+    service.save("b");
+    assertTrue(logged().isEmpty());
+    LoggerEndpoint.MethodStatistics find = endpoint.statistics().get(TYPE + "#find(String)");
+    assertFalse(find.isEnabled());
+    // a disabled method is not intercepted at all
+    assertEquals(1L, find.getCalls());
+    assertFalse(endpoint.statistics().get(TYPE + "#save(String)").isEnabled());
+
+    endpoint.configure(TYPE, null, null);
+    service.find("c");
+    assertEquals(Collections.singletonList("INFO find"), logged());
+    assertTrue(endpoint.statistics().get(TYPE + "#find(String)").isEnabled());
+    assertEquals(2L, endpoint.statistics().get(TYPE + "#find(String)").getCalls());
+  }
+
+  @Test
+  public void levelOfClassAndMethod() {
+    service.find("a");
+    service.save("a");
+    assertEquals(Collections.singletonList("INFO find"), logged());
+
+    // DEBUG is below the INFO of the logger, the level gate drops both
+    endpoint.configure(TYPE, null, LogLevel.DEBUG);
+    service.find("b");
+    service.save("b");
+    assertTrue(logged().isEmpty());
+    assertEquals(LogLevel.DEBUG, endpoint.statistics().get(TYPE + "#find(String)").getLevel());
+
+    // the method overrides its class, by name or by id
+    endpoint.configure(TYPE + "#find", null, LogLevel.WARN);
+    endpoint.configure(TYPE + "#save(String)", null, LogLevel.ERROR);
+    service.find("c");
+    service.save("c");
+    assertEquals(Arrays.asList("WARN find", "ERROR save"), logged());
+
+    // the id overrides the method name
+    endpoint.configure(TYPE + "#find(String)", null, LogLevel.INFO);
+    service.find("d");
+    assertEquals(Collections.singletonList("INFO find"), logged());
+
+    endpoint.configure(TYPE + "#find(String)", null, null);
+    endpoint.configure(TYPE + "#find", null, null);
+    endpoint.configure(TYPE + "#save(String)", null, null);
+    endpoint.configure(TYPE, null, null);
+    service.find("e");
+    service.save("e");
+    assertEquals(Collections.singletonList("INFO find"), logged());
+    assertEquals(LogLevel.DEBUG, endpoint.statistics().get(TYPE + "#save(String)").getLevel());
+  }
+
+  @Test
+  public void enabledAndLevelResolvedApart() {
+    endpoint.configure(LoggerSettings.ALL, false, LogLevel.WARN);
+    endpoint.configure(TYPE, true, null);
+    service.find("a");
+    // enabled by the class, the level still from "*"
+    assertEquals(Collections.singletonList("WARN find"), logged());
+
+    endpoint.configure(TYPE + "#find", false, null);
+    service.find("b");
+    service.save("b");
+    assertEquals(Collections.singletonList("WARN save"), logged());
+
+    endpoint.configure(LoggerSettings.ALL, null, null);
+    endpoint.configure(TYPE, null, null);
+    endpoint.configure(TYPE + "#find", null, null);
+    service.find("c");
+    assertEquals(Collections.singletonList("INFO find"), logged());
+  }
+
+  @Test
+  public void appliedToLaterDescriptors() {
+    endpoint.configure(TYPE + "#save", null, LogLevel.INFO);
+    assertTrue(endpoint.statistics().isEmpty());
+
+    service.save("a");
+    assertEquals(Collections.singletonList("INFO save"), logged());
+    assertEquals(LogLevel.INFO, endpoint.statistics().get(TYPE + "#save(String)").getLevel());
+  }
+
+  /**
+   * The events logged since the previous call, as "LEVEL method".
+   */
+  private List<String> logged() {
+    List<String> logged = appender.events().stream()
+        .map(event -> event.getLevel() + " " + event.getFormattedMessage())
+        .collect(Collectors.toList());
+    appender.clear();
+    return logged;
+  }
+
+  @EnableLogger
+  @EnableAspectJAutoProxy(proxyTargetClass = true)
+  static class EndpointConfig {
+
+    @Bean
+    LoggerFormat loggerFormat() {
+      return LoggerFormat.builder()
+          .after("${method.name}")
+          .build();
+    }
+
+    @Bean
+    Service service() {
+      return new Service();
+    }
+  }
+
+  @Loggable
+  static class Service {
+
+    public String find(String name) {
+      return name;
+    }
+
+    @Loggable(LogLevel.DEBUG)
+    public String save(String name) {
+      return name;
+    }
+  }
+}
@@ -0,0 +1,137 @@
+package com.megvii.insight.framework.logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.List;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import com.megvii.insight.framework.logger.annotation.Loggable;
+import org.junit.Test;
+
+/**
+ * Fingerprints of exceptions with made up stack traces.
+ */
+public class LoggerFingerprintsTest {
+
+  @Test
+  public void sameExceptionCounted() {
+    LoggerFingerprints fingerprints = fingerprints(Duration.ofMinutes(1), 1024);
+
+    assertEquals(1L, fingerprints.seen(error("call", 10, "first")));
+    // the message is not part of the fingerprint
+    assertEquals(2L, fingerprints.seen(error("call", 10, "second")));
+    assertEquals(3L, fingerprints.seen(error("call", 10, "first")));
+  }
+
+  @Test
+  public void countResetAfterWindow() throws InterruptedException {
+    LoggerFingerprints fingerprints = fingerprints(Duration.ofMillis(50), 1024);
+
+    assertEquals(1L, fingerprints.seen(error("call", 10, "error")));
+    assertEquals(2L, fingerprints.seen(error("call", 10, "error")));
+    Thread.sleep(100L);
+
+    assertEquals(1L, fingerprints.seen(error("call", 10, "error")));
+    assertEquals(2L, fingerprints.seen(error("call", 10, "error")));
+  }
+
+  @Test
+  public void differentTopFrame() {
+    LoggerFingerprints fingerprints = fingerprints(Duration.ofMinutes(1), 1024);
+
+    assertEquals(1L, fingerprints.seen(error("call", 10, "error")));
+    assertEquals(1L, fingerprints.seen(error("call", 11, "error")));
+    assertEquals(1L, fingerprints.seen(error("other", 10, "error")));
+    assertEquals(1L, fingerprints.seen(new IllegalArgumentException("error")));
+    assertEquals(2L, fingerprints.seen(error("call", 11, "error")));
+  }
+
+  @Test
+  public void resetAtMaxSize() {
+    LoggerFingerprints fingerprints = fingerprints(Duration.ofMinutes(1), 2);
+
+    assertEquals(1L, fingerprints.seen(error("call", 1, "error")));
+    assertEquals(2L, fingerprints.seen(error("call", 1, "error")));
+    assertEquals(1L, fingerprints.seen(error("call", 2, "error")));
+    // a third fingerprint forgets the first two
+    assertEquals(1L, fingerprints.seen(error("call", 3, "error")));
+    assertEquals(1L, fingerprints.seen(error("call", 1, "error")));
+    assertEquals(2L, fingerprints.seen(error("call", 3, "error")));
+  }
+
+  @Test
+  public void stackTraceOncePerWindow() throws NoSuchMethodException {
+    LoggerDescriptor descriptor = new LoggerDescriptor(Calls.class.getDeclaredMethod("call"),
+        Calls.class.getDeclaredMethod("call").getAnnotation(Loggable.class), new LoggerProperties());
+    LoggerFormatter formatter = new LoggerFormatter(LoggerFormat.builder()
+        .error("${error.message} ${error.stacktrace}")
+        .build());
+    LoggerPipeline pipeline = new LoggerPipeline(new Logger(), formatter, new LoggerProperties());
+    LoggerAppender appender = LoggerAppender.attach(descriptor.getLogger().getName());
+    try {
+      pipeline.start();
+      pipeline.error(descriptor, null, 0L, error("call", 10, "first"));
+      pipeline.error(descriptor, null, 0L, error("call", 10, "second"));
+      pipeline.error(descriptor, null, 0L, error("call", 10, "third"));
+      pipeline.stop();
+    } finally {
+      appender.detach();
+    }
+
+    List<ILoggingEvent> events = appender.events();
+    assertEquals(3, events.size());
+    assertTrue(events.get(0).getFormattedMessage().startsWith("first java.lang.IllegalStateException: first"));
+    assertNotNull(events.get(0).getThrowableProxy());
+    assertEquals("second seen 2 times", events.get(1).getFormattedMessage());
+    assertNull(events.get(1).getThrowableProxy());
+    assertEquals("third seen 3 times", events.get(2).getFormattedMessage());
+    assertNull(events.get(2).getThrowableProxy());
+  }
+
+  @Test
+  public void formatterStackTraceOnlyFirst() throws NoSuchMethodException {
+    LoggerDescriptor descriptor = new LoggerDescriptor(Calls.class.getDeclaredMethod("call"),
+        Calls.class.getDeclaredMethod("call").getAnnotation(Loggable.class), new LoggerProperties());
+    LoggerFormatter formatter = new LoggerFormatter(LoggerFormat.builder()
+        .error("${error.stacktrace}")
+        .build());
+    IllegalStateException err = error("call", 10, "error");
+
+    assertTrue(formatter.error(descriptor, null, 0L, err, 1L).contains("at Calls.call(Calls.java:10)"));
+    assertEquals("seen 2 times", formatter.error(descriptor, null, 0L, err, 2L));
+    assertFalse(formatter.error(descriptor, null, 0L, err).startsWith("seen"));
+  }
+
+  private static LoggerFingerprints fingerprints(Duration window, int maxSize) {
+    LoggerProperties.Fingerprint properties = new LoggerProperties.Fingerprint();
+    properties.setWindow(window);
+    properties.setFrames(2);
+    properties.setMaxSize(maxSize);
+    return new LoggerFingerprints(properties);
+  }
+
+  /**
+   * An exception thrown from Calls.method at the line, called from the same caller every time.
+   */
+  private static IllegalStateException error(String method, int line, String message) {
+    IllegalStateException err = new IllegalStateException(message);
+    err.setStackTrace(new StackTraceElement[] {
+        new StackTraceElement("Calls", method, "Calls.java", line),
+        new StackTraceElement("Caller", "run", "Caller.java", 42),
+        new StackTraceElement("Thread", "run", "Thread.java", 748)
+    });
+    return err;
+  }
+
+  static class Calls {
+
+    @Loggable(name = "com.megvii.insight.framework.logger.LoggerFingerprintsTest")
+    void call() {
+    }
+  }
+}
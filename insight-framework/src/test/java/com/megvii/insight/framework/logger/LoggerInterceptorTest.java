@@ -0,0 +1,185 @@
+package com.megvii.insight.framework.logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import com.megvii.insight.framework.logger.annotation.EnableLogger;
+import com.megvii.insight.framework.logger.annotation.Loggable;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.boot.logging.LogLevel;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.EnableAspectJAutoProxy;
+
+/**
+ * Calls of a proxied bean, whose logger is at INFO.
+ */
+public class LoggerInterceptorTest {
+
+  private LoggerAppender appender;
+
+  private AnnotationConfigApplicationContext context;
+
+  private Service service;
+
+  @Before
+  public void setUp() {
+    appender = LoggerAppender.attach(Service.class.getName());
+    appender.setLevel(Level.INFO);
+    context = new AnnotationConfigApplicationContext(InterceptorConfig.class);
+    service = context.getBean(Service.class);
+  }
+
+  @After
+  public void tearDown() {
+    context.close();
+    appender.detach();
+  }
+
+  @Test
+  public void disabledLevelNotRendered() {
+    Rendered argument = new Rendered();
+
+    for (int i = 0; i < 10; i++) {
+      assertSame(argument, service.debug(argument));
+    }
+
+    assertEquals(0, argument.count.get());
+    assertTrue(appender.events().isEmpty());
+  }
+
+  @Test
+  public void enabledLevelRendered() {
+    Rendered argument = new Rendered();
+
+    service.info(argument);
+
+    // the argument of the entered and the after message, the result of the after message
+    assertEquals(3, argument.count.get());
+    assertEquals(2, appender.events().size());
+  }
+
+  @Test
+  public void offNeverChecked() {
+    Rendered argument = new Rendered();
+
+    // Logger.isEnabled throws for OFF, it is never asked
+    assertSame(argument, service.off(argument));
+    assertSame(argument, service.off(argument));
+
+    assertEquals(0, argument.count.get());
+    assertTrue(appender.events().isEmpty());
+  }
+
+  @Test
+  public void descriptorResolvedOnce() {
+    service.info("a");
+    LoggerDescriptor descriptor = descriptor("info");
+    service.info("b");
+
+    assertSame(descriptor, descriptor("info"));
+    assertEquals(1, context.getBean(LoggerInterceptor.class).getDescriptors().size());
+  }
+
+  @Test
+  public void ignoredExceptions() {
+    fail(new IllegalArgumentException("ignored"));
+    // a subclass of an ignored exception
+    fail(new NumberFormatException("ignored"));
+    fail(new IllegalStateException("logged"));
+    fail(new IllegalArgumentException("ignored again"));
+
+    List<ILoggingEvent> events = appender.events();
+    assertEquals(4, events.size());
+    assertNull(events.get(0).getThrowableProxy());
+    assertNull(events.get(1).getThrowableProxy());
+    assertNotNull(events.get(2).getThrowableProxy());
+    assertNull(events.get(3).getThrowableProxy());
+
+    LoggerDescriptor descriptor = descriptor("fail");
+    assertTrue(descriptor.isIgnored(new IllegalArgumentException()));
+    assertTrue(descriptor.isIgnored(new NumberFormatException()));
+    assertFalse(descriptor.isIgnored(new IllegalStateException()));
+    assertFalse(descriptor.isIgnored(new RuntimeException()));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void offNotALevel() {
+    context.getBean(Logger.class).isEnabled(LogLevel.OFF, Service.class);
+  }
+
+  @EnableLogger
+  @EnableAspectJAutoProxy(proxyTargetClass = true)
+  static class InterceptorConfig {
+
+    @Bean
+    Service service() {
+      return new Service();
+    }
+  }
+
+  private void fail(RuntimeException err) {
+    try {
+      service.fail(err);
+      Assert.fail();
+    } catch (RuntimeException thrown) {
+      assertSame(err, thrown);
+    }
+  }
+
+  private LoggerDescriptor descriptor(String name) {
+    return context.getBean(LoggerInterceptor.class).getDescriptors().stream()
+        .filter(descriptor -> descriptor.getName().equals(name))
+        .findFirst()
+        .orElseThrow(AssertionError::new);
+  }
+
+  static class Service {
+
+    @Loggable(value = LogLevel.DEBUG, entered = true)
+    public Object debug(Object argument) {
+      return argument;
+    }
+
+    @Loggable(entered = true)
+    public Object info(Object argument) {
+      return argument;
+    }
+
+    @Loggable(ignore = IllegalArgumentException.class)
+    public void fail(RuntimeException err) {
+      throw err;
+    }
+
+    @Loggable(value = LogLevel.OFF, entered = true)
+    public Object off(Object argument) {
+      return argument;
+    }
+  }
+
+  /**
+   * Counts how often it is rendered.
+   */
+  private static final class Rendered {
+
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public String toString() {
+      count.incrementAndGet();
+      return "rendered";
+    }
+  }
+}
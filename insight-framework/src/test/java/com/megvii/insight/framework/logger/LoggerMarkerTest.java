@@ -0,0 +1,122 @@
+package com.megvii.insight.framework.logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.megvii.insight.framework.logger.annotation.Loggable;
+import net.logstash.logback.encoder.LogstashEncoder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Structured messages, encoded to JSON by logstash-logback-encoder.
+ */
+public class LoggerMarkerTest {
+
+  private final ObjectMapper mapper = new ObjectMapper();
+
+  private final LogstashEncoder encoder = new LogstashEncoder();
+
+  private LoggerAppender appender;
+
+  private LoggerDescriptor descriptor;
+
+  private LoggerPipeline pipeline;
+
+  @Before
+  public void setUp() throws NoSuchMethodException {
+    LoggerProperties properties = new LoggerProperties();
+    properties.setStructured(true);
+    descriptor = new LoggerDescriptor(Calls.class.getDeclaredMethod("find", String.class, int.class),
+        Calls.class.getDeclaredMethod("find", String.class, int.class).getAnnotation(Loggable.class),
+        properties);
+    appender = LoggerAppender.attach(descriptor.getLogger().getName());
+    encoder.start();
+    pipeline = new LoggerPipeline(new Logger(), new LoggerFormatter(new LoggerFormat()), properties);
+    pipeline.start();
+  }
+
+  @After
+  public void tearDown() {
+    pipeline.stop();
+    encoder.stop();
+    appender.detach();
+  }
+
+  @Test
+  public void after() throws IOException {
+    pipeline.after(descriptor, new Object[] {"a", 2}, "found", 1_250_000L);
+
+    JsonNode json = encode(appender.events().get(0));
+    assertEquals("INFO", json.get("level").asText());
+    assertEquals("returned", json.get("message").asText());
+    assertEquals("find(String,int)", json.get("method").asText());
+    assertEquals(Calls.class.getName(), json.get("class").asText());
+    assertEquals("['a', 2]", json.get("args").asText());
+    assertEquals("'found'", json.get("result").asText());
+    assertTrue(json.get("duration").isIntegralNumber());
+    assertEquals(1_250_000L, json.get("duration").asLong());
+    assertFalse(json.has("warnDuration"));
+    assertFalse(json.has("errorClass"));
+  }
+
+  @Test
+  public void warnAfter() throws IOException {
+    pipeline.warnAfter(descriptor, new Object[] {"a", 2}, "found", TimeUnit.SECONDS.toNanos(2));
+
+    JsonNode json = encode(appender.events().get(0));
+    assertEquals("WARN", json.get("level").asText());
+    assertEquals(TimeUnit.SECONDS.toNanos(2), json.get("duration").asLong());
+    assertTrue(json.get("warnDuration").isIntegralNumber());
+    assertEquals(TimeUnit.SECONDS.toNanos(1), json.get("warnDuration").asLong());
+    assertEquals("'found'", json.get("result").asText());
+  }
+
+  @Test
+  public void error() throws IOException {
+    for (long nano = 3_000L; nano < 5_000L; nano += 1_000L) {
+      // thrown from the same line, the same fingerprint
+      pipeline.error(descriptor, new Object[] {"a", 2}, nano, new IllegalStateException("boom"));
+    }
+
+    List<ILoggingEvent> events = appender.events();
+    JsonNode first = encode(events.get(0));
+    assertEquals("ERROR", first.get("level").asText());
+    assertEquals("thrown", first.get("message").asText());
+    assertEquals("['a', 2]", first.get("args").asText());
+    assertEquals(3_000L, first.get("duration").asLong());
+    assertEquals(IllegalStateException.class.getName(), first.get("errorClass").asText());
+    assertEquals("boom", first.get("errorMessage").asText());
+    assertFalse(first.has("result"));
+    assertFalse(first.has("seen"));
+    assertTrue(first.get("stack_trace").asText().startsWith("java.lang.IllegalStateException: boom"));
+
+    // seen again, without its stack trace
+    JsonNode second = encode(events.get(1));
+    assertEquals(2L, second.get("seen").asLong());
+    assertEquals("boom", second.get("errorMessage").asText());
+    assertFalse(second.has("stack_trace"));
+  }
+
+  private JsonNode encode(ILoggingEvent event) throws IOException {
+    return mapper.readTree(new String(encoder.encode(event), StandardCharsets.UTF_8));
+  }
+
+  static class Calls {
+
+    @Loggable(name = "com.megvii.insight.framework.logger.LoggerMarkerTest", warnOver = 1, warnUnit = TimeUnit.SECONDS)
+    public String find(String name, int page) {
+      return name;
+    }
+  }
+}
@@ -0,0 +1,235 @@
+package com.megvii.insight.framework.logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.UnsynchronizedAppenderBase;
+import com.megvii.insight.framework.logger.annotation.Loggable;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Async messages through a ring buffer of 4 slots, written to an appender that holds the consumer thread
+ * while it is closed.
+ */
+public class LoggerPipelineTest {
+
+  private final Gate gate = new Gate();
+
+  private ch.qos.logback.classic.Logger target;
+
+  private LoggerDescriptor descriptor;
+
+  private LoggerPipeline pipeline;
+
+  @Before
+  public void setUp() throws NoSuchMethodException {
+    descriptor = new LoggerDescriptor(Calls.class.getDeclaredMethod("call"),
+        Calls.class.getDeclaredMethod("call").getAnnotation(Loggable.class), new LoggerProperties());
+    target = (ch.qos.logback.classic.Logger) LoggerFactory.getLogger(descriptor.getLogger().getName());
+    target.setAdditive(false);
+    gate.start();
+    target.addAppender(gate);
+  }
+
+  @After
+  public void tearDown() {
+    gate.open();
+    if (pipeline != null) {
+      pipeline.stop();
+    }
+    target.detachAppender(gate);
+    target.setAdditive(true);
+  }
+
+  @Test
+  public void wrapsAround() {
+    start(LoggerProperties.Overflow.BLOCK);
+    gate.open();
+
+    for (int i = 0; i < 1000; i++) {
+      pipeline.after(descriptor, null, i, 0L);
+    }
+    pipeline.stop();
+
+    assertEquals(range(0, 1000), gate.messages());
+    assertEquals(1000, gate.onConsumer());
+  }
+
+  @Test
+  public void dropOnOverflow() throws InterruptedException {
+    start(LoggerProperties.Overflow.DROP);
+    fill();
+
+    pipeline.after(descriptor, null, 4, 0L);
+    pipeline.after(descriptor, null, 5, 0L);
+    gate.open();
+    pipeline.stop();
+
+    assertEquals(range(0, 4), gate.messages());
+    assertEquals(2L, pipeline.getDropped());
+  }
+
+  @Test
+  public void syncOnOverflow() throws InterruptedException {
+    start(LoggerProperties.Overflow.SYNC);
+    fill();
+
+    pipeline.after(descriptor, null, 4, 0L);
+    gate.open();
+    pipeline.stop();
+
+    // written at once by the caller
+    assertEquals("4", gate.messages().get(0));
+    assertEquals(range(0, 4), gate.messages().subList(1, 5));
+    assertEquals(4, gate.onConsumer());
+  }
+
+  @Test
+  public void blockOnOverflow() throws InterruptedException {
+    start(LoggerProperties.Overflow.BLOCK);
+    fill();
+
+    Thread caller = new Thread(() -> pipeline.after(descriptor, null, 4, 0L));
+    caller.start();
+    caller.join(100L);
+    assertTrue(caller.isAlive());
+    gate.open();
+    caller.join(5_000L);
+    assertFalse(caller.isAlive());
+    pipeline.stop();
+
+    assertEquals(range(0, 5), gate.messages());
+    assertEquals(5, gate.onConsumer());
+    assertEquals(0L, pipeline.getDropped());
+  }
+
+  @Test
+  public void nothingLostRacingStop() throws InterruptedException {
+    for (int round = 0; round < 20; round++) {
+      gate.clear();
+      start(LoggerProperties.Overflow.BLOCK);
+      gate.open();
+      CountDownLatch started = new CountDownLatch(4);
+      List<Thread> callers = new ArrayList<>();
+      for (int t = 0; t < 4; t++) {
+        Thread caller = new Thread(() -> {
+          started.countDown();
+          for (int i = 0; i < 500; i++) {
+            pipeline.error(descriptor, null, 0L, new IllegalStateException("error"));
+          }
+        });
+        callers.add(caller);
+        caller.start();
+      }
+      started.await();
+
+      pipeline.stop();
+      for (Thread caller : callers) {
+        caller.join();
+      }
+
+      assertEquals(2000, gate.messages().size());
+    }
+  }
+
+  private void start(LoggerProperties.Overflow overflow) {
+    LoggerProperties properties = new LoggerProperties();
+    properties.getAsync().setEnabled(true);
+    properties.getAsync().setBufferSize(3);
+    properties.getAsync().setOverflow(overflow);
+    properties.getFingerprint().setEnabled(false);
+    pipeline = new LoggerPipeline(new Logger(), new LoggerFormatter(LoggerFormat.builder()
+        .after("${method.result}")
+        .error("${error.message}")
+        .build()), properties);
+    pipeline.start();
+  }
+
+  /**
+   * One message held by the consumer, and the 4 slots of the ring buffer taken.
+   */
+  private void fill() throws InterruptedException {
+    pipeline.after(descriptor, null, 0, 0L);
+    assertTrue(gate.awaitHeld());
+    for (int i = 1; i < 4; i++) {
+      pipeline.after(descriptor, null, i, 0L);
+    }
+  }
+
+  private static List<String> range(int from, int to) {
+    return IntStream.range(from, to).mapToObj(String::valueOf).collect(Collectors.toList());
+  }
+
+  static class Calls {
+
+    @Loggable(name = "com.megvii.insight.framework.logger.LoggerPipelineTest")
+    void call() {
+    }
+  }
+
+  /**
+   * Records the messages, and holds the consumer thread until opened.
+   */
+  private static final class Gate extends UnsynchronizedAppenderBase<ILoggingEvent> {
+
+    private final List<String> messages = new ArrayList<>();
+
+    private final CountDownLatch held = new CountDownLatch(1);
+
+    private final CountDownLatch open = new CountDownLatch(1);
+
+    private int onConsumer;
+
+    @Override
+    protected void append(ILoggingEvent event) {
+      boolean consumer = "logger_pipeline".equals(Thread.currentThread().getName());
+      if (consumer) {
+        held.countDown();
+        try {
+          open.await();
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      synchronized (this) {
+        messages.add(event.getFormattedMessage());
+        if (consumer) {
+          onConsumer++;
+        }
+      }
+    }
+
+    boolean awaitHeld() throws InterruptedException {
+      return held.await(5L, TimeUnit.SECONDS);
+    }
+
+    void open() {
+      open.countDown();
+    }
+
+    synchronized void clear() {
+      messages.clear();
+      onConsumer = 0;
+    }
+
+    synchronized List<String> messages() {
+      return new ArrayList<>(messages);
+    }
+
+    synchronized int onConsumer() {
+      return onConsumer;
+    }
+  }
+}
@@ -0,0 +1,122 @@
+package com.megvii.insight.framework.logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import com.megvii.insight.framework.logger.annotation.Loggable;
+import com.megvii.insight.framework.logger.annotation.Sampling;
+import org.junit.Test;
+
+/**
+ * Samplers fed with made up call start times.
+ */
+public class LoggerSamplerTest {
+
+  private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+  /**
+   * An arbitrary nanoTime, negative as it may be.
+   */
+  private static final long T0 = -1234 * SECOND + 17;
+
+  @Test
+  public void none() throws NoSuchMethodException {
+    assertNull(sampler("none"));
+  }
+
+  @Test
+  public void rate() throws NoSuchMethodException {
+    LoggerSampler sampler = sampler("rate");
+
+    int sampled = sampled(sampler, T0, 100_000, 0L);
+
+    assertTrue(String.valueOf(sampled), Math.abs(sampled - 25_000) < 1_000);
+  }
+
+  @Test
+  public void budgetPerSecond() throws NoSuchMethodException {
+    LoggerSampler sampler = sampler("budget");
+    long second = Math.floorDiv(T0, SECOND) * SECOND;
+
+    assertEquals(3, sampled(sampler, T0, 10, 1L));
+    // the rest of the same second
+    assertEquals(0, sampled(sampler, second + SECOND - 10, 10, 1L));
+    // rolled over to the next second, a late call of the previous one does not reset the budget
+    assertEquals(3, sampled(sampler, second + SECOND, 10, 1L));
+    assertEquals(0, sampled(sampler, second + SECOND - 1, 1, 0L));
+    // rolled over after idle seconds
+    assertEquals(3, sampled(sampler, second + 10 * SECOND + 5, 5, 1L));
+  }
+
+  @Test
+  public void adaptiveToThroughput() throws NoSuchMethodException {
+    LoggerSampler sampler = sampler("adaptive");
+    long second = Math.floorDiv(T0, SECOND) * SECOND;
+
+    // logs everything until the first adjustment
+    assertEquals(10_000, sampled(sampler, second, 10_000, 1L));
+    // 10000 calls a second, 100 of them logged
+    int sampled = sampled(sampler, second + SECOND, 10_000, 1L);
+    assertTrue(String.valueOf(sampled), sampled > 60 && sampled < 140);
+    // 10000 calls over 10 seconds, 1000 a second, 1000 of them logged
+    sampled = sampled(sampler, second + 11 * SECOND, 10_000, 1L);
+    assertTrue(String.valueOf(sampled), sampled > 900 && sampled < 1100);
+    // 10000 calls over 189 seconds, under the budget
+    assertEquals(50, sampled(sampler, second + 200 * SECOND, 50, 1L));
+  }
+
+  @Test
+  public void drainSuppressed() throws NoSuchMethodException {
+    LoggerSampler sampler = sampler("budget");
+    assertEquals(0L, sampler.drain());
+
+    for (int i = 0; i < 5; i++) {
+      sampler.suppress();
+    }
+    assertEquals(5L, sampler.drain());
+    assertEquals(0L, sampler.drain());
+
+    sampler.suppress();
+    sampler.suppress();
+    assertEquals(2L, sampler.drain());
+  }
+
+  /**
+   * Calls started every interval nanos from start, and the number of them sampled.
+   */
+  private static int sampled(LoggerSampler sampler, long start, int calls, long interval) {
+    int sampled = 0;
+    for (int i = 0; i < calls; i++) {
+      if (sampler.sample(start + i * interval)) {
+        sampled++;
+      }
+    }
+    return sampled;
+  }
+
+  private static LoggerSampler sampler(String name) throws NoSuchMethodException {
+    return LoggerSampler.of(Calls.class.getDeclaredMethod(name).getAnnotation(Loggable.class));
+  }
+
+  static class Calls {
+
+    @Loggable
+    void none() {
+    }
+
+    @Loggable(sampling = Sampling.RATE, sampleRate = 0.25)
+    void rate() {
+    }
+
+    @Loggable(sampling = Sampling.BUDGET, sampleBudget = 3)
+    void budget() {
+    }
+
+    @Loggable(sampling = Sampling.ADAPTIVE, sampleBudget = 100)
+    void adaptive() {
+    }
+  }
+}
@@ -0,0 +1,174 @@
+package com.megvii.insight.framework.logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import ch.qos.logback.classic.Level;
+import com.megvii.insight.framework.logger.annotation.EnableLogger;
+import com.megvii.insight.framework.logger.annotation.Loggable;
+import com.megvii.insight.framework.logger.annotation.Sampling;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.boot.logging.LogLevel;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.EnableAspectJAutoProxy;
+
+/**
+ * Sampled methods of a proxied bean, with a budget of one logged call per second.
+ */
+public class LoggerSamplingTest {
+
+  private static final Pattern SUPPRESSED = Pattern.compile("^(\\w+) \\((\\d+) calls suppressed\\) (.*)$");
+
+  private LoggerAppender appender;
+
+  private AnnotationConfigApplicationContext context;
+
+  private Service service;
+
+  @Before
+  public void setUp() {
+    appender = LoggerAppender.attach(Service.class.getName());
+    appender.setLevel(Level.INFO);
+    context = new AnnotationConfigApplicationContext(SamplingConfig.class);
+    service = context.getBean(Service.class);
+  }
+
+  @After
+  public void tearDown() {
+    context.close();
+    appender.detach();
+  }
+
+  @Test
+  public void disabledLevelNotSampled() {
+    for (int i = 0; i < 10; i++) {
+      service.debug();
+    }
+    assertTrue(appender.events().isEmpty());
+
+    appender.setLevel(Level.DEBUG);
+    service.debug();
+    // neither the budget of the second was taken, nor the disabled calls counted as suppressed
+    assertEquals(Collections.singletonList("DEBUG debug"), logged());
+  }
+
+  @Test
+  public void suppressedOnlyOnSampledLevel() throws InterruptedException {
+    // the first call may well breach warnOver, while its descriptor is created
+    service.call(0L, false);
+    Thread.sleep(1_100L);
+    logged();
+
+    int calls = 0;
+    for (int i = 0; i < 5; i++, calls++) {
+      service.call(0L, false);
+    }
+    try {
+      service.call(0L, true);
+      fail();
+    } catch (IllegalStateException expected) {
+      // logged regardless of sampling
+    }
+    service.call(80L, false);
+    // the budget of the next second
+    Thread.sleep(1_100L);
+    service.call(0L, false);
+    calls++;
+
+    int logged = 0;
+    long suppressed = 0;
+    for (String message : logged()) {
+      Matcher matcher = SUPPRESSED.matcher(message);
+      if (matcher.matches()) {
+        suppressed += Long.parseLong(matcher.group(2));
+        message = matcher.group(1) + " " + matcher.group(3);
+      }
+      if (message.equals("INFO call")) {
+        logged++;
+      } else {
+        assertFalse(message, matcher.matches());
+      }
+    }
+    assertTrue(String.valueOf(logged), logged >= 2);
+    // every call of the sampled level either logged, or counted on a later call of that level
+    assertEquals(calls, logged + suppressed);
+  }
+
+  @Test
+  public void errorAndWarnNotPrefixed() throws InterruptedException {
+    for (int i = 0; i < 5; i++) {
+      service.call(0L, false);
+    }
+    try {
+      service.call(0L, true);
+      fail();
+    } catch (IllegalStateException expected) {
+      // logged regardless of sampling
+    }
+    service.call(80L, false);
+
+    List<String> logged = logged();
+    assertTrue(logged.toString(), logged.contains("ERROR call boom"));
+    assertTrue(logged.toString(), logged.contains("WARN call still running"));
+    assertTrue(logged.toString(), logged.contains("WARN call over"));
+  }
+
+  /**
+   * The events logged since the previous call, as "LEVEL message".
+   */
+  private List<String> logged() {
+    List<String> logged = appender.events().stream()
+        .map(event -> event.getLevel() + " " + event.getFormattedMessage())
+        .collect(Collectors.toList());
+    appender.clear();
+    return logged;
+  }
+
+  @EnableLogger
+  @EnableAspectJAutoProxy(proxyTargetClass = true)
+  static class SamplingConfig {
+
+    @Bean
+    LoggerFormat loggerFormat() {
+      return LoggerFormat.builder()
+          .warnBefore("${method.name} still running")
+          .warnAfter("${method.name} over")
+          .after("${method.name}")
+          .error("${method.name} ${error.message}")
+          .build();
+    }
+
+    @Bean
+    Service service() {
+      return new Service();
+    }
+  }
+
+  static class Service {
+
+    @Loggable(value = LogLevel.DEBUG, sampling = Sampling.BUDGET, sampleBudget = 1)
+    public void debug() {
+    }
+
+    @Loggable(sampling = Sampling.BUDGET, sampleBudget = 1, skipStackTrace = true,
+        warnOver = 50, warnUnit = TimeUnit.MILLISECONDS)
+    public void call(long millis, boolean fail) throws InterruptedException {
+      Thread.sleep(millis);
+      if (fail) {
+        throw new IllegalStateException("boom");
+      }
+    }
+  }
+}
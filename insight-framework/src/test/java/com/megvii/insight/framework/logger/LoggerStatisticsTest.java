@@ -0,0 +1,116 @@
+package com.megvii.insight.framework.logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Latency over a window of 3 phases of 100ms.
+ */
+public class LoggerStatisticsTest {
+
+  private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(500);
+
+  private static final long FAST = TimeUnit.MICROSECONDS.toNanos(20);
+
+  @Test
+  public void percentilesWithinOnePercentileBucket() {
+    LoggerStatistics statistics = statistics(Duration.ofMinutes(1));
+    for (long i = 1; i <= 1000; i++) {
+      statistics.record(i * 1000, false, false);
+    }
+
+    LoggerHistogram.Snapshot snapshot = statistics.snapshot();
+    assertEquals(1000L, snapshot.getTotal());
+    assertEquals(1_000_000L, snapshot.getMax());
+    assertWithin(500_000L, snapshot.percentile(0.5));
+    assertWithin(990_000L, snapshot.percentile(0.99));
+  }
+
+  @Test
+  public void forgetsCallsOlderThanTheWindow() throws InterruptedException {
+    LoggerStatistics statistics = statistics(Duration.ofMillis(300));
+    for (int i = 0; i < 100; i++) {
+      statistics.record(SLOW, false, true);
+    }
+    assertEquals(SLOW, statistics.snapshot().getMax());
+
+    // the slow calls stay in the oldest phase until it is cleared
+    Thread.sleep(150L);
+    statistics.record(FAST, false, false);
+    assertEquals(SLOW, statistics.snapshot().getMax());
+
+    Thread.sleep(250L);
+    statistics.record(FAST, false, false);
+    LoggerHistogram.Snapshot snapshot = statistics.snapshot();
+    assertEquals(FAST, snapshot.getMax());
+    assertWithin(FAST, snapshot.percentile(0.999));
+    assertEquals(102L, statistics.getCalls());
+    assertEquals(100L, statistics.getWarns());
+  }
+
+  @Test
+  public void phasesAddedUp() throws InterruptedException {
+    LoggerStatistics statistics = statistics(Duration.ofMillis(300));
+    statistics.record(SLOW, false, false);
+    Thread.sleep(120L);
+    statistics.record(FAST, false, false);
+
+    // recorded into two phases, read as one
+    LoggerHistogram.Snapshot snapshot = statistics.snapshot();
+    assertEquals(2L, snapshot.getTotal());
+    assertEquals(SLOW, snapshot.getMax());
+    assertWithin(FAST, snapshot.percentile(0.5));
+  }
+
+  @Test
+  public void concurrentRecords() throws InterruptedException {
+    LoggerStatistics statistics = statistics(Duration.ofMinutes(1));
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < 4; t++) {
+      Thread thread = new Thread(() -> {
+        for (int i = 1; i <= 10_000; i++) {
+          statistics.record(i, false, false);
+        }
+      });
+      threads.add(thread);
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertEquals(40_000L, statistics.getCalls());
+    assertEquals(40_000L, statistics.snapshot().getTotal());
+    assertEquals(10_000L, statistics.snapshot().getMax());
+  }
+
+  @Test
+  public void idleForWindows() throws InterruptedException {
+    LoggerStatistics statistics = statistics(Duration.ofMillis(30));
+    statistics.record(SLOW, true, false);
+
+    Thread.sleep(200L);
+
+    assertEquals(0L, statistics.snapshot().getTotal());
+    assertEquals(0L, statistics.snapshot().percentile(0.99));
+    assertEquals(1L, statistics.getErrors());
+  }
+
+  private static LoggerStatistics statistics(Duration window) {
+    LoggerProperties.Metrics properties = new LoggerProperties.Metrics();
+    properties.setWindow(window);
+    properties.setPhases(3);
+    return new LoggerStatistics(properties);
+  }
+
+  private static void assertWithin(long expected, long actual) {
+    assertTrue(actual + " for " + expected, Math.abs(actual - expected) <= expected / 8);
+  }
+}
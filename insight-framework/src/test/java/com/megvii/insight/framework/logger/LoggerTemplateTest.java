@@ -0,0 +1,82 @@
+package com.megvii.insight.framework.logger;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+import com.megvii.insight.framework.logger.LoggerTemplate.Placeholder;
+import com.megvii.insight.framework.logger.LoggerTemplate.Segment;
+import org.junit.Test;
+
+/**
+ * Segments of compiled patterns, placeholders shown as [KEY] and literals as they are.
+ */
+public class LoggerTemplateTest {
+
+  private static final Set<Placeholder> ALL = EnumSet.allOf(Placeholder.class);
+
+  @Test
+  public void placeholders() {
+    assertEquals("call |[METHOD_NAME]| with |[METHOD_ARGS]|.",
+        segments("call ${method.name} with ${method.args}.", ALL));
+  }
+
+  @Test
+  public void adjacentPlaceholders() {
+    assertEquals("[METHOD_NAME]|[METHOD_ARGS]|[METHOD_DURATION]",
+        segments("${method.name}${method.args}${method.duration}", ALL));
+  }
+
+  @Test
+  public void escapedPlaceholder() {
+    assertEquals("${method.name}|[METHOD_NAME]", segments("$${method.name}${method.name}", ALL));
+    assertEquals("cost ${method.duration}ms", segments("cost $${method.duration}ms", ALL));
+    assertEquals("$${method.name}", segments("$$${method.name}", ALL));
+  }
+
+  @Test
+  public void unknownPlaceholderKeptAsLiteral() {
+    assertEquals("${user.name} |[METHOD_NAME]| ${}", segments("${user.name} ${method.name} ${}", ALL));
+  }
+
+  @Test
+  public void unavailablePlaceholderKeptAsLiteral() {
+    assertEquals("[METHOD_NAME]| failed ${error.message}",
+        segments("${method.name} failed ${error.message}", EnumSet.of(Placeholder.METHOD_NAME)));
+  }
+
+  @Test
+  public void unterminatedPlaceholder() {
+    assertEquals("[METHOD_NAME]| ${method.args", segments("${method.name} ${method.args", ALL));
+    assertEquals("$", segments("$", ALL));
+    assertEquals("${", segments("${", ALL));
+  }
+
+  @Test
+  public void emptyPattern() {
+    assertEquals(0, LoggerTemplate.compile(null, ALL).getSegments().length);
+    assertEquals(0, LoggerTemplate.compile("", ALL).getSegments().length);
+  }
+
+  @Test
+  public void placeholderKeepsRawText() {
+    Segment segment = LoggerTemplate.compile("${method.result}", ALL).getSegments()[0];
+    assertEquals(Placeholder.METHOD_RESULT, segment.getPlaceholder());
+    assertEquals("${method.result}", segment.getText());
+  }
+
+  /**
+   * Segments joined by |, literal segments are merged so two literals never follow each other.
+   */
+  private static String segments(String pattern, Set<Placeholder> available) {
+    StringBuilder builder = new StringBuilder();
+    for (Segment segment : LoggerTemplate.compile(pattern, available).getSegments()) {
+      if (builder.length() > 0) {
+        builder.append('|');
+      }
+      builder.append(segment.getPlaceholder() == null ? segment.getText() : "[" + segment.getPlaceholder() + "]");
+    }
+    return builder.toString();
+  }
+}
@@ -0,0 +1,188 @@
+package com.megvii.insight.framework.logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import brave.ScopedSpan;
+import brave.Tracer;
+import brave.Tracing;
+import brave.propagation.CurrentTraceContext;
+import brave.sampler.Sampler;
+import com.megvii.insight.framework.logger.annotation.EnableLogger;
+import com.megvii.insight.framework.logger.annotation.Loggable;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.boot.test.util.TestPropertyValues;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.EnableAspectJAutoProxy;
+import zipkin2.Span;
+
+/**
+ * Spans of {@link Loggable} calls, reported in memory.
+ */
+public class LoggerTracerTest {
+
+  private final List<Span> spans = new CopyOnWriteArrayList<>();
+
+  private AnnotationConfigApplicationContext context;
+
+  private Tracer tracer;
+
+  private Outer outer;
+
+  @Before
+  public void setUp() {
+    context = new AnnotationConfigApplicationContext();
+    context.register(TracingConfig.class);
+    context.registerBean(Tracing.class, () -> Tracing.newBuilder()
+        .currentTraceContext(CurrentTraceContext.Default.create())
+        .sampler(Sampler.ALWAYS_SAMPLE)
+        .spanReporter(spans::add)
+        .build());
+    TestPropertyValues.of("insight.logger.tracing.enabled=true").applyTo(context);
+    context.refresh();
+    tracer = context.getBean(Tracing.class).tracer();
+    outer = context.getBean(Outer.class);
+  }
+
+  @After
+  public void tearDown() {
+    context.getBean(Tracing.class).close();
+    context.close();
+  }
+
+  @Test
+  public void childSpans() {
+    ScopedSpan root = tracer.startScopedSpan("root");
+    try {
+      assertEquals("inner", outer.call());
+    } finally {
+      root.finish();
+    }
+
+    assertEquals(3, spans.size());
+    Span inner = spans.get(0);
+    Span call = spans.get(1);
+    assertEquals("root", spans.get(2).name());
+    assertEquals(spans.get(2).id(), call.parentId());
+    assertEquals(call.id(), inner.parentId());
+    assertEquals("call", call.name());
+    assertEquals(Outer.class.getName(), call.tags().get(LoggerTracer.TAG_CLASS));
+    assertEquals("call()", call.tags().get(LoggerTracer.TAG_METHOD));
+    assertTrue(inner.duration() >= 20_000L);
+    assertTrue(call.duration() >= inner.duration());
+  }
+
+  @Test
+  public void noTrace() {
+    assertEquals("inner", outer.call());
+    assertTrue(spans.isEmpty());
+  }
+
+  @Test
+  public void notSampled() {
+    brave.Span root = tracer.withSampler(Sampler.NEVER_SAMPLE).newTrace();
+    try (Tracer.SpanInScope ignored = tracer.withSpanInScope(root)) {
+      assertEquals("inner", outer.call());
+    }
+    assertTrue(spans.isEmpty());
+  }
+
+  @Test
+  public void error() {
+    ScopedSpan root = tracer.startScopedSpan("root");
+    try {
+      outer.fail();
+      fail();
+    } catch (IllegalStateException expected) {
+      // traced
+    } finally {
+      root.finish();
+    }
+
+    assertEquals(2, spans.size());
+    assertEquals("boom", spans.get(0).tags().get("error"));
+  }
+
+  @Test
+  public void completionStage() {
+    CompletableFuture<String> future = new CompletableFuture<>();
+    ScopedSpan root = tracer.startScopedSpan("root");
+    try {
+      outer.async(future);
+      // the caller's scope is restored as soon as the method returns
+      assertEquals(root.context(), tracer.currentSpan().context());
+    } finally {
+      root.finish();
+    }
+    assertEquals(1, spans.size());
+
+    future.complete("done");
+    assertEquals(2, spans.size());
+    assertEquals("async", spans.get(1).name());
+    assertEquals(spans.get(0).id(), spans.get(1).parentId());
+    assertNull(spans.get(1).tags().get("error"));
+  }
+
+  /**
+   * Lite configuration, a @Configuration would be picked up by the component scan of LoggerConfiguration in
+   * the contexts of the other tests.
+   */
+  @EnableLogger
+  @EnableAspectJAutoProxy(proxyTargetClass = true)
+  static class TracingConfig {
+
+    @Bean
+    Inner inner() {
+      return new Inner();
+    }
+
+    @Bean
+    Outer outer(Inner inner) {
+      return new Outer(inner);
+    }
+  }
+
+  @Loggable
+  static class Inner {
+
+    public String call() throws InterruptedException {
+      Thread.sleep(20L);
+      return "inner";
+    }
+  }
+
+  @Loggable
+  static class Outer {
+
+    private final Inner inner;
+
+    Outer(Inner inner) {
+      this.inner = inner;
+    }
+
+    public String call() {
+      try {
+        return inner.call();
+      } catch (InterruptedException ex) {
+        throw new IllegalStateException(ex);
+      }
+    }
+
+    public void fail() {
+      throw new IllegalStateException("boom");
+    }
+
+    public CompletableFuture<String> async(CompletableFuture<String> future) {
+      return future;
+    }
+  }
+}
@@ -0,0 +1,163 @@
+package com.megvii.insight.framework.logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.megvii.insight.framework.logger.LoggerWatchdog.WarnPoint;
+import com.megvii.insight.framework.logger.annotation.Loggable;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Calls reported by a wheel of 4 buckets of 10ms, that is 40ms per round, the wheel size of 3 rounded up.
+ */
+public class LoggerWatchdogTest {
+
+  private static final long TIMEOUT = TimeUnit.SECONDS.toNanos(5);
+
+  /**
+   * Reported calls, with the nanoTime they were reported at.
+   */
+  private final Map<WarnPoint, Long> reported = new ConcurrentHashMap<>();
+
+  private final AtomicInteger duplicates = new AtomicInteger();
+
+  private LoggerWatchdog watchdog;
+
+  @After
+  public void tearDown() {
+    watchdog.stop();
+    assertEquals(0, duplicates.get());
+  }
+
+  @Test
+  public void expires() throws Exception {
+    start();
+    LoggerDescriptor descriptor = descriptor("warn30");
+    long start = System.nanoTime();
+
+    WarnPoint warnPoint = watchdog.schedule(null, descriptor, start);
+
+    awaitReported(1);
+    long delay = reported.get(warnPoint) - start;
+    assertTrue(delay + "ns", delay >= TimeUnit.MILLISECONDS.toNanos(30));
+    assertFalse(watchdog.cancel(warnPoint));
+  }
+
+  @Test
+  public void cancelledBeforeExpiry() throws Exception {
+    start();
+    LoggerDescriptor descriptor = descriptor("warn30");
+
+    WarnPoint first = watchdog.schedule(null, descriptor, System.nanoTime());
+    assertTrue(watchdog.cancel(first));
+    // linked into a bucket by now
+    WarnPoint second = watchdog.schedule(null, descriptor, System.nanoTime());
+    Thread.sleep(15L);
+    assertTrue(watchdog.cancel(second));
+    WarnPoint third = watchdog.schedule(null, descriptor, System.nanoTime());
+
+    awaitReported(1);
+    Thread.sleep(100L);
+    assertEquals(1, reported.size());
+    assertTrue(reported.containsKey(third));
+    assertFalse(watchdog.cancel(first));
+  }
+
+  @Test
+  public void delayOverManyRounds() throws Exception {
+    start();
+    LoggerDescriptor descriptor = descriptor("warn150");
+    long start = System.nanoTime();
+
+    WarnPoint warnPoint = watchdog.schedule(null, descriptor, start);
+    // a call of the same bucket expiring in the first round
+    WarnPoint shorter = watchdog.schedule(null, descriptor("warn30"), start);
+
+    awaitReported(2);
+    assertTrue(reported.get(shorter) - start < TimeUnit.MILLISECONDS.toNanos(150));
+    long delay = reported.get(warnPoint) - start;
+    assertTrue(delay + "ns", delay >= TimeUnit.MILLISECONDS.toNanos(150));
+  }
+
+  @Test
+  public void cancelRacingExpiry() throws Exception {
+    start();
+    LoggerDescriptor descriptor = descriptor("warn30");
+    List<WarnPoint> warnPoints = new ArrayList<>();
+    for (int i = 0; i < 20_000; i++) {
+      warnPoints.add(watchdog.schedule(null, descriptor, System.nanoTime()));
+    }
+
+    Thread.sleep(25L);
+    int cancelled = 0;
+    for (WarnPoint warnPoint : warnPoints) {
+      if (watchdog.cancel(warnPoint)) {
+        cancelled++;
+      } else {
+        // reported exactly when not cancelled
+        awaitReported(warnPoint);
+      }
+    }
+
+    Thread.sleep(100L);
+    assertEquals(warnPoints.size(), cancelled + reported.size());
+    for (WarnPoint warnPoint : warnPoints) {
+      assertFalse(watchdog.cancel(warnPoint));
+    }
+  }
+
+  private void start() {
+    LoggerProperties.Warn properties = new LoggerProperties.Warn();
+    properties.setTick(Duration.ofMillis(10));
+    properties.setWheelSize(3);
+    watchdog = new LoggerWatchdog(properties, warnPoint -> {
+      if (reported.putIfAbsent(warnPoint, System.nanoTime()) != null) {
+        duplicates.incrementAndGet();
+      }
+    });
+    watchdog.start();
+  }
+
+  private void awaitReported(int count) throws InterruptedException {
+    long deadline = System.nanoTime() + TIMEOUT;
+    while (reported.size() < count) {
+      assertTrue("Reported " + reported.size(), System.nanoTime() - deadline < 0);
+      Thread.sleep(1L);
+    }
+  }
+
+  private void awaitReported(WarnPoint warnPoint) throws InterruptedException {
+    long deadline = System.nanoTime() + TIMEOUT;
+    while (!reported.containsKey(warnPoint)) {
+      assertTrue("Not reported", System.nanoTime() - deadline < 0);
+      Thread.sleep(1L);
+    }
+  }
+
+  private static LoggerDescriptor descriptor(String name) throws NoSuchMethodException {
+    Method method = Calls.class.getDeclaredMethod(name);
+    return new LoggerDescriptor(method, method.getAnnotation(Loggable.class), new LoggerProperties());
+  }
+
+  static class Calls {
+
+    @Loggable(warnOver = 30, warnUnit = TimeUnit.MILLISECONDS)
+    void warn30() {
+    }
+
+    @Loggable(warnOver = 150, warnUnit = TimeUnit.MILLISECONDS)
+    void warn150() {
+    }
+  }
+}
@@ -0,0 +1,27 @@
+package com.megvii.insight.framework.logger.woven;
+
+import com.megvii.insight.framework.logger.annotation.Loggable;
+
+/**
+ * Woven with the LoggerAspect by ajc at test-compile, never proxied.
+ */
+public class WovenCalls {
+
+  public static final String LOGGER = "com.megvii.insight.framework.logger.LoggerAspectTest";
+
+  public String plain(String name) {
+    return name;
+  }
+
+  @Loggable(name = LOGGER)
+  public String method(String name) {
+    return name;
+  }
+
+  /**
+   * Calls {@link #method(String)} on this, which is only logged when woven.
+   */
+  public String selfInvocation(String name) {
+    return method(name);
+  }
+}
@@ -0,0 +1,19 @@
+package com.megvii.insight.framework.logger.woven;
+
+import com.megvii.insight.framework.logger.annotation.Loggable;
+
+/**
+ * Woven with the class-level advice of the LoggerAspect.
+ */
+@Loggable(name = WovenCalls.LOGGER)
+public class WovenType {
+
+  public String type(String name) {
+    return name;
+  }
+
+  @Override
+  public String toString() {
+    return "woven";
+  }
+}